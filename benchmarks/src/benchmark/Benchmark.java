@@ -0,0 +1,100 @@
+/******************************************************************************
+* Title: Benchmark.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This is the super class for all benchmarks run by BenchmarkRunner.
+*
+* Each subclass performs one operation of the code being measured per count
+* in the run method. The runner calls run repeatedly with a batch count large
+* enough that the timer overhead is insignificant and divides the elapsed time
+* and the bytes allocated by the number of operations.
+*
+* The run method returns a value computed from the results of the work. The
+* runner folds the value into a sink so that the JIT compiler cannot discard
+* the work as unused.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package benchmark;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class Benchmark
+//
+
+public abstract class Benchmark
+{
+
+    private final String name;
+    public String getName() { return(name); }
+
+//-----------------------------------------------------------------------------
+// Benchmark::Benchmark (constructor)
+//
+// Parameter pName is displayed in the report and used to select benchmarks
+// from the command line.
+//
+
+public Benchmark(String pName)
+{
+
+    name = pName;
+
+}//end of Benchmark::Benchmark (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Benchmark::setUp
+//
+// Creates and prepares the objects used by run. Called once before the
+// warmup iterations.
+//
+// Should be overridden by child classes as necessary.
+//
+
+public void setUp() throws Exception
+{
+
+}//end of Benchmark::setUp
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Benchmark::run
+//
+// Performs pOps operations of the code being measured.
+//
+// Returns a value derived from the results of the operations.
+//
+
+public abstract long run(int pOps) throws Exception;
+
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Benchmark::tearDown
+//
+// Releases anything created by setUp. Called once after the measurement
+// iterations.
+//
+// Should be overridden by child classes as necessary.
+//
+
+public void tearDown() throws Exception
+{
+
+}//end of Benchmark::tearDown
+//-----------------------------------------------------------------------------
+
+}//end of class Benchmark
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,398 @@
+/******************************************************************************
+* Title: BenchmarkRunner.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class runs the benchmarks for the acquisition to display pipeline and
+* prints a report of the results. It is run headless from the build with:
+*
+*   ant benchmark
+*
+* Options may be passed via the benchmark.args property:
+*
+*   ant benchmark -Dbenchmark.args="-wi 3 -i 5 -w 200 -r 500 Trace IniFile"
+*
+*   -wi n   number of warmup iterations (default 5)
+*   -i n    number of measurement iterations (default 5)
+*   -w ms   length of each warmup iteration in milliseconds (default 200)
+*   -r ms   length of each measurement iteration in milliseconds (default 500)
+*
+* Any other arguments are treated as filters -- only benchmarks with a name
+* containing one of the filters are run.
+*
+* Each iteration repeatedly runs a batch of operations until its time has
+* elapsed. The batch size is doubled during the first warmup iteration until
+* one batch takes at least a millisecond so that reading the clock does not
+* affect the result.
+*
+* For each benchmark, the report lists the mean time per operation with the
+* standard deviation across the measurement iterations, the operations per
+* second, and the bytes allocated per operation by the benchmark thread. The
+* allocation count is used to verify that the hot paths do not create garbage.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package benchmark;
+
+//-----------------------------------------------------------------------------
+
+import java.lang.management.ManagementFactory;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class BenchmarkRunner
+//
+
+public class BenchmarkRunner
+{
+
+    private int warmupIterations = 5;
+    private int measureIterations = 5;
+    private long warmupMilliSec = 200;
+    private long measureMilliSec = 500;
+
+    private final ArrayList<String> filters = new ArrayList<>();
+
+    private com.sun.management.ThreadMXBean allocBean = null;
+
+    //results are folded into this so the work cannot be optimized away
+    public static volatile long sink;
+
+    private final DecimalFormat timeFormat = new DecimalFormat("0.000");
+    private final DecimalFormat rateFormat = new DecimalFormat("#,##0");
+    private final DecimalFormat allocFormat = new DecimalFormat("0.0");
+
+//-----------------------------------------------------------------------------
+// BenchmarkRunner::main
+//
+
+public static void main(String[] pArgs)
+{
+
+    BenchmarkRunner runner = new BenchmarkRunner();
+
+    int status = 0;
+
+    try{
+        runner.init(pArgs);
+        if (runner.runAll() > 0) { status = 1; }
+    }
+    catch(IllegalArgumentException e){
+        System.err.println(e.getMessage());
+        status = 1;
+    }
+
+    //AWT threads started by the display benchmarks keep the VM alive
+    System.exit(status);
+
+}//end of BenchmarkRunner::main
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// BenchmarkRunner::init
+//
+// Parses the command line arguments in pArgs and prepares for use.
+//
+
+public void init(String[] pArgs)
+{
+
+    for (int i=0; i<pArgs.length; i++){
+
+        switch(pArgs[i]){
+            case "-wi": warmupIterations = parseArg(pArgs, ++i, 0); break;
+            case "-i": measureIterations = parseArg(pArgs, ++i, 1); break;
+            case "-w": warmupMilliSec = parseArg(pArgs, ++i, 1); break;
+            case "-r": measureMilliSec = parseArg(pArgs, ++i, 1); break;
+            default: if (!pArgs[i].isEmpty()) { filters.add(pArgs[i]); }
+        }
+
+    }
+
+    java.lang.management.ThreadMXBean bean =
+                                        ManagementFactory.getThreadMXBean();
+
+    if (bean instanceof com.sun.management.ThreadMXBean){
+        allocBean = (com.sun.management.ThreadMXBean)bean;
+        if (allocBean.isThreadAllocatedMemorySupported()){
+            allocBean.setThreadAllocatedMemoryEnabled(true);
+        }
+        else{
+            allocBean = null;
+        }
+    }
+
+}//end of BenchmarkRunner::init
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// BenchmarkRunner::parseArg
+//
+// Returns the integer option value at pArgs[pIndex]. Throws
+// IllegalArgumentException if the value is missing or less than pMin.
+//
+
+private int parseArg(String[] pArgs, int pIndex, int pMin)
+{
+
+    int value;
+
+    try{
+        value = Integer.parseInt(pArgs[pIndex]);
+    }
+    catch(ArrayIndexOutOfBoundsException | NumberFormatException e){
+        throw new IllegalArgumentException(
+                 "Missing or invalid value for option " + pArgs[pIndex - 1]);
+    }
+
+    if (value < pMin){
+        throw new IllegalArgumentException(
+                        "Value for option " + pArgs[pIndex - 1]
+                                            + " must be at least " + pMin);
+    }
+
+    return(value);
+
+}//end of BenchmarkRunner::parseArg
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// BenchmarkRunner::createBenchmarks
+//
+// Returns a list of all benchmarks.
+//
+
+private ArrayList<Benchmark> createBenchmarks()
+{
+
+    ArrayList<Benchmark> list = new ArrayList<>();
+
+    list.addAll(DataTransferBenchmarks.create());
+    list.addAll(hardware.DeviceBenchmarks.create());
+    list.addAll(TraceBenchmarks.create());
+    list.addAll(IniFileBenchmarks.create());
+
+    return(list);
+
+}//end of BenchmarkRunner::createBenchmarks
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// BenchmarkRunner::isSelected
+//
+// Returns true if the benchmark named pName matches one of the filters or no
+// filters were specified.
+//
+
+private boolean isSelected(String pName)
+{
+
+    if (filters.isEmpty()) { return(true); }
+
+    for (String f : filters){ if (pName.contains(f)) { return(true); } }
+
+    return(false);
+
+}//end of BenchmarkRunner::isSelected
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// BenchmarkRunner::runAll
+//
+// Runs all selected benchmarks and prints the results. A benchmark which
+// throws an exception is reported on the error stream and the rest are still
+// run.
+//
+// Returns the number of benchmarks which failed.
+//
+
+public int runAll()
+{
+
+    int numFailed = 0;
+
+    System.out.println("Warmup: " + warmupIterations + " x " + warmupMilliSec
+                    + " ms, Measurement: " + measureIterations + " x "
+                    + measureMilliSec + " ms"
+                    + (allocBean == null ? ", allocation not available" : ""));
+    System.out.println();
+
+    System.out.println(String.format("%-52s %12s %10s %14s %10s",
+                        "Benchmark", "ns/op", "std dev", "ops/s", "B/op"));
+
+    for (Benchmark b : createBenchmarks()){
+
+        if (!isSelected(b.getName())) { continue; }
+
+        try{
+            runBenchmark(b);
+        }
+        catch(Exception e){
+            numFailed++;
+            System.out.flush();
+            System.err.println(String.format("%-52s failed: %s",
+                                                    b.getName(), e));
+            e.printStackTrace();
+        }
+
+    }
+
+    if (numFailed > 0){
+        System.err.println();
+        System.err.println(numFailed + " benchmark(s) failed.");
+    }
+
+    return(numFailed);
+
+}//end of BenchmarkRunner::runAll
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// BenchmarkRunner::runBenchmark
+//
+// Sets up pBenchmark, runs the warmup and measurement iterations, and prints
+// a line with the results.
+//
+
+private void runBenchmark(Benchmark pBenchmark) throws Exception
+{
+
+    pBenchmark.setUp();
+
+    try{
+
+        int batch = calibrateBatchSize(pBenchmark);
+
+        for (int i=0; i<warmupIterations; i++){
+            runIteration(pBenchmark, batch, warmupMilliSec);
+        }
+
+        double[] nsPerOp = new double[measureIterations];
+        double bytesPerOp = 0;
+
+        for (int i=0; i<measureIterations; i++){
+            double[] result =
+                        runIteration(pBenchmark, batch, measureMilliSec);
+            nsPerOp[i] = result[0]; bytesPerOp += result[1];
+        }
+
+        bytesPerOp /= measureIterations;
+
+        printResult(pBenchmark.getName(), nsPerOp, bytesPerOp);
+
+    }
+    finally{
+        pBenchmark.tearDown();
+    }
+
+}//end of BenchmarkRunner::runBenchmark
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// BenchmarkRunner::calibrateBatchSize
+//
+// Returns a batch size for which one call to pBenchmark.run takes at least a
+// millisecond.
+//
+
+private int calibrateBatchSize(Benchmark pBenchmark) throws Exception
+{
+
+    int batch = 1;
+
+    while(batch < (1 << 24)){
+
+        long start = System.nanoTime();
+        sink ^= pBenchmark.run(batch);
+        long elapsed = System.nanoTime() - start;
+
+        if (elapsed >= 1000000) { break; }
+
+        batch *= 2;
+
+    }
+
+    return(batch);
+
+}//end of BenchmarkRunner::calibrateBatchSize
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// BenchmarkRunner::runIteration
+//
+// Runs batches of pBatch operations of pBenchmark until pMilliSec have
+// elapsed.
+//
+// Returns the nanoseconds per operation in element 0 and the bytes allocated
+// per operation in element 1.
+//
+
+private double[] runIteration(Benchmark pBenchmark, int pBatch,
+                                        long pMilliSec) throws Exception
+{
+
+    long threadID = Thread.currentThread().getId();
+
+    long allocStart = allocBean != null ?
+                                allocBean.getThreadAllocatedBytes(threadID) : 0;
+
+    long ops = 0;
+    long duration = pMilliSec * 1000000L;
+    long start = System.nanoTime();
+    long elapsed;
+
+    do{
+        sink ^= pBenchmark.run(pBatch);
+        ops += pBatch;
+        elapsed = System.nanoTime() - start;
+    }while(elapsed < duration);
+
+    long allocated = allocBean != null ?
+                allocBean.getThreadAllocatedBytes(threadID) - allocStart : 0;
+
+    return(new double[] {(double)elapsed / ops, (double)allocated / ops});
+
+}//end of BenchmarkRunner::runIteration
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// BenchmarkRunner::printResult
+//
+// Prints the mean and standard deviation of the times in pNsPerOp along with
+// the rate and the allocation per operation.
+//
+
+private void printResult(String pName, double[] pNsPerOp, double pBytesPerOp)
+{
+
+    double mean = 0;
+    for (double v : pNsPerOp) { mean += v; }
+    mean /= pNsPerOp.length;
+
+    double variance = 0;
+    for (double v : pNsPerOp) { variance += (v - mean) * (v - mean); }
+    double stdDev = Math.sqrt(variance / pNsPerOp.length);
+
+    System.out.println(String.format("%-52s %12s %10s %14s %10s", pName,
+                        timeFormat.format(mean), timeFormat.format(stdDev),
+                        rateFormat.format(1.0e9 / mean),
+                        allocBean == null ? "-" :
+                                            allocFormat.format(pBytesPerOp)));
+
+}//end of BenchmarkRunner::printResult
+//-----------------------------------------------------------------------------
+
+}//end of class BenchmarkRunner
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,325 @@
+/******************************************************************************
+* Title: DataTransferBenchmarks.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class creates the benchmarks for the buffers which transfer data from
+* the acquisition thread to the display: DataTransferIntBuffer and its single
+* producer/single consumer variant, DataTransferSnapshotBuffer, and
+* DataTransferIntMultiDimBuffer.
+*
+* One operation is the storing of one data point (or row) by the producer
+* side along with its retrieval by the consumer side, as occurs for every
+* sample displayed.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package benchmark;
+
+//-----------------------------------------------------------------------------
+
+import java.util.ArrayList;
+import model.DataFlags;
+import model.DataSetInt;
+import model.DataSetIntMultiDim;
+import model.DataSetSnapshot;
+import model.DataTransferIntBuffer;
+import model.DataTransferIntBufferSPSC;
+import model.DataTransferIntMultiDimBuffer;
+import model.DataTransferSnapshotBuffer;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class DataTransferBenchmarks
+//
+
+public class DataTransferBenchmarks
+{
+
+    static final int BUFFER_LENGTH = 1000;
+    static final int SNAPSHOT_WIDTH = 128;
+    static final int MAP_WIDTH = 48;
+
+    //number of points stored before each bulk retrieval
+    static final int DRAIN_BATCH_SIZE = 64;
+
+//-----------------------------------------------------------------------------
+// DataTransferBenchmarks::create
+//
+// Returns a list of all benchmarks in this class.
+//
+
+public static ArrayList<Benchmark> create()
+{
+
+    ArrayList<Benchmark> list = new ArrayList<>();
+
+    list.add(new IntBufferPutGet("DataTransferIntBuffer put/getDataChange",
+                new DataTransferIntBuffer(BUFFER_LENGTH,
+                                                DataFlags.CATCH_HIGHEST)));
+
+    list.add(new IntBufferPutDrain("DataTransferIntBuffer put/drainReady",
+                new DataTransferIntBuffer(BUFFER_LENGTH,
+                                                DataFlags.CATCH_HIGHEST)));
+
+    list.add(new IntBufferPutGet("DataTransferIntBufferSPSC put/getDataChange",
+                new DataTransferIntBufferSPSC(BUFFER_LENGTH,
+                                                DataFlags.CATCH_HIGHEST)));
+
+    list.add(new IntBufferPutDrain("DataTransferIntBufferSPSC put/drainReady",
+                new DataTransferIntBufferSPSC(BUFFER_LENGTH,
+                                                DataFlags.CATCH_HIGHEST)));
+
+    list.add(new SnapshotBufferPutGet());
+
+    list.add(new MultiDimBufferPutGet());
+
+    return(list);
+
+}//end of DataTransferBenchmarks::create
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class IntBufferPutGet
+//
+// Stores one point and retrieves it with getDataChange per operation.
+//
+
+static class IntBufferPutGet extends Benchmark
+{
+
+    private final DataTransferIntBuffer buffer;
+    private final DataSetInt dataSet = new DataSetInt();
+    private int value = 0;
+
+public IntBufferPutGet(String pName, DataTransferIntBuffer pBuffer)
+{
+
+    super(pName);
+
+    buffer = pBuffer;
+
+}//end of IntBufferPutGet::IntBufferPutGet (constructor)
+
+@Override
+public void setUp()
+{
+
+    buffer.init(0); buffer.reset();
+
+}//end of IntBufferPutGet::setUp
+
+@Override
+public long run(int pOps)
+{
+
+    long sum = 0;
+
+    for (int i=0; i<pOps; i++){
+
+        buffer.putData(value++ & 0xff);
+        buffer.incPutPtrAndSetReadyAfterDataFill();
+
+        buffer.getDataChange(dataSet);
+        sum += dataSet.d;
+
+    }
+
+    return(sum);
+
+}//end of IntBufferPutGet::run
+
+}//end of class IntBufferPutGet
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class IntBufferPutDrain
+//
+// Stores one point per operation and retrieves the stored points in bulk with
+// drainReady after every DRAIN_BATCH_SIZE points.
+//
+
+static class IntBufferPutDrain extends Benchmark
+{
+
+    private final DataTransferIntBuffer buffer;
+    private final int[] drainData = new int[DRAIN_BATCH_SIZE];
+    private final int[] drainFlags = new int[DRAIN_BATCH_SIZE];
+    private int value = 0;
+
+public IntBufferPutDrain(String pName, DataTransferIntBuffer pBuffer)
+{
+
+    super(pName);
+
+    buffer = pBuffer;
+
+}//end of IntBufferPutDrain::IntBufferPutDrain (constructor)
+
+@Override
+public void setUp()
+{
+
+    buffer.init(0); buffer.reset();
+
+}//end of IntBufferPutDrain::setUp
+
+@Override
+public long run(int pOps)
+{
+
+    long sum = 0;
+
+    for (int i=0; i<pOps; i++){
+
+        buffer.putData(value++ & 0xff);
+        buffer.incPutPtrAndSetReadyAfterDataFill();
+
+        if ((i % DRAIN_BATCH_SIZE) == DRAIN_BATCH_SIZE - 1 || i == pOps - 1){
+            int n = buffer.drainReady(drainData, drainFlags, DRAIN_BATCH_SIZE);
+            for (int j=0; j<n; j++) { sum += drainData[j]; }
+        }
+
+    }
+
+    return(sum);
+
+}//end of IntBufferPutDrain::run
+
+}//end of class IntBufferPutDrain
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SnapshotBufferPutGet
+//
+// Stores one snapshot row and retrieves it with getDataChange per operation.
+//
+
+static class SnapshotBufferPutGet extends Benchmark
+{
+
+    private final DataTransferSnapshotBuffer buffer =
+                        new DataTransferSnapshotBuffer(BUFFER_LENGTH,
+                                    SNAPSHOT_WIDTH, DataFlags.CATCH_HIGHEST);
+    private final DataSetSnapshot dataSet = new DataSetSnapshot(SNAPSHOT_WIDTH);
+    private final int[] row = new int[SNAPSHOT_WIDTH];
+    private int value = 0;
+
+public SnapshotBufferPutGet()
+{
+
+    super("DataTransferSnapshotBuffer put/getDataChange");
+
+}//end of SnapshotBufferPutGet::SnapshotBufferPutGet (constructor)
+
+@Override
+public void setUp()
+{
+
+    buffer.init(0); buffer.reset();
+
+    for (int i=0; i<row.length; i++) { row[i] = i & 0xff; }
+
+}//end of SnapshotBufferPutGet::setUp
+
+@Override
+public long run(int pOps)
+{
+
+    long sum = 0;
+
+    for (int i=0; i<pOps; i++){
+
+        buffer.putData(value++ & 0xff, row);
+        buffer.incPutPtrAndSetReadyAfterDataFill();
+
+        buffer.getDataChange(dataSet);
+        sum += dataSet.p + dataSet.d[0];
+
+    }
+
+    return(sum);
+
+}//end of SnapshotBufferPutGet::run
+
+}//end of class SnapshotBufferPutGet
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class MultiDimBufferPutGet
+//
+// Stores one map row and retrieves it with getDataChange per operation.
+//
+
+static class MultiDimBufferPutGet extends Benchmark
+{
+
+    private final DataTransferIntMultiDimBuffer buffer =
+                        new DataTransferIntMultiDimBuffer(BUFFER_LENGTH,
+                                        MAP_WIDTH, DataFlags.CATCH_HIGHEST);
+    private final DataSetIntMultiDim dataSet = new DataSetIntMultiDim(MAP_WIDTH);
+    private final int[] row = new int[MAP_WIDTH];
+    private final int[] meta = new int[MAP_WIDTH];
+
+public MultiDimBufferPutGet()
+{
+
+    super("DataTransferIntMultiDimBuffer put/getDataChange");
+
+}//end of MultiDimBufferPutGet::MultiDimBufferPutGet (constructor)
+
+@Override
+public void setUp()
+{
+
+    buffer.init(0, 0); buffer.reset();
+
+    for (int i=0; i<row.length; i++) { row[i] = i & 0xff; meta[i] = i; }
+
+}//end of MultiDimBufferPutGet::setUp
+
+@Override
+public long run(int pOps)
+{
+
+    long sum = 0;
+
+    for (int i=0; i<pOps; i++){
+
+        row[i % MAP_WIDTH]++;
+
+        buffer.putData(row, meta);
+        buffer.incPutPtrAndSetReadyAfterDataFill();
+
+        buffer.getDataChange(dataSet);
+        sum += dataSet.d[0];
+
+    }
+
+    return(sum);
+
+}//end of MultiDimBufferPutGet::run
+
+}//end of class MultiDimBufferPutGet
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+}//end of class DataTransferBenchmarks
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
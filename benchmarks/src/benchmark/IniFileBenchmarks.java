@@ -0,0 +1,226 @@
+/******************************************************************************
+* Title: IniFileBenchmarks.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class creates the benchmarks for reading and writing values in a
+* large configuration file with IniFile.
+*
+* A temporary file with NUM_SECTIONS sections of NUM_KEYS keys each is
+* generated, which is larger than the biggest of the demo configuration
+* files. The keys accessed are spread evenly through the file.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package benchmark;
+
+//-----------------------------------------------------------------------------
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import model.IniFile;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class IniFileBenchmarks
+//
+
+public class IniFileBenchmarks
+{
+
+    static final int NUM_SECTIONS = 200;
+    static final int NUM_KEYS = 50;
+
+    //number of distinct section/key pairs accessed in turn
+    static final int NUM_ACCESSED = 1024;
+
+    static final int READ = 0;
+    static final int READ_MISSING = 1;
+    static final int WRITE = 2;
+
+//-----------------------------------------------------------------------------
+// IniFileBenchmarks::create
+//
+// Returns a list of all benchmarks in this class.
+//
+
+public static ArrayList<Benchmark> create()
+{
+
+    ArrayList<Benchmark> list = new ArrayList<>();
+
+    list.add(new Access(READ));
+    list.add(new Access(READ_MISSING));
+    list.add(new Access(WRITE));
+
+    return(list);
+
+}//end of IniFileBenchmarks::create
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IniFileBenchmarks::sectionName
+//
+
+static String sectionName(int pSection)
+{
+
+    return("Chart Group 0 Chart " + pSection + " Settings");
+
+}//end of IniFileBenchmarks::sectionName
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IniFileBenchmarks::keyName
+//
+
+static String keyName(int pKey)
+{
+
+    return("setting number " + pKey);
+
+}//end of IniFileBenchmarks::keyName
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IniFileBenchmarks::writeLargeConfigFile
+//
+// Writes a config file with NUM_SECTIONS sections of NUM_KEYS integer keys
+// each, with comments and blank lines as in the real files, to pFile.
+//
+
+static void writeLargeConfigFile(File pFile) throws IOException
+{
+
+    try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+                                new FileOutputStream(pFile), "UTF-8"))){
+
+        out.write(";benchmark configuration file"); out.newLine();
+        out.newLine();
+
+        for (int s=0; s<NUM_SECTIONS; s++){
+
+            out.write("[" + sectionName(s) + "]"); out.newLine();
+            out.newLine();
+
+            for (int k=0; k<NUM_KEYS; k++){
+                if (k % 10 == 0){
+                    out.write(";settings group " + (k / 10)); out.newLine();
+                }
+                out.write(keyName(k) + "=" + (s * NUM_KEYS + k)); out.newLine();
+            }
+
+            out.newLine();
+
+        }
+
+    }
+
+}//end of IniFileBenchmarks::writeLargeConfigFile
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class Access
+//
+// Reads or writes one integer value per operation.
+//
+// For READ_MISSING, the key does not exist in the section so the entire
+// section is searched and the default returned.
+//
+
+static class Access extends Benchmark
+{
+
+    private final int mode;
+
+    private File configPath;
+    private IniFile configFile;
+
+    private final String[] sections = new String[NUM_ACCESSED];
+    private final String[] keys = new String[NUM_ACCESSED];
+
+public Access(int pMode)
+{
+
+    super(pMode == READ ? "IniFile.readInt"
+            : pMode == READ_MISSING ? "IniFile.readInt (missing key)"
+                                                    : "IniFile.writeInt");
+
+    mode = pMode;
+
+}//end of Access::Access (constructor)
+
+@Override
+public void setUp() throws IOException
+{
+
+    configPath = File.createTempFile("benchmark", ".ini");
+
+    writeLargeConfigFile(configPath);
+
+    configFile = new IniFile(configPath.getPath(), "UTF-8");
+    configFile.init();
+
+    //spread the accesses through the file -- strides are prime so the pairs
+    //do not repeat in step with the section and key counts
+
+    for (int i=0; i<NUM_ACCESSED; i++){
+        sections[i] = sectionName((i * 37) % NUM_SECTIONS);
+        keys[i] = mode == READ_MISSING ?
+                            "missing key" : keyName((i * 13) % NUM_KEYS);
+    }
+
+}//end of Access::setUp
+
+@Override
+public long run(int pOps)
+{
+
+    long sum = 0;
+
+    for (int i=0; i<pOps; i++){
+
+        int a = i % NUM_ACCESSED;
+
+        if (mode == WRITE){
+            configFile.writeInt(sections[a], keys[a], i);
+        }
+        else{
+            sum += configFile.readInt(sections[a], keys[a], -1);
+        }
+
+    }
+
+    return(sum);
+
+}//end of Access::run
+
+@Override
+public void tearDown()
+{
+
+    configPath.delete();
+
+}//end of Access::tearDown
+
+}//end of class Access
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+}//end of class IniFileBenchmarks
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,172 @@
+/******************************************************************************
+* Title: TraceBenchmarks.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class creates the benchmarks for the plotting of new data by
+* Trace.updateTrace.
+*
+* The trace draws on the Graphics2D of an offscreen BufferedImage so that no
+* display is required. One operation is the storing of one data point in the
+* trace's DataTransferIntBuffer and the plotting of that point. The points
+* are plotted either one per call to updateTrace or in groups as occurs when
+* the display falls behind the acquisition rate.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package benchmark;
+
+//-----------------------------------------------------------------------------
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import model.DataFlags;
+import model.DataTransferIntBuffer;
+import model.IniFile;
+import model.SharedSettings;
+import view.GraphInfo;
+import view.Threshold;
+import view.Trace;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class TraceBenchmarks
+//
+
+public class TraceBenchmarks
+{
+
+    static final int GRAPH_WIDTH = 1000;
+    static final int GRAPH_HEIGHT = 300;
+
+//-----------------------------------------------------------------------------
+// TraceBenchmarks::create
+//
+// Returns a list of all benchmarks in this class.
+//
+
+public static ArrayList<Benchmark> create()
+{
+
+    ArrayList<Benchmark> list = new ArrayList<>();
+
+    list.add(new UpdateTrace(1));
+    list.add(new UpdateTrace(50));
+
+    return(list);
+
+}//end of TraceBenchmarks::create
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class UpdateTrace
+//
+// Stores pPointsPerUpdate points in the trace's data buffer and then plots
+// them with one call to updateTrace.
+//
+
+static class UpdateTrace extends Benchmark
+{
+
+    private final int pointsPerUpdate;
+
+    private BufferedImage image;
+    private Graphics2D g2;
+    private Trace trace;
+    private DataTransferIntBuffer dataBuffer;
+    private File configPath;
+    private int value = 0;
+
+public UpdateTrace(int pPointsPerUpdate)
+{
+
+    super("Trace.updateTrace (" + pPointsPerUpdate + " points per update)");
+
+    pointsPerUpdate = pPointsPerUpdate;
+
+}//end of UpdateTrace::UpdateTrace (constructor)
+
+@Override
+public void setUp() throws IOException
+{
+
+    //the trace loads its settings from an empty config file so that all
+    //defaults are used
+
+    configPath = File.createTempFile("benchmark", ".ini");
+
+    IniFile configFile = new IniFile(configPath.getPath(), "UTF-8");
+    configFile.init();
+
+    image = new BufferedImage(
+                    GRAPH_WIDTH, GRAPH_HEIGHT, BufferedImage.TYPE_INT_RGB);
+    g2 = image.createGraphics();
+
+    dataBuffer = new DataTransferIntBuffer(1000, DataFlags.CATCH_HIGHEST);
+    dataBuffer.init(0); dataBuffer.reset();
+
+    trace = new Trace();
+    trace.init(0, 0, 0, 0, GRAPH_WIDTH, GRAPH_HEIGHT, Color.WHITE, true,
+                Color.LIGHT_GRAY, 10, 10, new GraphInfo(), configFile,
+                new Threshold[0], new SharedSettings());
+    trace.setConnectPoints(true);
+    trace.setDataBuffer(dataBuffer);
+
+}//end of UpdateTrace::setUp
+
+@Override
+public long run(int pOps)
+{
+
+    int stored = 0;
+
+    for (int i=0; i<pOps; i++){
+
+        //simulated signal wanders across most of the graph height
+        value = (value + 37) % 250;
+
+        dataBuffer.putData(value);
+        dataBuffer.incPutPtrAndSetReadyAfterDataFill();
+
+        if (++stored == pointsPerUpdate || i == pOps - 1){
+            trace.updateTrace(g2);
+            stored = 0;
+        }
+
+    }
+
+    return(trace.getDataIndex() + image.getRGB(GRAPH_WIDTH / 2, 0));
+
+}//end of UpdateTrace::run
+
+@Override
+public void tearDown()
+{
+
+    g2.dispose();
+
+    configPath.delete();
+
+}//end of UpdateTrace::tearDown
+
+}//end of class UpdateTrace
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+}//end of class TraceBenchmarks
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
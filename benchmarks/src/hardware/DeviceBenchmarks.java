@@ -0,0 +1,444 @@
+/******************************************************************************
+* Title: DeviceBenchmarks.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class creates the benchmarks for the receiving and processing of
+* packets from the remote devices.
+*
+* A Multi_IO_A_Transverse device is created from the [Device 0 Settings]
+* section of a demo configuration file and connected to its Simulator. Run
+* data packets are requested from the simulator and the bytes it sends are
+* recorded as the device reads them. The recorded stream is then substituted
+* for the device's socket stream and replayed for each operation, so only the
+* parsing and processing of the packets is measured without the simulator or
+* pipe overhead. Requests sent by the device are discarded.
+*
+* The replay stream is reused for every operation so that the allocation
+* reported is that of the device code alone.
+*
+* The configuration file may be changed with the benchmark.config system
+* property.
+*
+* This class is in the hardware package so that it can substitute the device
+* streams.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package hardware;
+
+//-----------------------------------------------------------------------------
+
+import benchmark.Benchmark;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import model.IniFile;
+import model.SharedSettings;
+import view.LogPanel;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class DeviceBenchmarks
+//
+
+public class DeviceBenchmarks
+{
+
+    static final String DEFAULT_CONFIG_FILE =
+                    "configurations/00 - Demo ~ Timer Driven Tracking.ini";
+
+    //number of run data packets in the stream parsed by each operation
+    static final int PACKETS_PER_STREAM = 64;
+
+//-----------------------------------------------------------------------------
+// DeviceBenchmarks::create
+//
+// Returns a list of all benchmarks in this class.
+//
+
+public static ArrayList<Benchmark> create()
+{
+
+    ArrayList<Benchmark> list = new ArrayList<>();
+
+    list.add(new ParseStream());
+    list.add(new CollectData(false));
+    list.add(new CollectData(true));
+
+    return(list);
+
+}//end of DeviceBenchmarks::create
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DeviceBenchmarks::createRecordedDevice
+//
+// Creates a device connected to its simulator and records the bytes of
+// pNumPackets run data packets sent by the simulator. The packets are
+// processed normally by the device as they are recorded.
+//
+// When done, the device's send stream is replaced with one which discards all
+// bytes so that requests do not fill the simulator's pipe.
+//
+// Returns the device; the recorded packets are returned in pPackets, one
+// array per packet.
+//
+
+static PeakDevice createRecordedDevice(int pNumPackets,
+                        ArrayList<byte[]> pPackets) throws IOException
+{
+
+    String configPath =
+            System.getProperty("benchmark.config", DEFAULT_CONFIG_FILE);
+
+    IniFile configFile = new IniFile(configPath, "UTF-8");
+    configFile.init();
+
+    SharedSettings settings = new SharedSettings();
+    settings.opMode = SharedSettings.SCAN_MODE;
+
+    LogPanel logPanel = new LogPanel("Benchmark", 100, 100);
+    logPanel.init();
+
+    PeakDevice device = new Multi_IO_A_Transverse(
+                                    0, logPanel, configFile, settings, true);
+    device.init();
+
+    device.setIPAddr(InetAddress.getLoopbackAddress());
+    device.connectToDevice();
+
+    if (!device.getConnectionSuccessful()){
+        throw new IOException("Could not connect to simulated device.");
+    }
+
+    ByteArrayOutputStream recording = new ByteArrayOutputStream();
+
+    device.byteIn = new DataInputStream(
+                        new RecordingInputStream(device.byteIn, recording));
+
+    //each pass reads the reply to the previous request and sends another
+
+    int start = 0;
+
+    for (int i=0; i<=pNumPackets; i++){
+
+        device.collectData();
+
+        int end = recording.size();
+
+        if (end > start){
+            byte[] all = recording.toByteArray();
+            byte[] packet = new byte[end - start];
+            System.arraycopy(all, start, packet, 0, packet.length);
+            pPackets.add(packet);
+            start = end;
+        }
+
+        device.driveSimulation();
+
+    }
+
+    if (pPackets.isEmpty()){
+        throw new IOException("No packets received from simulated device.");
+    }
+
+    device.byteOut = new DataOutputStream(OutputStream.nullOutputStream());
+
+    return(device);
+
+}//end of DeviceBenchmarks::createRecordedDevice
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DeviceBenchmarks::setUpReplay
+//
+// Substitutes a replay stream for the receive stream of pDevice and returns
+// the replay stream.
+//
+
+static ReplayInputStream setUpReplay(Device pDevice)
+{
+
+    ReplayInputStream replay = new ReplayInputStream();
+
+    pDevice.byteIn = new DataInputStream(replay);
+
+    return(replay);
+
+}//end of DeviceBenchmarks::setUpReplay
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DeviceBenchmarks::replay
+//
+// Empties the receive buffer of pDevice and restarts pReplay with pBytes as
+// the bytes to be received.
+//
+
+static void replay(Device pDevice, ReplayInputStream pReplay, byte[] pBytes)
+{
+
+    pReplay.restart(pBytes);
+
+    pDevice.rcvBuf.clear(); pDevice.rcvBuf.limit(0);
+
+}//end of DeviceBenchmarks::replay
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class ParseStream
+//
+// Parses a stream of PACKETS_PER_STREAM recorded run data packets per
+// operation.
+//
+
+static class ParseStream extends Benchmark
+{
+
+    private PeakDevice device;
+    private ReplayInputStream replay;
+    private byte[] stream;
+
+public ParseStream()
+{
+
+    super("Device.processAllAvailableDataPackets (" + PACKETS_PER_STREAM
+                                                        + " run packets)");
+
+}//end of ParseStream::ParseStream (constructor)
+
+@Override
+public void setUp() throws IOException
+{
+
+    ArrayList<byte[]> packets = new ArrayList<>();
+
+    device = createRecordedDevice(PACKETS_PER_STREAM, packets);
+
+    ByteArrayOutputStream all = new ByteArrayOutputStream();
+    for (byte[] p : packets) { all.write(p); }
+
+    stream = all.toByteArray();
+
+    replay = setUpReplay(device);
+
+}//end of ParseStream::setUp
+
+@Override
+public long run(int pOps)
+{
+
+    long sum = 0;
+
+    for (int i=0; i<pOps; i++){
+
+        replay(device, replay, stream);
+
+        device.processAllAvailableDataPackets();
+
+        sum += device.rcvBuf.position();
+
+    }
+
+    return(sum);
+
+}//end of ParseStream::run
+
+@Override
+public void tearDown()
+{
+
+    device.shutDown();
+
+}//end of ParseStream::tearDown
+
+}//end of class ParseStream
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class CollectData
+//
+// Receives one recorded run data packet per operation via
+// PeakDevice.collectData, which parses the packet and catches the channel,
+// snapshot, and map peaks in the device's DeviceData.
+//
+// If pRetrieve is true, the peaks are also retrieved and reset with
+// getDeviceDataAndReset in each operation as the display side does.
+//
+
+static class CollectData extends Benchmark
+{
+
+    private final boolean retrieve;
+
+    private PeakDevice device;
+    private ReplayInputStream replay;
+    private byte[][] packets;
+
+    private final PeakData peakData = new PeakData(0, 16);
+    private final PeakSnapshotData snapshotData = new PeakSnapshotData(0, 128);
+    private final PeakMapData mapData = new PeakMapData(0, 48);
+
+public CollectData(boolean pRetrieve)
+{
+
+    super(pRetrieve ? "PeakDevice.collectData + getDeviceDataAndReset"
+                                                : "PeakDevice.collectData");
+
+    retrieve = pRetrieve;
+
+}//end of CollectData::CollectData (constructor)
+
+@Override
+public void setUp() throws IOException
+{
+
+    ArrayList<byte[]> recorded = new ArrayList<>();
+
+    device = createRecordedDevice(PACKETS_PER_STREAM, recorded);
+
+    packets = recorded.toArray(new byte[0][]);
+
+    replay = setUpReplay(device);
+
+}//end of CollectData::setUp
+
+@Override
+public long run(int pOps)
+{
+
+    long sum = 0;
+
+    for (int i=0; i<pOps; i++){
+
+        replay(device, replay, packets[i % packets.length]);
+
+        device.collectData();
+
+        if (retrieve){
+            device.getDeviceDataAndReset(peakData, snapshotData, mapData);
+            sum += peakData.peakArray[0];
+        }
+        else{
+            sum += device.rcvBuf.position();
+        }
+
+    }
+
+    return(sum);
+
+}//end of CollectData::run
+
+@Override
+public void tearDown()
+{
+
+    device.shutDown();
+
+}//end of CollectData::tearDown
+
+}//end of class CollectData
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class RecordingInputStream
+//
+// Passes through all bytes read from the wrapped stream and also writes them
+// to a recording stream.
+//
+
+static class RecordingInputStream extends FilterInputStream
+{
+
+    private final OutputStream recording;
+
+public RecordingInputStream(InputStream pIn, OutputStream pRecording)
+{
+
+    super(pIn);
+
+    recording = pRecording;
+
+}//end of RecordingInputStream::RecordingInputStream (constructor)
+
+@Override
+public int read() throws IOException
+{
+
+    int b = super.read();
+
+    if (b != -1) { recording.write(b); }
+
+    return(b);
+
+}//end of RecordingInputStream::read
+
+@Override
+public int read(byte[] pBuf, int pOff, int pLen) throws IOException
+{
+
+    int n = super.read(pBuf, pOff, pLen);
+
+    if (n > 0) { recording.write(pBuf, pOff, n); }
+
+    return(n);
+
+}//end of RecordingInputStream::read
+
+}//end of class RecordingInputStream
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class ReplayInputStream
+//
+// A ByteArrayInputStream which can be restarted with a different array.
+//
+
+static class ReplayInputStream extends ByteArrayInputStream
+{
+
+public ReplayInputStream()
+{
+
+    super(new byte[0]);
+
+}//end of ReplayInputStream::ReplayInputStream (constructor)
+
+public void restart(byte[] pBytes)
+{
+
+    buf = pBytes; count = pBytes.length; pos = 0; mark = 0;
+
+}//end of ReplayInputStream::restart
+
+}//end of class ReplayInputStream
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+}//end of class DeviceBenchmarks
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,307 @@
+/******************************************************************************
+* Title: AcquisitionScheduler.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class paces the acquisition thread which collects data from the
+* devices. It replaces a plain sleep between passes, which allowed the time
+* taken by each pass and the sleep overshoot to add up so that the actual
+* sample spacing drifted and jittered.
+*
+* Ticks are scheduled against absolute deadlines spaced by a fixed period so
+* that any delay in one pass does not push back all the following ones. The
+* thread is parked with LockSupport.parkNanos until the deadline.
+*
+* When not in a timer driven tracking mode, the thread may also be woken as
+* soon as new device data arrives so that the data is handled without waiting
+* for the next deadline. In the timer driven modes, the trace position is
+* advanced by counting ticks, so only the deadlines are used.
+*
+* The interval between ticks and the time spent working in each tick are
+* recorded so that the spacing can be verified.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+package controller;
+
+//-----------------------------------------------------------------------------
+
+import java.text.DecimalFormat;
+import java.util.concurrent.locks.LockSupport;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class AcquisitionScheduler
+//
+
+public class AcquisitionScheduler
+{
+
+    private final long periodNanos;
+    private final boolean wakeOnDataArrival;
+
+    //data arrival will not start ticks closer together than this -- prevents
+    //a device which replies instantly from spinning the thread
+    private static final long MIN_WAKE_INTERVAL_NANOS = 1000000;
+
+    private volatile Thread waiter = null;
+    private volatile boolean dataArrived = false;
+
+    private long nextDeadline = 0;
+    private long lastTickTime = 0;
+
+    //timing statistics
+
+    private long tickCount;
+    private long minInterval, maxInterval;
+    private double sumInterval, sumSqInterval;
+    private long lateTickCount;
+    private long maxWorkTime;
+
+    private final DecimalFormat timeFormat = new DecimalFormat("0.000");
+
+//-----------------------------------------------------------------------------
+// AcquisitionScheduler::AcquisitionScheduler (constructor)
+//
+// Parameter pPeriodMicroSec specifies the spacing of the ticks.
+//
+// If pWakeOnDataArrival is true, signalDataArrival will start a tick early
+// when not in a timer driven tracking mode.
+//
+
+public AcquisitionScheduler(int pPeriodMicroSec, boolean pWakeOnDataArrival)
+{
+
+    periodNanos = Math.max(pPeriodMicroSec, 100) * 1000L;
+    wakeOnDataArrival = pWakeOnDataArrival;
+
+}//end of AcquisitionScheduler::AcquisitionScheduler (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// AcquisitionScheduler::init
+//
+// Initializes the object.  Must be called after instantiation.
+//
+
+public void init()
+{
+
+    resetTimingStats();
+
+}//end of AcquisitionScheduler::init
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// AcquisitionScheduler::waitForNextTick
+//
+// Parks the calling thread until the next tick is due.
+//
+// If pTimerTracking is true, the tick is only started at the deadline. If
+// false and waking on data arrival is enabled, the tick is started early if
+// signalDataArrival has been called.
+//
+// If the deadline has been missed by more than a period, the schedule is
+// restarted from the current time rather than running a burst of catch up
+// ticks.
+//
+
+public void waitForNextTick(boolean pTimerTracking)
+{
+
+    long now = System.nanoTime();
+
+    //on the first call, the schedule starts one period from now
+
+    if (lastTickTime == 0){
+        lastTickTime = now; nextDeadline = now + periodNanos;
+    }
+    else{
+        //time spent since the last tick started is the work done in that tick
+        long work = now - lastTickTime;
+        if (work > maxWorkTime) { maxWorkTime = work; }
+    }
+
+    waiter = Thread.currentThread();
+
+    boolean earlyWake = wakeOnDataArrival && !pTimerTracking;
+
+    while(true){
+
+        now = System.nanoTime();
+
+        if (now - nextDeadline >= 0){
+            nextDeadline += periodNanos;
+            if (nextDeadline - now <= 0) { nextDeadline = now + periodNanos; }
+            break;
+        }
+
+        long wait = nextDeadline - now;
+
+        if (earlyWake && dataArrived){
+            long minWake = lastTickTime + MIN_WAKE_INTERVAL_NANOS - now;
+            if (minWake <= 0) { break; }
+            if (minWake < wait) { wait = minWake; }
+        }
+
+        LockSupport.parkNanos(this, wait);
+
+    }
+
+    dataArrived = false;
+
+    recordTick(now);
+
+}//end of AcquisitionScheduler::waitForNextTick
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// AcquisitionScheduler::signalDataArrival
+//
+// Notes that new device data has arrived and wakes the acquisition thread if
+// it is waiting.
+//
+// May be called from any thread.
+//
+
+public void signalDataArrival()
+{
+
+    dataArrived = true;
+
+    Thread t = waiter;
+
+    if (t != null) { LockSupport.unpark(t); }
+
+}//end of AcquisitionScheduler::signalDataArrival
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// AcquisitionScheduler::recordTick
+//
+// Adds the interval between the previous tick and the tick starting at pNow
+// to the timing statistics.
+//
+
+private void recordTick(long pNow)
+{
+
+    long interval = pNow - lastTickTime;
+
+    lastTickTime = pNow;
+
+    tickCount++;
+
+    if (interval < minInterval) { minInterval = interval; }
+    if (interval > maxInterval) { maxInterval = interval; }
+
+    sumInterval += interval;
+    sumSqInterval += (double)interval * interval;
+
+    if (interval > periodNanos + periodNanos / 2) { lateTickCount++; }
+
+}//end of AcquisitionScheduler::recordTick
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// AcquisitionScheduler::restartSchedule
+//
+// Starts a new schedule with the next call to waitForNextTick. Should be
+// called after any lengthy operation between ticks, such as connecting to the
+// devices, so that the delay is not recorded as a late tick.
+//
+
+public void restartSchedule()
+{
+
+    lastTickTime = 0;
+
+}//end of AcquisitionScheduler::restartSchedule
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// AcquisitionScheduler::resetTimingStats
+//
+// Clears the timing statistics.
+//
+
+public void resetTimingStats()
+{
+
+    tickCount = 0; lateTickCount = 0;
+    minInterval = Long.MAX_VALUE; maxInterval = 0;
+    sumInterval = 0; sumSqInterval = 0;
+    maxWorkTime = 0;
+
+}//end of AcquisitionScheduler::resetTimingStats
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// AcquisitionScheduler::getTickCount
+//
+// Returns the number of ticks recorded since the statistics were reset.
+//
+
+public long getTickCount()
+{
+
+    return(tickCount);
+
+}//end of AcquisitionScheduler::getTickCount
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// AcquisitionScheduler::getTimingReport
+//
+// Returns a one line summary of the tick timing recorded since the statistics
+// were reset. All times are in milliseconds.
+//
+// Late ticks are those which started more than one and a half periods after
+// the previous tick.
+//
+
+public String getTimingReport()
+{
+
+    if (tickCount == 0) { return("Acquisition timing: no ticks recorded"); }
+
+    double mean = sumInterval / tickCount;
+    double variance = sumSqInterval / tickCount - mean * mean;
+    double stdDev = Math.sqrt(Math.max(variance, 0));
+
+    return("Acquisition timing: ticks " + tickCount
+        + ", period " + toMilliSec(periodNanos)
+        + ", interval min " + toMilliSec(minInterval)
+        + " mean " + toMilliSec(mean)
+        + " max " + toMilliSec(maxInterval)
+        + " std dev " + toMilliSec(stdDev)
+        + ", late ticks " + lateTickCount
+        + ", max work " + toMilliSec(maxWorkTime));
+
+}//end of AcquisitionScheduler::getTimingReport
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// AcquisitionScheduler::toMilliSec
+//
+// Returns pNanos converted to milliseconds as a formatted string.
+//
+
+private String toMilliSec(double pNanos)
+{
+
+    return(timeFormat.format(pNanos / 1000000.0));
+
+}//end of AcquisitionScheduler::toMilliSec
+//-----------------------------------------------------------------------------
+
+}//end of class AcquisitionScheduler
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
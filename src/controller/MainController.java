@@ -48,22 +48,31 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.WindowEvent;
 import java.io.BufferedWriter;
-import java.io.FileOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.ListIterator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.swing.*;
 import javax.swing.event.ChangeEvent;
 import mksystems.mswing.MFloatSpinner;
 import model.DataSetIntMultiDim;
 import model.MainDataClass;
 import model.DataTransferIntBuffer;
+import model.DataTransferIntBufferSPSC;
 import model.DataTransferIntMultiDimBuffer;
 import model.DataTransferSnapshotBuffer;
 import model.IniFile;
 import model.Options;
+import model.SegmentFileWriter;
+import model.SegmentIndex;
+import model.SegmentPersistenceService;
+import model.SegmentRecorder;
 import model.SharedSettings;
 import toolkit.Tools;
 import view.ChannelInfo;
@@ -106,6 +115,15 @@ public class MainController implements EventHandler, Runnable
 
     private SwingWorker workerThread;
 
+    //writes segment files in the background
+    private SegmentPersistenceService segmentSaver;
+
+    //records each piece to a journal file as it is inspected -- null if
+    //pieces are not recorded
+    private SegmentRecorder segmentRecorder;
+    private boolean recordPiecesToJournal = true;
+    private int journalCommitInterval = 1000; //milliseconds
+
     private final DecimalFormat decimalFormat1 = new DecimalFormat("#.0");
     private final DecimalFormat fileNameFormat = new DecimalFormat("0000000");
 
@@ -134,7 +152,27 @@ public class MainController implements EventHandler, Runnable
     private DataTransferSnapshotBuffer snapshotBuffers[];
     private int numMapBuffers;
     private DataTransferIntMultiDimBuffer mapBuffers[];
+
+    //if true, lock free buffers are used for trace data -- only valid when a
+    //single thread stores and a single thread retrieves the data, so they are
+    //only used if putDataOnAcquisitionThread is also true
+    private boolean useLockFreeDataBuffers = false;
+
+    //paces the acquisition thread -- see AcquisitionScheduler for details
+    private AcquisitionScheduler acquisitionScheduler;
+    private int acquisitionTickPeriod = 10000; //microseconds
+    private boolean wakeAcquisitionOnDataArrival = true;
+    private int acquisitionTimingReportInterval = 0; //seconds, 0 = at exit only
+
+    //if true, data is put into the transfer buffers by the acquisition thread
+    //rather than the GUI timer -- the GUI only retrieves and displays it
+    private boolean putDataOnAcquisitionThread = false;
+    //set by the acquisition thread when the insertion points have advanced
+    private volatile boolean buffersAdvanced = false;
     
+    //records the time taken by each phase of startup
+    private StartupTimer startupTimer;
+
     int lastPieceInspected = -1;
     boolean isLastPieceInspectedACal = false;
 
@@ -157,6 +195,8 @@ public MainController()
 public void init()
 {
 
+    startupTimer = new StartupTimer();
+
     sharedSettings = new SharedSettings();
     //main frame is not yet created, so pass null
     sharedSettings.init(null);
@@ -165,21 +205,40 @@ public void init()
 
     loadConfigSettings();
 
+    startupTimer.mark("config loaded");
+
+    //start searching for the devices now so that the search, which waits on
+    //the network, overlaps construction of the display
+
+    mainHandler = new MainHandler(0, this, sharedSettings, configFile);
+    mainHandler.startDeviceDiscovery();
+
     mainDataClass = new MainDataClass();
     mainDataClass.init();
 
     mainView = new MainView(this, mainDataClass, sharedSettings, configFile);
     mainView.init();
 
+    startupTimer.mark("display built");
+
+    segmentSaver = new SegmentPersistenceService();
+    segmentSaver.init();
+
     loadUserSettingsFromFile();
 
     //create and load the program options
     options = new Options();
 
-    mainHandler = new MainHandler(0, this, sharedSettings, configFile);
     mainHandler.init();
     devicesConnected = false;
 
+    startupTimer.mark("devices created");
+
+    acquisitionScheduler = new AcquisitionScheduler(
+                        acquisitionTickPeriod, wakeAcquisitionOnDataArrival);
+    acquisitionScheduler.init();
+    mainHandler.setDataArrivalListener(acquisitionScheduler::signalDataArrival);
+
     peakData = new PeakData(0, mainHandler.getMaxNumChannels());
     peakMapData = new PeakMapData(0, 48); //debug mks -- this needs to be loaded from config file!!!
     peakSnapshotData = new PeakSnapshotData(0, 128); //DEBUG HSS// this needs to be loaded from config
@@ -189,6 +248,11 @@ public void init()
 
     //load the cal file
     loadCalFile();
+
+    //save any piece left in a journal when the program last stopped
+    if (recordPiecesToJournal) { setUpSegmentRecorder(); recoverPieces(); }
+
+    startupTimer.mark("cal file loaded");
     
     //refresg after everything else done because he makes use of various
     //settings in SharedSettings, and we need to ensure they have been loaded
@@ -201,6 +265,8 @@ public void init()
     mainView.setupAndStartMainTimer();
     new Thread(this).start();
 
+    startupTimer.mark("display started");
+
 }// end of MainController::init
 //-----------------------------------------------------------------------------
 
@@ -285,6 +351,31 @@ public void loadConfigSettings()
         return;
     }
 
+    useLockFreeDataBuffers = configFile.readBoolean(
+                 "Main Settings", "use lock free trace data buffers", false);
+
+    acquisitionTickPeriod = configFile.readInt(
+          "Main Settings", "acquisition tick period in microseconds", 10000);
+
+    wakeAcquisitionOnDataArrival = configFile.readBoolean(
+          "Main Settings", "wake acquisition on device data arrival", true);
+
+    acquisitionTimingReportInterval = configFile.readInt("Main Settings",
+                      "acquisition timing report interval in seconds", 0);
+
+    putDataOnAcquisitionThread = configFile.readBoolean("Main Settings",
+                    "put data into buffers on acquisition thread", false);
+
+    recordPiecesToJournal = configFile.readBoolean("Main Settings",
+                                        "record pieces to journal file", true);
+
+    journalCommitInterval = configFile.readInt("Main Settings",
+                    "journal commit interval in milliseconds", 1000);
+
+    //the job may use a different segment file format than the default
+    sharedSettings.segmentFileFormat = configFile.readString("Main Settings",
+                "segment file format", sharedSettings.segmentFileFormat).trim();
+
 }// end of MainController::loadConfigSettings
 //-----------------------------------------------------------------------------
 
@@ -327,6 +418,9 @@ private void setUpDataTransferBuffers()
 // Scans through all traces and creates a DataTransferIntBuffer for each
 // one.
 //
+// The lock free DataTransferIntBufferSPSC is used only if enabled and the
+// acquisition thread is the only thread which stores data.
+//
 
 private void createAndAssignDataBuffersToTraces()
 {
@@ -347,8 +441,17 @@ private void createAndAssignDataBuffersToTraces()
 
         Trace trace = (Trace)iter.next();
 
-        dataBuffers[i] = new DataTransferIntBuffer(
+        //unless the acquisition thread puts all the data into the buffers,
+        //the GUI thread also stores data so there is more than one producer
+
+        if (useLockFreeDataBuffers && putDataOnAcquisitionThread){
+            dataBuffers[i] = new DataTransferIntBufferSPSC(
                         trace.getNumDataPoints(), trace.getPeakType());
+        }
+        else{
+            dataBuffers[i] = new DataTransferIntBuffer(
+                        trace.getNumDataPoints(), trace.getPeakType());
+        }
         dataBuffers[i].init(0); dataBuffers[i].reset();
 
         trace.setDataBuffer(dataBuffers[i]);
@@ -668,6 +771,9 @@ private void startScanMode()
     
     mainHandler.setOperationMode(sharedSettings.opMode);
 
+    //scanning is not saved, so a piece being recorded is discarded
+    if (segmentRecorder != null) { segmentRecorder.abandonPiece(); }
+
     //force view to reset everything he has
     mainView.resetAll();
     
@@ -795,8 +901,13 @@ public void processFinishedPiece()
 
     markSegmentEnd();  //mark the buffer location of the end of the segment
 
+    //read the recorded piece back so the whole piece is saved
+    String journal = replayRecordedPiece();
+
     saveSegment(); //save the data for the segment
 
+    discardRecordedPiece(journal);
+
     //increment the next piece or next cal piece number
     incrementPieceNumber();
 
@@ -841,6 +952,8 @@ private void prepareForNextPiece()
     //mark the starting point of a new segment
     markSegmentStart();
 
+    startRecordingPiece();
+
 }// end of MainController::prepareForNextPiece
 //-----------------------------------------------------------------------------
 
@@ -886,6 +999,197 @@ public void markSegmentEnd()
 }//end of MainController::markSegmentEnd
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// MainController::setUpSegmentRecorder
+//
+// Creates the recorder which records each piece to a journal file as it is
+// inspected and gives it a source for each data transfer buffer. The
+// display objects only hold the most recent data, so the segment saved for
+// a long piece is built from the journal to include the start of the piece.
+//
+// See SegmentRecorder for details.
+//
+
+private void setUpSegmentRecorder()
+{
+
+    segmentRecorder = new SegmentRecorder(journalCommitInterval);
+
+    for(DataTransferIntBuffer buf: dataBuffers){
+        buf.setRecorder(segmentRecorder.addSource(SegmentRecorder.TRACE,
+                buf.chartGroupNum, buf.chartNum, buf.graphNum, buf.traceNum));
+    }
+
+    for(DataTransferSnapshotBuffer buf: snapshotBuffers){
+        buf.setRecorder(segmentRecorder.addSource(SegmentRecorder.SNAPSHOT,
+                            buf.chartGroupNum, buf.chartNum, buf.graphNum, 0));
+    }
+
+    for(DataTransferIntMultiDimBuffer buf: mapBuffers){
+        buf.setRecorder(segmentRecorder.addSource(SegmentRecorder.MAP,
+                            buf.chartGroupNum, buf.chartNum, buf.graphNum, 0));
+    }
+
+    segmentRecorder.init();
+
+}//end of MainController::setUpSegmentRecorder
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MainController::recoverPieces
+//
+// Saves the piece and the cal piece left in journal files if the program
+// stopped while they were being inspected. Each is saved as the next piece
+// or cal piece, as it would have been had it been finished.
+//
+// A journal in which no segment was started, as when the program stopped
+// while waiting for a piece, is deleted without saving a piece.
+//
+
+private void recoverPieces()
+{
+
+    boolean calMode = sharedSettings.calMode;
+
+    for (int i=0; i<2; i++){
+
+        sharedSettings.calMode = (i == 1);
+
+        String journal = getJournalFileName();
+
+        if (!new File(journal).exists()) { continue; }
+
+        try{
+            segmentRecorder.replay(journal);
+        }
+        catch(IOException e){
+            MKSTools.logSevere(getClass().getName(), "Piece not recovered from "
+                            + journal + ": " + e.getMessage() + " - Error: 1010");
+            continue;
+        }
+
+        if (!segmentRecorder.isSegmentStarted()){
+            Logger.getLogger(getClass().getName()).log(Level.INFO,
+                        "No piece started in " + journal + " - discarded");
+            discardRecordedPiece(journal);
+            continue;
+        }
+
+        Logger.getLogger(getClass().getName()).log(Level.INFO,
+                                        "Piece recovered from " + journal);
+
+        saveSegment();
+
+        discardRecordedPiece(journal);
+
+        if (sharedSettings.calMode){ sharedSettings.nextCalPieceNumber++; }
+        else { sharedSettings.nextPieceNumber++; }
+
+        sharedSettings.save();
+
+    }
+
+    sharedSettings.calMode = calMode;
+
+}//end of MainController::recoverPieces
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MainController::startRecordingPiece
+//
+// Starts recording the new piece to its journal file if pieces are recorded.
+//
+
+private void startRecordingPiece()
+{
+
+    if (segmentRecorder == null) { return; }
+
+    try{
+        segmentRecorder.startPiece(getJournalFileName());
+    }
+    catch(IOException e){
+        MKSTools.logSevere(getClass().getName(), e.getMessage()
+                                                        + " - Error: 1055");
+    }
+
+}//end of MainController::startRecordingPiece
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MainController::replayRecordedPiece
+//
+// Ends the piece being recorded and reads it back from its journal so that
+// the display objects save the whole piece. Returns the path of the journal,
+// or null if no piece was recorded.
+//
+// If the journal could not be written or read, the display objects save the
+// data they hold as they do when pieces are not recorded.
+//
+
+private String replayRecordedPiece()
+{
+
+    if (segmentRecorder == null) { return(null); }
+
+    String journal = null;
+
+    try{
+        journal = segmentRecorder.endPiece();
+        if (journal != null) { segmentRecorder.replay(journal); }
+    }
+    catch(IOException e){
+        segmentRecorder.clearRecordings();
+        MKSTools.logSevere(getClass().getName(), "Piece journal not used: "
+                                        + e.getMessage() + " - Error: 1085");
+    }
+
+    return(journal);
+
+}//end of MainController::replayRecordedPiece
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MainController::discardRecordedPiece
+//
+// Releases the recorded data read back for the piece and deletes its journal
+// at pJournal, if any. Called after the segment has been saved -- the data is
+// copied when the segment is saved, so the journal is no longer needed.
+//
+
+private void discardRecordedPiece(String pJournal)
+{
+
+    if (segmentRecorder != null) { segmentRecorder.clearRecordings(); }
+
+    if (pJournal == null) { return; }
+
+    if (!new File(pJournal).delete()){
+        MKSTools.logSevere(getClass().getName(), "Piece journal not deleted: "
+                                                + pJournal + " - Error: 1105");
+    }
+
+}//end of MainController::discardRecordedPiece
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MainController::getJournalFileName
+//
+// Returns the path of the journal file to which the piece being inspected is
+// recorded. Pieces and cal pieces use separate journals so that a recovered
+// piece is saved as the right type.
+//
+
+private String getJournalFileName()
+{
+
+    return(sharedSettings.jobPathPrimary
+                + (sharedSettings.calMode ? "Cal Piece" : "Piece")
+                + " In Progress" + SegmentRecorder.JOURNAL_EXTENSION);
+
+}//end of MainController::getJournalFileName
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // MainController::displayCalibrationPanel
 //
@@ -1630,7 +1934,15 @@ private void saveCalFile()
 //-----------------------------------------------------------------------------
 // MainController::saveSegment
 //
-// Saves the current segment data to file.
+// Saves the current segment data and info to file.
+//
+// The data is serialized here so that it is a snapshot of the segment before
+// the display is prepared for the next piece. The files are then written to
+// the primary and secondary data folders in the background by segmentSaver so
+// that the display and the next piece transition are not held up.
+//
+// When each data file has been written, it is added to the segment index of
+// its folder so that the Viewer can find it without listing the folder.
 //
 
 private void saveSegment()
@@ -1639,106 +1951,159 @@ private void saveSegment()
     isLastPieceInspectedACal = sharedSettings.calMode;
 
     String filename = getSegmentFileName();
-    
-    //save segment to primary data folders
-    saveSegmentToPath(sharedSettings.jobPathPrimary + filename);
-    
-    //save segment to secondary data folders
-    saveSegmentToPath(sharedSettings.jobPathSecondary + filename);
-    
+
+    ByteBuffer[] contents;
+
+    //the index entry is completed with the file size when the file is saved
+    int segmentNumber = sharedSettings.calMode ?
+                sharedSettings.nextCalPieceNumber : sharedSettings.nextPieceNumber;
+    String measuredLength = "" + sharedSettings.getMeasuredLength();
+    int[] peaks = mainView.getSegmentPeaks();
+    long timeSaved = System.currentTimeMillis();
+
+    try{
+
+        boolean compressed = sharedSettings.segmentFileFormat
+                .equalsIgnoreCase(SharedSettings.COMPRESSED_SEGMENT_FORMAT);
+
+        if (compressed || sharedSettings.segmentFileFormat.equalsIgnoreCase(
+                                        SharedSettings.BINARY_SEGMENT_FORMAT)){
+            SegmentFileWriter out = new SegmentFileWriter(compressed);
+            mainView.saveSegment(out); //tell view to save data to file
+            contents = out.toBuffers();
+        }
+        else{
+            contents = serializeTextFile(false);
+        }
+
+        long fileSize = 0;
+        for (ByteBuffer b : contents) { fileSize += b.remaining(); }
+
+        SegmentIndex.Entry entry = new SegmentIndex.Entry(segmentNumber,
+                            fileSize, timeSaved, measuredLength, peaks);
+
+        //save segment to primary and secondary data folders
+        segmentSaver.save(contents,
+            (path, ms, error) -> segmentDataFileSaved(path, ms, error, entry),
+                                    sharedSettings.jobPathPrimary + filename,
+                                    sharedSettings.jobPathSecondary + filename);
+
+    }
+    catch(IOException e){
+        MKSTools.logSevere(getClass().getName(), e.getMessage()
+                                                    + " - Error: 1175");
+    }
+
     //save the info file for each segment
     //info which can be modified later such as heat, lot, id number, etc.
 
     filename = getSegmentInfoFileName();
 
-    //save segment to primary data folders
-    saveSegmentInfoToPath(sharedSettings.jobPathPrimary + filename);
-    
-    //save segment to secondary data folders
-    saveSegmentInfoToPath(sharedSettings.jobPathSecondary + filename);
+    try{
+
+        contents = serializeTextFile(true);
 
+        //save info to primary and secondary data folders
+        segmentSaver.save(contents, this::segmentFileSaved,
+                                    sharedSettings.jobPathPrimary + filename,
+                                    sharedSettings.jobPathSecondary + filename);
+
+    }
+    catch(IOException e){
+        MKSTools.logSevere(getClass().getName(), e.getMessage()
+                                                    + " - Error: 1175");
+    }
 
 }//end of MainController::saveSegment
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
-// MainController::saveSegmentToPath
+// MainController::serializeTextFile
 //
-// Saves the current segment data to pPath.
+// Has the view save the segment data in the legacy text format, or the
+// segment info if pInfo is true, to memory and returns the bytes.
 //
 
-private void saveSegmentToPath(String pPath)
+private ByteBuffer[] serializeTextFile(boolean pInfo) throws IOException
 {
 
-    FileOutputStream fileOutputStream = null;
-    OutputStreamWriter outputStreamWriter = null;
-    BufferedWriter out = null;
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(65536);
 
-    try{
-
-        fileOutputStream = new FileOutputStream(pPath);
-        outputStreamWriter = new OutputStreamWriter(fileOutputStream,
-                                                sharedSettings.mainFileFormat);
-        out = new BufferedWriter(outputStreamWriter);
+    try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+                                    bytes, sharedSettings.mainFileFormat))){
 
         //tell view to save data to file
-        mainView.saveSegment(out);
+        if (pInfo) { mainView.saveSegmentInfo(out); }
+        else { mainView.saveSegment(out); }
 
     }
-    catch(IOException e){
-        MKSTools.logSevere(getClass().getName(), e.getMessage()
-                                                    + " - Error: 1175");
-    }
-    finally{
-        try{if (out != null) {out.close();}}
-        catch(IOException e){}
-        try{if (outputStreamWriter != null) {outputStreamWriter.close();}}
-        catch(IOException e){}
-        try{if (fileOutputStream != null) {fileOutputStream.close();}}
-        catch(IOException e){}
+
+    return(new ByteBuffer[] {ByteBuffer.wrap(bytes.toByteArray())});
+
+}//end of MainController::serializeTextFile
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MainController::segmentFileSaved
+//
+// Called by segmentSaver on its writer thread when a segment data or info
+// file has been written to pPath or the write has failed.
+//
+
+private void segmentFileSaved(String pPath, long pMilliSec, IOException pError)
+{
+
+    if (pError != null){
+        MKSTools.logSevere(getClass().getName(), "Segment not saved to "
+                        + pPath + ": " + pError.getMessage() + " - Error: 1175");
+        return;
     }
 
-}//end of MainController::saveSegmentToPath
+    Logger.getLogger(getClass().getName()).log(Level.INFO,
+                            "Segment saved to " + pPath + " in "
+                                                    + pMilliSec + " ms");
+
+}//end of MainController::segmentFileSaved
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
-// MainController::saveSegmentInfoToPath
+// MainController::segmentDataFileSaved
 //
-// Saves the current segment info to pPath.
+// Called by segmentSaver on its writer thread when a segment data file has
+// been written to pPath or the write has failed.
+//
+// If the file was written, pEntry is added to the segment index in the same
+// folder. The index is only updated after the file is in place so that it
+// never lists a file which does not exist.
 //
 
-private void saveSegmentInfoToPath(String pPath)
+private void segmentDataFileSaved(String pPath, long pMilliSec,
+                                IOException pError, SegmentIndex.Entry pEntry)
 {
 
-    FileOutputStream fileOutputStream = null;
-    OutputStreamWriter outputStreamWriter = null;
-    BufferedWriter out = null;
+    segmentFileSaved(pPath, pMilliSec, pError);
 
-    try{
+    if (pError != null) { return; }
 
-        fileOutputStream = new FileOutputStream(pPath);
-        outputStreamWriter = new OutputStreamWriter(fileOutputStream,
-                                                sharedSettings.mainFileFormat);
-        out = new BufferedWriter(outputStreamWriter);
+    //the prefix and extension are taken from the name rather than the current
+    //mode as the mode may have changed since the file was queued
 
-        //tell view to save data to file
-        mainView.saveSegmentInfo(out);
+    File file = new File(pPath);
+    String folder = file.getParent() + File.separator;
+    String name = file.getName();
+    String prefix = name.substring(0, name.indexOf(" - ") + 3);
+    String extension = name.substring(name.lastIndexOf('.'));
 
+    try{
+        SegmentIndex.addEntry(folder, prefix, extension, pEntry);
     }
     catch(IOException e){
-        MKSTools.logSevere(getClass().getName(), e.getMessage()
-                                                    + " - Error: 1175");
-    }
-    finally{
-        try{if (out != null) {out.close();}}
-        catch(IOException e){}
-        try{if (outputStreamWriter != null) {outputStreamWriter.close();}}
-        catch(IOException e){}
-        try{if (fileOutputStream != null) {fileOutputStream.close();}}
-        catch(IOException e){}
+        MKSTools.logSevere(getClass().getName(), "Segment index not updated"
+                        + " in " + folder + ": " + e.getMessage()
+                                                        + " - Error: 1845");
     }
 
-}//end of MainController::saveSegmentInfoToPath
+}//end of MainController::segmentDataFileSaved
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
@@ -1848,6 +2213,13 @@ public void doTimerActions()
 
         if (sharedSettings.saveOnExit) { saveEverything(); } //save everything
 
+        //a piece still being inspected is left in its journal to be
+        //recovered -- the journal is deleted if no piece has been started
+        if (segmentRecorder != null) {
+            segmentRecorder.shutDown(mainView.isSegmentStarted());
+            segmentRecorder = null;
+        }
+
         mainView.shutDown(); //tell view to shut down all of his stuff
 
         sharedSettings.beginShutDown = false; //set false because already begun
@@ -1863,6 +2235,13 @@ public void doTimerActions()
         //stop calling main timer during shutdown
         mainView.getMainTimer().stop();
 
+        //let the segment files queued in the background finish writing, but
+        //do not hang forever on an unreachable drive
+        if (!segmentSaver.shutDown(10000)){
+            MKSTools.logSevere(getClass().getName(),
+                        "Segment files not finished at exit - Error: 1190");
+        }
+
         //if a restart was requested, restart
         if (sharedSettings.restartProgram) { init(); }
         else { System.exit(0); }//exit the program
@@ -1899,6 +2278,10 @@ private void updateGUIPeriodically()
 // collected from the hardware to the screen display controls such as traces,
 // numeric displays, graphs, etc.
 //
+// If putDataOnAcquisitionThread is true, the data has already been put into
+// the transfer buffers by the acquisition thread and this method only updates
+// the display if the insertion points have advanced since the last call.
+//
 
 private void displayDataFromDevices()
 {
@@ -1906,6 +2289,13 @@ private void displayDataFromDevices()
     //tell View to update monitor window if he is displaying one
     mainView.updateMonitorStatus(mainHandler.getMonitorPacket(true));
 
+    if (putDataOnAcquisitionThread){
+        if (buffersAdvanced) {
+            buffersAdvanced = false; mainView.updateChildren(); logFirstTrace();
+        }
+        return;
+    }
+
     //quit if in not in inspect or scan mode
     if(sharedSettings.opMode != SharedSettings.INSPECT_MODE
         && sharedSettings.opMode != SharedSettings.INSPECT_WITH_TIMER_TRACKING_MODE
@@ -1916,7 +2306,7 @@ private void displayDataFromDevices()
     boolean advanced = mainHandler.putDataIntoBuffers(peakData,
                                                         peakSnapshotData,
                                                         peakMapData);
-    if (advanced) { mainView.updateChildren(); }
+    if (advanced) { mainView.updateChildren(); logFirstTrace(); }
     
 }// end of MainController::displayDataFromDevices
 //-----------------------------------------------------------------------------
@@ -2332,34 +2722,121 @@ private void doSomething2()
 // NOTE:  All functions called by this thread must wrap calls to alter GUI
 // components in the invokeLater function to be thread safe.
 //
+// The control method is called on each tick of the acquisitionScheduler,
+// which spaces the ticks evenly rather than sleeping a fixed time after each
+// pass.
+//
 
 @Override
 public void run()
 {
 
+    long lastReportTime = System.nanoTime();
+
     //call the control method repeatedly
     while(!sharedSettings.isHardwareShutDown){
 
         if (sharedSettings.beginHardwareShutDown) {
             mainHandler.shutDown();
+            logAcquisitionTiming();
             sharedSettings.isHardwareShutDown = true;
             return;
         }
 
         if(!devicesConnected){
             mainHandler.connectToDevices(); devicesConnected = true;
+            logStartupTiming();
+            //don't count the connection time against the tick timing
+            acquisitionScheduler.restartSchedule();
         }
 
+        acquisitionScheduler.waitForNextTick(isTimerTrackingMode());
+
         control();
 
-        //sleep for a bit
-        threadSleep(10);
+        if (acquisitionTimingReportInterval > 0 && System.nanoTime()
+           - lastReportTime >= acquisitionTimingReportInterval * 1000000000L){
+            lastReportTime = System.nanoTime();
+            logAcquisitionTiming();
+            acquisitionScheduler.resetTimingStats();
+        }
 
     }
 
 }//end of MainController::run
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// MainController::isTimerTrackingMode
+//
+// Returns true if the current mode advances the traces by counting
+// acquisition ticks rather than by encoder inputs.
+//
+
+private boolean isTimerTrackingMode()
+{
+
+    return(sharedSettings.opMode == SharedSettings.SCAN_MODE
+        || sharedSettings.opMode == SharedSettings.INSPECT_WITH_TIMER_TRACKING_MODE);
+
+}//end of MainController::isTimerTrackingMode
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MainController::logStartupTiming
+//
+// Logs the time taken by each phase of startup up to the connection of the
+// devices. The time to the first trace data is logged separately when the
+// data is displayed, since that depends on when the operator starts the scan
+// or inspection.
+//
+
+private void logStartupTiming()
+{
+
+    startupTimer.mark("devices connected");
+
+    Logger.getLogger(getClass().getName()).log(Level.INFO,
+        startupTimer.getReport() + " (ms); device search "
+        + mainHandler.getDiscoveryTime() + " ms, of which connection waited "
+        + mainHandler.getDiscoveryWaitTime() + " ms");
+
+}//end of MainController::logStartupTiming
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MainController::logFirstTrace
+//
+// Logs the startup timing when the first trace data is displayed. Only the
+// first call after startup does anything.
+//
+
+private void logFirstTrace()
+{
+
+    if (!startupTimer.markFirstTrace()) { return; }
+
+    Logger.getLogger(getClass().getName()).log(
+                        Level.INFO, startupTimer.getReport() + " (ms)");
+
+}//end of MainController::logFirstTrace
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MainController::logAcquisitionTiming
+//
+// Logs the tick timing recorded by the acquisitionScheduler.
+//
+
+private void logAcquisitionTiming()
+{
+
+    Logger.getLogger(getClass().getName()).log(
+                      Level.INFO, acquisitionScheduler.getTimingReport());
+
+}//end of MainController::logAcquisitionTiming
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // MainController::threadSleep
 //
@@ -2399,11 +2876,38 @@ public void control()
 
     if(mainHandler != null && mainHandler.ready){
         mainHandler.collectData();
+        if (putDataOnAcquisitionThread) { putDataIntoBuffers(); }
     }
 
 }//end of MainController::control
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// MainController::putDataIntoBuffers
+//
+// Puts the data collected from the devices into the transfer buffers and
+// advances the insertion points if ready. Sets the buffersAdvanced flag so the
+// GUI timer will update the display.
+//
+// Called by the acquisition thread when putDataOnAcquisitionThread is true so
+// that data is stored at the hardware rate even when the GUI is stalled.
+//
+
+private void putDataIntoBuffers()
+{
+
+    //quit if in not in inspect or scan mode
+    if(sharedSettings.opMode != SharedSettings.INSPECT_MODE
+        && sharedSettings.opMode != SharedSettings.INSPECT_WITH_TIMER_TRACKING_MODE
+        && sharedSettings.opMode != SharedSettings.SCAN_MODE) { return; }
+
+    if (mainHandler.putDataIntoBuffers(peakData, peakSnapshotData, peakMapData)){
+        buffersAdvanced = true;
+    }
+
+}//end of MainController::putDataIntoBuffers
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // MainController::displayErrorMessage
 //
@@ -0,0 +1,124 @@
+/******************************************************************************
+* Title: StartupTimer.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class records the time at which each phase of program startup is
+* completed so that the time taken to build the display, find and connect to
+* the devices, and display the first trace data can be reported.
+*
+* The phases are marked from several threads -- the display is built on the
+* Java Event Dispatch Thread while the devices are found and connected on the
+* control thread -- so each mark records the time since startup began rather
+* than the time since the previous mark.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+package controller;
+
+//-----------------------------------------------------------------------------
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class StartupTimer
+//
+
+public class StartupTimer
+{
+
+    private final long startTime;
+
+    private final ArrayList<String> phases = new ArrayList<>();
+    private final ArrayList<Long> phaseTimes = new ArrayList<>();
+
+    private boolean firstTraceMarked = false;
+
+    private final DecimalFormat timeFormat = new DecimalFormat("0.0");
+
+//-----------------------------------------------------------------------------
+// StartupTimer::StartupTimer (constructor)
+//
+// Startup is considered to have begun when the object is created.
+//
+
+public StartupTimer()
+{
+
+    startTime = System.nanoTime();
+
+}//end of StartupTimer::StartupTimer (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// StartupTimer::mark
+//
+// Records that phase pPhase has been completed.
+//
+
+public synchronized void mark(String pPhase)
+{
+
+    phases.add(pPhase);
+    phaseTimes.add(System.nanoTime() - startTime);
+
+}//end of StartupTimer::mark
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// StartupTimer::markFirstTrace
+//
+// Records that the first data has been displayed on the traces. Only the first
+// call is recorded.
+//
+// Returns true if this was the first call.
+//
+
+public synchronized boolean markFirstTrace()
+{
+
+    if (firstTraceMarked) { return(false); }
+
+    firstTraceMarked = true;
+
+    mark("first trace data displayed");
+
+    return(true);
+
+}//end of StartupTimer::markFirstTrace
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// StartupTimer::getReport
+//
+// Returns a summary of the phases completed so far, in the order they were
+// completed, with the time from the start of startup to each in milliseconds.
+//
+
+public synchronized String getReport()
+{
+
+    StringBuilder report = new StringBuilder("Startup timing:");
+
+    for (int i=0; i<phases.size(); i++){
+        report.append(i == 0 ? " " : ", ").append(phases.get(i)).append(" ")
+                .append(timeFormat.format(phaseTimes.get(i) / 1000000.0));
+    }
+
+    return(report.toString());
+
+}//end of StartupTimer::getReport
+//-----------------------------------------------------------------------------
+
+}//end of class StartupTimer
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
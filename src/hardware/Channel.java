@@ -19,7 +19,6 @@ package hardware;
 import model.DataTransferIntBuffer;
 import model.IniFile;
 import model.SharedSettings;
-import toolkit.MKSInteger;
 
 //-----------------------------------------------------------------------------
 //-----------------------------------------------------------------------------
@@ -87,9 +86,6 @@ public class Channel
     public void setDistanceSensorToFrontEdgeOfHead(double pD) { distanceSensorToFrontEdgeOfDev = pD; }
 
     int peakType;
-    PeakBufferInt peakBuffer;
-
-    MKSInteger data = new MKSInteger(0);
 
     public static final int CATCH_HIGHEST = 0;
     public static final int CATCH_LOWEST = 1;
@@ -124,45 +120,9 @@ public void init()
 
     loadConfigSettings();
 
-    setUpPeakBuffer();
-
 }// end of Channel::init
 //-----------------------------------------------------------------------------
 
-//-----------------------------------------------------------------------------
-// Channel::setUpPeakBuffer
-//
-// Creates and sets up the appropriate PeakBuffer subclass to capture the type
-// of peak specified in the config file, i.e. highest value, lowest value, etc.
-//
-
-public void setUpPeakBuffer()
-{
-
-    switch (peakType){
-
-        case CATCH_HIGHEST:
-            peakBuffer = new HighPeakBufferInt(0);
-            peakBuffer.setResetValue(Integer.MIN_VALUE, -1);
-            break;
-
-        case CATCH_LOWEST:
-            peakBuffer = new LowPeakBufferInt(0);
-            peakBuffer.setResetValue(Integer.MAX_VALUE, -1);
-            break;
-
-        default:
-            peakBuffer = new HighPeakBufferInt(0);
-            peakBuffer.setResetValue(Integer.MIN_VALUE, -1);
-            break;
-
-    }
-
-    peakBuffer.reset();
-
-}// end of Channel::setUpPeakBuffer
-//-----------------------------------------------------------------------------
-
 //-----------------------------------------------------------------------------
 // Channel::loadConfigSettings
 //
@@ -257,64 +217,6 @@ private void parseDataType(String pValue)
 }// end of Channel::parseDataType
 //-----------------------------------------------------------------------------
 
-//-----------------------------------------------------------------------------
-// Channel::catchPeak
-//
-// Stores value incapsulated in pPeakValue as a new peak if it is
-// greater/lesser (depending on peak type) than the current peak.
-//
-
-public void catchPeak(int pPeakValue)
-{
-
-    peakBuffer.catchPeak(pPeakValue);
-
-}// end of Channel::catchPeak
-//-----------------------------------------------------------------------------
-
-//-----------------------------------------------------------------------------
-// Channel::getPeakAndReset
-//
-// Retrieves the current value of the peak and resets the peak to the reset
-// value.
-//
-// This method returns an object as the peak may be of various data types.
-//
-
-public void getPeakAndReset(MKSInteger pPeakValue)
-{
-
-    peakBuffer.getPeakAndReset(pPeakValue);
-
-}// end of Channel::getPeakAndReset
-//-----------------------------------------------------------------------------
-
-//-----------------------------------------------------------------------------
-// Channel::getPeakDataAndReset
-//
-// Retrieves the current value of the peak along with all relevant info for the
-// channel such as the chart & trace to which it is attached.
-//
-// Resets the peak to the reset value.
-//
-// Returns true if the peak has been updated since the last call to this method
-// or false otherwise.
-//
-
-public boolean getPeakDataAndReset(PeakData pPeakData)
-{
-
-    pPeakData.metaArray[meta.channelNum] = meta; //channel/buffer/trace etc. info
-
-    boolean peakUpdated = peakBuffer.getPeakAndReset(data);
-
-    pPeakData.peakArray[meta.channelNum] = data.x;
-
-    return(peakUpdated);
-
-}// end of Channel::getPeakDataAndReset
-//-----------------------------------------------------------------------------
-
 //-----------------------------------------------------------------------------
 // Channel::loadCalFile
 //
@@ -32,8 +32,16 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
 import java.text.DecimalFormat;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -41,7 +49,6 @@ import model.DataTransferIntMultiDimBuffer;
 import model.DataTransferSnapshotBuffer;
 import model.IniFile;
 import model.SharedSettings;
-import toolkit.MKSInteger;
 import view.LogPanel;
 
 //-----------------------------------------------------------------------------
@@ -102,15 +109,24 @@ public class Device implements Runnable, ControlDevice
     private int prevPICRunDataPktCnt = -1;
     private int picRunDataPktCntError = 0;
     
+    //when a DeviceReactor is in use, inspect and monitor packets are received
+    //on the reactor thread and retrieved on another -- each packet is read
+    //into a receive buffer and then copied to the buffer shared with the
+    //other thread while holding that buffer's lock
+
     byte[] inspectBuffer;
+    private byte[] inspectRcvBuffer;
+    private final Object inspectLock = new Object();
     int inspectPacketSize = 0; //needs to be set by child classes
     int inspectPacketCount = 0;
-    private boolean newInspectPacket = false;
+    private boolean newInspectPacket = false; //guarded by inspectLock
     private boolean newInspectData = false;
     @Override public boolean getNewInspectDataReady() { return newInspectData; }
     @Override public void setNewInspectDataReady(boolean pState) { newInspectData = pState; }
     
     byte[] monitorBuffer;
+    private byte[] monitorRcvBuffer, monitorPacket;
+    private final Object monitorLock = new Object();
     int monitorPacketSize = 0; //needs to be set by child classes
     int monitorPacketRequestTimer = 0;
 
@@ -122,16 +138,38 @@ public class Device implements Runnable, ControlDevice
     DataOutputStream byteOut = null;
     DataInputStream byteIn = null;
 
+    //bytes read from byteIn in bulk -- position is the next unprocessed byte
+    //and limit is the end of the bytes read so far
+    final ByteBuffer rcvBuf = ByteBuffer.allocate(RECEIVE_BUFFER_SIZE);
+
+    //if a reactor is set, the device is connected via channels instead of the
+    //socket streams and the reactor thread processes packets as they arrive
+    DeviceReactor reactor = null;
+    public void setReactor(DeviceReactor pReactor){ reactor = pReactor; }
+    ReadableByteChannel rcvChannel = null;
+    WritableByteChannel sendChannel = null;
+    ByteBuffer sendBuf;
+    private final Object sendLock = new Object();
+
+    //bytes not yet accepted by a non-blocking send channel -- written by the
+    //reactor thread when the channel becomes writable; guarded by sendLock
+    private ByteBuffer pendingSend = ByteBuffer.allocate(OUT_BUFFER_SIZE);
+
+    //holds the byte for single byte packets so no varargs array is created
+    //for each request; guarded by sendLock
+    private final byte[] singleByte = new byte[1];
+
     private InetAddress ipAddr = null;
     public InetAddress getIPAddr(){ return(ipAddr); }
     private String ipAddrS;
 
-    private boolean waitingForRemoteResponse = false;
+    private volatile boolean waitingForRemoteResponse = false;
     protected void setWaitingForRemoteResponse(boolean pW) { waitingForRemoteResponse = pW; }
 
     int pktID;
     boolean reSynced;
     int reSyncCount = 0, reSyncPktID;
+    boolean frameIncomplete = false;
     int packetErrorCnt = 0;
 
     int numACKsExpected = 0;
@@ -164,7 +202,8 @@ public class Device implements Runnable, ControlDevice
     int mapDataType;
     int mapPeakType;
 
-    PeakArrayBufferInt peakMapBuffer;
+    PeakArrayBufferInt[] peakMapBuffers =
+                                new PeakArrayBufferInt[DeviceData.NUM_BANKS];
 
     LogPanel logPanel;
     
@@ -198,6 +237,7 @@ public class Device implements Runnable, ControlDevice
 
     final static int OUT_BUFFER_SIZE = 255;
     final static int IN_BUFFER_SIZE = 255;
+    final static int RECEIVE_BUFFER_SIZE = 65536;
 
 //-----------------------------------------------------------------------------
 // Device::Device (constructor)
@@ -212,6 +252,9 @@ public Device(int pDeviceNum, LogPanel pLogPanel, IniFile pConfigFile,
 
     outBuffer = new byte[OUT_BUFFER_SIZE];
     inBuffer = new byte[IN_BUFFER_SIZE];
+    sendBuf = ByteBuffer.wrap(outBuffer);
+
+    rcvBuf.limit(0); //nothing received yet
 
     section = "Device " + deviceNum + " Settings";
     calFileSection = "Device " + deviceNum + " Settings";
@@ -247,7 +290,10 @@ private void configureForUseAsControlDevice()
     if (!canBeControlDevice()) { return; } //bail if not Control Device
     
     monitorBuffer = new byte[monitorPacketSize];
+    monitorRcvBuffer = new byte[monitorPacketSize];
+    monitorPacket = new byte[monitorPacketSize];
     inspectBuffer = new byte[inspectPacketSize];
+    inspectRcvBuffer = new byte[inspectPacketSize];
 
     allEncoderValuesBuffer = new byte[allEncodersPacketSize];
 
@@ -292,6 +338,32 @@ public void initAfterLoadingConfig()
 }// end of Device::initAfterLoadingConfig
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Device::sendPacket (single byte)
+//
+// Sends a packet with command code pCommand followed by the single byte pByte
+// to the remote device. See sendPacket (variable number of bytes).
+//
+// Most requests send only one byte, so this version is provided to avoid the
+// creation of a varargs array for each request.
+//
+
+void sendPacket(byte pCommand, byte pByte)
+{
+
+    if (!isSendPortOpen()) {return;}  //do nothing if the port is closed
+
+    synchronized(sendLock){
+
+        singleByte[0] = pByte;
+
+        sendPacket(pCommand, singleByte);
+
+    }
+
+}//end of Device::sendPacket (single byte)
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Device::sendPacket
 //
@@ -301,39 +373,126 @@ public void initAfterLoadingConfig()
 // A header is prepended and a checksum byte appended. The checksum includes
 // the command byte and all bytes in pBytes, but not the header bytes.
 //
+// When a DeviceReactor is in use, packets may be sent by both the reactor
+// thread and the main thread, so the shared output buffer is locked while
+// each packet is assembled and sent.
+//
+// The non-blocking channel used with a DeviceReactor may accept only part of
+// the packet. This method does not wait for the rest to be accepted as it may
+// be running on the reactor thread -- the remainder is queued and written by
+// the reactor when the channel becomes writable. See writePendingSend.
+//
 
 void sendPacket(byte pCommand, byte... pBytes)
 {
     
-    if (byteOut == null) {return;}  //do nothing if the port is closed
+    if (!isSendPortOpen()) {return;}  //do nothing if the port is closed
 
-    int i = 0, checksum;
+    synchronized(sendLock){
 
-    outBuffer[i++] = (byte)0xaa; outBuffer[i++] = (byte)0x55;
-    outBuffer[i++] = (byte)0xbb; outBuffer[i++] = (byte)0x66;
+        int i = 0, checksum;
 
-    outBuffer[i++] = pCommand;        //command byte included in checksum
-    checksum = pCommand;
+        outBuffer[i++] = (byte)0xaa; outBuffer[i++] = (byte)0x55;
+        outBuffer[i++] = (byte)0xbb; outBuffer[i++] = (byte)0x66;
 
-    for(int j=0; j<pBytes.length; j++){
-        outBuffer[i++] = pBytes[j];
-        checksum += pBytes[j];
-    }
+        outBuffer[i++] = pCommand;        //command byte included in checksum
+        checksum = pCommand;
+
+        for(int j=0; j<pBytes.length; j++){
+            outBuffer[i++] = pBytes[j];
+            checksum += pBytes[j];
+        }
 
-    //calculate checksum and put at end of buffer
-    outBuffer[i++] = (byte)(0x100 - (byte)(checksum & 0xff));
+        //calculate checksum and put at end of buffer
+        outBuffer[i++] = (byte)(0x100 - (byte)(checksum & 0xff));
 
-    //send packet to remote
-    if (byteOut != null) {
-        try{
-              byteOut.write(outBuffer, 0 /*offset*/, i); byteOut.flush();
+        //send packet to remote
+        if (sendChannel != null) {
+            try{
+                sendBuf.clear(); sendBuf.limit(i);
+                //bytes already queued must go out first to keep the order
+                if (pendingSend.position() == 0) { sendChannel.write(sendBuf); }
+                if (sendBuf.hasRemaining()) { queuePendingSend(sendBuf); }
+            }
+            catch (IOException e) {
+                logSevere(e.getMessage() + " - Error: 188");
+            }
+        }
+        else if (byteOut != null) {
+            try{
+                  byteOut.write(outBuffer, 0 /*offset*/, i); byteOut.flush();
+            }
+            catch (IOException e) {
+                logSevere(e.getMessage() + " - Error: 188");
+            }
         }
+
+    }
+
+}//end of Device::sendPacket
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Device::queuePendingSend
+//
+// Appends the bytes remaining in pBuf to the pendingSend buffer, expanding it
+// if necessary. If the buffer was empty, the DeviceReactor is asked to call
+// writePendingSend when the send channel can accept more bytes.
+//
+// The caller must hold sendLock.
+//
+
+private void queuePendingSend(ByteBuffer pBuf)
+{
+
+    boolean wasEmpty = pendingSend.position() == 0;
+
+    if (pendingSend.remaining() < pBuf.remaining()){
+        ByteBuffer b = ByteBuffer.allocate(Math.max(pendingSend.capacity() * 2,
+                                pendingSend.position() + pBuf.remaining()));
+        pendingSend.flip(); b.put(pendingSend); pendingSend = b;
+    }
+
+    pendingSend.put(pBuf);
+
+    if (wasEmpty && reactor != null) { reactor.requestWrite(this); }
+
+}//end of Device::queuePendingSend
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Device::writePendingSend
+//
+// Writes as many of the bytes in the pendingSend buffer as the send channel
+// will accept without waiting.
+//
+// Called by the DeviceReactor thread when the send channel is writable.
+//
+// Returns true if no bytes remain to be sent, false otherwise. If the write
+// fails, the remaining bytes are discarded and true is returned.
+//
+
+boolean writePendingSend()
+{
+
+    synchronized(sendLock){
+
+        pendingSend.flip();
+
+        try{ sendChannel.write(pendingSend); }
         catch (IOException e) {
             logSevere(e.getMessage() + " - Error: 188");
+            pendingSend.clear();
+            return(true);
         }
+
+        pendingSend.compact();
+
+        return(pendingSend.position() == 0);
+
     }
 
-}//end of Device::sendPacket
+}//end of Device::writePendingSend
 //-----------------------------------------------------------------------------
 
 //----------------------------------------------------------------------------
@@ -342,11 +501,20 @@ void sendPacket(byte pCommand, byte... pBytes)
 // Attempts to read pNumBytes number of bytes from ethernet into pBuffer and
 // verifies the data using the last byte as a checksum.
 //
+// The bytes are taken from the receive buffer, which is refilled from the
+// socket in bulk if it does not already hold enough bytes. The checksum is
+// verified in place in the receive buffer before the bytes are copied.
+//
 // Note: pNumBytes count should include the data bytes plus the checksum byte.
 //
 // The packet ID should be provided via pPktID -- it is only used to verify the
 // checksum as it is included in that calculation by the sender.
 //
+// When a DeviceReactor is in use, this method never waits as that would stall
+// every other device. If the packet is incomplete, the frameIncomplete flag is
+// set so processOneDataPacket can leave the packet in the buffer to be
+// processed again when the rest of it has arrived.
+//
 // Returns the number of bytes read, including the checksum byte.
 // On checksum error, returns -1.
 // If pNumBytes are not available after waiting, returns -2.
@@ -356,22 +524,26 @@ void sendPacket(byte pCommand, byte... pBytes)
 int readBytesAndVerify(byte[] pBuffer, int pNumBytes, int pPktID)
 {
     
-    if (byteIn == null) {return -1;}  //do nothing if the port is closed
+    if (!isReceivePortOpen()) {return -1;}  //do nothing if the port is closed
 
     try{
 
+        if (rcvChannel != null && rcvBuf.remaining() < pNumBytes){
+            fillReceiveBuffer();
+            if (rcvBuf.remaining() < pNumBytes){
+                frameIncomplete = true; return(-2);
+            }
+        }
+
         int timeOutProcess = 0;
 
-        while(timeOutProcess++ < 2){
-            if (byteIn.available() >= pNumBytes) {break;}
-            waitSleep(10);
+        while(rcvBuf.remaining() < pNumBytes && timeOutProcess++ < 2){
+            if (fillReceiveBuffer() == 0) { waitSleep(10); }
         }
 
-        if (byteIn.available() >= pNumBytes) {
-            byteIn.read(pBuffer, 0, pNumBytes);
-        }else{
-            packetErrorCnt++; return(-2);
-        }
+        if (rcvBuf.remaining() < pNumBytes) { fillReceiveBuffer(); }
+
+        if (rcvBuf.remaining() < pNumBytes) { packetErrorCnt++; return(-2); }
 
     }// try
     catch(IOException e){
@@ -380,11 +552,17 @@ int readBytesAndVerify(byte[] pBuffer, int pNumBytes, int pPktID)
         return(-3);
     }
 
+    byte[] rcv = rcvBuf.array();
+    int start = rcvBuf.position();
+
     byte sum = (byte)pPktID; //packet ID is included in the checksum
 
     //validate checksum by summing the packet id and all data
 
-    for(int i = 0; i < pNumBytes; i++){ sum += pBuffer[i]; }
+    for(int i = start; i < start + pNumBytes; i++){ sum += rcv[i]; }
+
+    System.arraycopy(rcv, start, pBuffer, 0, pNumBytes);
+    rcvBuf.position(start + pNumBytes);
 
     if ( (sum & 0xff) == 0) { return(pNumBytes); }
     else{ packetErrorCnt++; return(-1); }
@@ -392,6 +570,175 @@ int readBytesAndVerify(byte[] pBuffer, int pNumBytes, int pPktID)
 }//end of Device::readBytesAndVerify
 //----------------------------------------------------------------------------
 
+//----------------------------------------------------------------------------
+// Device::fillReceiveBuffer
+//
+// Reads all bytes currently available from the socket into the receive buffer
+// with a single read call. Unprocessed bytes are first moved to the front of
+// the buffer if there is not enough room after them.
+//
+// Never blocks as only the number of bytes reported by available() is read.
+//
+// If the device is connected via channels, the bytes are read from the
+// receive channel instead.
+//
+// Returns the number of bytes read.
+//
+
+int fillReceiveBuffer() throws IOException
+{
+
+    if (rcvChannel != null) { return(Math.max(fillReceiveBufferFromChannel(), 0)); }
+
+    int avail = byteIn.available();
+
+    if (avail <= 0) { return(0); }
+
+    if (rcvBuf.capacity() - rcvBuf.limit() < avail && rcvBuf.position() > 0){
+        rcvBuf.compact(); rcvBuf.flip();
+    }
+
+    int room = rcvBuf.capacity() - rcvBuf.limit();
+
+    if (room <= 0) { return(0); }
+
+    int n = byteIn.read(rcvBuf.array(), rcvBuf.limit(), Math.min(avail, room));
+
+    if (n <= 0) { return(0); }
+
+    rcvBuf.limit(rcvBuf.limit() + n);
+
+    return(n);
+
+}//end of Device::fillReceiveBuffer
+//----------------------------------------------------------------------------
+
+//----------------------------------------------------------------------------
+// Device::fillReceiveBufferFromChannel
+//
+// Reads the bytes waiting in the non-blocking receive channel into the
+// receive buffer. Unprocessed bytes are first moved to the front of the buffer
+// if less than half of the buffer remains free after them.
+//
+// Returns the number of bytes read or -1 if the remote has closed the
+// connection.
+//
+
+int fillReceiveBufferFromChannel() throws IOException
+{
+
+    if (rcvBuf.position() > 0 && rcvBuf.limit() > rcvBuf.capacity() / 2){
+        rcvBuf.compact(); rcvBuf.flip();
+    }
+
+    int start = rcvBuf.position();
+
+    //switch to filling after the unprocessed bytes, then back again
+
+    rcvBuf.position(rcvBuf.limit()); rcvBuf.limit(rcvBuf.capacity());
+
+    int n = rcvBuf.hasRemaining() ? rcvChannel.read(rcvBuf) : 0;
+
+    rcvBuf.limit(rcvBuf.position()); rcvBuf.position(start);
+
+    return(n);
+
+}//end of Device::fillReceiveBufferFromChannel
+//----------------------------------------------------------------------------
+
+//----------------------------------------------------------------------------
+// Device::processPacketsFromChannel
+//
+// Reads the bytes waiting in the receive channel and processes all complete
+// packets. Any partial packet is left in the receive buffer until the rest of
+// it arrives. Then processReceivedPackets is called to allow subclasses to
+// act on the new data immediately.
+//
+// Called by the DeviceReactor thread when the receive channel is readable.
+//
+// Returns false if the remote has closed the connection, true otherwise.
+//
+
+boolean processPacketsFromChannel()
+{
+
+    int n;
+
+    try{ n = fillReceiveBufferFromChannel(); }
+    catch(IOException e){
+        logSevere(e.getMessage() + " - Error: 482");
+        return(false);
+    }
+
+    while (rcvBuf.remaining() >= 5) {
+        if (processOneDataPacket(false, 0) == -1) { break; }
+    }
+
+    processReceivedPackets();
+
+    return(n >= 0);
+
+}//end of Device::processPacketsFromChannel
+//----------------------------------------------------------------------------
+
+//----------------------------------------------------------------------------
+// Device::processReceivedPackets
+//
+// Called by the DeviceReactor thread after packets have been processed from
+// the receive channel.
+//
+// Should be overridden by child classes to provide custom handling.
+//
+
+void processReceivedPackets()
+{
+
+}//end of Device::processReceivedPackets
+//----------------------------------------------------------------------------
+
+//----------------------------------------------------------------------------
+// Device::getReceiveChannel
+//
+// Returns the receive channel for registering with a selector or null if the
+// device is not connected via channels.
+//
+
+SelectableChannel getReceiveChannel()
+{
+
+    return((SelectableChannel)rcvChannel);
+
+}//end of Device::getReceiveChannel
+//----------------------------------------------------------------------------
+
+//----------------------------------------------------------------------------
+// Device::isReceivePortOpen
+//
+// Returns true if either the receive stream or the receive channel is open.
+//
+
+boolean isReceivePortOpen()
+{
+
+    return(byteIn != null || rcvChannel != null);
+
+}//end of Device::isReceivePortOpen
+//----------------------------------------------------------------------------
+
+//----------------------------------------------------------------------------
+// Device::isSendPortOpen
+//
+// Returns true if either the send stream or the send channel is open.
+//
+
+boolean isSendPortOpen()
+{
+
+    return(byteOut != null || sendChannel != null);
+
+}//end of Device::isSendPortOpen
+//----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Device::isReadyToAdvanceInsertionPoints
 //
@@ -466,6 +813,9 @@ boolean requestMonitorPacket()
 // The array the data is put into is generally gathered by external classes
 // from getMonitorPacket(). See that method for more details.
 //
+// The packet is only copied to monitorBuffer once it has been received in
+// full and verified so that the buffer never holds a partial packet.
+//
 // Returns number of bytes retrieved from the socket.
 //
 // Overridden by children classes for custom handling.
@@ -474,16 +824,19 @@ boolean requestMonitorPacket()
 public int handleMonitorPacket()
 {
     
-    waitingForRemoteResponse = false;
-
     int numBytesInPkt = monitorPacketSize; //includes Rabbit checksum byte
     
     monitorPacketRequestTimer = 0; //reset since we got a packet
 
     int result;
-    result = readBytesAndVerify(monitorBuffer, numBytesInPkt, pktID);
+    result = readBytesAndVerify(monitorRcvBuffer, numBytesInPkt, pktID);
+    responseReceived();
     if (result != numBytesInPkt){ return(result); }
 
+    synchronized(monitorLock){
+        System.arraycopy(monitorRcvBuffer, 0, monitorBuffer, 0, numBytesInPkt);
+    }
+
     return result;
 
 }//end of Device::handleMonitorPacket
@@ -498,11 +851,10 @@ public int handleMonitorPacket()
 // If false, then packets are only received when the remote computer sends
 // them.
 //
-// NOTE: This function is often called from a different thread than the one
-// transferring the data from the input buffer -- erroneous values for some of
-// the multibyte values may occur due to thread collision but they are for
-// display/debugging only and an occasional glitch in the displayed values
-// should not be of major concern.
+// This function is often called from a different thread than the one
+// transferring the data from the input buffer, so the packet is copied to an
+// array used only by the caller while holding the lock used when storing it.
+// The returned array is overwritten by the next call.
 //
 
 public byte[] getMonitorPacket(boolean pRequestPacket)
@@ -518,7 +870,14 @@ public byte[] getMonitorPacket(boolean pRequestPacket)
         }
     }
 
-    return monitorBuffer;
+    if (monitorBuffer == null) { return(null); } //not a control device
+
+    synchronized(monitorLock){
+        System.arraycopy(monitorBuffer, 0, monitorPacket, 0,
+                                                        monitorPacket.length);
+    }
+
+    return monitorPacket;
 
 }//end of Device::getMonitorPacket
 //-----------------------------------------------------------------------------
@@ -573,7 +932,8 @@ public boolean requestInspectPacket()
 // Copies the remainder of the packet from the ethernet buffer to the
 // inspectBuffer for later retrieval.
 //
-// Sets newInspectData flag true.
+// Sets newInspectPacket flag true. The packet is copied to inspectBuffer and
+// the flag set while holding inspectLock -- see getInspectPacketFromDevice.
 //
 // Overridden by children classes for custom handling.
 //
@@ -581,15 +941,17 @@ public boolean requestInspectPacket()
 public int handleInspectPacket()
 {
 
-    waitingForRemoteResponse = false;
-
     int numBytesInPkt = inspectPacketSize; //includes Rabbit checksum byte
 
     int result;
-    result = readBytesAndVerify(inspectBuffer, numBytesInPkt, pktID);
+    result = readBytesAndVerify(inspectRcvBuffer, numBytesInPkt, pktID);
+    responseReceived();
     if (result != numBytesInPkt){ return(result); }
 
-    newInspectPacket = true;
+    synchronized(inspectLock){
+        System.arraycopy(inspectRcvBuffer, 0, inspectBuffer, 0, numBytesInPkt);
+        newInspectPacket = true;
+    }
 
     return(result);
 
@@ -640,16 +1002,27 @@ public void getInspectControlVars(InspectControlVars pICVars)
 // If no packet has been recevied since the last call, returns false and the
 // data in pPacket is invalid.
 //
+// The packet may be stored by the DeviceReactor thread, so it is copied while
+// holding the same lock used when storing it.
+//
 
 boolean getInspectPacketFromDevice(byte[] pPacket)
 {
 
-    if(!newInspectPacket || !canBeControlDevice()){ return false; }
+    if(!canBeControlDevice()){ return false; }
+
+    synchronized(inspectLock){
+
+        if(!newInspectPacket){ return false; }
 
-    System.arraycopy(inspectBuffer, 0, pPacket, 0, pPacket.length);
+        System.arraycopy(inspectBuffer, 0, pPacket, 0, pPacket.length);
+
+        newInspectPacket = false;
+
+    }
 
     //no new packets, but new data is available to other objects
-    newInspectPacket = false; newInspectData = true;
+    newInspectData = true;
 
     return(true);
 
@@ -783,11 +1156,14 @@ public void turnOffOutput(int pWhichOutput)
 //
 // Should be overridden by child classes to provide custom handling.
 //
+// If the device is serviced by a DeviceReactor, the packets are processed by
+// the reactor thread as they arrive rather than here.
+//
 
 public void collectData()
 {
 
-    processAllAvailableDataPackets();
+    if (rcvChannel == null) { processAllAvailableDataPackets(); }
 
 }// end of Device::collectData
 //-----------------------------------------------------------------------------
@@ -795,10 +1171,10 @@ public void collectData()
 //-----------------------------------------------------------------------------
 // Device::catchMapPeak
 //
-// Catches the passed in clock map data.
+// Catches the passed in clock map data in the peak buffer for bank pBank.
 //
 
-public void catchMapPeak(int[] pData)
+public void catchMapPeak(int pBank, int[] pData)
 {
 
 }// end of Device::catchMapPeak
@@ -807,10 +1183,10 @@ public void catchMapPeak(int[] pData)
 //-----------------------------------------------------------------------------
 // Device::catchSnapshotPeak
 //
-// Catches the passed in snapshot data.
+// Catches the passed in snapshot data in the peak buffer for bank pBank.
 //
 
-public void catchSnapshotPeak(int pPeak, int[] pData)
+public void catchSnapshotPeak(int pBank, int pPeak, int[] pData)
 {
 
 }// end of Device::catchSnapshotPeak
@@ -895,7 +1271,8 @@ void loadConfigSettings()
 //
 // Gets the device data (peaks, snapshot, and map) and resets the values.
 //
-// This function makes use of DeviceData so that actions are synchronized.
+// This function makes use of DeviceData so that the peaks, snapshot, and map
+// are retrieved together.
 //
 // Overridden by children classes for custom handling.
 //
@@ -910,25 +1287,6 @@ public boolean getDeviceDataAndReset(PeakData pPeakData,
 }// end of Device::getDeviceDataAndReset
 //-----------------------------------------------------------------------------
 
-//-----------------------------------------------------------------------------
-// Device::getPeakForChannelAndReset
-//
-// Retrieves the current value of the peak for channel pChannel and resets
-// the peak to the reset value.
-//
-// This class returns an object as the peak may be of various data types.
-//
-// Overridden by children classes for custom handling.
-//
-
-public void getPeakForChannelAndReset(int pChannel, MKSInteger pPeakValue)
-{
-
-    //does nothing because channels may not even be set
-
-}// end of Device::getPeakForChannelAndReset
-//-----------------------------------------------------------------------------
-
 //-----------------------------------------------------------------------------
 // Device::getPeakDataAndReset
 //
@@ -952,9 +1310,9 @@ public void getPeakDataAndReset(int pChannel, PeakData pPeakData)
 //-----------------------------------------------------------------------------
 // Device::getPeakSnapshotDataAndReset
 //
-// Retrieves the current values of the snapshot data peaks along with all
-// relevant info for the channel such as the chart & graph to which it is
-// attached.
+// Retrieves the current values of the snapshot data peaks in bank pBank along
+// with all relevant info for the channel such as the chart & graph to which
+// it is attached.
 //
 // All data in the pPeakMapData.metaArray is set to the snapshot system number
 // of this device so the data can be identified as necessary.
@@ -967,7 +1325,8 @@ public void getPeakDataAndReset(int pChannel, PeakData pPeakData)
 // Overridden by children classes for custom handling.
 //
 
-public boolean getPeakSnapshotDataAndReset(PeakSnapshotData pPeakSnapData)
+public boolean getPeakSnapshotDataAndReset(int pBank,
+                                            PeakSnapshotData pPeakSnapData)
 {
 
     return false;
@@ -978,8 +1337,9 @@ public boolean getPeakSnapshotDataAndReset(PeakSnapshotData pPeakSnapData)
 //-----------------------------------------------------------------------------
 // Device::getPeakMapDataAndReset
 //
-// Retrieves the current values of the map data peaks along with all relevant
-// info for the channel such as the chart & graph to which it is attached.
+// Retrieves the current values of the map data peaks in bank pBank along with
+// all relevant info for the channel such as the chart & graph to which it is
+// attached.
 //
 // All data in the pPeakMapData.metaArray is set to the map system number of
 // this device so the data can be identified as necessary.
@@ -990,7 +1350,7 @@ public boolean getPeakSnapshotDataAndReset(PeakSnapshotData pPeakSnapData)
 // or false otherwise.
 //
 
-public boolean getPeakMapDataAndReset(PeakMapData pPeakMapData)
+public boolean getPeakMapDataAndReset(int pBank, PeakMapData pPeakMapData)
 {
 
     return false;
@@ -1070,11 +1430,18 @@ public void stopMonitor()
 boolean requestRunDataPacket()
 {
 
-    //waiting for remote response, return false since we bailed
-    if (waitingForRemoteResponse) { return false; }
+    //the check and set are locked as the reactor thread and the main thread
+    //may both request packets when a DeviceReactor is in use
 
-    //return true because we did not bail
-    return waitingForRemoteResponse = true;
+    synchronized(sendLock){
+
+        //waiting for remote response, return false since we bailed
+        if (waitingForRemoteResponse) { return false; }
+
+        //return true because we did not bail
+        return waitingForRemoteResponse = true;
+
+    }
 
 }//end of Device::requestRunDataPacket
 //-----------------------------------------------------------------------------
@@ -1093,12 +1460,11 @@ boolean requestRunDataPacket()
 int handleRunDataPacket()
 {
 
-    waitingForRemoteResponse = false;
-
     int numBytesInPkt = runDataPacketSize; //includes Rabbit checksum byte
 
     int result;
     result = readBytesAndVerify(runDataBuffer, numBytesInPkt, pktID);
+    responseReceived();
     if (result != numBytesInPkt){ return(result); }
 
     //check the run data packet counts for errors
@@ -1120,6 +1486,29 @@ int handleRunDataPacket()
 }// end of Device::handleRunDataPacket
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Device::responseReceived
+//
+// Called by the packet handlers after readBytesAndVerify to clear the
+// waitingForRemoteResponse flag so that the next request may be sent.
+//
+// The flag is left set if only part of the frame has arrived, as happens when
+// a DeviceReactor is in use. The frame is then processed again when the rest
+// of it arrives and clearing the flag here would allow another request to be
+// sent each time the partial frame is examined.
+//
+// A frame which has been read in full is a response even if its checksum is
+// bad, so the flag is cleared in that case to avoid waiting forever.
+//
+
+void responseReceived()
+{
+
+    if (!frameIncomplete) { waitingForRemoteResponse = false; }
+
+}//end of Device::responseReceived
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Device::getRunPacketFromDevice
 //
@@ -1318,9 +1707,14 @@ public void run()
 
     initAfterConnect();
 
+    if (rcvChannel != null) { reactor.register(this); }
+
     notifyThreadsWaitingOnConnection();
 
-    waitForever();
+    //channels are not tied to the thread which opened them, so this thread is
+    //only kept alive when the socket streams are in use
+
+    if (rcvChannel == null) { waitForever(); }
 
 }//end of Device::run
 //-----------------------------------------------------------------------------
@@ -1373,12 +1767,17 @@ public synchronized void waitForever()
 // Opens a TCP/IP connection with the device with which this object is linked
 // via the IP address.
 //
+// If a DeviceReactor has been set, the connection is made via non-blocking
+// channels instead. See connectViaChannels for details.
+//
 
 public synchronized void connectToDevice()
 {
 
     logPanel.appendTS("Connecting to " + title + "...\n");
 
+    if (reactor != null) { connectViaChannels(); return; }
+
     try {
 
         logPanel.appendTS("IP Address: " + ipAddr.toString() + "\n");
@@ -1430,6 +1829,129 @@ public synchronized void connectToDevice()
 }//end of Device::connectToDevice
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Device::connectViaChannels
+//
+// Opens a connection with the device which is serviced by the DeviceReactor.
+//
+// For a real device, a SocketChannel is connected and switched to
+// non-blocking mode after the greeting message has been read.
+//
+// For a simulated device, the greeting is read from the simulated socket's
+// stream as usual and the simulator is then asked for a channel on which it
+// will send all further replies. Packets to the simulator are still written to
+// its stream via a channel wrapper.
+//
+
+private void connectViaChannels()
+{
+
+    String greeting;
+
+    try {
+
+        logPanel.appendTS("IP Address: " + ipAddr.toString() + "\n");
+
+        if (!simMode) {
+            SocketChannel channel =
+                          SocketChannel.open(new InetSocketAddress(ipAddr, 23));
+            channel.configureBlocking(false);
+            rcvChannel = channel; sendChannel = channel;
+            greeting = readGreetingFromChannel();
+        }
+        else {
+            createSimulatedSocket();
+            socket.setSoTimeout(250);
+            in = new BufferedReader(
+                                new InputStreamReader(socket.getInputStream()));
+            greeting = in.readLine();
+            rcvChannel = ((Simulator)socket).openReplyChannel();
+            sendChannel = Channels.newChannel(socket.getOutputStream());
+        }
+
+    }//try
+    catch (IOException e) {
+        logSevere(e.getMessage() + " - Error: 817");
+        logPanel.appendTS("\nError 817: "+e.getMessage()+" " + ipAddrS + "\n");
+        closeChannels(); rcvChannel = null; sendChannel = null;
+        connectionAttemptCompleted = true;
+        return;
+    }
+
+    //display the greeting message sent by the remote
+    logPanel.appendTS(ipAddrS + " says " + greeting + "\n");
+
+    connectionAttemptCompleted = true;
+
+    connectionSuccessful = true;
+
+    logPanel.appendTS("\nConnection successful.");
+
+}//end of Device::connectViaChannels
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Device::readGreetingFromChannel
+//
+// Reads the greeting line sent by the remote upon connection from the
+// non-blocking receive channel. Any bytes received after the line are left in
+// the receive buffer to be processed as packets.
+//
+// Waits up to 250 ms for the line, matching the socket timeout used when
+// the socket streams are in use.
+//
+// Returns the greeting without the line terminator.
+//
+
+private String readGreetingFromChannel() throws IOException
+{
+
+    int timeOut = 0;
+
+    while(true){
+
+        byte[] rcv = rcvBuf.array();
+        int start = rcvBuf.position();
+
+        for (int i = start; i < rcvBuf.limit(); i++){
+            if (rcv[i] == '\n'){
+                int end = (i > start && rcv[i-1] == '\r') ? i - 1 : i;
+                rcvBuf.position(i + 1);
+                return(new String(rcv, start, end - start, "US-ASCII"));
+            }
+        }
+
+        if (timeOut++ >= 25) { throw new SocketTimeoutException("Read timed out"); }
+
+        if (fillReceiveBufferFromChannel() <= 0) { waitSleep(10); }
+
+    }
+
+}//end of Device::readGreetingFromChannel
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Device::closeChannels
+//
+// Closes the receive and send channels if they are open. The references are
+// left in place as the reactor thread may still be using them -- any further
+// access will fail with an IOException rather than a null reference.
+//
+
+private void closeChannels()
+{
+
+    try{
+        if (rcvChannel != null) { rcvChannel.close(); }
+        if (sendChannel != null) { sendChannel.close(); }
+    }
+    catch(IOException e){
+        logSevere(e.getMessage() + " - Error: 1722");
+    }
+
+}//end of Device::closeChannels
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Device::createSimulatedSocket
 //
@@ -1477,19 +1999,23 @@ public synchronized boolean waitForConnectCompletion()
 //-----------------------------------------------------------------------------
 // Device::processAllAvailableDataPackets
 //
-// Processes all packets waiting in the socket. A packet will be processed
-// when at least 5 bytes are in the socket, which means that the packet header
-// and the packet identifier have been received.
+// Processes all packets waiting in the socket. All available bytes are read
+// from the socket in one call and the packets are then processed from memory.
+// A packet will be processed when at least 5 bytes are buffered, which means
+// that the packet header and the packet identifier have been received.
 //
 
 public void processAllAvailableDataPackets()
 {
 
-    if (byteIn == null) { return; }  //do nothing if the port is closed
+    if (!isReceivePortOpen()) { return; }  //do nothing if the port is closed
 
-    try{
-        while (byteIn.available() >= 5) { processOneDataPacket(false, 0); }
-    }catch(IOException e){}
+    try{ fillReceiveBuffer(); }
+    catch(IOException e){ logSevere(e.getMessage() + " - Error: 865"); return; }
+
+    while (rcvBuf.remaining() >= 5) {
+        if (processOneDataPacket(false, 0) == -1) { break; }
+    }
 
 }//end of Device::processAllAvailableDataPackets
 //-----------------------------------------------------------------------------
@@ -1510,79 +2036,95 @@ public void processAllAvailableDataPackets()
 // 0xaa, 0x55, 0xbb, 0x66, followed by the packet identifier, the DSP chip
 // identifier, and the DSP core identifier.
 //
+// The header is checked in the receive buffer rather than by reading the
+// socket one byte at a time. If the bytes at the front of the buffer are not a
+// valid header, reSync skips ahead in memory to the next valid header.
+//
 // Returns number of bytes retrieved from the socket, not including the
 // 4 header bytes, the packet ID, the DSP chip ID, and the DSP core ID.
 // Thus, if a non-zero value is returned, a packet was processed.  If zero
 // is returned, some bytes may have been read but a packet was not successfully
 // processed due to missing bytes or header corruption.
-// A return value of -1 means that the buffer does not contain a packet.
+// A return value of -1 means that the buffer does not contain a packet or
+// contains only part of one.
 //
 
 public int processOneDataPacket(boolean pWaitForPkt, int pTimeOut)
 {
 
-    if (byteIn == null) {return -1;}  //do nothing if the port is closed
+    if (!isReceivePortOpen()) {return -1;}  //do nothing if the port is closed
 
     try{
 
+        if (rcvBuf.remaining() < 5) { fillReceiveBuffer(); }
+
         //wait a while for a packet if parameter is true
         if (pWaitForPkt){
             int timeOutWFP = 0;
-            while(byteIn.available() < 5 && timeOutWFP++ < pTimeOut){
-                waitSleep(10);
+            while(rcvBuf.remaining() < 5 && timeOutWFP++ < pTimeOut){
+                if (fillReceiveBuffer() == 0) { waitSleep(10); }
             }
         }
 
-        //wait until 5 bytes are available - this should be the 4 header bytes,
-        //and the packet identifier
-        if (byteIn.available() < 5) {return -1;}
-
-        //read the bytes in one at a time so that if an invalid byte is
-        //encountered it won't corrupt the next valid sequence in the case
-        //where it occurs within 3 bytes of the invalid byte
+    }
+    catch(IOException e){
+        logSevere(e.getMessage() + " - Error: 865");
+        return 0;
+    }
 
-        //check each byte to see if the first four create a valid header
-        //if not, jump to resync which deletes bytes until a valid first header
-        //byte is reached
+    //wait until 5 bytes are available - this should be the 4 header bytes,
+    //and the packet identifier
+    if (rcvBuf.remaining() < 5) {return -1;}
 
-        //if the reSynced flag is true, the buffer has been resynced and an 0xaa
-        //byte has already been read from the buffer so it shouldn't be read
-        //again
+    //if the first four bytes are not a valid header, skip to the next one
 
-        //after a resync, the function exits without processing any packets
+    if (!isHeaderAtPosition(rcvBuf.position())){
+        reSync();
+        if (!reSynced || rcvBuf.remaining() < 5) { return 0; }
+    }
 
-        if (!reSynced){
-            //look for the 0xaa byte unless buffer just resynced
-            byteIn.read(inBuffer, 0, 1);
-            if (inBuffer[0] != (byte)0xaa) {reSync(); return 0;}
-        }
-        else {reSynced = false;}
+    reSynced = false;
 
-        byteIn.read(inBuffer, 0, 1);
-        if (inBuffer[0] != (byte)0x55) {reSync(); return 0;}
-        byteIn.read(inBuffer, 0, 1);
-        if (inBuffer[0] != (byte)0xbb) {reSync(); return 0;}
-        byteIn.read(inBuffer, 0, 1);
-        if (inBuffer[0] != (byte)0x66) {reSync(); return 0;}
+    int frameStart = rcvBuf.position();
 
-        //read in the packet identifier
-        byteIn.read(inBuffer, 0, 1);
+    //skip the header and store the ID of the packet (the packet type)
+    rcvBuf.position(rcvBuf.position() + 4);
+    pktID = rcvBuf.get();
 
-        //store the ID of the packet (the packet type)
-        pktID = inBuffer[0];
+    int result = takeActionBasedOnPacketId(pktID);
 
-        return takeActionBasedOnPacketId(pktID);
+    //leave an incomplete packet in the buffer to be processed again when the
+    //rest of it arrives -- only occurs when a DeviceReactor is in use
 
-    }
-    catch(IOException e){
-        logSevere(e.getMessage() + " - Error: 865");
+    if (frameIncomplete){
+        frameIncomplete = false; rcvBuf.position(frameStart); return -1;
     }
 
-    return 0;
+    return result;
 
 }//end of Device::processOneDataPacket
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Device::isHeaderAtPosition
+//
+// Returns true if the four bytes in the receive buffer starting at pPos are
+// the packet header 0xaa, 0x55, 0xbb, 0x66.
+//
+
+private boolean isHeaderAtPosition(int pPos)
+{
+
+    if (rcvBuf.limit() - pPos < 4) { return(false); }
+
+    byte[] rcv = rcvBuf.array();
+
+    return(rcv[pPos] == (byte)0xaa && rcv[pPos+1] == (byte)0x55
+            && rcv[pPos+2] == (byte)0xbb && rcv[pPos+3] == (byte)0x66);
+
+}//end of Device::isHeaderAtPosition
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Device::takeActionBasedOnPacketId
 //
@@ -1600,24 +2142,20 @@ protected int takeActionBasedOnPacketId(int pPktID)
 //-----------------------------------------------------------------------------
 // Device::reSync
 //
-// Clears bytes from the socket buffer until 0xaa byte reached which signals
-// the *possible* start of a new valid packet header or until the buffer is
-// empty.
+// Discards bytes from the receive buffer until a complete valid packet header
+// is reached or until fewer than four bytes remain.
 //
-// If an 0xaa byte is found, the flag reSynced is set true to that other
-// functions will know that an 0xaa byte has already been removed from the
-// stream, signalling the possible start of a new packet header.
+// If a header is found, the flag reSynced is set true and the buffer is left
+// positioned at the start of that header.
 //
-// There is a special case where a 0xaa is found just before the valid 0xaa
-// which starts a new packet - the first 0xaa is the last byte of the previous
-// packet (usually the checksum).  In this case, the next packet will be lost
-// as well.  This should happen rarely.
+// If no header is found, the last three bytes are retained as they may be the
+// start of a header whose remaining bytes have not yet been received.
 //
 
 public void reSync()
 {
     
-    if (byteIn == null) { return; }  //do nothing if the port is closed
+    if (!isReceivePortOpen()) { return; }  //do nothing if the port is closed
 
     reSynced = false;
 
@@ -1632,16 +2170,18 @@ public void reSync()
 
     reSyncPktID = pktID;
 
-    try{
-        while (byteIn.available() > 0) {
-            byteIn.read(inBuffer, 0, 1);
-            if (inBuffer[0] == (byte)0xaa) {reSynced = true; break;}
-        }
-    }
-    catch(IOException e){
-        logSevere(e.getMessage() + " - Error: 847");
+    //skip the byte which broke the header and scan for the next header
+
+    int pos = rcvBuf.position() + 1;
+    int end = rcvBuf.limit();
+
+    while (pos <= end - 4) {
+        if (isHeaderAtPosition(pos)) { reSynced = true; break; }
+        pos++;
     }
 
+    rcvBuf.position(Math.min(pos, end));
+
 }//end of Device::reSync
 //-----------------------------------------------------------------------------
 
@@ -1701,6 +2241,8 @@ public void processChannelParameterChanges()
 public void shutDown()
 {
 
+    closeChannels();
+
     //close everything - the order of closing may be important
     try{
         if (byteOut != null) {byteOut.close();}
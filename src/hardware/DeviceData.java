@@ -5,12 +5,27 @@
 *
 * Purpose:
 *
-* This class is a synchronized wrapper class to handle the storage and retrieval
-* of device data.
+* This class is a wrapper class to handle the storage and retrieval of device
+* data.
 *
-* The putData() and getData() functions are synchronized to ensure that the data
-* in the peak, snapshot, and clock map buffers are always in sync. Data cannot
-* be put one buffer while data is changing in the other.
+* The data is double buffered so that the peak, snapshot, and clock map
+* buffers are always in sync without locking. There are two banks of peak
+* buffers. The thread calling putData catches peaks in one bank while the
+* other bank is either waiting to be retrieved by getData or is being read
+* and reset by the thread calling getData. Neither thread ever waits for the
+* other.
+*
+* After each putData, if the previously published bank has been retrieved and
+* reset, the bank holding the new peaks is published and putData switches to
+* the freed bank. Any peaks caught while the published bank has not yet been
+* retrieved accumulate in the current bank and are published later.
+*
+* Only one thread may call putData and only one thread may call getData.
+*
+* The channel peaks are held in a flat array rather than in a peak buffer
+* object for each channel. The channels which catch the highest value are
+* placed first, followed by those which catch the lowest value, so each group
+* is updated with a simple branch free loop and no calls per channel.
 *
 */
 
@@ -27,6 +42,25 @@ public class DeviceData
 
     private final Device device;
 
+    public static final int NUM_BANKS = 2;
+
+    private int putBank = 0; //only accessed by the putData thread
+
+    //bank published for getData, -1 if none -- only set to a bank by putData
+    //and only set to -1 by getData
+    private volatile int readyBank = -1;
+    //true when the bank not in use by putData has been read and reset
+    private volatile boolean spareBankFree = true;
+
+    private int numChannels = 0;
+    private int numHighPeakSlots = 0;  //slots before this catch highest
+    private int[][] peaks = new int[NUM_BANKS][0];
+    private int[] slotChannelNums = new int[0]; //channel held in each slot
+    private SampleMetaData[] slotMeta = new SampleMetaData[0];
+
+    private static final int HIGH_PEAK_RESET = Integer.MIN_VALUE;
+    private static final int LOW_PEAK_RESET = Integer.MAX_VALUE;
+
 //-----------------------------------------------------------------------------
 // DeviceData::DeviceData (constructor)
 //
@@ -53,27 +87,89 @@ public void init()
 }// end of DeviceData::init
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// DeviceData::setUpChannelPeaks
+//
+// Creates the flat peak array for the device's channels. Must be called after
+// the device has created its channels.
+//
+
+public void setUpChannelPeaks()
+{
+
+    Channel[] channels = device.getChannels();
+
+    numChannels = channels == null ? 0 : channels.length;
+
+    peaks = new int[NUM_BANKS][numChannels];
+    slotChannelNums = new int[numChannels];
+    slotMeta = new SampleMetaData[numChannels];
+
+    numHighPeakSlots = 0;
+    for (int i=0; i<numChannels; i++){
+        if (channels[i].peakType != Channel.CATCH_LOWEST) { numHighPeakSlots++; }
+    }
+
+    int high = 0, low = numHighPeakSlots;
+
+    for (int i=0; i<numChannels; i++){
+        int slot = channels[i].peakType != Channel.CATCH_LOWEST ? high++ : low++;
+        slotMeta[slot] = channels[i].getMetaData();
+        slotChannelNums[slot] = slotMeta[slot].channelNum;
+    }
+
+    for (int b=0; b<NUM_BANKS; b++) { resetChannelPeaks(peaks[b]); }
+
+}// end of DeviceData::setUpChannelPeaks
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DeviceData::resetChannelPeaks
+//
+// Sets all channel peaks in pPeaks to their reset values.
+//
+
+private void resetChannelPeaks(int[] pPeaks)
+{
+
+    for (int s=0; s<numHighPeakSlots; s++){ pPeaks[s] = HIGH_PEAK_RESET; }
+
+    for (int s=numHighPeakSlots; s<numChannels; s++){ pPeaks[s] = LOW_PEAK_RESET; }
+
+}// end of DeviceData::resetChannelPeaks
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // DeviceData::putData
 //
 // Puts the data retrieved from the device (channel, snapshot, map) into
-// appropriate buffers.
-//
-// This function is synchronized so that data cannot be retrieved from one of
-// these buffers while data is being put in another.
+// appropriate buffers of the current bank, then publishes that bank for
+// getData if the other bank is free.
 //
 
-public synchronized void putData(int[] pChannelPeaks, int pSnapPeak,
+public void putData(int[] pChannelPeaks, int pSnapPeak,
                                     int[] pSnapData, int[] pMapData)
 {
 
-    for(Channel ch : device.getChannels()){
-        ch.catchPeak(pChannelPeaks[ch.meta.channelNum]);
+    int[] p = peaks[putBank]; int[] ch = slotChannelNums;
+
+    for (int s=0; s<numHighPeakSlots; s++){
+        p[s] = Math.max(p[s], pChannelPeaks[ch[s]]);
     }
 
-    device.catchSnapshotPeak(pSnapPeak, pSnapData);
+    for (int s=numHighPeakSlots; s<numChannels; s++){
+        p[s] = Math.min(p[s], pChannelPeaks[ch[s]]);
+    }
 
-    device.catchMapPeak(pMapData);
+    device.catchSnapshotPeak(putBank, pSnapPeak, pSnapData);
+
+    device.catchMapPeak(putBank, pMapData);
+
+    if (spareBankFree && readyBank == -1){
+        spareBankFree = false;
+        readyBank = putBank;
+        putBank = (putBank + 1) % NUM_BANKS;
+    }
 
 }// end of DeviceData::putData
 //-----------------------------------------------------------------------------
@@ -82,27 +178,54 @@ public synchronized void putData(int[] pChannelPeaks, int pSnapPeak,
 // DeviceData::getData
 //
 // Gets the data retrieved from the device (channel, snapshot, map) from the
-// appropriate buffers and returns them in the parameters.
+// appropriate buffers of the published bank and returns them in the
+// parameters. The bank is then reset and made available to putData.
 //
-// This function is synchronized so that data cannot be retrieved from one of
-// these buffers while data is being put in another.
+// A channel peak has been updated if it no longer holds its reset value.
+//
+// Returns false if no bank has been published since the last call or if any
+// of the peaks in the bank has not been updated.
 //
 
-public synchronized boolean getData(PeakData pPeakData,
+public boolean getData(PeakData pPeakData,
                                     PeakSnapshotData pSnapshotData,
                                     PeakMapData pMapData)
 {
 
+    int bank = readyBank;
+
+    if (bank == -1) { return(false); }
+
+    readyBank = -1;
+
     boolean results = true;
 
     //get all channel peaks
-    for (Channel ch:device.getChannels()){
-        if (!ch.getPeakDataAndReset(pPeakData)) { results = false; }
+
+    int[] p = peaks[bank];
+
+    for (int s=0; s<numChannels; s++){
+
+        int reset = s < numHighPeakSlots ? HIGH_PEAK_RESET : LOW_PEAK_RESET;
+        int chNum = slotChannelNums[s];
+
+        pPeakData.metaArray[chNum] = slotMeta[s];
+        pPeakData.peakArray[chNum] = p[s];
+
+        if (p[s] == reset) { results = false; }
+
+        p[s] = reset;
+
+    }
+
+    if (!device.getPeakSnapshotDataAndReset(bank, pSnapshotData)) {
+        results = false;
     }
 
-    if (!device.getPeakSnapshotDataAndReset(pSnapshotData)) { results = false; }
+    if (!device.getPeakMapDataAndReset(bank, pMapData)) { results = false; }
 
-    if (!device.getPeakMapDataAndReset(pMapData)) { results = false; }
+    //hand the bank back to putData -- must be the last access to the bank
+    spareBankFree = true;
 
     return results;
 
@@ -0,0 +1,293 @@
+/******************************************************************************
+* Title: DeviceReactor.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class services the receive channels of all Devices from a single
+* thread. Each Device registers its non-blocking receive channel and this
+* object waits on a Selector until one or more channels have bytes ready. The
+* ready Devices are then told to read and process their packets.
+*
+* Packets are thus handled as soon as they arrive rather than when the main
+* loop next gets around to polling each socket, and a single thread handles
+* the receive side for any number of Devices instead of one blocking thread
+* per Device.
+*
+* If a Device's send channel cannot accept all of a packet, the Device queues
+* the rest and calls requestWrite. The channel is then also watched for
+* writability and the queued bytes are written by this thread, so no thread
+* ever spins waiting for the socket to drain.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+package hardware;
+
+//-----------------------------------------------------------------------------
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class DeviceReactor
+//
+
+public class DeviceReactor implements Runnable
+{
+
+    private Selector selector;
+
+    //Devices are queued here by other threads and registered with the
+    //selector by the reactor thread itself as registering from another thread
+    //blocks while the reactor thread is waiting in select
+
+    private final ConcurrentLinkedQueue<Device> pendingRegistrations =
+                                                new ConcurrentLinkedQueue<>();
+
+    //Devices with bytes waiting to be sent -- queued for the same reason
+
+    private final ConcurrentLinkedQueue<Device> pendingWrites =
+                                                new ConcurrentLinkedQueue<>();
+
+    private volatile boolean shutDown = false;
+
+    //run after each pass in which data was received, may be null
+    private Runnable dataArrivalListener = null;
+    public void setDataArrivalListener(Runnable pListener){
+        dataArrivalListener = pListener;
+    }
+
+//-----------------------------------------------------------------------------
+// DeviceReactor::DeviceReactor (constructor)
+//
+
+public DeviceReactor()
+{
+
+}//end of DeviceReactor::DeviceReactor (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DeviceReactor::init
+//
+// Initializes the object.  Must be called after instantiation.
+//
+
+public void init() throws IOException
+{
+
+    selector = Selector.open();
+
+}// end of DeviceReactor::init
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DeviceReactor::register
+//
+// Queues pDevice to have its receive channel serviced by the reactor thread.
+// The Device must already be connected and its receive channel must be in
+// non-blocking mode.
+//
+// May be called from any thread.
+//
+
+public void register(Device pDevice)
+{
+
+    pendingRegistrations.add(pDevice);
+
+    selector.wakeup();
+
+}// end of DeviceReactor::register
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DeviceReactor::requestWrite
+//
+// Queues pDevice to have its channel watched for writability. When the channel
+// can accept more bytes, the Device's writePendingSend method is called until
+// all of its queued bytes have been sent.
+//
+// May be called from any thread.
+//
+
+public void requestWrite(Device pDevice)
+{
+
+    pendingWrites.add(pDevice);
+
+    selector.wakeup();
+
+}// end of DeviceReactor::requestWrite
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DeviceReactor::run
+//
+// Waits for Device receive channels to become readable and has each ready
+// Device process its packets. Runs until shutDown is called.
+//
+
+@Override
+public void run()
+{
+
+    while (!shutDown){
+
+        try{ selector.select(); }
+        catch(IOException e){
+            logSevere(e.getMessage() + " - Error: 113");
+            return;
+        }
+
+        registerPendingDevices();
+
+        enablePendingWrites();
+
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+        boolean dataReceived = false;
+
+        while (keys.hasNext()){
+
+            SelectionKey key = keys.next(); keys.remove();
+
+            if (!key.isValid()) { continue; }
+
+            Device device = (Device)key.attachment();
+
+            //stop watching for writability once all queued bytes are sent
+            if (key.isWritable() && device.writePendingSend()){
+                key.interestOps(SelectionKey.OP_READ);
+            }
+
+            if (!key.isReadable()) { continue; }
+
+            dataReceived = true;
+
+            //cancel the key if the remote has closed the connection
+            if (!device.processPacketsFromChannel()) { key.cancel(); }
+
+        }
+
+        if (dataReceived && dataArrivalListener != null) {
+            dataArrivalListener.run();
+        }
+
+    }
+
+    try{ selector.close(); }
+    catch(IOException e){ logSevere(e.getMessage() + " - Error: 139"); }
+
+}// end of DeviceReactor::run
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DeviceReactor::registerPendingDevices
+//
+// Registers the receive channel of each queued Device with the selector.
+//
+
+private void registerPendingDevices()
+{
+
+    Device device;
+
+    while ((device = pendingRegistrations.poll()) != null){
+
+        SelectableChannel channel = device.getReceiveChannel();
+
+        if (channel == null) { continue; }
+
+        try{
+            channel.register(selector, SelectionKey.OP_READ, device);
+        }
+        catch(ClosedChannelException e){
+            logSevere(e.getMessage() + " - Error: 166");
+        }
+
+        //process anything which arrived before the channel was registered
+        device.processPacketsFromChannel();
+
+    }
+
+}// end of DeviceReactor::registerPendingDevices
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DeviceReactor::enablePendingWrites
+//
+// Adds write interest to the selection key of each Device which has queued
+// bytes to be sent.
+//
+
+private void enablePendingWrites()
+{
+
+    Device device;
+
+    while ((device = pendingWrites.poll()) != null){
+
+        SelectableChannel channel = device.getReceiveChannel();
+
+        if (channel == null) { continue; }
+
+        SelectionKey key = channel.keyFor(selector);
+
+        if (key == null || !key.isValid()) { continue; }
+
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+
+    }
+
+}// end of DeviceReactor::enablePendingWrites
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DeviceReactor::shutDown
+//
+// Stops the reactor thread. The selector is closed by that thread as it
+// exits.
+//
+
+public void shutDown()
+{
+
+    shutDown = true;
+
+    if (selector != null) { selector.wakeup(); }
+
+}// end of DeviceReactor::shutDown
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DeviceReactor::logSevere
+//
+// Logs pMessage with level SEVERE using the Java logger.
+//
+
+void logSevere(String pMessage)
+{
+
+    Logger.getLogger(getClass().getName()).log(Level.SEVERE, pMessage);
+
+}//end of DeviceReactor::logSevere
+//-----------------------------------------------------------------------------
+
+}//end of class DeviceReactor
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -34,6 +34,8 @@ import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import model.DataTransferIntBuffer;
@@ -80,7 +82,22 @@ public class MainHandler
 
     private boolean allDevicesSimulatedOverride;
 
+    //if true, the receive side of all devices is serviced by a single reactor
+    //thread rather than by polling each device from the main loop
+    private boolean useDeviceReactor = false;
+    private DeviceReactor deviceReactor = null;
+    private Runnable dataArrivalListener = null;
+
     public boolean ready = false;
+
+    //devices may be searched for in a separate thread during startup
+    private FutureTask<HashMap<InetAddress, String>> deviceDiscovery = null;
+    private final StringBuilder discoveryLog = new StringBuilder();
+    private LogPanel discoveryLogPanel = null; //guarded by discoveryLog
+    private volatile long discoveryTime = 0; //milliseconds
+    public long getDiscoveryTime() { return(discoveryTime); }
+    private long discoveryWaitTime = 0; //milliseconds
+    public long getDiscoveryWaitTime() { return(discoveryWaitTime); }
     
     //true means monitor mode active, false means not
     private boolean monitorStatus = false;
@@ -161,7 +178,8 @@ public MainHandler(int pHandlerNum, MainController pMainController,
 public void init()
 {    
 
-    loadConfigSettings();
+    //settings are already loaded if device discovery was started early
+    if (deviceDiscovery == null) { loadConfigSettings(); }
     
     hdwVs = new HardwareVars(configFile); hdwVs.init();
     
@@ -182,6 +200,9 @@ public void init()
     ArrayList<LogPanel> logPanels = mainController.setupDeviceLogPanels(1,true);
     logPanel = logPanels.get(0); logPanel.setTitle("Device Handler");
 
+    //display any messages from device discovery already in progress
+    attachDiscoveryLog(logPanel);
+
     //set up a logging text panel so each device can display messages
     logPanels = mainController.setupDeviceLogPanels(numDevices, false);
 
@@ -193,6 +214,34 @@ public void init()
 }// end of MainHandler::init
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// MainHandler::startDeviceDiscovery
+//
+// Loads the settings and starts broadcasting to find the devices in a
+// separate thread. This may be called before init so that the search, which
+// waits on the network for at least a second, overlaps construction of the
+// display. The devices found are collected later by connectToDevices.
+//
+// Only the settings are needed for the search, not the Device objects or their
+// log panels. Messages are held until init creates the log panel.
+//
+// If this is not called, the search is performed by connectToDevices.
+//
+
+public void startDeviceDiscovery()
+{
+
+    loadConfigSettings();
+
+    deviceDiscovery = new FutureTask<>(this::discoverDevices);
+
+    Thread thread = new Thread(deviceDiscovery, "Device Discovery");
+    thread.setDaemon(true);
+    thread.start();
+
+}// end of MainHandler::startDeviceDiscovery
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // MainHandler::setEncoderHandler
 //
@@ -240,8 +289,6 @@ private void setEncoderHandler()
 public void connectToDevices()
 {
 
-    logPanel.appendTS("Searching for devices...\n\n");
-
     boolean status;
 
     status = findAndConnectToDevices();
@@ -351,9 +398,7 @@ private boolean findAndConnectToDevices()
 
     try{
 
-        HashMap<InetAddress, String>ipToDeviceTypeMap = new HashMap<>();
-
-        findDevices(ipToDeviceTypeMap);
+        HashMap<InetAddress, String>ipToDeviceTypeMap = getDiscoveredDevices();
 
         logPanel.appendTS("\nAll devices found.\n\n");
 
@@ -375,6 +420,117 @@ private boolean findAndConnectToDevices()
 }// end of MainHandler::findAndConnectToDevices
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// MainHandler::getDiscoveredDevices
+//
+// Returns a map of the IP address of each device found to the response string
+// sent by that device.
+//
+// If startDeviceDiscovery was called, waits for that search to finish and
+// returns its results. Otherwise, the search is performed now.
+//
+
+private HashMap<InetAddress, String> getDiscoveredDevices() throws IOException
+{
+
+    if (deviceDiscovery == null) { return(discoverDevices()); }
+
+    long start = System.nanoTime();
+
+    try{
+        return(deviceDiscovery.get());
+    }
+    catch(InterruptedException e){
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while finding devices.");
+    }
+    catch(ExecutionException e){
+        if (e.getCause() instanceof IOException){
+            throw (IOException)e.getCause();
+        }
+        throw new IOException(e.getCause());
+    }
+    finally{
+        discoveryWaitTime = (System.nanoTime() - start) / 1000000;
+    }
+
+}// end of MainHandler::getDiscoveredDevices
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MainHandler::discoverDevices
+//
+// Finds the devices and returns a map of the IP address of each device to the
+// response string sent by that device.
+//
+
+private HashMap<InetAddress, String> discoverDevices() throws IOException
+{
+
+    logDiscovery("Searching for devices...\n\n");
+
+    long start = System.nanoTime();
+
+    HashMap<InetAddress, String> ipToDeviceTypeMap = new HashMap<>();
+
+    try{
+        findDevices(ipToDeviceTypeMap);
+    }
+    finally{
+        discoveryTime = (System.nanoTime() - start) / 1000000;
+    }
+
+    return(ipToDeviceTypeMap);
+
+}// end of MainHandler::discoverDevices
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MainHandler::logDiscovery
+//
+// Displays pText on the log panel. If the log panel has not yet been created,
+// the text is held until it is.
+//
+// Called from the device discovery thread.
+//
+
+private void logDiscovery(String pText)
+{
+
+    synchronized(discoveryLog){
+
+        if (discoveryLogPanel != null) { discoveryLogPanel.appendTS(pText); }
+        else { discoveryLog.append(pText); }
+
+    }
+
+}// end of MainHandler::logDiscovery
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MainHandler::attachDiscoveryLog
+//
+// Displays all held device discovery messages on pLogPanel and sends all
+// further discovery messages directly to it.
+//
+
+private void attachDiscoveryLog(LogPanel pLogPanel)
+{
+
+    synchronized(discoveryLog){
+
+        if (discoveryLog.length() > 0){
+            pLogPanel.appendTS(discoveryLog.toString());
+            discoveryLog.setLength(0);
+        }
+
+        discoveryLogPanel = pLogPanel;
+
+    }
+
+}// end of MainHandler::attachDiscoveryLog
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // MainHandler::findDevices
 //
@@ -424,7 +580,7 @@ private void findDevicesAndCollectIPAddresses(SocketSet pSocketSet,
         HashMap<InetAddress, String> pIPToDeviceTypeMap) throws IOException
 {
 
-    logPanel.appendTS("Broadcasting to all devices...\n");
+    logDiscovery("Broadcasting to all devices...\n");
 
     openMulticastSocket(pSocketSet, pNetworkInterface);
 
@@ -517,7 +673,7 @@ private void collectResponses(SocketSet pSocketSet,
             //display the response string from the remote -- any device might
             //respond several times before the process is complete
 
-            logPanel.appendTS(ipAddrS + "  " + response + "\n");
+            logDiscovery(ipAddrS + "  " + response + "\n");
 
             pIPToDeviceTypeMap.put(inPacket.getAddress(), response);
 
@@ -556,16 +712,16 @@ private void collectResponses(SocketSet pSocketSet,
 public NetworkInterface findNetworkInterface() throws SocketException
 {
 
-    logPanel.appendTS("");
+    logDiscovery("");
 
     NetworkInterface iFace = null;
 
-    logPanel.appendTS("Full list of Network Interfaces:" + "\n\n");
+    logDiscovery("Full list of Network Interfaces:" + "\n\n");
     for (Enumeration<NetworkInterface> en =
           NetworkInterface.getNetworkInterfaces(); en.hasMoreElements();) {
 
         NetworkInterface intf = en.nextElement();
-        logPanel.appendTS("    " + intf.getName() + " " +
+        logDiscovery("    " + intf.getName() + " " +
                                             intf.getDisplayName() + "\n");
 
         for (Enumeration<InetAddress> enumIpAddr =
@@ -573,20 +729,20 @@ public NetworkInterface findNetworkInterface() throws SocketException
 
             String ipAddr = enumIpAddr.nextElement().toString();
 
-            logPanel.appendTS("        " + ipAddr + "\n");
+            logDiscovery("        " + ipAddr + "\n");
 
             if(ipAddr.startsWith("/169.254")){
                 iFace = intf;
-                logPanel.appendTS("^^==>> Binding to above adapter...^^\n");
-                logPanel.appendTS("====================================\n");
+                logDiscovery("^^==>> Binding to above adapter...^^\n");
+                logDiscovery("====================================\n");
             }
         }
     }
 
-    logPanel.appendTS("\n");
+    logDiscovery("\n");
 
     if(iFace == null){
-        logPanel.appendTS("WARNING: no viable adapter found, using default.\n"
+        logDiscovery("WARNING: no viable adapter found, using default.\n"
         + "System may not find devices!\n\n");
     }
 
@@ -701,6 +857,9 @@ private void assignFoundDevicesToDeviceObjects(
 //
 // Connects all Device objects to the hardware devices via ethernet.
 //
+// If useDeviceReactor is true, the devices are connected via non-blocking
+// channels which are then serviced by a single DeviceReactor thread.
+//
 // Returns true if all devices connected, false otherwise.
 // debug mks -- need to add code to return false on failure?
 //
@@ -708,6 +867,8 @@ private void assignFoundDevicesToDeviceObjects(
 public boolean connectToFoundDevices()
 {
 
+    if (useDeviceReactor) { startDeviceReactor(); }
+
     for(Device device : devices){
 
         //pass the Runnable interfaced Device object to a thread and
@@ -748,6 +909,56 @@ public boolean connectToFoundDevices()
 }//end of MainHandler::connectToFoundDevices
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// MainHandler:setDataArrivalListener
+//
+// Sets pListener to be run each time new data arrives from the devices. Only
+// used when the devices are serviced by a DeviceReactor -- otherwise data is
+// only handled when collectData is called.
+//
+// Must be called before connectToFoundDevices.
+//
+
+public void setDataArrivalListener(Runnable pListener)
+{
+
+    dataArrivalListener = pListener;
+
+}//end of MainHandler::setDataArrivalListener
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MainHandler:startDeviceReactor
+//
+// Creates and starts the DeviceReactor thread and assigns it to all devices so
+// they will connect via channels which it can service.
+//
+// If the reactor cannot be created, the devices are left to use the socket
+// streams polled by the main loop.
+//
+
+private void startDeviceReactor()
+{
+
+    deviceReactor = new DeviceReactor();
+
+    try{ deviceReactor.init(); }
+    catch(IOException e){
+        logSevere(e.getMessage() + " - Error: 790");
+        deviceReactor = null;
+        return;
+    }
+
+    deviceReactor.setDataArrivalListener(dataArrivalListener);
+
+    for(Device device : devices){ device.setReactor(deviceReactor); }
+
+    Thread thread = new Thread(deviceReactor, "Device Reactor");
+    thread.start();
+
+}//end of MainHandler::startDeviceReactor
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // MainHandler::setupSocketAndDatagram
 //
@@ -1072,7 +1283,9 @@ boolean handleControlForInspectMode()
 // Transferd data collected from the hardware to the buffers designated for 
 // screen display controls such as traces, numeric displays, graphs, etc.
 //
-// Currently, this function is called from another class MainController.
+// Currently, this function is called from another class MainController,
+// either from the GUI timer or from the acquisition thread depending on its
+// settings. It must only ever be called from one of those threads.
 //
 // @param PeakData pPeakData
 // @param PeakSnapshotData pPeakSnapshotData
@@ -2097,6 +2310,8 @@ public void shutDown()
     //tell all devices to shut down
     for (Device d : devices) { d.shutDown(); }
 
+    if (deviceReactor != null) { deviceReactor.shutDown(); }
+
 }//end of MainHandler::shutDown
 //-----------------------------------------------------------------------------
 
@@ -2122,6 +2337,9 @@ private void loadConfigSettings()
     sharedSettings.timerDrivenTrackingInCalMode = configFile.readBoolean(
                        section, "timer driven tracking in cal mode", false);
 
+    useDeviceReactor = configFile.readBoolean(
+                    section, "use single reactor thread for device io", false);
+
     numDevices = configFile.readInt(section, "number of devices", 0);
     maxNumChannels = configFile.readInt(section, "max number of channels", 10);
 
@@ -30,6 +30,9 @@ public class MultiIODevice extends Device
 
     byte[] runDataPacket;
     byte[] inspectPacket;
+    //reused for the status and AD values packets -- sized for the largest
+    byte[] statusPacket;
+    static final int STATUS_PACKET_BUFFER_SIZE = 111;
 
     static final int AD_MAX_VALUE = 255;
     static final int AD_MIN_VALUE = 0;
@@ -127,6 +130,7 @@ public void init()
 
     runDataPacket = new byte[runDataPacketSize];
     inspectPacket = new byte[inspectPacketSize];
+    statusPacket = new byte[STATUS_PACKET_BUFFER_SIZE];
     
 }// end of MultiIODevice::init
 //-----------------------------------------------------------------------------
@@ -676,7 +680,7 @@ int handleAllLastADValuesPacket()
 
     int numBytesInPkt = 26; //includes Rabbit checksum byte
 
-    byte[] buffer = new byte[numBytesInPkt];
+    byte[] buffer = statusPacket;
 
     int result = readBytesAndVerify(buffer, numBytesInPkt, pktID);
     if (result != numBytesInPkt){ return(result); }
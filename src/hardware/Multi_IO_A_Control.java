@@ -398,7 +398,7 @@ public void requestAllEncoderValues()
     //set all values to max so it can be detected when they are set by
     //the code which processes the return packet - processAllEncoderValuesPacket
 
-    encoderValues.setAllToMaxValue();
+    synchronized(encoderValues){ encoderValues.setAllToMaxValue(); }
 
     //request packet; returned packet handled by processAllEncoderValuesPacket
     sendPacket(GET_ALL_ENCODER_VALUES_CMD);
@@ -411,6 +411,10 @@ public void requestAllEncoderValues()
 //
 // Parses and stores data from a GET_ALL_ENCODER_VALUES_CMD packet.
 //
+// The packet may be handled on the DeviceReactor thread, so the values are
+// stored while holding the lock of the encoderValues object. See
+// getEncoderValuesObject.
+//
 // Returns number of bytes retrieved from the socket.
 //
 
@@ -418,13 +422,29 @@ public void requestAllEncoderValues()
 int handleAllEncoderValuesPacket()
 {
 
-    setWaitingForRemoteResponse(false);
-
     int result;
     result = readBytesAndVerify(allEncoderValuesBuf,
                                     ALL_ENCODERS_PACKET_SIZE, pktID);
+    responseReceived();
     if (result != ALL_ENCODERS_PACKET_SIZE){ return(result); }
 
+    synchronized(encoderValues){ storeAllEncoderValues(); }
+
+    return(ALL_ENCODERS_PACKET_SIZE);
+
+}//end of Multi_IO_A_Control::handleAllEncoderValuesPacket
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Multi_IO_A_Control::storeAllEncoderValues
+//
+// Stores the values from the GET_ALL_ENCODER_VALUES_CMD packet in
+// allEncoderValuesBuf in the encoderValues object.
+//
+
+private void storeAllEncoderValues()
+{
+
     int x = 0;
 
     //wip mks -- shrink this by calling function to convert bytes
@@ -461,9 +481,7 @@ int handleAllEncoderValuesPacket()
                         allEncoderValuesBuf[x++], allEncoderValuesBuf[x++],
                         allEncoderValuesBuf[x++], allEncoderValuesBuf[x++]);
 
-    return(ALL_ENCODERS_PACKET_SIZE);
-
-}//end of Multi_IO_A_Control::handleAllEncoderValuesPacket
+}//end of Multi_IO_A_Control::storeAllEncoderValues
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
@@ -485,6 +503,9 @@ public void setEncoderValuesObject(EncoderValues pEncoderValues)
 //
 // Returns an object containing the encoder values retrieved from the remote.
 //
+// The values may be stored by the DeviceReactor thread, so the caller must
+// hold the lock of the returned object while reading them.
+//
 
 public EncoderValues getEncoderValuesObject()
 {
@@ -22,7 +22,6 @@ import model.DataTransferIntMultiDimBuffer;
 import model.DataTransferSnapshotBuffer;
 import model.IniFile;
 import model.SharedSettings;
-import toolkit.MKSInteger;
 import view.LogPanel;
 
 
@@ -39,7 +38,8 @@ public class PeakDevice extends MultiIODevice
 
     private int snapshotPeakType;
 
-    PeakSnapshotBuffer peakSnapshotBuffer;
+    PeakSnapshotBuffer[] peakSnapshotBuffers =
+                                new PeakSnapshotBuffer[DeviceData.NUM_BANKS];
     SampleMetaData snapshotMeta = new SampleMetaData(0);
     @Override public SampleMetaData getSnapshotMeta(){ return(snapshotMeta); }
     @Override public void setSnapshotDataBuffer(DataTransferSnapshotBuffer pV)
@@ -126,7 +126,8 @@ void initAfterConnect(){
 //
 // Gets the device data (peaks, snapshot, and map) and resets the values.
 //
-// This function makes use of DeviceData so that actions are synchronized.
+// This function makes use of DeviceData so that the peaks, snapshot, and map
+// are retrieved together.
 //
 
 @Override
@@ -142,34 +143,14 @@ public boolean getDeviceDataAndReset(PeakData pPeakData,
 }// end of PeakDevice::getDeviceDataAndReset
 //-----------------------------------------------------------------------------
 
-//-----------------------------------------------------------------------------
-// PeakDevice::getPeakForChannelAndReset
-//
-// Retrieves the current value of the peak for channel pChannel and resets
-// the peak to the reset value.
-//
-// This class returns an object as the peak may be of various data types.
-//
-
-@Override
-public void getPeakForChannelAndReset(int pChannel, MKSInteger pPeakValue)
-{
-
-    super.getPeakForChannelAndReset(pChannel, pPeakValue);
-
-    channels[pChannel].getPeakAndReset(pPeakValue);
-
-}// end of PeakDevice::getPeakForChannelAndReset
-//-----------------------------------------------------------------------------
-
 //-----------------------------------------------------------------------------
 // PeakDevice::getPeakDataAndReset
 //
-// Retrieves the current value of the peak for channel pChannel along with
-// all relevant info for the channel such as the chart & trace to which it is
-// attached.
+// Stores the info for channel pChannel such as the chart & trace to which it
+// is attached in pPeakData.
 //
-// Resets the peak to the reset value.
+// The peaks themselves are caught in deviceData and retrieved with
+// getDeviceDataAndReset, so pPeakData.peakArray is not changed.
 //
 
 @Override
@@ -178,7 +159,8 @@ public void getPeakDataAndReset(int pChannel, PeakData pPeakData)
 
     super.getPeakDataAndReset(pChannel, pPeakData);
 
-    channels[pChannel].getPeakDataAndReset(pPeakData);
+    //channel/buffer/trace etc. info
+    pPeakData.metaArray[pChannel] = channels[pChannel].getMetaData();
 
 }// end of PeakDevice::getPeakDataAndReset
 //-----------------------------------------------------------------------------
@@ -186,9 +168,9 @@ public void getPeakDataAndReset(int pChannel, PeakData pPeakData)
 //-----------------------------------------------------------------------------
 // PeakDevice::getPeakSnapshotDataAndReset
 //
-// Retrieves the current values of the snapshot data peaks along with all
-// relevant info for the channel such as the chart & graph to which it is
-// attached.
+// Retrieves the current values of the snapshot data peaks in bank pBank along
+// with all relevant info for the channel such as the chart & graph to which
+// it is attached.
 //
 // All data in the pPeakMapData.metaArray is set to the snapshot system number
 // of this device so the data can be identified as necessary.
@@ -200,16 +182,18 @@ public void getPeakDataAndReset(int pChannel, PeakData pPeakData)
 //
 
 @Override
-public boolean getPeakSnapshotDataAndReset(PeakSnapshotData pPeakSnapData)
+public boolean getPeakSnapshotDataAndReset(int pBank,
+                                            PeakSnapshotData pPeakSnapData)
 {
 
-    if(peakSnapshotBuffer == null) { return(false); }
+    PeakSnapshotBuffer buf = peakSnapshotBuffers[pBank];
+
+    if(buf == null) { return(false); }
 
     pPeakSnapData.meta = snapshotMeta; //channel/buffer/graph etc. info
-    pPeakSnapData.peak = peakSnapshotBuffer.peak;
+    pPeakSnapData.peak = buf.peak;
 
-    boolean peakUpdated
-                = peakSnapshotBuffer.getPeakAndReset(pPeakSnapData.peakArray);
+    boolean peakUpdated = buf.getPeakAndReset(pPeakSnapData.peakArray);
 
     return(peakUpdated);
 
@@ -219,8 +203,9 @@ public boolean getPeakSnapshotDataAndReset(PeakSnapshotData pPeakSnapData)
 //-----------------------------------------------------------------------------
 // PeakDevice::getPeakMapDataAndReset
 //
-// Retrieves the current values of the map data peaks along with all relevant
-// info for the channel such as the chart & graph to which it is attached.
+// Retrieves the current values of the map data peaks in bank pBank along with
+// all relevant info for the channel such as the chart & graph to which it is
+// attached.
 //
 // All data in the pPeakMapData.metaArray is set to the map system number of
 // this device so the data can be identified as necessary.
@@ -232,14 +217,16 @@ public boolean getPeakSnapshotDataAndReset(PeakSnapshotData pPeakSnapData)
 //
 
 @Override
-public boolean getPeakMapDataAndReset(PeakMapData pPeakMapData)
+public boolean getPeakMapDataAndReset(int pBank, PeakMapData pPeakMapData)
 {
 
-    if(peakMapBuffer == null) { return(false); }
+    PeakArrayBufferInt buf = peakMapBuffers[pBank];
+
+    if(buf == null) { return(false); }
 
     pPeakMapData.meta = mapMeta; //channel/buffer/graph etc. info
 
-    boolean peakUpdated = peakMapBuffer.getPeakAndReset(pPeakMapData.peakArray);
+    boolean peakUpdated = buf.getPeakAndReset(pPeakMapData.peakArray);
 
     pPeakMapData.setMetaArray(mapMeta.system);
 
@@ -494,6 +481,8 @@ public void initAfterLoadingConfig()
 
     channelPeaks = new int[channels.length];
 
+    deviceData.setUpChannelPeaks();
+
     mapMeta.numClockPositions = numClockPositions;
 
 }// end of PeakDevice::initAfterLoadingConfig
@@ -586,7 +575,7 @@ int handleAllStatusPacket()
 
     int numBytesInPkt = 111; //includes Rabbit checksum byte
 
-    byte[] buffer = new byte[numBytesInPkt];
+    byte[] buffer = statusPacket;
 
     result = readBytesAndVerify(buffer, numBytesInPkt, pktID);
     if (result != numBytesInPkt){ return(result); }
@@ -696,6 +685,10 @@ int handleAllStatusPacket()
 // Should be called periodically to allow collection of data buffered in the
 // source.
 //
+// If the device is serviced by a DeviceReactor, the run data is handled by
+// processReceivedPackets as it arrives and this method only sends a request if
+// one is not already outstanding.
+//
 
 @Override
 public void collectData()
@@ -703,6 +696,46 @@ public void collectData()
 
     super.collectData();
 
+    if (rcvChannel == null) { extractRunData(); }
+
+    requestNextRunDataPacket();
+
+}// end of PeakDevice::collectData
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PeakDevice::processReceivedPackets
+//
+// Called by the DeviceReactor thread after packets have been processed from
+// the receive channel. Any new run data is stored in deviceData and the next
+// packet is requested immediately rather than on the next pass of the main
+// loop.
+//
+// No request is sent while a run data packet is only partly received as the
+// response is still outstanding -- see Device::responseReceived.
+//
+
+@Override
+void processReceivedPackets()
+{
+
+    extractRunData();
+
+    requestNextRunDataPacket();
+
+}// end of PeakDevice::processReceivedPackets
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PeakDevice::extractRunData
+//
+// If a new run data packet has been received, extracts the peaks, snapshot,
+// and map data from it and stores them in deviceData.
+//
+
+private void extractRunData()
+{
+
     boolean processPacket = getRunPacketFromDevice(runDataPacket);
 
     if (processPacket){
@@ -735,7 +768,19 @@ public void collectData()
 
     }
 
-    //send a request to the device for the next packet
+}// end of PeakDevice::extractRunData
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PeakDevice::requestNextRunDataPacket
+//
+// Sends a request to the device for the next run data packet if the current
+// mode requires run data.
+//
+
+private void requestNextRunDataPacket()
+{
+
     if (sharedSettings.opMode == SharedSettings.SCAN_MODE
         || sharedSettings.opMode == SharedSettings.INSPECT_MODE
         || sharedSettings.opMode == SharedSettings.INSPECT_WITH_TIMER_TRACKING_MODE) 
@@ -743,7 +788,7 @@ public void collectData()
         requestRunDataPacket();
     }
 
-}// end of PeakDevice::collectData
+}// end of PeakDevice::requestNextRunDataPacket
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
@@ -975,16 +1020,16 @@ public boolean updateChannelParameters(String pParamType, String pChannelNum,
 //-----------------------------------------------------------------------------
 // PeakDevice::catchMapPeak
 //
-// Catches the passed in clock map data.
+// Catches the passed in clock map data in the peak buffer for bank pBank.
 //
 
 @Override
-public void catchMapPeak(int[] pData)
+public void catchMapPeak(int pBank, int[] pData)
 {
 
-    super.catchMapPeak(pData);
+    super.catchMapPeak(pBank, pData);
 
-     peakMapBuffer.catchPeak(pData);
+    peakMapBuffers[pBank].catchPeak(pData);
 
 };// end of PeakDevice::catchMapPeak
 //-----------------------------------------------------------------------------
@@ -992,16 +1037,16 @@ public void catchMapPeak(int[] pData)
 //-----------------------------------------------------------------------------
 // PeakDevice::catchSnapshotPeak
 //
-// Catches the passed in snapshot data.
+// Catches the passed in snapshot data in the peak buffer for bank pBank.
 //
 
 @Override
-public void catchSnapshotPeak(int pPeak, int[] pData)
+public void catchSnapshotPeak(int pBank, int pPeak, int[] pData)
 {
 
-    super.catchSnapshotPeak(pPeak, pData);
+    super.catchSnapshotPeak(pBank, pPeak, pData);
 
-    peakSnapshotBuffer.catchPeak(pPeak, pData);
+    peakSnapshotBuffers[pBank].catchPeak(pPeak, pData);
 
 }// end of PeakDevice::catchSnapshotPeak
 //-----------------------------------------------------------------------------
@@ -1012,30 +1057,40 @@ public void catchSnapshotPeak(int pPeak, int[] pData)
 // Creates and sets up the appropriate PeakBuffer subclass to capture the type
 // of peak specified in the config file, i.e. highest value, lowest value, etc.
 //
+// One buffer is created for each DeviceData bank.
+//
 
 public void setUpPeakSnapshotBuffer()
 {
 
-    switch (snapshotPeakType){
+    for (int b=0; b<DeviceData.NUM_BANKS; b++){
+
+        PeakSnapshotBuffer buf;
+
+        switch (snapshotPeakType){
 
-        case CATCH_HIGHEST:
-            peakSnapshotBuffer = new HighPeakSnapshotBuffer(0, 128); //WIP HSS// size needs to be ini
-            peakSnapshotBuffer.setResetValues(Integer.MIN_VALUE, 0);
-            break;
+            case CATCH_HIGHEST:
+                buf = new HighPeakSnapshotBuffer(0, 128); //WIP HSS// size needs to be ini
+                buf.setResetValues(Integer.MIN_VALUE, 0);
+                break;
 
-        case CATCH_LOWEST:
-            peakSnapshotBuffer = new LowPeakSnapshotBuffer(0, 128); //WIP HSS// size needs to be ini
-            peakSnapshotBuffer.setResetValues(Integer.MAX_VALUE, 0);
-            break;
+            case CATCH_LOWEST:
+                buf = new LowPeakSnapshotBuffer(0, 128); //WIP HSS// size needs to be ini
+                buf.setResetValues(Integer.MAX_VALUE, 0);
+                break;
 
-        default:
-            peakSnapshotBuffer = new HighPeakSnapshotBuffer(0, 128); //WIP HSS// size needs to be ini
-            peakSnapshotBuffer.setResetValues(Integer.MIN_VALUE, 0);
-            break;
+            default:
+                buf = new HighPeakSnapshotBuffer(0, 128); //WIP HSS// size needs to be ini
+                buf.setResetValues(Integer.MIN_VALUE, 0);
+                break;
+
+        }
+
+        buf.reset();
+
+        peakSnapshotBuffers[b] = buf;
 
     }
-    
-    peakSnapshotBuffer.reset();
 
 }// end of PeakDevice::setUpPeakSnapshotBuffer
 //-----------------------------------------------------------------------------
@@ -1047,7 +1102,8 @@ public void setUpPeakSnapshotBuffer()
 // the type of peak specified in the config file, i.e. highest value, lowest
 // value, etc.
 //
-// If the number of clock positions is zero, the buffers are not created.
+// One buffer is created for each DeviceData bank. If the number of clock
+// positions is zero, the buffers are not created.
 //
 
 public void setUpPeakMapBuffer()
@@ -1055,26 +1111,34 @@ public void setUpPeakMapBuffer()
 
     if (numClockPositions == 0) { return; }
 
-    switch (mapPeakType){
+    for (int b=0; b<DeviceData.NUM_BANKS; b++){
+
+        PeakArrayBufferInt buf;
 
-        case CATCH_HIGHEST:
-            peakMapBuffer = new HighPeakArrayBufferInt(0, numClockPositions);
-            peakMapBuffer.setResetValue(Integer.MIN_VALUE);
-            break;
+        switch (mapPeakType){
 
-        case CATCH_LOWEST:
-            peakMapBuffer = new HighPeakArrayBufferInt(0, numClockPositions);
-            peakMapBuffer.setResetValue(Integer.MAX_VALUE);
-            break;
+            case CATCH_HIGHEST:
+                buf = new HighPeakArrayBufferInt(0, numClockPositions);
+                buf.setResetValue(Integer.MIN_VALUE);
+                break;
 
-        default:
-            peakMapBuffer = new HighPeakArrayBufferInt(0, numClockPositions);
-            peakMapBuffer.setResetValue(Integer.MIN_VALUE);
-            break;
+            case CATCH_LOWEST:
+                buf = new HighPeakArrayBufferInt(0, numClockPositions);
+                buf.setResetValue(Integer.MAX_VALUE);
+                break;
 
-    }
+            default:
+                buf = new HighPeakArrayBufferInt(0, numClockPositions);
+                buf.setResetValue(Integer.MIN_VALUE);
+                break;
 
-    peakMapBuffer.reset();
+        }
+
+        buf.reset();
+
+        peakMapBuffers[b] = buf;
+
+    }
 
 }// end of PeakDevice::setUpPeakMapBuffer
 //-----------------------------------------------------------------------------
@@ -30,6 +30,8 @@ import java.io.PrintWriter;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -1056,6 +1058,36 @@ void sendPacket(byte pCommand, byte... pBytes)
 }//end of Simulator::sendPacketViaSocket
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Simulator::openReplyChannel
+//
+// Returns a non-blocking channel from which the calling object can read all
+// replies sent by this simulator from now on. This allows a simulated device
+// to be serviced by a Selector in the same way as a SocketChannel connected
+// to real hardware. Piped streams cannot be used with a Selector.
+//
+// The greeting message has already been sent via the stream returned by
+// getInputStream and should be read from that stream before calling this
+// method.
+//
+
+public Pipe.SourceChannel openReplyChannel() throws IOException
+{
+
+    Pipe pipe = Pipe.open();
+
+    pipe.source().configureBlocking(false);
+
+    //all replies are sent via byteOut, so redirecting it to the pipe moves
+    //all further traffic to the channel
+
+    byteOut = new DataOutputStream(Channels.newOutputStream(pipe.sink()));
+
+    return(pipe.source());
+
+}//end of Simulator::openReplyChannel
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Simulator::getInputStream()
 //
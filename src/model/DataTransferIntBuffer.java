@@ -66,6 +66,12 @@ private boolean trailBuffer = false;
 public boolean isTrailBuffer() { return trailBuffer; }
 public void setTrailBuffer(boolean pState) { trailBuffer = pState; }
 
+//records the data retrieved by the display to the piece journal -- null if
+//the buffer is not recorded
+SegmentRecorder.Source recorder = null;
+public void setRecorder(SegmentRecorder.Source pV) { recorder = pV; }
+public SegmentRecorder.Source getRecorder() { return(recorder); }
+
 int bufLength;
 int dataBuf[];
 
@@ -151,6 +157,8 @@ synchronized public void reset()
     putPointer = 0;
     getPointer = 0;
 
+    if (recorder != null) { recorder.clearLast(); }
+
 }// end of DataTransferIntBuffer::reset
 //-----------------------------------------------------------------------------
 
@@ -381,6 +389,100 @@ synchronized public int getDataChange(DataSetInt pDataSet)
 }// end of DataTransferIntBuffer::getDataChange
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// DataTransferIntBuffer::drainReady
+//
+// Retrieves a run of up to pMax data changes in a single call, copying the
+// data and flags into pDst and pDstFlags starting at index 0. This is the
+// bulk equivalent of calling getDataChange repeatedly and allows the consumer
+// to lock the buffer once per frame rather than once per data point.
+//
+// A run contains either all added data or all erased data, never both. As
+// with getDataChange, erased data takes precedence over ready data. Erased
+// data is returned in the order it is passed, from newest to oldest, which is
+// the same order as repeated calls to getDataChange would return it.
+//
+// Returns:
+//
+// n > 0 if n data points have been added and getPointer incremented by n
+// 0 if no data has been added or removed
+// n < 0 if -n data points have been removed and getPointer decremented by -n
+//
+// If the buffer is recorded, the consumer passes the data points to the
+// recorder after flagging any threshold violations -- see Trace::updateTrace.
+//
+
+synchronized public int drainReady(int[] pDst, int[] pDstFlags, int pMax)
+{
+
+    if (pMax > pDst.length) { pMax = pDst.length; }
+    if (pMax > pDstFlags.length) { pMax = pDstFlags.length; }
+
+    if ((flags[getPointer] & DataFlags.DATA_ERASED) != 0){
+        return(-drainErased(pDst, pDstFlags, pMax));
+    }
+
+    //count the run of ready points which are not also marked erased
+
+    int count = 0, p = getPointer;
+
+    while(count < pMax && count < bufLength
+        && (flags[p] & (DataFlags.DATA_READY | DataFlags.DATA_ERASED))
+                                                    == DataFlags.DATA_READY){
+        count++;
+        p++; if(p >= bufLength) p = 0;
+    }
+
+    if (count == 0) { return(0); }
+
+    //copy in up to two blocks in case the run wraps past the end of the buffer
+
+    int first = Math.min(count, bufLength - getPointer);
+    System.arraycopy(dataBuf, getPointer, pDst, 0, first);
+    System.arraycopy(flags, getPointer, pDstFlags, 0, first);
+
+    if (first < count){
+        System.arraycopy(dataBuf, 0, pDst, first, count - first);
+        System.arraycopy(flags, 0, pDstFlags, first, count - first);
+    }
+
+    getPointer = p;
+
+    return(count);
+
+}// end of DataTransferIntBuffer::drainReady
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DataTransferIntBuffer::drainErased
+//
+// Retrieves the run of up to pMax erased data points starting at getPointer
+// and moving backwards, clearing the DATA_ERASED flag of each. Returns the
+// number of points retrieved.
+//
+// This method is not synchronized as it is expected to be called from a
+// synchronized method in this object.
+//
+
+private int drainErased(int[] pDst, int[] pDstFlags, int pMax)
+{
+
+    int count = 0;
+
+    while(count < pMax && (flags[getPointer] & DataFlags.DATA_ERASED) != 0){
+        flags[getPointer] &= ~DataFlags.DATA_ERASED; //remove ERASED flag
+        pDst[count] = dataBuf[getPointer];
+        pDstFlags[count] = flags[getPointer];
+        count++;
+        getPointer--;
+        if(getPointer < 0) getPointer = bufLength-1;
+    }
+
+    return(count);
+
+}// end of DataTransferIntBuffer::drainErased
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // DataTransferIntBuffer::incPutPtrAndSetReadyAfterDataFill
 //
@@ -0,0 +1,634 @@
+/******************************************************************************
+* Title: DataTransferIntBufferSPSC.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class is a lock-free version of DataTransferIntBuffer for use when
+* exactly one thread stores data (the producer) and exactly one thread
+* retrieves data (the consumer). It honors the same contract as the parent
+* class and can be used anywhere a DataTransferIntBuffer is expected.
+*
+* None of the methods are synchronized. Instead, the flags for each slot are
+* held in an AtomicIntegerArray. The producer always writes the data value
+* before it sets the DATA_READY or DATA_ERASED flag with a volatile write, so
+* when the consumer sees either flag via a volatile read it is guaranteed to
+* also see the data stored in that slot (release/acquire publication).
+*
+* Occasional flag changes made by other threads, such as segment separators
+* and vertical bars, are OR'ed into the flags atomically so they never clobber
+* flags being set or cleared by the producer or consumer.
+*
+* The producer also increments the volatile changeCount every time it
+* publishes a slot as ready or erased. The consumer remembers the count seen
+* the last time it found nothing to do -- if the count has not changed since,
+* getDataChange returns immediately without touching the data arrays.
+*
+* The put pointer is only moved by the producer and the get pointer is only
+* moved by the consumer. The put pointer is volatile so that other threads
+* marking segment starts/ends see the current insertion point.
+*
+* The buffer is usually reset by the consumer (the GUI thread) while the
+* producer may still be storing data, so reset does not clear the slots
+* itself. It resets the get pointer and posts a request which the producer
+* carries out on its next call -- until then the consumer sees no data.
+* Segment separators marked while the request is pending are held and stored
+* in the first slot when the producer completes the reset.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+package model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+//-----------------------------------------------------------------------------
+// class DataTransferIntBufferSPSC
+//
+
+public class DataTransferIntBufferSPSC extends DataTransferIntBuffer{
+
+private AtomicIntegerArray slotFlags;
+
+private volatile int putPtr;
+private volatile int changeCount = 0;
+
+//set by reset, cleared by the producer once it has cleared the slots
+private volatile boolean resetRequested = false;
+//separator flags marked while a reset is pending
+private final AtomicInteger flagsAfterReset = new AtomicInteger(0);
+
+//only accessed by the consumer thread
+private int getPtr;
+private int idleChangeCount = -1;
+
+private int dataResetValue;
+
+//-----------------------------------------------------------------------------
+// DataTransferIntBufferSPSC::DataTransferIntBufferSPSC (constructor)
+//
+// Parameter pBufLength specifies the size of the data buffer array.
+// Parameter pPeakType specifies DataFlags.CATCH_HIGHEST or CATCH_LOWEST.
+//
+
+public DataTransferIntBufferSPSC(int pBufLength, int pPeakType)
+{
+
+    super(pBufLength, pPeakType);
+
+}//end of DataTransferIntBufferSPSC::DataTransferIntBufferSPSC (constr)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DataTransferIntBufferSPSC::init
+//
+// Creates the data buffer of size pBufLength and prepares for use.
+//
+
+@Override
+public void init(int pDefaultDataValue)
+{
+
+    defaultData = pDefaultDataValue;
+
+    if (peakType == DataFlags.CATCH_HIGHEST){
+        dataResetValue = Integer.MIN_VALUE;
+    }
+    else{
+        dataResetValue = Integer.MAX_VALUE;
+    }
+
+    dataBuf = new int[bufLength];
+    slotFlags = new AtomicIntegerArray(bufLength);
+
+}// end of DataTransferIntBufferSPSC::init
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DataTransferIntBufferSPSC::setDefaultData
+//
+
+@Override
+public void setDefaultData(int pValue){ defaultData = pValue; }
+
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DataTransferIntBufferSPSC::reset
+//
+// Resets all data in the buffer and the put/get pointers to default values.
+//
+// Called only by the consumer thread. The get pointer is reset here, but the
+// data, flags, and put pointer belong to the producer and are reset by it on
+// its next call -- see completeReset. The consumer retrieves no data until
+// then.
+//
+
+@Override
+public void reset()
+{
+
+    getPtr = 0; idleChangeCount = -1;
+
+    resetRequested = true;
+
+    if (recorder != null) { recorder.clearLast(); }
+
+}// end of DataTransferIntBufferSPSC::reset
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DataTransferIntBufferSPSC::completeReset
+//
+// Carries out a reset requested by the consumer. Called only by the producer
+// thread at the start of each method which stores data or moves the put
+// pointer.
+//
+// Any separator flags marked while the reset was pending are stored in the
+// first slot. The request is cleared before the held flags are taken so that
+// a flag marked at the same time is either taken here or stored by the
+// marking thread itself -- see markAtInsertionPoint.
+//
+
+private void completeReset()
+{
+
+    for(int i=0; i<bufLength; i++){
+        dataBuf[i] = dataResetValue;
+        slotFlags.set(i, DataFlags.FLAG_RESET_VALUE);
+    }
+
+    putPtr = 0;
+
+    resetRequested = false;
+
+    int f = flagsAfterReset.getAndSet(0);
+    if (f != 0) { setSlotFlags(0, f); }
+
+    changeCount++;
+
+}// end of DataTransferIntBufferSPSC::completeReset
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DataTransferIntBufferSPSC::putData
+//
+// Stores pData at location pointed by putPtr. See notes for the method in
+// the parent class. Called only by the producer thread.
+//
+
+@Override
+public boolean putData(int pData)
+{
+
+    if (resetRequested) { completeReset(); }
+
+    int p = putPtr;
+
+    if ((slotFlags.get(p) & DataFlags.DATA_VALID) == 0){
+
+        //no data previously stored, so store new data
+        dataBuf[p] = pData;
+        setSlotFlags(p, DataFlags.DATA_VALID);
+        return(true);
+
+    }
+
+    //only store if new data is a new peak
+    if(peakType == DataFlags.CATCH_HIGHEST){
+        if (pData > dataBuf[p]){ dataBuf[p] = pData; return(true); }
+    }
+    else{
+        if (pData < dataBuf[p]){ dataBuf[p] = pData; return(true); }
+    }
+
+    return(false);
+
+}// end of DataTransferIntBufferSPSC::putData
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DataTransferIntBufferSPSC::storeThresholdAtInsertionPoint
+//
+// Stores the number of the threshold violated by the datapoint at the current
+// insertion point. See notes for the method in the parent class.
+//
+
+@Override
+public void storeThresholdAtInsertionPoint(int pThreshold)
+{
+
+    //shift up by value of 2 and mask top bits to protect against invalid value
+    int t = ((pThreshold + 2) & DataFlags.TRIM_THRESHOLD_MASK) << 9;
+
+    if (resetRequested) { completeReset(); }
+
+    int p = putPtr;
+
+    int prev, next;
+    do{
+        prev = slotFlags.get(p);
+        next = (prev & DataFlags.CLEAR_THRESHOLD_MASK) + t;
+    }while(!slotFlags.compareAndSet(p, prev, next));
+
+}//end of DataTransferIntBufferSPSC::storeThresholdAtInsertionPoint
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DataTransferIntBufferSPSC::markSegmentStart
+//
+// Sets the segment start separator flag at the current insertion point.
+//
+
+@Override
+public void markSegmentStart()
+{
+
+    markAtInsertionPoint(DataFlags.SEGMENT_START_SEPARATOR);
+
+}//end of DataTransferIntBufferSPSC::markSegmentStart
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DataTransferIntBufferSPSC::markSegmentEnd
+//
+// Sets the segment end separator flag at the current insertion point.
+//
+
+@Override
+public void markSegmentEnd()
+{
+
+    markAtInsertionPoint(DataFlags.SEGMENT_END_SEPARATOR);
+
+}//end of DataTransferIntBufferSPSC::markSegmentEnd
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DataTransferIntBufferSPSC::markAtInsertionPoint
+//
+// OR's pFlags into the flags at the put pointer. May be called by any thread.
+//
+// If a reset is pending, the flags are held for the producer to store in the
+// first slot when it completes the reset. If the reset was completed before
+// the flags could be taken by the producer, they are stored here instead.
+//
+
+private void markAtInsertionPoint(int pFlags)
+{
+
+    if (!resetRequested) { setSlotFlags(putPtr, pFlags); return; }
+
+    int prev;
+    do{ prev = flagsAfterReset.get(); }
+    while(!flagsAfterReset.compareAndSet(prev, prev | pFlags));
+
+    if (resetRequested) { return; }
+
+    int f = flagsAfterReset.getAndSet(0);
+    if (f != 0) { setSlotFlags(putPtr, f); }
+
+}//end of DataTransferIntBufferSPSC::markAtInsertionPoint
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DataTransferIntBufferSPSC::setFlags
+//
+// OR's pFlags with the flags at position pIndex.
+//
+
+@Override
+public void setFlags(int pIndex, int pFlags)
+{
+
+    setSlotFlags(pIndex, pFlags);
+
+}// end of DataTransferIntBufferSPSC::setFlags
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DataTransferIntBufferSPSC::setFlagsAtCurrentInsertionPoint
+//
+// OR's pFlags with the flags at the same position used by the parent class.
+//
+
+@Override
+public void setFlagsAtCurrentInsertionPoint(int pFlags)
+{
+
+    setSlotFlags(getPtr, pFlags);
+
+}// end of DataTransferIntBufferSPSC::setFlagsAtCurrentInsertionPoint
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DataTransferIntBufferSPSC::getData
+//
+// Retrieves the data and flags at the get pointer. Returns true if the data
+// is valid. Called only by the consumer thread.
+//
+
+@Override
+public boolean getData(DataSetInt pDataSet)
+{
+
+    if (resetRequested){
+        pDataSet.d = dataResetValue;
+        pDataSet.flags = DataFlags.FLAG_RESET_VALUE;
+        return(false);
+    }
+
+    int f = slotFlags.get(getPtr);
+
+    pDataSet.d = dataBuf[getPtr];
+    pDataSet.flags = f;
+
+    return( (f & DataFlags.DATA_VALID) != 0 );
+
+}// end of DataTransferIntBufferSPSC::getData
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DataTransferIntBufferSPSC::getDataChange
+//
+// Same contract as the parent class method. Called only by the consumer
+// thread.
+//
+// Returns:
+//
+// +1 if data has been added and the get pointer incremented
+// 0 if no data has been added or removed
+// -1 if data has been removed and the get pointer decremented
+//
+
+@Override
+public int getDataChange(DataSetInt pDataSet)
+{
+
+    //read the count before the flags so that any publication made after this
+    //point will be seen as a change on the next call
+    int count = changeCount;
+
+    if (count == idleChangeCount || resetRequested) { return(0); }
+
+    int f = slotFlags.get(getPtr);
+
+    //erased takes precedence over ready -- see notes in parent class
+
+    if ((f & DataFlags.DATA_ERASED) != 0){
+        f = clearSlotFlags(getPtr, DataFlags.DATA_ERASED);
+        pDataSet.d = dataBuf[getPtr];
+        pDataSet.flags = f & DataFlags.CLEAR_DATA_ERASED;
+        getPtr--;
+        if(getPtr < 0) getPtr = bufLength-1;
+        return(-1);
+    }
+
+    if ((f & DataFlags.DATA_READY) != 0){
+        pDataSet.d = dataBuf[getPtr];
+        pDataSet.flags = f;
+        getPtr++;
+        if(getPtr >= bufLength) getPtr = 0;
+        return(1);
+    }
+
+    idleChangeCount = count;
+
+    return(0); //no data newly ready or removed
+
+}// end of DataTransferIntBufferSPSC::getDataChange
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DataTransferIntBufferSPSC::drainReady
+//
+// Same contract as the parent class method. Called only by the consumer
+// thread.
+//
+// Each slot's flags must be read atomically to acquire its data, so the run
+// is copied point by point rather than with System.arraycopy.
+//
+
+@Override
+public int drainReady(int[] pDst, int[] pDstFlags, int pMax)
+{
+
+    int count = changeCount;
+
+    if (count == idleChangeCount || resetRequested) { return(0); }
+
+    if (pMax > pDst.length) { pMax = pDst.length; }
+    if (pMax > pDstFlags.length) { pMax = pDstFlags.length; }
+
+    int n = 0, f;
+
+    if ((slotFlags.get(getPtr) & DataFlags.DATA_ERASED) != 0){
+
+        while(n < pMax
+              && ((f = slotFlags.get(getPtr)) & DataFlags.DATA_ERASED) != 0){
+            f = clearSlotFlags(getPtr, DataFlags.DATA_ERASED);
+            pDst[n] = dataBuf[getPtr];
+            pDstFlags[n] = f & DataFlags.CLEAR_DATA_ERASED;
+            n++;
+            getPtr--;
+            if(getPtr < 0) getPtr = bufLength-1;
+        }
+
+        return(-n);
+
+    }
+
+    while(n < pMax && n < bufLength
+          && ((f = slotFlags.get(getPtr))
+              & (DataFlags.DATA_READY | DataFlags.DATA_ERASED))
+                                                    == DataFlags.DATA_READY){
+        pDst[n] = dataBuf[getPtr];
+        pDstFlags[n] = f;
+        n++;
+        getPtr++;
+        if(getPtr >= bufLength) getPtr = 0;
+    }
+
+    if (n == 0) { idleChangeCount = count; }
+
+    return(n);
+
+}// end of DataTransferIntBufferSPSC::drainReady
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DataTransferIntBufferSPSC::incPutPtrAndSetReadyAfterDataFill
+//
+// Same contract as the parent class method. Called only by the producer
+// thread.
+//
+
+@Override
+public void incPutPtrAndSetReadyAfterDataFill()
+{
+
+    if (resetRequested) { completeReset(); }
+
+    int p = putPtr;
+
+    if ((slotFlags.get(p) & DataFlags.DATA_VALID) == 0){
+
+        //if previous slot has valid data, copy it; otherwise use the default
+
+        int prev = p-1;
+        if(prev < 0) prev = bufLength-1;
+
+        if ((slotFlags.get(prev) & DataFlags.DATA_VALID) != 0){
+            dataBuf[p] = dataBuf[prev];
+        }else{
+            dataBuf[p] = defaultData;
+        }
+
+    }
+
+    //prepare the next slot before the current one is published so the
+    //consumer never sees stale flags after it advances
+
+    int next = p+1;
+    if(next >= bufLength) next = 0;
+
+    dataBuf[next] = dataResetValue;
+    slotFlags.set(next, DataFlags.FLAG_RESET_VALUE);
+
+    putPtr = next;
+
+    //publish -- the data written above is visible to any thread which sees
+    //the READY flag
+    setSlotFlags(p, DataFlags.DATA_READY);
+    changeCount++;
+
+}// end of DataTransferIntBufferSPSC::incPutPtrAndSetReadyAfterDataFill
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DataTransferIntBufferSPSC::decrementPutPointer
+//
+// Decrements the put pointer. If the new value is less than zero, it is
+// restarted at the end of the buffer.
+//
+
+@Override
+public void decrementPutPointer()
+{
+
+    if (resetRequested) { completeReset(); }
+
+    int p = putPtr - 1;
+    if(p < 0) p = bufLength-1;
+    putPtr = p;
+
+}// end of DataTransferIntBufferSPSC::decrementPutPointer
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DataTransferIntBufferSPSC::decrementPutPointerAndSetErasedFlag
+//
+// Sets the DATA_ERASED flag at the put pointer and then decrements the put
+// pointer. Called only by the producer thread.
+//
+
+@Override
+public void decrementPutPointerAndSetErasedFlag()
+{
+
+    if (resetRequested) { completeReset(); }
+
+    int p = putPtr;
+
+    setSlotFlags(p, DataFlags.DATA_ERASED);
+
+    p--;
+    if(p < 0) p = bufLength-1;
+    putPtr = p;
+
+    changeCount++;
+
+}// end of DataTransferIntBufferSPSC::decrementPutPointerAndSetErasedFlag
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DataTransferIntBufferSPSC::incrementGetPointer
+//
+// Increments the get pointer. Called only by the consumer thread.
+//
+
+@Override
+public void incrementGetPointer()
+{
+
+    getPtr++;
+    if(getPtr >= bufLength) getPtr = 0;
+    idleChangeCount = -1;
+
+}// end of DataTransferIntBufferSPSC::incrementGetPointer
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DataTransferIntBufferSPSC::decrementGetPointer
+//
+// Decrements the get pointer. Called only by the consumer thread.
+//
+
+@Override
+public void decrementGetPointer()
+{
+
+    getPtr--;
+    if(getPtr < 0) getPtr = bufLength-1;
+    idleChangeCount = -1;
+
+}// end of DataTransferIntBufferSPSC::decrementGetPointer
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DataTransferIntBufferSPSC::setSlotFlags
+//
+// Atomically OR's pFlags into the flags at position pIndex.
+//
+// A compare-and-set loop is used rather than getAndUpdate so that no lambda
+// object is created for each call.
+//
+
+private void setSlotFlags(int pIndex, int pFlags)
+{
+
+    int prev;
+    do{ prev = slotFlags.get(pIndex); }
+    while(!slotFlags.compareAndSet(pIndex, prev, prev | pFlags));
+
+}// end of DataTransferIntBufferSPSC::setSlotFlags
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DataTransferIntBufferSPSC::clearSlotFlags
+//
+// Atomically clears the bits in pFlags from the flags at position pIndex.
+// Returns the flags as they were before clearing.
+//
+
+private int clearSlotFlags(int pIndex, int pFlags)
+{
+
+    int prev;
+    do{ prev = slotFlags.get(pIndex); }
+    while(!slotFlags.compareAndSet(pIndex, prev, prev & ~pFlags));
+
+    return(prev);
+
+}// end of DataTransferIntBufferSPSC::clearSlotFlags
+//-----------------------------------------------------------------------------
+
+}//end of class DataTransferIntBufferSPSC
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
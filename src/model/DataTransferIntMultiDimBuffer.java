@@ -65,6 +65,12 @@ private boolean positionAdvanced = false;
 public boolean getPositionAdvanced() { return positionAdvanced; }
 public void setPositionAdvanced(boolean pSet) { positionAdvanced = pSet; }
 
+//records the data retrieved by the display to the piece journal -- null if
+//the buffer is not recorded
+SegmentRecorder.Source recorder = null;
+public void setRecorder(SegmentRecorder.Source pV) { recorder = pV; }
+public SegmentRecorder.Source getRecorder() { return(recorder); }
+
 int bufLength;
 int bufWidth;
 int dataBuf[][];
@@ -152,6 +158,8 @@ synchronized public void reset()
     putPointer = 0;
     getPointer = 0;
 
+    if (recorder != null) { recorder.clearLast(); }
+
 }// end of DataTransferIntMultiDimBuffer::reset
 //-----------------------------------------------------------------------------
 
@@ -385,6 +393,83 @@ synchronized public int getDataChange(DataSetIntMultiDim pDataSet)
 }// end of DataTransferIntMultiDimBuffer::getDataChange
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// DataTransferIntMultiDimBuffer::drainReady
+//
+// Retrieves a run of up to pMax data changes in a single call. For each row,
+// the data is copied into pDstData, the meta data into pDstMeta and the flags
+// into pDstFlags, all starting at index 0.
+//
+// This is the bulk equivalent of calling getDataChange repeatedly and allows
+// the consumer to lock the buffer once per frame rather than once per row.
+//
+// A run contains either all added rows or all erased rows, never both. As
+// with getDataChange, erased data takes precedence over ready data.
+//
+// Returns:
+//
+// n > 0 if n rows have been added and getPointer incremented by n
+// 0 if no data has been added or removed
+// n < 0 if -n rows have been removed and getPointer decremented by -n
+//
+// If the buffer is recorded, the rows are also passed to the recorder.
+//
+
+synchronized public int drainReady(int[][] pDstData, int[][] pDstMeta,
+                                            int[] pDstFlags, int pMax)
+{
+
+    if (pMax > pDstData.length) { pMax = pDstData.length; }
+    if (pMax > pDstMeta.length) { pMax = pDstMeta.length; }
+    if (pMax > pDstFlags.length) { pMax = pDstFlags.length; }
+
+    //erased rows are checked first -- see notes in getDataChange
+
+    boolean erased = (flags[getPointer] & DataFlags.DATA_ERASED) != 0;
+
+    int count = 0;
+
+    while(count < pMax && count < bufLength){
+
+        int f = flags[getPointer];
+
+        if (erased){
+            if ((f & DataFlags.DATA_ERASED) == 0) { break; }
+            flags[getPointer] &= ~DataFlags.DATA_ERASED; //remove ERASED flag
+        }
+        else if ((f & (DataFlags.DATA_READY | DataFlags.DATA_ERASED))
+                                                    != DataFlags.DATA_READY){
+            break;
+        }
+
+        int w = Math.min(bufWidth, pDstData[count].length);
+        System.arraycopy(dataBuf[getPointer], 0, pDstData[count], 0, w);
+        System.arraycopy(metaBuf[getPointer], 0, pDstMeta[count], 0, w);
+        pDstFlags[count] = flags[getPointer];
+        count++;
+
+        if (erased){
+            getPointer--;
+            if(getPointer < 0) getPointer = bufLength-1;
+        }
+        else{
+            getPointer++;
+            if(getPointer >= bufLength) getPointer = 0;
+        }
+
+    }
+
+    if (erased) { count = -count; }
+
+    if (recorder != null && count != 0){
+        recorder.recordRows(count, pDstData, pDstMeta, pDstFlags);
+    }
+
+    return(count);
+
+}// end of DataTransferIntMultiDimBuffer::drainReady
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // DataTransferIntMultiDimBuffer::incPutPtrAndSetReadyAfterDataFill
 //
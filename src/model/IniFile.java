@@ -27,33 +27,6 @@ import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-//-----------------------------------------------------------------------------
-// class Parameters
-//
-// This class is used to wrap variables for use as parameters in function calls.
-//
-
-class Parameters{
-
-    int keyIndex;
-    int sectionIndex;
-
-//-----------------------------------------------------------------------------
-// Parameters::Parameters (constructor)
-//
-
-public Parameters()
-{
-
-    keyIndex = 0;
-
-}//end of Parameters::Parameters
-//-----------------------------------------------------------------------------
-
-}//end of class Parameters
-//-----------------------------------------------------------------------------
-//-----------------------------------------------------------------------------
-
 //-----------------------------------------------------------------------------
 // class MColor
 //
@@ -303,6 +276,17 @@ static public String toString(Color pColor)
 //       Machine discards the object from memory - it is not done when the
 //       object seems to be discarded in code.
 //
+// The lines are kept in order in buffer so that comments and layout are
+// preserved when the file is saved. To avoid searching the lines for every
+// value read, an index of the sections and keys is built when the file is
+// loaded and kept up to date as values are written: each line starting with
+// '[' is listed in sectionList with its position in buffer and the position
+// of each key in the section relative to the section's line. Reads are then
+// two hash lookups.
+//
+// Inserting a line into a section only changes the positions of the sections
+// which follow it; the relative key positions do not change.
+//
 
 public class IniFile extends Object{
 
@@ -312,6 +296,11 @@ public class IniFile extends Object{
     public String filename;
     private boolean modified;
 
+    //every line starting with '[' in file order -- each ends the one before
+    private ArrayList<SectionIndex> sectionList;
+    //the first section with each name
+    private HashMap<String, SectionIndex> sectionMap;
+
     DecimalFormat[] DecimalFormats;
 
 //-----------------------------------------------------------------------------
@@ -394,6 +383,9 @@ public void init() throws IOException
         throw new IOException();
     }
     finally{
+        //the index is built even if reading failed so that the lines read, if
+        //any, can be found and other entries return their default values
+        buildIndex();
         if (in != null) {in.close();}
         if (inputStreamReader != null) {inputStreamReader.close();}
         if (fileInputStream != null) {fileInputStream.close();}
@@ -506,6 +498,8 @@ public void removeAllLinesWhichStartsWith(String pPrefix)
 
     }
 
+    buildIndex(); //line positions have changed
+
 }//end of IniFile::removeAllLinesWhichStartsWith
 //-----------------------------------------------------------------------------
 
@@ -518,41 +512,17 @@ public void removeAllLinesWhichStartsWith(String pPrefix)
 public void getSection(String pSection, ArrayList<String> pSectionLines)
 {
 
-    //create the section by concatenating brackets around the parameter
-    String sectionStart = "[" + pSection + "]";
-
-    ListIterator i;
-
-    //search the buffer for the section name
-
-    //NOTE: searching each line using startsWith and not worrying about case
-    // sped the search for section up tremendously.  This does mean that the section
-    // name is case-sensitive and there can be no whitespace at the beginning of
-    // a section name.  A 4000 line file was taking more than 10 seconds to process
-    // and now takes a second or less.
-
-    int sectionIndex = -1;
-    for (i = buffer.listIterator(); i.hasNext();) {
-
-        //stop if line found containing the section name
-        if ((((String)i.next()).startsWith(sectionStart))) {
-
-            //set the index of the line containing the section name
-            sectionIndex = i.previousIndex();
-
-            break;
+    SectionIndex section = sectionMap.get(pSection);
 
-        }
-    }
+    //if section not found, return with nothing added
+    if (section == null) {return;}
 
-    //if match not found, section not found so return empty string - both
-    //pParams.keyIndex and pParams.sectionIndex will be -1
-    if (sectionIndex == -1) {return;}
+    ListIterator<String> i = buffer.listIterator(section.line + 1);
 
     //search until the end of the section,start of the next, or end of file
     while(i.hasNext()) {
 
-        String line = (String)i.next();
+        String line = i.next();
 
         //if a new section name is found, quit
         try { if (line.charAt(0) == '['){ break; } }
@@ -576,41 +546,17 @@ public void getSectionAsIntegers(String pSection,
                                     ArrayList<Integer> pSectionLines)
 {
 
-    //create the section by concatenating brackets around the parameter
-    String sectionStart = "[" + pSection + "]";
-
-    ListIterator i;
-
-    //search the buffer for the section name
-
-    //NOTE: searching each line using startsWith and not worrying about case
-    // sped the search for section up tremendously.  This does mean that the section
-    // name is case-sensitive and there can be no whitespace at the beginning of
-    // a section name.  A 4000 line file was taking more than 10 seconds to process
-    // and now takes a second or less.
+    SectionIndex section = sectionMap.get(pSection);
 
-    int sectionIndex = -1;
-    for (i = buffer.listIterator(); i.hasNext();) {
+    //if section not found, return with nothing added
+    if (section == null) {return;}
 
-        //stop if line found containing the section name
-        if ((((String)i.next()).startsWith(sectionStart))) {
-
-            //set the index of the line containing the section name
-            sectionIndex = i.previousIndex();
-
-            break;
-
-        }
-    }
-
-    //if match not found, section not found so return empty string - both
-    //pParams.keyIndex and pParams.sectionIndex will be -1
-    if (sectionIndex == -1) {return;}
+    ListIterator<String> i = buffer.listIterator(section.line + 1);
 
     //search until the end of the section,start of the next, or end of file
     while(i.hasNext()) {
 
-        String line = (String)i.next();
+        String line = i.next();
 
         //if a new section name is found, quit
         try { if (line.charAt(0) == '['){ break; } }
@@ -630,114 +576,130 @@ public void getSectionAsIntegers(String pSection,
 //
 // Returns a string containing the value for pSection and pKey.
 //
-// Parameter pParams.keyIndex will be set to the index position in buffer of
-// the line containing the pKey string.
-//
-// Parameter pParams.sectionIndex will be set to the index position in buffer of
-// the line containing the pSection string.
+// The section name is case-sensitive. The key is not.
 //
 // If no matching Section/Key could be found or if the value is blank, the
-// string returns empty and pParams.keyIndex and pParams.sectionIndex will be
-// set to -1.  If the section was found but not the key, pParams.sectionIndex
-// will be set to the index of the line containing the next section name or to
-// a position beyond the end of the file if the section is the last one in the
-// file. The pParams.sectionIndex value can be used in Vector.add() to insert a
-// new line into the section or to create a new section.
+// string returns empty.
 //
 
-String getValue(String pSection, String pKey, Parameters pParams)
+String getValue(String pSection, String pKey)
 {
 
-    //default to -1 in case function returns without finding Section/Key
-    pParams.keyIndex = -1; pParams.sectionIndex = -1;
+    int keyLine = findKeyLine(pSection, pKey);
 
-    //create the section by concatenating brackets around the parameter
-    String section = "[" + pSection + "]";
+    if (keyLine == -1) {return("");}
 
-    ListIterator i;
+    String line = buffer.get(keyLine);
 
-    //search the buffer for the section name
+    //return the part of the line after the '=' sign
+    return(line.substring(line.indexOf('=') + 1));
 
-    //NOTE: searching each line using startsWith and not worrying about case
-    // sped the search for section up tremendously.  This does mean that the section
-    // name is case-sensitive and there can be no whitespace at the beginning of
-    // a section name.  A 4000 line file was taking more than 10 seconds to process
-    // and now takes a second or less.
+}//end of IniFile::getValue
+//-----------------------------------------------------------------------------
 
-    for (i = buffer.listIterator(); i.hasNext(); ) {
+//-----------------------------------------------------------------------------
+// IniFile::findKeyLine
+//
+// Returns the position in buffer of the line for pSection and pKey or -1 if
+// not found.
+//
 
-        //stop if line found containing the section name
-        if ( (((String)i.next()).startsWith(section))) {
+private int findKeyLine(String pSection, String pKey)
+{
 
-            //set the index of the line containing the section name
-            pParams.sectionIndex = i.previousIndex();
+    SectionIndex section = sectionMap.get(pSection);
 
-        break;
-        }
-    }
+    if (section == null) {return(-1);}
 
-    //if match not found, section not found so return empty string - both
-    //pParams.keyIndex and pParams.sectionIndex will be -1
-    if (pParams.sectionIndex == -1) {return("");}
+    Integer offset = section.keys.get(pKey.toLowerCase());
 
-    //search the section for the key - if another section is found before finding
-    //the key, then return empty string and the index of the section entry
-    //add '=' to the search phrase to make sure a partial match will fail
+    if (offset == null) {return(-1);}
 
-    String key = pKey.toLowerCase() + "=";
-    StringBuilder line = new StringBuilder(200);
+    return(section.line + offset);
 
-    int matchIndex = -1;
+}//end of IniFile::findKeyLine
+//-----------------------------------------------------------------------------
 
-    while(i.hasNext()) {
+//-----------------------------------------------------------------------------
+// IniFile::buildIndex
+//
+// Builds the index of the sections and keys from the lines in buffer.
+//
+// Only lines starting with '[' begin a section. The name of a section is the
+// text between the '[' and the first ']'; if a name is used more than once,
+// only the first section with that name is found. Within a section, the key
+// for a line is the text before the first '=' and only the first line for
+// each key is found. Lines without an '=' are not keys.
+//
+
+private void buildIndex()
+{
 
-        line.setLength(0);
+    sectionList = new ArrayList<>();
+    sectionMap = new HashMap<>();
 
-        line.append(((String)i.next()).toLowerCase());
+    SectionIndex section = null;
 
-        //if a new section name is found before the key is found, the key is not
-        //in the section being searched so return empty string
-        try {
-            if (line.charAt(0) == '['){
-                //return the index of the line containing the next section name
-                pParams.sectionIndex = i.previousIndex();
-                return("");
-            }
+    for (int i=0; i<buffer.size(); i++){
+
+        String line = buffer.get(i);
+
+        if (line.startsWith("[")){
+            section = addSectionIndex(i, getSectionName(line));
+            continue;
         }
-        catch(IndexOutOfBoundsException e){} //ignore this error
 
-        //stop when line found containing the key name - index of key must be 0 to
-        //insure that a partial match is not made
-        if ((matchIndex = line.indexOf(key)) == 0) {break;}
+        //lines before the first section cannot be found
+        if (section == null) { continue; }
 
-    }
+        int indexOfEqual = line.indexOf('=');
+
+        if (indexOfEqual != -1){
+            section.keys.putIfAbsent(
+                line.substring(0, indexOfEqual).toLowerCase(), i - section.line);
+        }
 
-    //if match not found, key not found so return empty string
-    if (matchIndex != 0){
-        //return index at the end of the buffer
-        pParams.sectionIndex = buffer.size();
-        return("");
     }
 
-    int indexOfEqual;
+}//end of IniFile::buildIndex
+//-----------------------------------------------------------------------------
 
-    //look for '=' symbol, if not found then return empty string
-    if ( (indexOfEqual = line.indexOf("=")) == -1) {return("");}
+//-----------------------------------------------------------------------------
+// IniFile::addSectionIndex
+//
+// Adds a section starting at line pLine to the end of sectionList. The
+// section can be found by pName unless an earlier section has that name.
+//
+// Returns the new section.
+//
 
-    //return the part of the line after the '=' sign - on error return empty string
-    try{
-        //set return parameters to reflect the line found to contain the key
-        pParams.keyIndex = i.previousIndex();
+private SectionIndex addSectionIndex(int pLine, String pName)
+{
 
-        return(((String)buffer.get(pParams.keyIndex)).substring(indexOfEqual + 1));
+    SectionIndex section = new SectionIndex(pLine, sectionList.size());
 
-    }
-    catch(StringIndexOutOfBoundsException e){
-        pParams.keyIndex = -1;
-        return("");
-    }
+    sectionList.add(section);
+    sectionMap.putIfAbsent(pName, section);
 
-}//end of IniFile::getValue
+    return(section);
+
+}//end of IniFile::addSectionIndex
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IniFile::getSectionName
+//
+// Returns the section name in pLine, which starts with '['.
+//
+
+private static String getSectionName(String pLine)
+{
+
+    int end = pLine.indexOf(']');
+
+    return(end == -1 ? pLine.substring(1) : pLine.substring(1, end));
+
+}//end of IniFile::getSectionName
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
@@ -753,10 +715,8 @@ public int readInt(String pSection, String pKey, int pDefault)
     //if the ini file was never loaded from memory, return the default
     if (buffer == null) {return pDefault;}
 
-    Parameters params = new Parameters();
-
     //get the value associated with pSection and PKey
-    String valueText = getValue(pSection, pKey, params);
+    String valueText = getValue(pSection, pKey);
 
     //if Section/Key not found, return the default
     if (valueText.equals("")) {return(pDefault);}
@@ -789,10 +749,8 @@ public double readDouble(String pSection, String pKey, double pDefault)
     //if the ini file was never loaded from memory, return the default
     if (buffer == null) {return pDefault;}
 
-    Parameters params = new Parameters();
-
     //get the value associated with pSection and PKey
-    String valueText = getValue(pSection, pKey, params);
+    String valueText = getValue(pSection, pKey);
 
     //if Section/Key not found, return the default
     if (valueText.equals("")) {return(pDefault);}
@@ -825,10 +783,8 @@ public Color readColor(String pSection, String pKey, Color pDefault)
     //if the ini file was never loaded from memory, return the default
     if (buffer == null) {return pDefault;}
 
-    Parameters params = new Parameters();
-
     //get the value associated with pSection and PKey
-    String valueText = getValue(pSection, pKey, params);
+    String valueText = getValue(pSection, pKey);
 
     //if Section/Key not found, return the default
     if (valueText.equals("")) {return(pDefault);}
@@ -851,10 +807,8 @@ public String readString(String pSection, String pKey, String pDefault)
     //if the ini file was never loaded from memory, return the default
     if (buffer == null) {return pDefault;}
 
-    Parameters params = new Parameters();
-
     //get the value associated with pSection and PKey
-    String valueText = getValue(pSection, pKey, params);
+    String valueText = getValue(pSection, pKey);
 
     //if Section/Key not found, return the default
     if (valueText.equals("")) {
@@ -881,10 +835,8 @@ public boolean readBoolean(String pSection, String pKey, boolean pDefault)
     //if the ini file was never loaded from memory, return the default
     if (buffer == null) {return pDefault;}
 
-    Parameters params = new Parameters();
-
     //get the value associated with pSection and PKey
-    String valueText = getValue(pSection, pKey, params);
+    String valueText = getValue(pSection, pKey);
 
     //if Section/Key not found, return the default
     if (valueText.equals("")){return(pDefault);}
@@ -919,31 +871,40 @@ private void writeValue(String pSection, String pKey, String pNewEntry)
 
     modified = true; //force data to be saved when this object is discarded
 
-    Parameters params = new Parameters();
+    SectionIndex section = sectionMap.get(pSection);
 
-    //use the getValue function to search for the section and key and retrieve
-    //the index positions in the buffer of the section and key via params
-    getValue(pSection, pKey, params);
+    if (section == null){
 
-    if (params.keyIndex != -1){
+        //if section not found, add section and newkey=value line to end of file
+        section = addSectionIndex(buffer.size(), pSection);
+        buffer.add("[" + pSection + "]");
+        buffer.add(pNewEntry);
+        section.keys.put(pKey.toLowerCase(), 1);
+        return;
+
+    }
+
+    Integer offset = section.keys.get(pKey.toLowerCase());
+
+    if (offset != null){
 
         //if the section/key was found, replace the line with the new key=value line
-        buffer.set(params.keyIndex, pNewEntry);
+        buffer.set(section.line + offset, pNewEntry);
+        return;
 
     }
-    else
-    if (params.sectionIndex != -1){
 
-        //if section found but not key, add new key=value line to end of section
-        buffer.add(params.sectionIndex, pNewEntry);
+    //if section found but not key, add new key=value line to end of section,
+    //which moves all following sections down by one line
 
-    }
-    else{
+    int end = section.order + 1 < sectionList.size() ?
+                        sectionList.get(section.order + 1).line : buffer.size();
 
-        //if section not found, add section and newkey=value line to end of file
-        buffer.add("[" + pSection + "]");
-        buffer.add(pNewEntry);
+    buffer.add(end, pNewEntry);
+    section.keys.put(pKey.toLowerCase(), end - section.line);
 
+    for (int i=section.order+1; i<sectionList.size(); i++){
+        sectionList.get(i).line++;
     }
 
 }//end of IniFile::writeValue
@@ -1124,6 +1085,32 @@ public void writeString(String pSection, String pKey, String pValue)
 }//end of IniFile::writeString
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SectionIndex
+//
+// Holds the position in buffer of a line starting with '[' and the position of
+// each key in the section relative to that line. The keys are lower case.
+//
+
+private static class SectionIndex
+{
+
+    int line;
+    final int order; //position in sectionList
+    final HashMap<String, Integer> keys = new HashMap<>();
+
+public SectionIndex(int pLine, int pOrder)
+{
+
+    line = pLine; order = pOrder;
+
+}//end of SectionIndex::SectionIndex (constructor)
+
+}//end of class SectionIndex
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // IniFile::logSevere
 //
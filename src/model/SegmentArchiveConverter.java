@@ -0,0 +1,1413 @@
+/******************************************************************************
+* Title: SegmentArchiveConverter.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class converts the segment data files of whole job folders to the
+* binary or compressed binary format and exports selected traces of the
+* segments for offline analysis. Any number of job folders may be processed
+* in one run.
+*
+* Archives may hold hundreds of thousands of pieces, so the files are
+* processed in parallel by a ForkJoinPool. Each file is read, converted, and
+* verified by a single task, so the disks and processors are kept busy with
+* different files at different stages.
+*
+* -- Conversion --
+*
+* Each segment file (.dat or .cal) is read into memory, whether it is in the
+* legacy text format or a binary format, and written in the new format to a
+* temporary file. The temporary file is then read back and compared with the
+* data read from the original. Only if they match is the original replaced.
+*
+* The text format is converted by its structure rather than by the display
+* objects: each [tag] followed by key=value entries becomes a section, and
+* each [tag] followed by numbers up to an [End of Set] tag becomes a data
+* column of that section. The section and column names are the tags without
+* the brackets, as used by the display objects when saving a binary file. The
+* header, which starts with [Header Start], becomes the Header section.
+*
+* When the segment start or end was invalid, the display objects write a note
+* in place of the data. The columns are then saved empty, as is done by the
+* display objects when saving a binary file, so that the converted file can
+* be loaded. A note in a section of a type for which the columns are not known
+* is an error and the file is left unconverted.
+*
+* Files already in the requested format are skipped, so a run which is
+* stopped can simply be started again. As with FileConverter, once every file
+* of a job has been converted without error, a flag file is created in the job
+* folder and the job is skipped by later runs. The operations and errors for
+* each job are recorded in a log file in the job folder.
+*
+* The segment index of each job folder is updated with the new size of each
+* converted file.
+*
+* -- Export --
+*
+* If an export folder is set, the traces with the selected titles, or all
+* traces if none are selected, are exported from each segment to a file in a
+* folder named after the job in the export folder. The export is done for all
+* segment files, converted or not. In CSV format, each trace is a column
+* headed by its chart and trace titles. In binary format, the export is a
+* binary segment file holding only the header and the selected trace
+* sections, readable by SegmentFileReader.
+*
+* If no conversion format is set, the files are only exported.
+*
+* The converter may be run from the command line -- see main.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package model;
+
+//-----------------------------------------------------------------------------
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SegmentArchiveConverter
+//
+
+public class SegmentArchiveConverter
+{
+
+    //the format to convert to -- SharedSettings.BINARY_SEGMENT_FORMAT or
+    //COMPRESSED_SEGMENT_FORMAT, or null to only export
+    private final String format;
+
+    private final Charset textFormat;
+    private final int parallelism;
+
+    private boolean convertEvenIfPreviouslyConverted = false;
+    public void setConvertEvenIfPreviouslyConverted(boolean pState)
+        { convertEvenIfPreviouslyConverted = pState; }
+
+    private String exportFolder = null;
+    private boolean exportAsCSV = true;
+    private String[] exportTraceTitles = new String[0];
+
+    private ProgressListener progressListener = null;
+    public void setProgressListener(ProgressListener pListener)
+        { progressListener = pListener; }
+
+    private final AtomicInteger numDone = new AtomicInteger();
+    private int numFiles;
+
+    static final String LOG_FILENAME = "Segment File Conversion Log.txt";
+    static final String FLAG_FILENAME = "Segment Files Have Been Converted To ";
+    static final String TEMP_FILE_SUFFIX = " converting";
+
+    //prefixes and extensions of the inspection and calibration segment files
+    static final String[] PREFIXES = {"20 - ", "30 - "};
+    static final String[] EXTENSIONS = {".dat", ".cal"};
+
+    private static final String HEADER_START_TAG = "Header Start";
+    private static final String HEADER_END_TAG = "Header End";
+    private static final String END_OF_SET_TAG = "End of Set";
+    private static final String HEADER_SECTION = "Header";
+    private static final String CHART_SECTION = "Chart";
+    private static final String TRACE_SECTION = "Trace";
+    private static final String ZOOM_GRAPH_SECTION = "Zoom Graph";
+    private static final String MAP_3D_GRAPH_SECTION = "Map 3D Graph";
+    private static final String TRACE_DATA_COLUMN = "Data Set 1";
+    private static final String FLAGS_COLUMN = "Flags";
+    private static final String DRAWN_DATA_COLUMN = "Drawn Data Set 1";
+    private static final String DRAWN_META_DATA_COLUMN = "Drawn Meta Data Set 1";
+
+    //written by the display objects in place of the data if the segment start
+    //or end is invalid
+    private static final String NO_DATA_NOTE =
+                        "Segment start and/or start invalid - no data saved.";
+
+//-----------------------------------------------------------------------------
+// SegmentArchiveConverter::SegmentArchiveConverter (constructor)
+//
+// Parameter pFormat is the format to convert to, SharedSettings.
+// BINARY_SEGMENT_FORMAT or COMPRESSED_SEGMENT_FORMAT, or null if the files are
+// only to be exported.
+//
+// Parameter pTextFormat is the character set of the legacy text files, such
+// as SharedSettings.mainFileFormat.
+//
+// Parameter pParallelism is the number of files to process at once. As each
+// task both reads and writes, more tasks than processors keeps the
+// processors busy while tasks are waiting on the disks.
+//
+
+public SegmentArchiveConverter(String pFormat, String pTextFormat,
+                                                            int pParallelism)
+{
+
+    format = pFormat; textFormat = Charset.forName(pTextFormat);
+    parallelism = pParallelism;
+
+}//end of SegmentArchiveConverter::SegmentArchiveConverter (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentArchiveConverter::setExport
+//
+// Sets the folder to which the traces titled pTraceTitles, or all traces if
+// none are listed, are exported. If pAsCSV is true, they are exported as CSV
+// files, otherwise as binary segment files. The titles are not case
+// sensitive.
+//
+
+public void setExport(String pFolder, boolean pAsCSV, String... pTraceTitles)
+{
+
+    exportFolder = pFolder; exportAsCSV = pAsCSV;
+    exportTraceTitles = pTraceTitles;
+
+}//end of SegmentArchiveConverter::setExport
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentArchiveConverter::processJobs
+//
+// Converts and/or exports the segment files of the job folders pJobFolders.
+// The files of all jobs are processed together so that the processing is not
+// held up by a job with few files.
+//
+// Returns true if every file was processed without error.
+//
+
+public boolean processJobs(String... pJobFolders)
+{
+
+    ArrayList<Job> jobs = new ArrayList<>();
+    ArrayList<SegmentFile> files = new ArrayList<>();
+
+    for (String folder : pJobFolders){
+        Job job = new Job(folder);
+        if (!job.start(files)) { continue; }
+        jobs.add(job);
+    }
+
+    numFiles = files.size(); numDone.set(0);
+
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+    try{
+        pool.invoke(new ProcessTask(files, 0, files.size()));
+    }
+    finally{
+        pool.shutdown();
+    }
+
+    boolean success = true;
+
+    for (Job job : jobs){ if (!job.finish()) { success = false; } }
+
+    return(success);
+
+}//end of SegmentArchiveConverter::processJobs
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentArchiveConverter::processFile
+//
+// Converts and/or exports pFile. Errors are logged to the log file of its job
+// and the job is marked as failed.
+//
+
+private void processFile(SegmentFile pFile)
+{
+
+    boolean success = true;
+
+    try{
+
+        //files already converted are skipped without reading all of the file
+        //unless they are also to be exported
+
+        boolean needsConversion = format != null && !isInFormat(pFile.path);
+
+        if (needsConversion || exportFolder != null){
+
+            Segment segment = parse(Files.readAllBytes(Paths.get(pFile.path)));
+
+            if (needsConversion) { convert(pFile, segment); }
+
+            if (exportFolder != null) { export(pFile, segment); }
+
+        }
+
+    }
+    catch(IOException | RuntimeException e){
+        pFile.job.log("Error - " + pFile.path + ": " + e.getMessage());
+        pFile.job.failed = true;
+        success = false;
+    }
+
+    int done = numDone.incrementAndGet();
+
+    if (progressListener != null){
+        progressListener.progress(done, numFiles, pFile.path, success);
+    }
+
+}//end of SegmentArchiveConverter::processFile
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentArchiveConverter::convert
+//
+// Writes pSegment in the new format to a temporary file, verifies the
+// temporary file against pSegment, and replaces pFile with it.
+//
+
+private void convert(SegmentFile pFile, Segment pSegment) throws IOException
+{
+
+    String tempPath = pFile.path + TEMP_FILE_SUFFIX;
+
+    SegmentFileWriter out = new SegmentFileWriter(format.equalsIgnoreCase(
+                                    SharedSettings.COMPRESSED_SEGMENT_FORMAT));
+    write(pSegment, out);
+
+    SegmentPersistenceService.writeFile(tempPath, out.toBuffers());
+
+    try{
+
+        SegmentFileReader in = new SegmentFileReader(tempPath,
+                        ByteBuffer.wrap(Files.readAllBytes(Paths.get(tempPath))));
+        in.init();
+        verify(pSegment, in);
+
+        Path from = Paths.get(tempPath), to = Paths.get(pFile.path);
+
+        try{
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING,
+                                            StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(AtomicMoveNotSupportedException e){
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+    }
+    finally{
+        Files.deleteIfExists(Paths.get(tempPath));
+    }
+
+    pFile.newSize = new File(pFile.path).length();
+
+}//end of SegmentArchiveConverter::convert
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentArchiveConverter::isInFormat
+//
+// Returns true if file pPath is already in the format being converted to.
+// Only the magic number and format version at the start of the file are read.
+//
+
+private boolean isInFormat(String pPath) throws IOException
+{
+
+    int version = SegmentFileReader.readFormatVersion(pPath);
+
+    if (version == 0) { return(false); } //text file
+
+    boolean compressed =
+                version > SegmentFileReader.UNCOMPRESSED_FORMAT_VERSION;
+
+    return(compressed == format.equalsIgnoreCase(
+                                    SharedSettings.COMPRESSED_SEGMENT_FORMAT));
+
+}//end of SegmentArchiveConverter::isInFormat
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentArchiveConverter::parse
+//
+// Returns the segment held in file contents pContents, which may be in the
+// text or a binary format.
+//
+
+private Segment parse(byte[] pContents) throws IOException
+{
+
+    ByteBuffer buffer = ByteBuffer.wrap(pContents);
+
+    if (SegmentFileReader.isBinarySegmentFile(buffer)){
+        SegmentFileReader in = new SegmentFileReader("", buffer);
+        in.init();
+        return(parseBinary(in));
+    }
+
+    try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                        new ByteArrayInputStream(pContents), textFormat))){
+        return(parseText(in));
+    }
+
+}//end of SegmentArchiveConverter::parse
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentArchiveConverter::parseBinary
+//
+// Returns the segment read from binary file pIn.
+//
+
+private static Segment parseBinary(SegmentFileReader pIn) throws IOException
+{
+
+    Segment segment = new Segment();
+
+    SegmentFileReader.Section in;
+
+    while ((in = pIn.nextSection()) != null){
+
+        Section section = new Section(in.name);
+        section.entries.putAll(in.entries);
+
+        for (Map.Entry<String, SegmentFileReader.Column> c
+                                                    : in.columns.entrySet()){
+
+            Column column = new Column(c.getKey());
+
+            if (c.getValue().rowWidth == 1){
+                IntBuffer values = in.getColumn(c.getKey(), in.name);
+                column.count = values.remaining();
+                column.values = new int[column.count];
+                values.get(column.values);
+            }
+            else{
+                column.rows = new ArrayList<>();
+                in.getRows(c.getKey(), column.rows, in.name);
+                column.count = column.rows.size();
+            }
+
+            section.columns.add(column);
+
+        }
+
+        segment.sections.add(section);
+
+    }
+
+    return(segment);
+
+}//end of SegmentArchiveConverter::parseBinary
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentArchiveConverter::parseText
+//
+// Returns the segment read from text file pIn. See the notes at the top of
+// the page for how the text is mapped to sections and columns.
+//
+// Lines which are neither tags, entries, nor data, such as notes, are
+// ignored, except for the note written in place of the data when the segment
+// start or end was invalid -- empty columns are added for it.
+//
+
+private static Segment parseText(BufferedReader pIn) throws IOException
+{
+
+    Segment segment = new Segment();
+    Section section = null;
+
+    String line = nextLine(pIn);
+
+    while (line != null){
+
+        String tag = getTag(line);
+
+        if (tag == null){
+
+            if (line.equals(NO_DATA_NOTE) && section != null){
+                addEmptyColumns(section);
+                line = nextLine(pIn);
+                continue;
+            }
+
+            //an entry -- entries before the first section are ignored
+
+            int equals = line.indexOf('=');
+
+            if (equals > 0 && section != null){
+                if (!section.columns.isEmpty()){
+                    throw new IOException(
+                        "entry follows data in section [" + section.name + "]");
+                }
+                section.entries.put(line.substring(0, equals).trim(),
+                                            line.substring(equals + 1).trim());
+            }
+
+            line = nextLine(pIn);
+            continue;
+
+        }
+
+        if (tag.equals(HEADER_END_TAG) || tag.equals(END_OF_SET_TAG)){
+            line = nextLine(pIn);
+            continue;
+        }
+
+        if (tag.equals(HEADER_START_TAG)) { tag = HEADER_SECTION; }
+
+        //the tag starts a data column if it is followed by data or by the end
+        //of the set, otherwise it starts a section
+
+        line = nextLine(pIn);
+
+        String nextTag = line == null ? null : getTag(line);
+
+        if (line != null && (isData(line) || END_OF_SET_TAG.equals(nextTag))){
+
+            if (section == null){
+                throw new IOException("data [" + tag + "] is not in a section");
+            }
+
+            line = parseColumn(pIn, line, tag, section);
+
+        }
+        else{
+            section = new Section(tag);
+            segment.sections.add(section);
+        }
+
+    }
+
+    return(segment);
+
+}//end of SegmentArchiveConverter::parseText
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentArchiveConverter::addEmptyColumns
+//
+// Adds to pSection the empty data columns saved by the display object which
+// writes that type of section when the segment start or end is invalid.
+//
+// Throws IOException if the columns for the section type are not known.
+//
+
+private static void addEmptyColumns(Section pSection) throws IOException
+{
+
+    switch (pSection.name){
+
+        case TRACE_SECTION:
+            pSection.columns.add(emptyColumn(TRACE_DATA_COLUMN, false));
+            pSection.columns.add(emptyColumn(FLAGS_COLUMN, false));
+            break;
+
+        case ZOOM_GRAPH_SECTION:
+            pSection.columns.add(emptyColumn(TRACE_DATA_COLUMN, true));
+            pSection.columns.add(emptyColumn(FLAGS_COLUMN, false));
+            break;
+
+        case MAP_3D_GRAPH_SECTION:
+            pSection.columns.add(emptyColumn(DRAWN_DATA_COLUMN, true));
+            pSection.columns.add(emptyColumn(DRAWN_META_DATA_COLUMN, true));
+            break;
+
+        default:
+            throw new IOException("no data saved in [" + pSection.name
+                                    + "] and its columns are not known");
+
+    }
+
+}//end of SegmentArchiveConverter::addEmptyColumns
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentArchiveConverter::emptyColumn
+//
+// Returns a column named pName with no data. The column holds rows if pRows
+// is true, single values otherwise.
+//
+
+private static Column emptyColumn(String pName, boolean pRows)
+{
+
+    Column column = new Column(pName);
+
+    if (pRows) { column.rows = new ArrayList<>(); }
+    else { column.values = new int[0]; }
+
+    return(column);
+
+}//end of SegmentArchiveConverter::emptyColumn
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentArchiveConverter::parseColumn
+//
+// Adds the column named pName starting with line pLine to pSection. Returns
+// the line following the column's [End of Set] tag.
+//
+// The column holds rows if its data is comma separated. All rows must be the
+// same length as the binary format stores a single row width per column.
+//
+
+private static String parseColumn(BufferedReader pIn, String pLine,
+                            String pName, Section pSection) throws IOException
+{
+
+    Column column = new Column(pName);
+
+    boolean rows = pLine.indexOf(',') >= 0;
+
+    if (rows) { column.rows = new ArrayList<>(); }
+    else { column.values = new int[1024]; }
+
+    String line = pLine;
+
+    while (line != null && !END_OF_SET_TAG.equals(getTag(line))){
+
+        try{
+
+            if (rows){
+                int[] row = parseRow(line);
+                if (column.count > 0
+                            && row.length != column.rows.get(0).length){
+                    throw new IOException(
+                            "rows of differing length in [" + pName + "]");
+                }
+                column.rows.add(row);
+            }
+            else{
+                if (column.count == column.values.length){
+                    column.values = Arrays.copyOf(
+                                        column.values, column.count * 2);
+                }
+                column.values[column.count] = Integer.parseInt(line);
+            }
+
+        }
+        catch(NumberFormatException e){
+            throw new IOException("bad value in [" + pName + "]: " + line);
+        }
+
+        column.count++;
+
+        line = nextLine(pIn);
+
+    }
+
+    if (line == null){
+        throw new IOException("missing end of set for [" + pName + "]");
+    }
+
+    pSection.columns.add(column);
+
+    return(nextLine(pIn));
+
+}//end of SegmentArchiveConverter::parseColumn
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentArchiveConverter::parseRow
+//
+// Returns the values of comma separated line pLine. The line ends with a
+// comma, so empty values are skipped.
+//
+
+private static int[] parseRow(String pLine)
+{
+
+    String[] values = pLine.split(",");
+
+    int[] row = new int[values.length];
+    int count = 0;
+
+    for (String v : values){
+        v = v.trim();
+        if (!v.isEmpty()) { row[count++] = Integer.parseInt(v); }
+    }
+
+    return(count == row.length ? row : Arrays.copyOf(row, count));
+
+}//end of SegmentArchiveConverter::parseRow
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentArchiveConverter::nextLine
+//
+// Returns the next line of pIn which is not blank, trimmed, or null at the end
+// of the file. A byte order mark at the start of the file is removed.
+//
+
+private static String nextLine(BufferedReader pIn) throws IOException
+{
+
+    String line;
+
+    while ((line = pIn.readLine()) != null){
+        if (line.startsWith("\uFEFF")) { line = line.substring(1); }
+        line = line.trim();
+        if (!line.isEmpty()) { return(line); }
+    }
+
+    return(null);
+
+}//end of SegmentArchiveConverter::nextLine
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentArchiveConverter::getTag
+//
+// Returns the name inside the brackets if pLine is a [tag], null otherwise.
+//
+
+private static String getTag(String pLine)
+{
+
+    if (!pLine.startsWith("[")) { return(null); }
+
+    int end = pLine.indexOf(']');
+
+    if (end < 0) { return(null); }
+
+    return(pLine.substring(1, end).trim());
+
+}//end of SegmentArchiveConverter::getTag
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentArchiveConverter::isData
+//
+// Returns true if pLine starts with a number.
+//
+
+private static boolean isData(String pLine)
+{
+
+    char c = pLine.charAt(0);
+
+    return((c >= '0' && c <= '9') || (c == '-' && pLine.length() > 1
+                                && pLine.charAt(1) >= '0'
+                                && pLine.charAt(1) <= '9'));
+
+}//end of SegmentArchiveConverter::isData
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentArchiveConverter::write
+//
+// Writes the sections of pSegment to pOut.
+//
+
+private static void write(Segment pSegment, SegmentFileWriter pOut)
+{
+
+    for (Section section : pSegment.sections){ write(section, pOut); }
+
+}//end of SegmentArchiveConverter::write
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentArchiveConverter::write
+//
+// Writes pSection to pOut.
+//
+
+private static void write(Section pSection, SegmentFileWriter pOut)
+{
+
+    pOut.startSection(pSection.name);
+
+    for (Map.Entry<String, String> e : pSection.entries.entrySet()){
+        pOut.writeString(e.getKey(), e.getValue());
+    }
+
+    for (Column c : pSection.columns){
+        if (c.rows != null) { pOut.writeRows(c.name, c.rows, 0, c.count); }
+        else { pOut.writeColumn(c.name, c.values, 0, c.count); }
+    }
+
+}//end of SegmentArchiveConverter::write
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentArchiveConverter::verify
+//
+// Compares the sections of pSegment with those read by pIn. Throws
+// IOException describing the first difference found.
+//
+
+private static void verify(Segment pSegment, SegmentFileReader pIn)
+                                                            throws IOException
+{
+
+    for (Section section : pSegment.sections){
+
+        SegmentFileReader.Section in =
+                                pIn.nextSection(section.name, section.name);
+
+        if (!in.entries.equals(section.entries)){
+            throw new IOException("verify failed - entries of ["
+                                                    + section.name + "]");
+        }
+
+        if (in.columns.size() != section.columns.size()){
+            throw new IOException("verify failed - columns of ["
+                                                    + section.name + "]");
+        }
+
+        for (Column column : section.columns){
+            verify(column, in);
+        }
+
+    }
+
+    if (pIn.nextSection() != null){
+        throw new IOException("verify failed - extra sections");
+    }
+
+}//end of SegmentArchiveConverter::verify
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentArchiveConverter::verify
+//
+// Compares pColumn with the column of the same name in section pIn.
+//
+
+private static void verify(Column pColumn, SegmentFileReader.Section pIn)
+                                                            throws IOException
+{
+
+    String error = "verify failed - [" + pColumn.name + "] of [" + pIn.name
+                                                                        + "]";
+
+    IntBuffer values = pIn.getColumn(pColumn.name, pIn.name);
+
+    if (pColumn.rows == null){
+
+        if (values.remaining() != pColumn.count) { throw new IOException(error); }
+
+        for (int i=0; i<pColumn.count; i++){
+            if (values.get(i) != pColumn.values[i]) {
+                throw new IOException(error);
+            }
+        }
+
+        return;
+
+    }
+
+    int width = pIn.columns.get(pColumn.name).rowWidth;
+
+    if (values.remaining() != pColumn.count * width){
+        throw new IOException(error);
+    }
+
+    int p = 0;
+
+    for (int[] row : pColumn.rows){
+        if (row.length != width) { throw new IOException(error); }
+        for (int j=0; j<width; j++){
+            if (values.get(p++) != row[j]) { throw new IOException(error); }
+        }
+    }
+
+}//end of SegmentArchiveConverter::verify
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentArchiveConverter::export
+//
+// Exports the selected traces of pSegment from pFile to the job's folder in
+// the export folder.
+//
+
+private void export(SegmentFile pFile, Segment pSegment) throws IOException
+{
+
+    ArrayList<Section> traces = new ArrayList<>();
+    ArrayList<String> titles = new ArrayList<>();
+
+    String chartTitle = "";
+
+    for (Section section : pSegment.sections){
+
+        if (section.name.equals(CHART_SECTION)){
+            chartTitle = section.entries.getOrDefault("Chart Title", "");
+        }
+
+        if (!section.name.equals(TRACE_SECTION)) { continue; }
+
+        String title = section.entries.getOrDefault("Trace Title", "");
+
+        if (!isSelected(title)) { continue; }
+
+        traces.add(section); titles.add(chartTitle + " - " + title);
+
+    }
+
+    String name = new File(pFile.path).getName();
+
+    if (exportAsCSV){
+        exportCSV(pFile.job.exportFolder + name + ".csv", traces, titles);
+        return;
+    }
+
+    SegmentFileWriter out = new SegmentFileWriter();
+
+    for (Section section : pSegment.sections){
+        if (section.name.equals(HEADER_SECTION)) { write(section, out); }
+    }
+
+    for (Section section : traces){ write(section, out); }
+
+    out.writeToFile(pFile.job.exportFolder + name + ".bin");
+
+}//end of SegmentArchiveConverter::export
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentArchiveConverter::exportCSV
+//
+// Writes the data of traces pTraces to CSV file pPath with one column per
+// trace, headed by pTitles. Traces with fewer data points than others have
+// empty cells at the end.
+//
+
+private static void exportCSV(String pPath, ArrayList<Section> pTraces,
+                            ArrayList<String> pTitles) throws IOException
+{
+
+    Column[] columns = new Column[pTraces.size()];
+    int length = 0;
+
+    for (int i=0; i<columns.length; i++){
+        columns[i] = pTraces.get(i).getColumn(TRACE_DATA_COLUMN);
+        if (columns[i] != null && columns[i].rows == null){
+            length = Math.max(length, columns[i].count);
+        }
+        else { columns[i] = null; }
+    }
+
+    try (BufferedWriter out = Files.newBufferedWriter(Paths.get(pPath),
+                                                    StandardCharsets.UTF_8)){
+
+        for (int i=0; i<pTitles.size(); i++){
+            if (i > 0) { out.write(','); }
+            out.write('"' + pTitles.get(i).replace("\"", "\"\"") + '"');
+        }
+        out.newLine();
+
+        for (int row=0; row<length; row++){
+            for (int i=0; i<columns.length; i++){
+                if (i > 0) { out.write(','); }
+                if (columns[i] != null && row < columns[i].count){
+                    out.write(Integer.toString(columns[i].values[row]));
+                }
+            }
+            out.newLine();
+        }
+
+    }
+
+}//end of SegmentArchiveConverter::exportCSV
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentArchiveConverter::isSelected
+//
+// Returns true if the trace titled pTitle is to be exported.
+//
+
+private boolean isSelected(String pTitle)
+{
+
+    if (exportTraceTitles.length == 0) { return(true); }
+
+    for (String t : exportTraceTitles){
+        if (t.trim().equalsIgnoreCase(pTitle)) { return(true); }
+    }
+
+    return(false);
+
+}//end of SegmentArchiveConverter::isSelected
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentArchiveConverter::main
+//
+// Runs the converter from the command line:
+//
+//  SegmentArchiveConverter [options] jobFolder...
+//
+//  -format binary|compressed   format to convert to -- omit to only export
+//  -threads n                  number of files processed at once
+//  -text charset               character set of text files, default UTF-8
+//  -export folder              folder to export traces to
+//  -binaryExport               export as binary instead of CSV
+//  -traces title,title...      titles of the traces to export, default all
+//  -force                      process jobs already flagged as converted
+//
+
+public static void main(String[] pArgs)
+{
+
+    String format = null, textFormat = "UTF-8", export = null;
+    String traces = "";
+    int threads = Runtime.getRuntime().availableProcessors() * 2;
+    boolean csv = true, force = false;
+    ArrayList<String> jobs = new ArrayList<>();
+
+    try{
+        for (int i=0; i<pArgs.length; i++){
+            switch (pArgs[i]){
+                case "-format": format = pArgs[++i]; break;
+                case "-threads": threads = Integer.parseInt(pArgs[++i]); break;
+                case "-text": textFormat = pArgs[++i]; break;
+                case "-export": export = pArgs[++i]; break;
+                case "-binaryExport": csv = false; break;
+                case "-traces": traces = pArgs[++i]; break;
+                case "-force": force = true; break;
+                default: jobs.add(pArgs[i]);
+            }
+        }
+    }
+    catch(ArrayIndexOutOfBoundsException | NumberFormatException e){
+        jobs.clear();
+    }
+
+    if (jobs.isEmpty() || (format == null && export == null)){
+        System.out.println("Usage: SegmentArchiveConverter [-format binary|"
+            + "compressed] [-threads n] [-text charset] [-export folder]"
+            + " [-binaryExport] [-traces title,...] [-force] jobFolder...");
+        System.exit(1);
+    }
+
+    SegmentArchiveConverter converter =
+                    new SegmentArchiveConverter(format, textFormat, threads);
+
+    converter.setConvertEvenIfPreviouslyConverted(force);
+
+    if (export != null){
+        converter.setExport(export, csv,
+                        traces.isEmpty() ? new String[0] : traces.split(","));
+    }
+
+    long start = System.nanoTime();
+
+    converter.setProgressListener((done, total, file, success) -> {
+        if (!success || done % 1000 == 0 || done == total){
+            long ms = (System.nanoTime() - start) / 1000000;
+            System.out.println(done + " of " + total + " files, " + ms + " ms"
+                                    + (success ? "" : " -- error: " + file));
+        }
+    });
+
+    boolean success = converter.processJobs(jobs.toArray(new String[0]));
+
+    System.out.println(success ? "All files processed successfully."
+                : "One or more errors occurred -- see the log in each job.");
+
+    System.exit(success ? 0 : 2);
+
+}//end of SegmentArchiveConverter::main
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// interface ProgressListener
+//
+// Receives the progress of processJobs. Called from the worker threads as
+// each file is finished.
+//
+
+public interface ProgressListener
+{
+
+    public void progress(int pNumDone, int pNumFiles, String pFile,
+                                                            boolean pSuccess);
+
+}//end of interface ProgressListener
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class ProcessTask
+//
+// Processes a range of the files, splitting it in half until each task has a
+// single file.
+//
+
+private class ProcessTask extends RecursiveAction
+{
+
+    private static final long serialVersionUID = 1L;
+
+    private final ArrayList<SegmentFile> files;
+    private final int start, end;
+
+public ProcessTask(ArrayList<SegmentFile> pFiles, int pStart, int pEnd)
+{
+
+    files = pFiles; start = pStart; end = pEnd;
+
+}//end of ProcessTask::ProcessTask (constructor)
+
+@Override
+protected void compute()
+{
+
+    if (end - start <= 1){
+        if (end > start) { processFile(files.get(start)); }
+        return;
+    }
+
+    int middle = (start + end) >>> 1;
+
+    invokeAll(new ProcessTask(files, start, middle),
+                                        new ProcessTask(files, middle, end));
+
+}//end of ProcessTask::compute
+
+}//end of class ProcessTask
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class Job
+//
+// Holds the log and state of one job folder.
+//
+
+private class Job
+{
+
+    final String folder;
+    String exportFolder;
+    LogFile logFile;
+    volatile boolean failed = false;
+
+    final ArrayList<SegmentFile> files = new ArrayList<>();
+
+public Job(String pFolder)
+{
+
+    folder = pFolder.endsWith(File.separator) ? pFolder
+                                                : pFolder + File.separator;
+
+}//end of Job::Job (constructor)
+
+//-----------------------------------------------------------------------------
+// Job::start
+//
+// Opens the log and adds the segment files of the job to pFiles. Returns
+// false if the job is to be skipped because it has already been converted.
+//
+
+boolean start(ArrayList<SegmentFile> pFiles)
+{
+
+    if (format != null && SegmentArchiveConverter.this.exportFolder == null
+                                    && !convertEvenIfPreviouslyConverted
+                                    && new File(getFlagFileName()).exists()){
+        return(false);
+    }
+
+    logFile = new LogFile();
+    logFile.init(folder + LOG_FILENAME);
+    logFile.section();
+
+    if (format != null) { log("Converting segment files to " + format + ":"); }
+
+    if (SegmentArchiveConverter.this.exportFolder != null){
+        exportFolder = SegmentArchiveConverter.this.exportFolder
+                    + File.separator + new File(folder).getName()
+                                                            + File.separator;
+        new File(exportFolder).mkdirs();
+        log("Exporting traces to " + exportFolder);
+    }
+
+    for (int i=0; i<PREFIXES.length; i++){
+
+        String prefix = PREFIXES[i], extension = EXTENSIONS[i];
+
+        String[] names = new File(folder).list((dir, name) ->
+                        name.startsWith(prefix) && name.endsWith(extension));
+
+        if (names == null){
+            log("Error - could not list folder " + folder);
+            failed = true;
+            return(true);
+        }
+
+        Arrays.sort(names);
+
+        for (String name : names){
+            SegmentFile file = new SegmentFile(this, folder + name, i);
+            files.add(file); pFiles.add(file);
+        }
+
+    }
+
+    log(files.size() + " segment files found.");
+
+    return(true);
+
+}//end of Job::start
+
+//-----------------------------------------------------------------------------
+// Job::finish
+//
+// Updates the segment index with the new sizes of the converted files and, if
+// all files were converted, creates the flag file. Returns false if any error
+// occurred.
+//
+
+boolean finish()
+{
+
+    if (format != null) { updateIndexes(); }
+
+    if (failed){
+        log("One or more errors occurred during the conversion.");
+    }
+    else if (format != null){
+        try{
+            new File(getFlagFileName()).createNewFile();
+            log("All files converted successfully.");
+        }
+        catch(IOException e){
+            log("Error - could not create flag file: " + e.getMessage());
+            failed = true;
+        }
+    }
+    else{
+        log("All files exported successfully.");
+    }
+
+    logFile.close();
+
+    return(!failed);
+
+}//end of Job::finish
+
+//-----------------------------------------------------------------------------
+// Job::updateIndexes
+//
+// Adds an entry with the new file size to the segment index for each file
+// converted. The other values of each entry are kept. Indexes which do not
+// exist are left to be built from the folder when needed.
+//
+
+private void updateIndexes()
+{
+
+    for (int i=0; i<PREFIXES.length; i++){
+
+        if (!new File(SegmentIndex.getIndexPath(folder, PREFIXES[i])).exists()){
+            continue;
+        }
+
+        SegmentIndex index = new SegmentIndex(folder, PREFIXES[i],
+                                                                EXTENSIONS[i]);
+
+        try{
+
+            index.refresh();
+
+            for (SegmentFile file : files){
+
+                if (file.type != i || file.newSize < 0) { continue; }
+
+                int number = SegmentIndex.parseSegmentNumber(
+                                new File(file.path).getName(), PREFIXES[i],
+                                                                EXTENSIONS[i]);
+
+                SegmentIndex.Entry old = index.getEntry(number);
+
+                if (old == null) { continue; }
+
+                SegmentIndex.addEntry(folder, PREFIXES[i], EXTENSIONS[i],
+                        new SegmentIndex.Entry(number, file.newSize,
+                            old.timeSaved, old.measuredLength, old.peaks));
+
+            }
+
+        }
+        catch(IOException e){
+            log("Error - could not update the segment index: "
+                                                            + e.getMessage());
+            failed = true;
+        }
+
+    }
+
+}//end of Job::updateIndexes
+
+//-----------------------------------------------------------------------------
+// Job::getFlagFileName
+//
+
+private String getFlagFileName()
+{
+
+    return(folder + FLAG_FILENAME + format);
+
+}//end of Job::getFlagFileName
+
+//-----------------------------------------------------------------------------
+// Job::log
+//
+// Logs pLine to the job's log file. May be called from any thread.
+//
+
+void log(String pLine)
+{
+
+    synchronized(this) { logFile.log(pLine); }
+
+}//end of Job::log
+
+}//end of class Job
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SegmentFile
+//
+// A segment file to be processed.
+//
+
+private static class SegmentFile
+{
+
+    final Job job;
+    final String path;
+    final int type; //index into PREFIXES and EXTENSIONS
+
+    //size after conversion, -1 if not converted
+    volatile long newSize = -1;
+
+public SegmentFile(Job pJob, String pPath, int pType)
+{
+
+    job = pJob; path = pPath; type = pType;
+
+}//end of SegmentFile::SegmentFile (constructor)
+
+}//end of class SegmentFile
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class Segment
+//
+// The sections of a segment read from a file.
+//
+
+private static class Segment
+{
+
+    final ArrayList<Section> sections = new ArrayList<>();
+
+}//end of class Segment
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class Section
+//
+// The entries and data columns of one section of a segment.
+//
+
+private static class Section
+{
+
+    final String name;
+    final LinkedHashMap<String, String> entries = new LinkedHashMap<>();
+    final ArrayList<Column> columns = new ArrayList<>();
+
+public Section(String pName)
+{
+
+    name = pName;
+
+}//end of Section::Section (constructor)
+
+//-----------------------------------------------------------------------------
+// Section::getColumn
+//
+// Returns the column named pName or null if the section does not have it.
+//
+
+Column getColumn(String pName)
+{
+
+    for (Column c : columns){ if (c.name.equals(pName)) { return(c); } }
+
+    return(null);
+
+}//end of Section::getColumn
+
+}//end of class Section
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class Column
+//
+// A data column of a section. Single values are held in values, rows in rows.
+//
+
+private static class Column
+{
+
+    final String name;
+    int count = 0;
+    int[] values = null;
+    ArrayList<int[]> rows = null;
+
+public Column(String pName)
+{
+
+    name = pName;
+
+}//end of Column::Column (constructor)
+
+}//end of class Column
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+}//end of class SegmentArchiveConverter
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,374 @@
+/******************************************************************************
+* Title: SegmentCache.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class holds the contents of recently used segment files in memory so
+* that the Viewer does not have to read them again from the job folder, which
+* is often on a slow network share, each time the operator steps back and
+* forth between pieces or prints a range of pieces.
+*
+* A background thread prefetches the files the operator is likely to view
+* next, such as the pieces before and after the one being viewed, or the
+* pieces following the one being printed.
+*
+* Each file is keyed by its full path, which identifies the job folder, the
+* segment number and the type of segment. A cached file is only used if the
+* file's size and modification time have not changed since it was read, so a
+* piece which is inspected again is read again.
+*
+* The total size of the cached files is limited to a memory budget. When the
+* budget is exceeded, the least recently used files are discarded.
+*
+* The cached contents are shared, so callers must not modify them. Each call
+* returns a separate view so that the position and limit may be changed.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package model;
+
+//-----------------------------------------------------------------------------
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SegmentCache
+//
+
+public class SegmentCache
+{
+
+    private final long maxBytes;
+    private long totalBytes = 0;
+
+    //in order of use, least recently used first
+    private final LinkedHashMap<String, CachedFile> files =
+                                        new LinkedHashMap<>(16, 0.75f, true);
+
+    //files currently being read -- a request for one of these waits for the
+    //read already in progress rather than reading the file again
+    private final HashMap<String, FutureTask<CachedFile>> reading =
+                                                            new HashMap<>();
+
+    private ThreadPoolExecutor prefetcher;
+
+    private long hits = 0, misses = 0;
+
+//-----------------------------------------------------------------------------
+// SegmentCache::SegmentCache (constructor)
+//
+// Parameter pMaxBytes is the memory budget for the cached files. A file larger
+// than the budget is read but not cached.
+//
+
+public SegmentCache(long pMaxBytes)
+{
+
+    maxBytes = pMaxBytes;
+
+}//end of SegmentCache::SegmentCache (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCache::init
+//
+// Starts the prefetch thread. The thread is a daemon so that it does not keep
+// the program running.
+//
+
+public void init()
+{
+
+    prefetcher = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                                            new LinkedBlockingQueue<>(), (r) -> {
+        Thread t = new Thread(r, "Segment Prefetch");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return(t);
+    });
+
+}//end of SegmentCache::init
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCache::get
+//
+// Returns the contents of file pPath with position zero and the limit at the
+// end of the file. The cached contents are returned if the file has not
+// changed since it was read; otherwise the file is read and cached.
+//
+// Throws NoSuchFileException if the file does not exist.
+//
+
+public ByteBuffer get(String pPath) throws IOException
+{
+
+    return(getFile(pPath, true).contents.duplicate());
+
+}//end of SegmentCache::get
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCache::prefetch
+//
+// Queues the files in pPaths to be read into the cache in the background in
+// the order listed. Files already cached or which do not exist are skipped.
+//
+// Any files queued by a previous call but not yet read are dropped, as the
+// operator has moved on and they are no longer the most likely to be needed.
+//
+
+public void prefetch(List<String> pPaths)
+{
+
+    prefetcher.getQueue().clear();
+
+    for (String path : pPaths){
+
+        prefetcher.execute(() -> {
+            try{
+                getFile(path, false);
+            }
+            catch(IOException e){
+                //missing files are expected -- the file is read again when
+                //it is requested and any error reported then
+            }
+        });
+
+    }
+
+}//end of SegmentCache::prefetch
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCache::getStatus
+//
+// Returns a one line summary of the cache use.
+//
+
+public synchronized String getStatus()
+{
+
+    return("Segment cache: " + files.size() + " files, "
+                + (totalBytes / 1024) + " of " + (maxBytes / 1024) + " KB, "
+                                    + hits + " hits, " + misses + " misses");
+
+}//end of SegmentCache::getStatus
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCache::shutDown
+//
+// Stops the prefetch thread and releases the cached files.
+//
+
+public void shutDown()
+{
+
+    prefetcher.shutdownNow();
+
+    synchronized(this){ files.clear(); totalBytes = 0; }
+
+}//end of SegmentCache::shutDown
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCache::getFile
+//
+// Returns the cached file for pPath if it is still valid. Otherwise, reads and
+// caches the file. If another thread is already reading the file, waits for
+// that read to finish instead.
+//
+// Parameter pCount is true if the request is to be counted in the hit and
+// miss statistics.
+//
+
+private CachedFile getFile(String pPath, boolean pCount) throws IOException
+{
+
+    Path path = Paths.get(pPath);
+
+    BasicFileAttributes attr =
+                        Files.readAttributes(path, BasicFileAttributes.class);
+
+    long size = attr.size();
+    long modified = attr.lastModifiedTime().toMillis();
+
+    FutureTask<CachedFile> task;
+    boolean readHere = false;
+
+    synchronized(this){
+
+        CachedFile file = files.get(pPath);
+
+        if (file != null && file.size == size && file.modified == modified){
+            if (pCount) { hits++; }
+            return(file);
+        }
+
+        if (pCount) { misses++; }
+
+        task = reading.get(pPath);
+
+        if (task == null){
+            task = new FutureTask<>(() -> readFile(path, size, modified));
+            reading.put(pPath, task);
+            readHere = true;
+        }
+
+    }
+
+    if (readHere){
+
+        try{
+            task.run();
+        }
+        finally{
+            synchronized(this){ reading.remove(pPath); }
+        }
+
+    }
+
+    CachedFile file;
+
+    try{
+        file = task.get();
+    }
+    catch(InterruptedException e){
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while reading " + pPath);
+    }
+    catch(ExecutionException e){
+        if (e.getCause() instanceof IOException){
+            throw (IOException)e.getCause();
+        }
+        throw new IOException(e.getCause());
+    }
+
+    if (readHere) { add(pPath, file); }
+
+    return(file);
+
+}//end of SegmentCache::getFile
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCache::readFile
+//
+// Reads the file at pPath into memory. The size and modification time read
+// before the file was opened are recorded with it, so a file changed while
+// being read will be read again on the next request.
+//
+
+private static CachedFile readFile(Path pPath, long pSize, long pModified)
+                                                            throws IOException
+{
+
+    try (FileChannel channel = FileChannel.open(pPath,
+                                                    StandardOpenOption.READ)){
+
+        long size = channel.size();
+
+        if (size > Integer.MAX_VALUE){
+            throw new IOException("The file is too large to load: " + pPath);
+        }
+
+        ByteBuffer contents = ByteBuffer.allocate((int)size);
+
+        while (contents.hasRemaining()){
+            if (channel.read(contents) < 0) { break; }
+        }
+
+        contents.flip();
+
+        return(new CachedFile(contents, pSize, pModified));
+
+    }
+
+}//end of SegmentCache::readFile
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCache::add
+//
+// Adds pFile to the cache under pPath, replacing any older version, and
+// discards the least recently used files until the total is within the
+// budget.
+//
+
+private synchronized void add(String pPath, CachedFile pFile)
+{
+
+    if (pFile.contents.capacity() > maxBytes) { return; }
+
+    CachedFile old = files.put(pPath, pFile);
+
+    if (old != null) { totalBytes -= old.contents.capacity(); }
+
+    totalBytes += pFile.contents.capacity();
+
+    Iterator<Map.Entry<String, CachedFile>> i = files.entrySet().iterator();
+
+    while (totalBytes > maxBytes && i.hasNext()){
+        totalBytes -= i.next().getValue().contents.capacity();
+        i.remove();
+    }
+
+}//end of SegmentCache::add
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class CachedFile
+//
+// Holds the contents of a file and the size and modification time the file
+// had when it was read.
+//
+
+private static class CachedFile
+{
+
+    final ByteBuffer contents;
+    final long size, modified;
+
+public CachedFile(ByteBuffer pContents, long pSize, long pModified)
+{
+
+    contents = pContents; size = pSize; modified = pModified;
+
+}//end of CachedFile::CachedFile (constructor)
+
+}//end of class CachedFile
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+}//end of class SegmentCache
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
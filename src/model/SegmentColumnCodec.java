@@ -0,0 +1,502 @@
+/******************************************************************************
+* Title: SegmentColumnCodec.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class encodes and decodes the data columns of compressed binary segment
+* files. See SegmentFileWriter for a description of the file format.
+*
+* Each column is stored with one of these encodings:
+*
+*   RAW                   the ints as they are, 4 bytes each
+*
+*   DELTA_VARINT          the difference between each value and the one
+*                         before it, zig-zag encoded so that small negative
+*                         differences are small numbers, as a varint -- trace
+*                         data changes little from one point to the next, so
+*                         most values take one byte
+*
+*   RUN_LENGTH            a list of runs, each the number of values in the
+*                         run followed by the zig-zag encoded value, both as
+*                         varints -- for the flags, which are the same for
+*                         long stretches of a piece
+*
+*   DEFLATE               for columns with rows of more than one value, such
+*                         as snapshot and map data, the difference between
+*                         each value and the value in the same position of
+*                         the row before it as zig-zag varints, compressed
+*                         with a Deflater
+*
+* A varint stores 7 bits of the value in each byte, least significant bits
+* first, with the top bit set on every byte except the last.
+*
+* The encoder picks the encoding for each column and falls back to RAW if the
+* encoded data would not be smaller.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package model;
+
+//-----------------------------------------------------------------------------
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SegmentColumnCodec
+//
+
+public class SegmentColumnCodec
+{
+
+    //encodings
+    public static final int RAW = 0;
+    public static final int DELTA_VARINT = 1;
+    public static final int RUN_LENGTH = 2;
+    public static final int DEFLATE = 3;
+
+    //a column is run length encoded if it has no more than one run per this
+    //many values
+    private static final int MIN_VALUES_PER_RUN = 4;
+
+    private byte[] scratch = new byte[65536];
+    private byte[] encoded = new byte[65536];
+    private int encodedLength;
+
+//-----------------------------------------------------------------------------
+// SegmentColumnCodec::SegmentColumnCodec (constructor)
+//
+
+public SegmentColumnCodec()
+{
+
+}//end of SegmentColumnCodec::SegmentColumnCodec (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentColumnCodec::encode
+//
+// Encodes the pNumRows rows of pRowWidth ints in pValues and returns the
+// encoding used. The encoded bytes are then available from getEncoded and
+// getEncodedLength until the next call. If RAW is returned, nothing is
+// encoded and the column should be stored as it is.
+//
+
+public int encode(IntBuffer pValues, int pNumRows, int pRowWidth)
+{
+
+    int count = pNumRows * pRowWidth;
+
+    if (count == 0) { return(RAW); }
+
+    int encoding;
+
+    if (pRowWidth > 1){
+        encodeRowDeltas(pValues, pNumRows, pRowWidth);
+        deflate();
+        encoding = DEFLATE;
+    }
+    else if (countRuns(pValues, count) * MIN_VALUES_PER_RUN <= count){
+        encodeRuns(pValues, count);
+        encoding = RUN_LENGTH;
+    }
+    else{
+        encodeDeltas(pValues, count);
+        encoding = DELTA_VARINT;
+    }
+
+    return(encodedLength < count * 4 ? encoding : RAW);
+
+}//end of SegmentColumnCodec::encode
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentColumnCodec::getEncoded
+//
+// Returns the bytes encoded by the last call to encode. Only the first
+// getEncodedLength bytes are valid.
+//
+
+public byte[] getEncoded() { return(encoded); }
+
+//-----------------------------------------------------------------------------
+// SegmentColumnCodec::getEncodedLength
+//
+
+public int getEncodedLength() { return(encodedLength); }
+
+//-----------------------------------------------------------------------------
+// SegmentColumnCodec::decode
+//
+// Decodes pNumRows rows of pRowWidth ints stored with pEncoding in pIn and
+// returns them. pIn holds exactly the encoded bytes of the column.
+//
+// Throws IOException if the column cannot be decoded.
+//
+
+public static int[] decode(ByteBuffer pIn, int pEncoding, int pNumRows,
+                                        int pRowWidth) throws IOException
+{
+
+    int[] values = new int[pNumRows * pRowWidth];
+
+    try{
+
+        switch (pEncoding){
+
+            case DELTA_VARINT: decodeDeltas(pIn, values, values.length, 1);
+                break;
+
+            case RUN_LENGTH: decodeRuns(pIn, values);
+                break;
+
+            case DEFLATE: decodeDeltas(inflate(pIn, values.length * 5),
+                                            values, values.length, pRowWidth);
+                break;
+
+            default:
+                throw new IOException("unknown column encoding " + pEncoding);
+
+        }
+
+    }
+    catch(BufferUnderflowException | IndexOutOfBoundsException
+                                                | DataFormatException e){
+        throw new IOException("corrupt compressed column");
+    }
+
+    return(values);
+
+}//end of SegmentColumnCodec::decode
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentColumnCodec::countRuns
+//
+// Returns the number of runs of equal values in the first pCount values of
+// pValues.
+//
+
+private static int countRuns(IntBuffer pValues, int pCount)
+{
+
+    int runs = 1;
+
+    for (int i=1; i<pCount; i++){
+        if (pValues.get(i) != pValues.get(i-1)) { runs++; }
+    }
+
+    return(runs);
+
+}//end of SegmentColumnCodec::countRuns
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentColumnCodec::encodeDeltas
+//
+// Encodes the first pCount values of pValues as DELTA_VARINT.
+//
+
+private void encodeDeltas(IntBuffer pValues, int pCount)
+{
+
+    encoded = ensureCapacity(encoded, pCount * 5);
+
+    int p = 0, previous = 0;
+
+    for (int i=0; i<pCount; i++){
+        int value = pValues.get(i);
+        p = putVarint(encoded, p, zigZag(value - previous));
+        previous = value;
+    }
+
+    encodedLength = p;
+
+}//end of SegmentColumnCodec::encodeDeltas
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentColumnCodec::encodeRuns
+//
+// Encodes the first pCount values of pValues as RUN_LENGTH.
+//
+
+private void encodeRuns(IntBuffer pValues, int pCount)
+{
+
+    encoded = ensureCapacity(encoded, pCount * 10);
+
+    int p = 0, i = 0;
+
+    while (i < pCount){
+
+        int value = pValues.get(i), start = i;
+
+        while (i < pCount && pValues.get(i) == value) { i++; }
+
+        p = putVarint(encoded, p, i - start);
+        p = putVarint(encoded, p, zigZag(value));
+
+    }
+
+    encodedLength = p;
+
+}//end of SegmentColumnCodec::encodeRuns
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentColumnCodec::encodeRowDeltas
+//
+// Encodes each value of the pNumRows rows in pValues as the zig-zag varint
+// of its difference from the value in the same position of the row before it
+// into the scratch buffer, ready to be deflated.
+//
+
+private void encodeRowDeltas(IntBuffer pValues, int pNumRows, int pRowWidth)
+{
+
+    int count = pNumRows * pRowWidth;
+
+    scratch = ensureCapacity(scratch, count * 5);
+
+    int p = 0;
+
+    for (int i=0; i<count; i++){
+        int previous = i < pRowWidth ? 0 : pValues.get(i - pRowWidth);
+        p = putVarint(scratch, p, zigZag(pValues.get(i) - previous));
+    }
+
+    encodedLength = p;
+
+}//end of SegmentColumnCodec::encodeRowDeltas
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentColumnCodec::deflate
+//
+// Compresses the encodedLength bytes in the scratch buffer into the encoded
+// buffer.
+//
+
+private void deflate()
+{
+
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+    deflater.setInput(scratch, 0, encodedLength);
+    deflater.finish();
+
+    encoded = ensureCapacity(encoded, encodedLength + 64);
+
+    int p = 0;
+
+    try{
+        while (!deflater.finished()){
+            if (p == encoded.length){
+                encoded = Arrays.copyOf(encoded, encoded.length * 2);
+            }
+            p += deflater.deflate(encoded, p, encoded.length - p);
+        }
+    }
+    finally{
+        deflater.end();
+    }
+
+    encodedLength = p;
+
+}//end of SegmentColumnCodec::deflate
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentColumnCodec::inflate
+//
+// Returns the bytes decompressed from pIn. No more than pMaxLength bytes are
+// expected.
+//
+
+private static ByteBuffer inflate(ByteBuffer pIn, int pMaxLength)
+                                                    throws DataFormatException
+{
+
+    byte[] input = new byte[pIn.remaining()];
+    pIn.get(input);
+
+    Inflater inflater = new Inflater();
+    inflater.setInput(input);
+
+    byte[] output = new byte[pMaxLength];
+    int length = 0;
+
+    try{
+        while (!inflater.finished() && length < output.length){
+            int n = inflater.inflate(output, length, output.length - length);
+            if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())){
+                throw new DataFormatException("truncated column");
+            }
+            length += n;
+        }
+    }
+    finally{
+        inflater.end();
+    }
+
+    return(ByteBuffer.wrap(output, 0, length));
+
+}//end of SegmentColumnCodec::inflate
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentColumnCodec::decodeDeltas
+//
+// Decodes pCount zig-zag varint differences from pIn into pValues. Each value
+// is the difference from the value pStride positions before it, or from zero
+// for the first pStride values.
+//
+
+private static void decodeDeltas(ByteBuffer pIn, int[] pValues, int pCount,
+                                                                int pStride)
+{
+
+    for (int i=0; i<pCount; i++){
+        int previous = i < pStride ? 0 : pValues[i - pStride];
+        pValues[i] = previous + unZigZag(getVarint(pIn));
+    }
+
+}//end of SegmentColumnCodec::decodeDeltas
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentColumnCodec::decodeRuns
+//
+// Decodes runs from pIn until pValues is filled.
+//
+
+private static void decodeRuns(ByteBuffer pIn, int[] pValues)
+{
+
+    int i = 0;
+
+    while (i < pValues.length){
+
+        int length = getVarint(pIn);
+        int value = unZigZag(getVarint(pIn));
+
+        if (length <= 0 || length > pValues.length - i){
+            throw new IndexOutOfBoundsException();
+        }
+
+        Arrays.fill(pValues, i, i + length, value);
+        i += length;
+
+    }
+
+}//end of SegmentColumnCodec::decodeRuns
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentColumnCodec::putVarint
+//
+// Stores pValue, treated as unsigned, in pDst at pPos as a varint and returns
+// the position after it.
+//
+
+private static int putVarint(byte[] pDst, int pPos, int pValue)
+{
+
+    while ((pValue & ~0x7f) != 0){
+        pDst[pPos++] = (byte)((pValue & 0x7f) | 0x80);
+        pValue >>>= 7;
+    }
+
+    pDst[pPos++] = (byte)pValue;
+
+    return(pPos);
+
+}//end of SegmentColumnCodec::putVarint
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentColumnCodec::getVarint
+//
+// Returns the varint at the current position of pIn.
+//
+
+private static int getVarint(ByteBuffer pIn)
+{
+
+    int value = 0;
+
+    for (int shift=0; shift<35; shift+=7){
+        byte b = pIn.get();
+        value |= (b & 0x7f) << shift;
+        if (b >= 0) { return(value); }
+    }
+
+    throw new IndexOutOfBoundsException();
+
+}//end of SegmentColumnCodec::getVarint
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentColumnCodec::zigZag
+//
+// Maps signed values to unsigned so that values near zero, positive or
+// negative, are small: 0, -1, 1, -2, 2... become 0, 1, 2, 3, 4...
+//
+
+private static int zigZag(int pValue)
+{
+
+    return((pValue << 1) ^ (pValue >> 31));
+
+}//end of SegmentColumnCodec::zigZag
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentColumnCodec::unZigZag
+//
+
+private static int unZigZag(int pValue)
+{
+
+    return((pValue >>> 1) ^ -(pValue & 1));
+
+}//end of SegmentColumnCodec::unZigZag
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentColumnCodec::ensureCapacity
+//
+// Returns pBuffer if it holds at least pLength bytes or a new larger buffer
+// if not. The contents are not kept.
+//
+
+private static byte[] ensureCapacity(byte[] pBuffer, int pLength)
+{
+
+    if (pBuffer.length >= pLength) { return(pBuffer); }
+
+    return(new byte[Math.max(pLength, pBuffer.length * 2)]);
+
+}//end of SegmentColumnCodec::ensureCapacity
+//-----------------------------------------------------------------------------
+
+}//end of class SegmentColumnCodec
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
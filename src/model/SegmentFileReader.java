@@ -0,0 +1,610 @@
+/******************************************************************************
+* Title: SegmentFileReader.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class reads a segment data file saved in the binary format built by
+* SegmentFileWriter. See that class for a description of the format.
+*
+* The file is memory mapped rather than read into a buffer. Only the header is
+* parsed when the file is opened; the data columns are accessed as IntBuffer
+* views of the mapped file so that they can be copied directly into the
+* display objects with a single bulk transfer each.
+*
+* The columns of a compressed file are decoded by SegmentColumnCodec when they
+* are retrieved, so the display objects load either kind of file the same way.
+*
+* The sections are retrieved in the order they were written with nextSection,
+* in the same manner as the legacy text file is parsed one section after the
+* other.
+*
+* Files in the legacy text format do not start with the magic number, so
+* isBinarySegmentFile can be used to decide which loader to use.
+*
+* The contents of a file already read into memory, such as from the Viewer's
+* SegmentCache, may be passed in instead of mapping the file.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package model;
+
+//-----------------------------------------------------------------------------
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SegmentFileReader
+//
+
+public class SegmentFileReader
+{
+
+    //first bytes of every binary segment file -- the first byte is not a valid
+    //UTF-8 lead byte so a text file can never be mistaken for a binary file
+    public static final byte[] MAGIC =
+                    {(byte)0x89, 'S', 'E', 'G', '\r', '\n', 0x1a, '\n'};
+
+    public static final int FORMAT_VERSION = 2;
+
+    //version written for files which are not compressed -- these files do not
+    //have the column encodings added in version 2
+    public static final int UNCOMPRESSED_FORMAT_VERSION = 1;
+
+    //magic number, format version, header length
+    static final int PREFIX_SIZE = 16;
+
+    private final String filename;
+    private ByteBuffer map;
+    private int dataStart;
+    private int version;
+
+    private final ArrayList<Section> sections = new ArrayList<>();
+    private int nextSectionIndex = 0;
+
+//-----------------------------------------------------------------------------
+// SegmentFileReader::SegmentFileReader (constructor)
+//
+
+public SegmentFileReader(String pFilename)
+{
+
+    filename = pFilename;
+
+}//end of SegmentFileReader::SegmentFileReader (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileReader::SegmentFileReader (constructor)
+//
+// Reads the file from pContents, which holds the entire file, rather than
+// mapping it. pFilename is used only for identification. pContents is not
+// modified.
+//
+
+public SegmentFileReader(String pFilename, ByteBuffer pContents)
+{
+
+    filename = pFilename;
+
+    map = pContents.duplicate();
+
+}//end of SegmentFileReader::SegmentFileReader (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileReader::init
+//
+// Maps the file, unless its contents were passed to the constructor, and
+// parses the header.
+//
+// Throws IOException if the file cannot be opened or is not a valid binary
+// segment file.
+//
+
+public void init() throws IOException
+{
+
+    if (map == null){
+
+        try (FileChannel channel = FileChannel.open(
+                                Paths.get(filename), StandardOpenOption.READ)){
+
+            //the mapping remains valid after the channel is closed
+            map = channel.map(
+                        FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+        }
+
+    }
+
+    map.order(ByteOrder.LITTLE_ENDIAN);
+
+    try{
+        parseHeader();
+    }
+    catch(BufferUnderflowException | IllegalArgumentException
+                                            | NegativeArraySizeException e){
+        throw new IOException("The file could not be read - corrupt header.");
+    }
+
+}//end of SegmentFileReader::init
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileReader::isBinarySegmentFile
+//
+// Returns true if the file pFilename starts with the binary segment file
+// magic number.
+//
+
+public static boolean isBinarySegmentFile(String pFilename) throws IOException
+{
+
+    byte[] start = new byte[MAGIC.length];
+
+    try (RandomAccessFile file = new RandomAccessFile(pFilename, "r")){
+
+        if (file.length() < MAGIC.length) { return(false); }
+
+        file.readFully(start);
+
+    }
+
+    for (int i=0; i<MAGIC.length; i++){
+        if (start[i] != MAGIC[i]) { return(false); }
+    }
+
+    return(true);
+
+}//end of SegmentFileReader::isBinarySegmentFile
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileReader::readFormatVersion
+//
+// Returns the format version of the file pFilename, or 0 if the file does not
+// start with the binary segment file magic number. Only the magic number and
+// version are read, so the rest of the file is not verified.
+//
+
+public static int readFormatVersion(String pFilename) throws IOException
+{
+
+    byte[] start = new byte[MAGIC.length + 4];
+
+    try (RandomAccessFile file = new RandomAccessFile(pFilename, "r")){
+
+        if (file.length() < start.length) { return(0); }
+
+        file.readFully(start);
+
+    }
+
+    for (int i=0; i<MAGIC.length; i++){
+        if (start[i] != MAGIC[i]) { return(0); }
+    }
+
+    return(ByteBuffer.wrap(start, MAGIC.length, 4)
+                                        .order(ByteOrder.LITTLE_ENDIAN).getInt());
+
+}//end of SegmentFileReader::readFormatVersion
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileReader::isBinarySegmentFile
+//
+// Returns true if pContents, which holds the contents of a file starting at
+// position zero, starts with the binary segment file magic number.
+//
+
+public static boolean isBinarySegmentFile(ByteBuffer pContents)
+{
+
+    if (pContents.limit() < MAGIC.length) { return(false); }
+
+    for (int i=0; i<MAGIC.length; i++){
+        if (pContents.get(i) != MAGIC[i]) { return(false); }
+    }
+
+    return(true);
+
+}//end of SegmentFileReader::isBinarySegmentFile
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileReader::nextSection
+//
+// Returns the next section in the file. Throws IOException with pErrorSection
+// in the message if there are no more sections or the next section is not
+// named pName.
+//
+
+public Section nextSection(String pName, String pErrorSection)
+                                                            throws IOException
+{
+
+    if (nextSectionIndex >= sections.size()
+                || !sections.get(nextSectionIndex).name.equals(pName)){
+        throw new IOException(
+            "The file could not be read - section not found for "
+                                                            + pErrorSection);
+    }
+
+    return(sections.get(nextSectionIndex++));
+
+}//end of SegmentFileReader::nextSection
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileReader::nextSection
+//
+// Returns the next section in the file, whatever its name, or null if there
+// are no more sections.
+//
+
+public Section nextSection()
+{
+
+    if (nextSectionIndex >= sections.size()) { return(null); }
+
+    return(sections.get(nextSectionIndex++));
+
+}//end of SegmentFileReader::nextSection
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileReader::getVersion
+//
+// Returns the format version of the file. Valid after init.
+//
+
+public int getVersion() { return(version); }
+
+//-----------------------------------------------------------------------------
+// SegmentFileReader::alignedDataStart
+//
+// Returns the position of the data, which starts at the first multiple of 8
+// bytes at or after pHeaderEnd.
+//
+
+static int alignedDataStart(int pHeaderEnd)
+{
+
+    return((pHeaderEnd + 7) & ~7);
+
+}//end of SegmentFileReader::alignedDataStart
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileReader::parseHeader
+//
+// Verifies the magic number and version and parses all sections in the
+// header.
+//
+
+private void parseHeader() throws IOException
+{
+
+    if (map.limit() < PREFIX_SIZE) {
+        throw new IOException("The file could not be read - missing header.");
+    }
+
+    for (int i=0; i<MAGIC.length; i++){
+        if (map.get(i) != MAGIC[i]){
+            throw new IOException(
+                        "The file could not be read - not a segment file.");
+        }
+    }
+
+    map.position(MAGIC.length);
+
+    version = map.getInt();
+
+    if (version < UNCOMPRESSED_FORMAT_VERSION || version > FORMAT_VERSION){
+        throw new IOException("The file could not be read - format version "
+                                        + version + " is not supported.");
+    }
+
+    int headerLength = map.getInt();
+    int headerEnd = PREFIX_SIZE + headerLength;
+
+    if (headerLength < 0 || headerEnd > map.limit()){
+        throw new IOException(
+                        "The file could not be read - missing end of header.");
+    }
+
+    dataStart = alignedDataStart(headerEnd);
+
+    while (map.position() < headerEnd){ sections.add(parseSection()); }
+
+}//end of SegmentFileReader::parseHeader
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileReader::parseSection
+//
+// Parses the section at the current position of the map.
+//
+
+private Section parseSection() throws IOException
+{
+
+    Section section = new Section(getString());
+
+    int numEntries = map.getInt();
+
+    for (int i=0; i<numEntries; i++){
+        String key = getString();
+        section.entries.put(key, getString());
+    }
+
+    int numColumns = map.getInt();
+
+    for (int i=0; i<numColumns; i++){
+
+        String name = getString();
+        int numRows = map.getInt();
+        int rowWidth = map.getInt();
+        long offset = map.getLong();
+
+        int encoding = SegmentColumnCodec.RAW;
+        long length = (long)numRows * rowWidth * 4;
+
+        if (version > UNCOMPRESSED_FORMAT_VERSION){
+            encoding = map.getInt();
+            if (encoding != SegmentColumnCodec.RAW) { length = map.getInt(); }
+            else { map.getInt(); }
+        }
+
+        long start = dataStart + offset;
+        long end = start + length;
+
+        if (numRows < 0 || rowWidth < 0 || offset < 0 || length < 0
+                                                        || end > map.limit()){
+            throw new IOException("The file could not be read - missing data"
+                                    + " for " + name + " of " + section.name);
+        }
+
+        section.columns.put(name, new Column(numRows, rowWidth, encoding,
+                                                        (int)start, (int)end));
+
+    }
+
+    return(section);
+
+}//end of SegmentFileReader::parseSection
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileReader::getString
+//
+// Returns the string at the current position of the map.
+//
+
+private String getString()
+{
+
+    int length = map.getInt();
+
+    byte[] bytes = new byte[length];
+    map.get(bytes);
+
+    return(new String(bytes, StandardCharsets.UTF_8));
+
+}//end of SegmentFileReader::getString
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class Column
+//
+// Describes the location of a column's data in the mapped file.
+//
+
+static class Column
+{
+
+    final int numRows, rowWidth, encoding, start, end;
+
+public Column(int pNumRows, int pRowWidth, int pEncoding, int pStart,
+                                                                    int pEnd)
+{
+
+    numRows = pNumRows; rowWidth = pRowWidth; encoding = pEncoding;
+    start = pStart; end = pEnd;
+
+}//end of Column::Column (constructor)
+
+}//end of class Column
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class Section
+//
+// Holds the entries and column descriptors of one section of the file.
+//
+
+public class Section
+{
+
+    final String name;
+    //kept in the order read so that the section can be copied as it is
+    final LinkedHashMap<String, String> entries = new LinkedHashMap<>();
+    final LinkedHashMap<String, Column> columns = new LinkedHashMap<>();
+
+public Section(String pName)
+{
+
+    name = pName;
+
+}//end of Section::Section (constructor)
+
+//-----------------------------------------------------------------------------
+// Section::readString
+//
+// Returns the value for entry pKey or pDefault if the entry is not found.
+//
+
+public String readString(String pKey, String pDefault)
+{
+
+    String value = entries.get(pKey);
+
+    return(value == null ? pDefault : value);
+
+}//end of Section::readString
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Section::readInt
+//
+// Returns the value for entry pKey or pDefault if the entry is not found or
+// is not a valid integer.
+//
+
+public int readInt(String pKey, int pDefault)
+{
+
+    try{
+        return(Integer.parseInt(readString(pKey, "")));
+    }
+    catch(NumberFormatException e){
+        return(pDefault);
+    }
+
+}//end of Section::readInt
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Section::readBoolean
+//
+// Returns the value for entry pKey or pDefault if the entry is not found.
+//
+
+public boolean readBoolean(String pKey, boolean pDefault)
+{
+
+    String value = readString(pKey, "");
+
+    if (value.equalsIgnoreCase("true")) { return(true); }
+    if (value.equalsIgnoreCase("false")) { return(false); }
+
+    return(pDefault);
+
+}//end of Section::readBoolean
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Section::getColumn
+//
+// Returns the data of column pName as an IntBuffer view of the mapped file.
+// The IntBuffer holds all rows one after the other.
+//
+// A compressed column is decoded into a new IntBuffer instead.
+//
+// Throws IOException with pErrorSection in the message if the section does
+// not have the column or a compressed column cannot be decoded.
+//
+
+public IntBuffer getColumn(String pName, String pErrorSection)
+                                                            throws IOException
+{
+
+    Column column = findColumn(pName, pErrorSection);
+
+    ByteBuffer bytes = map.duplicate();
+    bytes.limit(column.end).position(column.start);
+
+    if (column.encoding != SegmentColumnCodec.RAW){
+        try{
+            return(IntBuffer.wrap(SegmentColumnCodec.decode(bytes.slice(),
+                        column.encoding, column.numRows, column.rowWidth)));
+        }
+        catch(IOException e){
+            throw new IOException("The file could not be read - "
+                + e.getMessage() + " for [" + pName + "] of " + pErrorSection);
+        }
+    }
+
+    return(bytes.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer());
+
+}//end of Section::getColumn
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Section::getRows
+//
+// Adds each row of column pName to pRows as a new array.
+//
+// Throws IOException with pErrorSection in the message if the section does
+// not have the column.
+//
+
+public void getRows(String pName, List<int[]> pRows,
+                                    String pErrorSection) throws IOException
+{
+
+    Column column = findColumn(pName, pErrorSection);
+
+    IntBuffer values = getColumn(pName, pErrorSection);
+
+    for (int i=0; i<column.numRows; i++){
+        int[] row = new int[column.rowWidth];
+        values.get(row);
+        pRows.add(row);
+    }
+
+}//end of Section::getRows
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Section::findColumn
+//
+
+private Column findColumn(String pName, String pErrorSection)
+                                                            throws IOException
+{
+
+    Column column = columns.get(pName);
+
+    if (column == null){
+        throw new IOException("The file could not be read - section not found"
+                                + " for [" + pName + "] of " + pErrorSection);
+    }
+
+    return(column);
+
+}//end of Section::findColumn
+//-----------------------------------------------------------------------------
+
+}//end of class Section
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+}//end of class SegmentFileReader
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
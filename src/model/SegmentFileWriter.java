@@ -0,0 +1,529 @@
+/******************************************************************************
+* Title: SegmentFileWriter.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class builds a segment data file in the binary format read by
+* SegmentFileReader.
+*
+* The file is made up of sections in the same order as the sections of the
+* legacy text format: the header, each chart group, each chart, each graph,
+* and each trace. Each section has a name, a list of key/value entries such as
+* the index and title, and a list of data columns.
+*
+* The layout of the file is:
+*
+*   magic number          8 bytes (see SegmentFileReader.MAGIC)
+*   format version        int
+*   header length         int -- number of bytes in the header
+*   header                the sections (names, entries, column descriptors)
+*   padding               zeroes up to the next multiple of 8 bytes
+*   data                  the contents of all columns, one after the other
+*
+* All values are little-endian. Strings are stored as an int byte count
+* followed by the UTF-8 bytes.
+*
+* Each section in the header is stored as:
+*
+*   name                  string
+*   number of entries     int
+*   entries               key string, value string
+*   number of columns     int
+*   columns               name string, row count int, row width int,
+*                             data offset long (from the start of the data)
+*
+* A column is a contiguous block of row count * row width ints. Trace data is
+* stored as a column with a row width of one; snapshot and map data is stored
+* with one row per data point. All rows of a column must be the same length
+* since only one row width is stored for the column.
+*
+* A compressed file is written with format version 2, in which each column
+* descriptor is followed by:
+*
+*   encoding              int -- see SegmentColumnCodec
+*   data length           int -- number of bytes of the encoded column
+*
+* The encoded data of each column is padded with zeroes to a multiple of 4
+* bytes so that any following unencoded column is aligned. Files which are not
+* compressed are written with version 1 so that they can still be read by
+* earlier versions of the program.
+*
+* The entire file is built in memory so that it can be written to more than
+* one path with a single pass through the data. Since the data is copied, the
+* built file is also a snapshot of the segment which can be written in the
+* background while the display objects go on to the next segment.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package model;
+
+//-----------------------------------------------------------------------------
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import toolkit.IntRingBuffer;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SegmentFileWriter
+//
+
+public class SegmentFileWriter
+{
+
+    private ByteBuffer header;
+    private ByteBuffer data;
+
+    //position in header of the entry and column counts of the current section
+    private int entryCountPos = -1;
+    private int columnCountPos = -1;
+    private int numEntries, numColumns;
+
+    //encodes the columns of a compressed file -- null if not compressed
+    private final SegmentColumnCodec codec;
+
+    //the column being written to a compressed file, which is encoded when
+    //it is complete -- position of its data and of its encoding in the header
+    private int columnDataPos = -1, columnEncodingPos;
+    private int columnNumRows, columnRowWidth;
+
+    private static final int INITIAL_HEADER_SIZE = 4096;
+    private static final int INITIAL_DATA_SIZE = 65536;
+
+//-----------------------------------------------------------------------------
+// SegmentFileWriter::SegmentFileWriter (constructor)
+//
+// Builds a file which is not compressed.
+//
+
+public SegmentFileWriter()
+{
+
+    this(false);
+
+}//end of SegmentFileWriter::SegmentFileWriter (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileWriter::SegmentFileWriter (constructor)
+//
+// If pCompressed is true, the columns are encoded by SegmentColumnCodec.
+//
+
+public SegmentFileWriter(boolean pCompressed)
+{
+
+    codec = pCompressed ? new SegmentColumnCodec() : null;
+
+    header = ByteBuffer.allocate(INITIAL_HEADER_SIZE)
+                                            .order(ByteOrder.LITTLE_ENDIAN);
+
+    data = ByteBuffer.allocate(INITIAL_DATA_SIZE)
+                                            .order(ByteOrder.LITTLE_ENDIAN);
+
+}//end of SegmentFileWriter::SegmentFileWriter (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileWriter::startSection
+//
+// Starts a new section named pName. All entries and columns written after
+// this belong to the section until the next section is started.
+//
+
+public void startSection(String pName)
+{
+
+    endSection();
+
+    putString(pName);
+
+    entryCountPos = header.position(); numEntries = 0;
+    header.putInt(0);
+
+}//end of SegmentFileWriter::startSection
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileWriter::writeString
+//
+// Adds an entry with key pKey and value pValue to the current section.
+//
+// All entries must be written before the first column of the section.
+//
+
+public void writeString(String pKey, String pValue)
+{
+
+    if (columnCountPos != -1){
+        throw new IllegalStateException(
+                        "Entry " + pKey + " written after section columns.");
+    }
+
+    putString(pKey); putString(pValue == null ? "" : pValue);
+
+    numEntries++;
+
+}//end of SegmentFileWriter::writeString
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileWriter::writeInt
+//
+
+public void writeInt(String pKey, int pValue)
+{
+
+    writeString(pKey, Integer.toString(pValue));
+
+}//end of SegmentFileWriter::writeInt
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileWriter::writeBoolean
+//
+
+public void writeBoolean(String pKey, boolean pValue)
+{
+
+    writeString(pKey, Boolean.toString(pValue));
+
+}//end of SegmentFileWriter::writeBoolean
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileWriter::writeColumn
+//
+// Adds a column named pName to the current section containing the pCount
+// values of pSource starting at index pStart.
+//
+
+public void writeColumn(String pName, IntRingBuffer pSource, int pStart,
+                                                                    int pCount)
+{
+
+    startColumn(pName, pCount, 1);
+
+    for (int i=pStart; i<pStart+pCount; i++){ data.putInt(pSource.get(i)); }
+
+}//end of SegmentFileWriter::writeColumn
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileWriter::writeColumn
+//
+// Adds a column named pName to the current section containing the pCount
+// values of pSource starting at index pStart.
+//
+
+public void writeColumn(String pName, ArrayList<Integer> pSource, int pStart,
+                                                                    int pCount)
+{
+
+    startColumn(pName, pCount, 1);
+
+    for (int i=pStart; i<pStart+pCount; i++){ data.putInt(pSource.get(i)); }
+
+}//end of SegmentFileWriter::writeColumn
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileWriter::writeColumn
+//
+// Adds a column named pName to the current section containing the pCount
+// values of pSource starting at index pStart.
+//
+
+public void writeColumn(String pName, int[] pSource, int pStart, int pCount)
+{
+
+    startColumn(pName, pCount, 1);
+
+    data.asIntBuffer().put(pSource, pStart, pCount);
+    data.position(data.position() + pCount * 4);
+
+}//end of SegmentFileWriter::writeColumn
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileWriter::writeRows
+//
+// Adds a column named pName to the current section containing the pCount
+// rows of pSource starting at index pStart.
+//
+// All rows must be the same length, which is stored as the row width of the
+// column. Throws IllegalArgumentException if they are not.
+//
+
+public void writeRows(String pName, List<int[]> pSource, int pStart,
+                                                                    int pCount)
+{
+
+    int width = pCount > 0 ? pSource.get(pStart).length : 0;
+
+    for (int i=pStart; i<pStart+pCount; i++){
+        if (pSource.get(i).length != width){
+            throw new IllegalArgumentException(
+                        "Rows of column " + pName + " differ in length.");
+        }
+    }
+
+    startColumn(pName, pCount, width);
+
+    for (int i=pStart; i<pStart+pCount; i++){
+
+        int[] row = pSource.get(i);
+
+        data.asIntBuffer().put(row);
+        data.position(data.position() + row.length * 4);
+
+    }
+
+}//end of SegmentFileWriter::writeRows
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileWriter::toBuffers
+//
+// Returns the complete file as an array of buffers to be written one after the
+// other. The buffers share the writer's memory, so nothing more should be
+// written to the writer while they are in use.
+//
+
+public ByteBuffer[] toBuffers()
+{
+
+    endSection();
+
+    ByteBuffer prefix = ByteBuffer.allocate(SegmentFileReader.PREFIX_SIZE)
+                                            .order(ByteOrder.LITTLE_ENDIAN);
+
+    prefix.put(SegmentFileReader.MAGIC);
+    prefix.putInt(codec != null ? SegmentFileReader.FORMAT_VERSION
+                            : SegmentFileReader.UNCOMPRESSED_FORMAT_VERSION);
+    prefix.putInt(header.position());
+    prefix.flip();
+
+    //data must start on an 8 byte boundary so that its ints are aligned
+
+    int headerEnd = SegmentFileReader.PREFIX_SIZE + header.position();
+    ByteBuffer padding = ByteBuffer.allocate(
+                    SegmentFileReader.alignedDataStart(headerEnd) - headerEnd);
+
+    ByteBuffer headerBytes = header.duplicate(); headerBytes.flip();
+    ByteBuffer dataBytes = data.duplicate(); dataBytes.flip();
+
+    return(new ByteBuffer[] {prefix, headerBytes, padding, dataBytes});
+
+}//end of SegmentFileWriter::toBuffers
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileWriter::writeToFile
+//
+// Writes the file to pPath, replacing any existing file. The file is written
+// to a temporary file first and renamed when complete.
+//
+// This may be called more than once to write the same data to several paths.
+//
+
+public void writeToFile(String pPath) throws IOException
+{
+
+    SegmentPersistenceService.writeFile(pPath, toBuffers());
+
+}//end of SegmentFileWriter::writeToFile
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileWriter::startColumn
+//
+// Adds the descriptor for a column of pNumRows rows of pRowWidth ints to the
+// current section and makes room for its data.
+//
+
+private void startColumn(String pName, int pNumRows, int pRowWidth)
+{
+
+    if (entryCountPos == -1){
+        throw new IllegalStateException(
+                                "Column " + pName + " written before section.");
+    }
+
+    if (columnCountPos == -1){
+        header.putInt(entryCountPos, numEntries);
+        columnCountPos = header.position(); numColumns = 0;
+        header.putInt(0);
+    }
+
+    endColumn();
+
+    putString(pName);
+
+    ensureHeaderRoom(24);
+    header.putInt(pNumRows);
+    header.putInt(pRowWidth);
+    header.putLong(data.position());
+
+    if (codec != null){
+        columnDataPos = data.position(); columnEncodingPos = header.position();
+        columnNumRows = pNumRows; columnRowWidth = pRowWidth;
+        header.putInt(SegmentColumnCodec.RAW);
+        header.putInt(pNumRows * pRowWidth * 4);
+    }
+
+    numColumns++;
+
+    long size = (long)pNumRows * pRowWidth * 4;
+
+    if (data.position() + size > Integer.MAX_VALUE){
+        throw new IllegalStateException("Segment data too large to save.");
+    }
+
+    data = ensureRoom(data, (int)size);
+
+}//end of SegmentFileWriter::startColumn
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileWriter::endColumn
+//
+// Encodes the column being written to a compressed file, if any, in place of
+// its unencoded data. The column is left unencoded if encoding would not make
+// it smaller.
+//
+
+private void endColumn()
+{
+
+    if (columnDataPos == -1) { return; }
+
+    ByteBuffer values = data.duplicate();
+    values.limit(data.position()).position(columnDataPos);
+
+    int encoding = codec.encode(
+                        values.slice().order(ByteOrder.LITTLE_ENDIAN)
+                            .asIntBuffer(), columnNumRows, columnRowWidth);
+
+    if (encoding != SegmentColumnCodec.RAW){
+
+        int length = codec.getEncodedLength();
+
+        data.position(columnDataPos);
+        data.put(codec.getEncoded(), 0, length);
+        while ((data.position() & 3) != 0) { data.put((byte)0); }
+
+        header.putInt(columnEncodingPos, encoding);
+        header.putInt(columnEncodingPos + 4, length);
+
+    }
+
+    columnDataPos = -1;
+
+}//end of SegmentFileWriter::endColumn
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileWriter::endSection
+//
+// Stores the entry and column counts of the current section, if any.
+//
+
+private void endSection()
+{
+
+    endColumn();
+
+    if (entryCountPos == -1) { return; }
+
+    if (columnCountPos == -1){
+        header.putInt(entryCountPos, numEntries);
+        ensureHeaderRoom(4);
+        header.putInt(0); //no columns
+    }
+    else{
+        header.putInt(columnCountPos, numColumns);
+    }
+
+    entryCountPos = -1; columnCountPos = -1;
+
+}//end of SegmentFileWriter::endSection
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileWriter::putString
+//
+// Adds the length and UTF-8 bytes of pValue to the header.
+//
+
+private void putString(String pValue)
+{
+
+    byte[] bytes = pValue.getBytes(StandardCharsets.UTF_8);
+
+    ensureHeaderRoom(4 + bytes.length);
+
+    header.putInt(bytes.length);
+    header.put(bytes);
+
+}//end of SegmentFileWriter::putString
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileWriter::ensureHeaderRoom
+//
+// Makes sure there is room for pNumBytes more bytes in the header. Room for
+// the column count of the current section is always kept.
+//
+
+private void ensureHeaderRoom(int pNumBytes)
+{
+
+    header = ensureRoom(header, pNumBytes + 4);
+
+}//end of SegmentFileWriter::ensureHeaderRoom
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileWriter::ensureRoom
+//
+// Returns pBuffer if it has room for pNumBytes more bytes. Otherwise, returns
+// a larger buffer containing the bytes already in pBuffer.
+//
+
+private static ByteBuffer ensureRoom(ByteBuffer pBuffer, int pNumBytes)
+{
+
+    if (pBuffer.remaining() >= pNumBytes) { return(pBuffer); }
+
+    long needed = (long)pBuffer.position() + pNumBytes;
+    long capacity = Math.max((long)pBuffer.capacity() * 2, needed);
+
+    ByteBuffer larger = ByteBuffer.allocate(
+                                (int)Math.min(capacity, Integer.MAX_VALUE))
+                                            .order(ByteOrder.LITTLE_ENDIAN);
+
+    pBuffer.flip();
+    larger.put(pBuffer);
+
+    return(larger);
+
+}//end of SegmentFileWriter::ensureRoom
+//-----------------------------------------------------------------------------
+
+}//end of class SegmentFileWriter
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,614 @@
+/******************************************************************************
+* Title: SegmentIndex.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class maintains an index of the segment data files in a job folder so
+* that the Viewer can find the first, last, next, and previous segments
+* without listing and sorting every file in the folder. Job folders may hold
+* tens of thousands of files on a network share, so listing the folder for
+* each button click takes seconds.
+*
+* There is one index file for the inspection segments (.dat) and one for the
+* calibration segments (.cal) in each job folder. Each is a text file with
+* one line per segment, appended each time a segment file is saved:
+*
+*   segment number <tab> file size <tab> time saved <tab> measured length
+*                                          <tab> peak,peak,...
+*
+* The time saved is in milliseconds since the epoch. The peaks are the peak
+* value of each trace for the segment in the order the traces are saved. The
+* measured length and peaks are blank for entries built from a folder scan.
+*
+* If a segment is saved again, its new line follows the old one and replaces
+* it when the index is loaded.
+*
+* Since the file is only appended to, the Viewer reads only the lines added
+* since its last refresh. A line which is not complete or cannot be parsed,
+* such as one cut short by a power failure, is ignored.
+*
+* If the index file does not exist, such as for a job created before the
+* index was added, it is built by scanning the folder once.
+*
+* More than one program, such as the inspection program and a Viewer on
+* another computer, may change the index of a job. All changes are made while
+* holding a file lock on a lock file next to the index file, named as the
+* index file with LOCK_EXTENSION added. The index file itself is not locked
+* as it is replaced when it is rebuilt.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package model;
+
+//-----------------------------------------------------------------------------
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SegmentIndex
+//
+
+public class SegmentIndex
+{
+
+    private final String folder;
+    private final String prefix;
+    private final String extension;
+    private final String indexPath;
+
+    private final TreeMap<Integer, Entry> entries = new TreeMap<>();
+
+    //number of bytes of the index file which have been loaded
+    private long loadedLength = 0;
+
+    static final String INDEX_FILENAME = "Segment Index.idx";
+
+    private static final String FORMAT_LINE = "Segment Index Format=1";
+
+    //all changes to index files in this program are made under this lock --
+    //it is taken before the lock file as a file lock is held by the whole
+    //program rather than by a thread
+    private static final Object FILE_LOCK = new Object();
+
+    static final String LOCK_EXTENSION = ".lock";
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::SegmentIndex (constructor)
+//
+// Parameter pFolder is the job folder, including the trailing separator.
+//
+// Parameters pPrefix and pExtension are the prefix and extension of the
+// segment filenames to be indexed, such as "20 - " and ".dat".
+//
+
+public SegmentIndex(String pFolder, String pPrefix, String pExtension)
+{
+
+    folder = pFolder; prefix = pPrefix; extension = pExtension;
+
+    indexPath = getIndexPath(pFolder, pPrefix);
+
+}//end of SegmentIndex::SegmentIndex (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::refresh
+//
+// Loads any lines added to the index file since the last refresh. If the
+// index file does not exist, it is built by scanning the folder.
+//
+// This only requires the size of the index file to be checked when there
+// have been no changes.
+//
+
+public synchronized void refresh() throws IOException
+{
+
+    File indexFile = new File(indexPath);
+
+    if (!indexFile.exists()){
+        synchronized(FILE_LOCK){
+            FileChannel lock = lockIndexFile(indexPath);
+            try{
+                if (!indexFile.exists()) { rebuild(folder, prefix, extension); }
+            }
+            finally{
+                lock.close();
+            }
+        }
+    }
+
+    long length = indexFile.length();
+
+    //a shorter file has been replaced, so load it from the beginning
+    if (length < loadedLength) { entries.clear(); loadedLength = 0; }
+
+    if (length == loadedLength) { return; }
+
+    loadedLength = loadLines(indexFile, loadedLength, entries);
+
+}//end of SegmentIndex::refresh
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::remove
+//
+// Removes segment pNumber from the entries in memory. Used when a segment
+// file listed in the index is found to be missing. The index file is not
+// changed.
+//
+
+public synchronized void remove(int pNumber)
+{
+
+    entries.remove(pNumber);
+
+}//end of SegmentIndex::remove
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::isEmpty
+//
+
+public synchronized boolean isEmpty()
+{
+
+    return(entries.isEmpty());
+
+}//end of SegmentIndex::isEmpty
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::getFirst
+//
+// Returns the lowest segment number or Integer.MIN_VALUE if there are none.
+//
+
+public synchronized int getFirst()
+{
+
+    return(entries.isEmpty() ? Integer.MIN_VALUE : entries.firstKey());
+
+}//end of SegmentIndex::getFirst
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::getLast
+//
+// Returns the highest segment number or Integer.MIN_VALUE if there are none.
+//
+
+public synchronized int getLast()
+{
+
+    return(entries.isEmpty() ? Integer.MIN_VALUE : entries.lastKey());
+
+}//end of SegmentIndex::getLast
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::getNext
+//
+// Returns the lowest segment number greater than pNumber or Integer.MIN_VALUE
+// if there is none.
+//
+
+public synchronized int getNext(int pNumber)
+{
+
+    Integer next = entries.higherKey(pNumber);
+
+    return(next == null ? Integer.MIN_VALUE : next);
+
+}//end of SegmentIndex::getNext
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::getPrevious
+//
+// Returns the highest segment number less than pNumber or Integer.MIN_VALUE
+// if there is none.
+//
+
+public synchronized int getPrevious(int pNumber)
+{
+
+    Integer previous = entries.lowerKey(pNumber);
+
+    return(previous == null ? Integer.MIN_VALUE : previous);
+
+}//end of SegmentIndex::getPrevious
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::getAtOrAfter
+//
+// Returns the lowest segment number greater than or equal to pNumber or
+// Integer.MIN_VALUE if there is none.
+//
+
+public synchronized int getAtOrAfter(int pNumber)
+{
+
+    Integer number = entries.ceilingKey(pNumber);
+
+    return(number == null ? Integer.MIN_VALUE : number);
+
+}//end of SegmentIndex::getAtOrAfter
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::getEntry
+//
+// Returns the entry for segment pNumber or null if there is none.
+//
+
+public synchronized Entry getEntry(int pNumber)
+{
+
+    return(entries.get(pNumber));
+
+}//end of SegmentIndex::getEntry
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::getSegmentNumbers
+//
+// Adds all segment numbers, in order, to pList as strings.
+//
+
+public synchronized void getSegmentNumbers(ArrayList<String> pList)
+{
+
+    pList.ensureCapacity(pList.size() + entries.size());
+
+    for (Integer number : entries.keySet()) { pList.add(number.toString()); }
+
+}//end of SegmentIndex::getSegmentNumbers
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::getIndexPath
+//
+// Returns the path of the index file for segment files starting with pPrefix
+// in folder pFolder.
+//
+// The index file name starts with the same prefix so that it is listed with
+// its segment files, but its extension keeps it from being taken as one.
+//
+
+static String getIndexPath(String pFolder, String pPrefix)
+{
+
+    return(pFolder + pPrefix + INDEX_FILENAME);
+
+}//end of SegmentIndex::getIndexPath
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::addEntry
+//
+// Appends pEntry to the index of the segment files starting with pPrefix and
+// ending with pExtension in folder pFolder. Called after the segment file has
+// been saved.
+//
+// If the index file does not exist, it is first built by scanning the folder
+// so that the segments already there are not left out. The scan will find the
+// file just saved, but the appended entry replaces that found by the scan.
+//
+// The line is added with a single write so that a reader never sees part of a
+// line unless the write is interrupted.
+//
+// This may be called from any thread.
+//
+
+public static void addEntry(String pFolder, String pPrefix, String pExtension,
+                                            Entry pEntry) throws IOException
+{
+
+    String indexPath = getIndexPath(pFolder, pPrefix);
+
+    byte[] line = (pEntry.toString() + "\n").getBytes(StandardCharsets.UTF_8);
+
+    synchronized(FILE_LOCK){
+
+        FileChannel lock = lockIndexFile(indexPath);
+
+        try{
+
+            if (!new File(indexPath).exists()){
+                rebuild(pFolder, pPrefix, pExtension);
+            }
+
+            Files.write(Paths.get(indexPath), line, StandardOpenOption.APPEND);
+
+        }
+        finally{
+            lock.close();
+        }
+
+    }
+
+}//end of SegmentIndex::addEntry
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::lockIndexFile
+//
+// Opens the lock file for the index file pIndexPath, creating it if
+// necessary, and waits for an exclusive lock on it so that no other program
+// changes the index at the same time. The lock is released when the returned
+// channel is closed.
+//
+// Must be called while holding FILE_LOCK.
+//
+
+private static FileChannel lockIndexFile(String pIndexPath) throws IOException
+{
+
+    FileChannel channel = FileChannel.open(
+                    Paths.get(pIndexPath + LOCK_EXTENSION),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+    try{
+        channel.lock();
+    }
+    catch(IOException | RuntimeException e){
+        channel.close();
+        throw e;
+    }
+
+    return(channel);
+
+}//end of SegmentIndex::lockIndexFile
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::rebuild
+//
+// Builds the index file for the segment files starting with pPrefix and
+// ending with pExtension in folder pFolder by scanning the folder. The size
+// and modification time of each file are recorded; the measured length and
+// peaks are left blank as the files are not read.
+//
+// The file is written to a temporary file and renamed so that a reader never
+// sees a partial index. Must be called while holding FILE_LOCK and the lock
+// file -- see lockIndexFile.
+//
+
+private static void rebuild(String pFolder, String pPrefix, String pExtension)
+                                                            throws IOException
+{
+
+    String[] names = new File(pFolder).list(
+                (dir, name) -> name.startsWith(pPrefix)
+                                                && name.endsWith(pExtension));
+
+    if (names == null){
+        throw new IOException("Could not list the job folder: " + pFolder);
+    }
+
+    TreeMap<Integer, Entry> found = new TreeMap<>();
+
+    for (String name : names){
+
+        int number = parseSegmentNumber(name, pPrefix, pExtension);
+        if (number == Integer.MIN_VALUE) { continue; }
+
+        File file = new File(pFolder + name);
+
+        found.put(number, new Entry(number, file.length(),
+                                        file.lastModified(), "", new int[0]));
+
+    }
+
+    StringBuilder contents = new StringBuilder(64 * (found.size() + 1));
+
+    contents.append(FORMAT_LINE).append('\n');
+
+    for (Entry entry : found.values()){
+        contents.append(entry.toString()).append('\n');
+    }
+
+    SegmentPersistenceService.writeFile(getIndexPath(pFolder, pPrefix),
+                            new ByteBuffer[] {ByteBuffer.wrap(
+                        contents.toString().getBytes(StandardCharsets.UTF_8))});
+
+}//end of SegmentIndex::rebuild
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::loadLines
+//
+// Parses the complete lines of pFile starting at byte pStart and adds their
+// entries to pEntries.
+//
+// Returns the position following the last complete line so that a line still
+// being written is read in full by the next call.
+//
+
+private static long loadLines(File pFile, long pStart,
+                            Map<Integer, Entry> pEntries) throws IOException
+{
+
+    byte[] bytes;
+
+    try (RandomAccessFile file = new RandomAccessFile(pFile, "r")){
+
+        long length = file.length() - pStart;
+
+        if (length > Integer.MAX_VALUE){
+            throw new IOException("Segment index is too large: " + pFile);
+        }
+
+        bytes = new byte[(int)Math.max(length, 0)];
+        file.seek(pStart);
+        file.readFully(bytes);
+
+    }
+
+    int lineStart = 0;
+
+    for (int i=0; i<bytes.length; i++){
+
+        if (bytes[i] != '\n') { continue; }
+
+        Entry entry = Entry.parse(new String(
+                    bytes, lineStart, i - lineStart, StandardCharsets.UTF_8));
+
+        if (entry != null) { pEntries.put(entry.segmentNumber, entry); }
+
+        lineStart = i + 1;
+
+    }
+
+    return(pStart + lineStart);
+
+}//end of SegmentIndex::loadLines
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::parseSegmentNumber
+//
+// Returns the segment number of filename pName with prefix pPrefix and
+// extension pExtension. Returns Integer.MIN_VALUE if the number is not valid.
+//
+
+static int parseSegmentNumber(String pName, String pPrefix,
+                                                            String pExtension)
+{
+
+    if (pName.length() <= pPrefix.length() + pExtension.length()){
+        return(Integer.MIN_VALUE);
+    }
+
+    try{
+        return(Integer.parseInt(pName.substring(pPrefix.length(),
+                                pName.length() - pExtension.length()).trim()));
+    }
+    catch(NumberFormatException e){
+        return(Integer.MIN_VALUE);
+    }
+
+}//end of SegmentIndex::parseSegmentNumber
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class Entry
+//
+// Holds the information recorded for one segment.
+//
+
+public static class Entry
+{
+
+    public final int segmentNumber;
+    public final long fileSize;
+    public final long timeSaved; //milliseconds since the epoch
+    public final String measuredLength;
+    public final int[] peaks;
+
+public Entry(int pSegmentNumber, long pFileSize, long pTimeSaved,
+                                        String pMeasuredLength, int[] pPeaks)
+{
+
+    segmentNumber = pSegmentNumber; fileSize = pFileSize;
+    timeSaved = pTimeSaved; measuredLength = pMeasuredLength; peaks = pPeaks;
+
+}//end of Entry::Entry (constructor)
+
+//-----------------------------------------------------------------------------
+// Entry::toString
+//
+// Returns the entry formatted as a line of the index file without the line
+// terminator.
+//
+
+@Override
+public String toString()
+{
+
+    StringBuilder line = new StringBuilder(32 + peaks.length * 6);
+
+    line.append(segmentNumber).append('\t').append(fileSize).append('\t')
+                .append(timeSaved).append('\t').append(measuredLength)
+                .append('\t');
+
+    for (int i=0; i<peaks.length; i++){
+        if (i > 0) { line.append(','); }
+        line.append(peaks[i]);
+    }
+
+    return(line.toString());
+
+}//end of Entry::toString
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Entry::parse
+//
+// Returns the entry for line pLine of the index file or null if the line is
+// not a valid entry.
+//
+
+static Entry parse(String pLine)
+{
+
+    String[] fields = pLine.split("\t", -1);
+
+    if (fields.length != 5) { return(null); }
+
+    try{
+
+        int[] peaks;
+
+        if (fields[4].isEmpty()) { peaks = new int[0]; }
+        else{
+            String[] values = fields[4].split(",");
+            peaks = new int[values.length];
+            for (int i=0; i<values.length; i++){
+                peaks[i] = Integer.parseInt(values[i]);
+            }
+        }
+
+        return(new Entry(Integer.parseInt(fields[0]),
+                    Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                    fields[3], peaks));
+
+    }
+    catch(NumberFormatException e){
+        return(null);
+    }
+
+}//end of Entry::parse
+//-----------------------------------------------------------------------------
+
+}//end of class Entry
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+}//end of class SegmentIndex
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,335 @@
+/******************************************************************************
+* Title: SegmentPersistenceService.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class writes segment data files in the background so that the saving
+* of a finished piece does not hold up the display of the next piece or the
+* handling of the next piece transition.
+*
+* The caller serializes the segment into a set of buffers at the end of the
+* piece. Since the buffers hold a copy of the data, they are a snapshot of the
+* segment and the display objects are free to go on to the next piece. The
+* service then writes the same buffers to each destination path. Each
+* destination -- the first path passed to save, the second, and so on -- has
+* its own writer thread so that a slow network drive holding the secondary
+* folder does not delay the primary copy. The files for a destination are
+* written in the order they were queued.
+*
+* Each file is written to a temporary file in the same folder, forced to the
+* storage device, and then renamed to its final name. The final file is thus
+* either the previous version or the complete new version -- a reader never
+* sees a partially written file and a power failure cannot leave a truncated
+* file in place of a good one.
+*
+* When each file is finished, the listener passed with the request is called
+* on the writer thread with the result.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package model;
+
+//-----------------------------------------------------------------------------
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SegmentPersistenceService
+//
+
+public class SegmentPersistenceService
+{
+
+    //one single thread executor for each destination, created as needed
+    private final ArrayList<ExecutorService> executors = new ArrayList<>();
+    private boolean shutDown = false;
+
+    //number of files queued or being written
+    private final AtomicInteger numPending = new AtomicInteger(0);
+
+    static final String TEMP_FILE_SUFFIX = ".tmp";
+
+//-----------------------------------------------------------------------------
+// interface SaveListener
+//
+// Called when a file has been written or the write has failed.
+//
+// Parameter pError is null on success.
+//
+
+public interface SaveListener
+{
+
+    void fileSaved(String pPath, long pMilliSec, IOException pError);
+
+}//end of interface SaveListener
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentPersistenceService::SegmentPersistenceService (constructor)
+//
+
+public SegmentPersistenceService()
+{
+
+}//end of SegmentPersistenceService::SegmentPersistenceService (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentPersistenceService::init
+//
+// Initializes the object.  Must be called after instantiation.
+//
+// The writer threads are started as each destination is first used. They are
+// daemons so that they do not keep the program running -- shutDown should be
+// called before exiting to allow the queued files to be written.
+//
+
+public void init()
+{
+
+}//end of SegmentPersistenceService::init
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentPersistenceService::queue
+//
+// Queues pTask on the executor for the destination with index pIndex,
+// creating that executor and any before it which do not yet exist.
+//
+// Returns false without queueing the task if shutDown has been called.
+//
+
+private synchronized boolean queue(int pIndex, Runnable pTask)
+{
+
+    if (shutDown) { return(false); }
+
+    while (executors.size() <= pIndex){
+        String name = "Segment Writer " + (executors.size() + 1);
+        executors.add(Executors.newSingleThreadExecutor((r) -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return(t);
+        }));
+    }
+
+    executors.get(pIndex).execute(pTask);
+
+    return(true);
+
+}//end of SegmentPersistenceService::queue
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentPersistenceService::save
+//
+// Queues the contents of pBuffers to be written to each of pPaths. Returns
+// immediately.
+//
+// The buffers are not modified, so the same buffers may be saved again. The
+// caller must not modify their contents after this call.
+//
+// pListener is called once for each path when that file is finished. It may
+// be null. If the service has been shut down, the files are not written and
+// the listener is called with an error on the calling thread.
+//
+
+public void save(ByteBuffer[] pBuffers, SaveListener pListener,
+                                                            String... pPaths)
+{
+
+    for (int i=0; i<pPaths.length; i++){
+
+        String path = pPaths[i];
+
+        numPending.incrementAndGet();
+
+        boolean queued = queue(i, () -> {
+
+            long start = System.nanoTime();
+            IOException error = null;
+
+            try{
+                writeFile(path, pBuffers);
+            }
+            catch(IOException e){
+                error = e;
+            }
+
+            //not counted as finished until the result has been reported
+
+            try{
+                if (pListener != null){
+                    pListener.fileSaved(path,
+                            (System.nanoTime() - start) / 1000000, error);
+                }
+            }
+            finally{
+                numPending.decrementAndGet();
+            }
+
+        });
+
+        if (queued) { continue; }
+
+        numPending.decrementAndGet();
+
+        if (pListener != null){
+            pListener.fileSaved(path, 0,
+                            new IOException("Segment writer is shut down."));
+        }
+
+    }
+
+}//end of SegmentPersistenceService::save
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentPersistenceService::isBusy
+//
+// Returns true if any files are queued or being written.
+//
+
+public boolean isBusy()
+{
+
+    return(numPending.get() > 0);
+
+}//end of SegmentPersistenceService::isBusy
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentPersistenceService::shutDown
+//
+// Stops accepting new files and waits up to pMilliSec in total for the files
+// already queued for every destination to be written.
+//
+// Returns true if all files were written.
+//
+
+public boolean shutDown(long pMilliSec)
+{
+
+    ArrayList<ExecutorService> list;
+
+    synchronized(this){
+        shutDown = true;
+        list = new ArrayList<>(executors);
+    }
+
+    for (ExecutorService e : list) { e.shutdown(); }
+
+    long deadline = System.nanoTime() + pMilliSec * 1000000;
+
+    try{
+        for (ExecutorService e : list){
+            long wait = deadline - System.nanoTime();
+            if (!e.awaitTermination(wait, TimeUnit.NANOSECONDS)){
+                return(false);
+            }
+        }
+    }
+    catch(InterruptedException e){
+        Thread.currentThread().interrupt();
+        return(false);
+    }
+
+    return(true);
+
+}//end of SegmentPersistenceService::shutDown
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentPersistenceService::writeFile
+//
+// Writes pBuffers to a temporary file, forces it to the storage device, and
+// renames it to pPath, replacing any existing file.
+//
+// The temporary file is deleted if the write fails.
+//
+
+static void writeFile(String pPath, ByteBuffer[] pBuffers) throws IOException
+{
+
+    Path path = Paths.get(pPath);
+    Path tempPath = Paths.get(pPath + TEMP_FILE_SUFFIX);
+
+    //each thread uses its own views of the shared buffers
+
+    ByteBuffer[] buffers = new ByteBuffer[pBuffers.length];
+    for (int i=0; i<buffers.length; i++){
+        buffers[i] = pBuffers[i].duplicate();
+    }
+
+    try{
+
+        try (FileChannel channel = FileChannel.open(tempPath,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)){
+
+            while (hasRemaining(buffers)) { channel.write(buffers); }
+
+            channel.force(true);
+
+        }
+
+        try{
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING,
+                                            StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(AtomicMoveNotSupportedException e){
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+    }
+    catch(IOException e){
+        try { Files.deleteIfExists(tempPath); } catch(IOException e2) { }
+        throw e;
+    }
+
+}//end of SegmentPersistenceService::writeFile
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentPersistenceService::hasRemaining
+//
+// Returns true if any of pBuffers has bytes remaining.
+//
+
+private static boolean hasRemaining(ByteBuffer[] pBuffers)
+{
+
+    for (ByteBuffer b : pBuffers) { if (b.hasRemaining()) { return(true); } }
+
+    return(false);
+
+}//end of SegmentPersistenceService::hasRemaining
+//-----------------------------------------------------------------------------
+
+}//end of class SegmentPersistenceService
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,1147 @@
+/******************************************************************************
+* Title: SegmentRecorder.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class records the data of the piece being inspected to a journal file
+* as the data is retrieved from the data transfer buffers by the display, so
+* that the whole piece is on disk as it is inspected rather than only when it
+* is finished.
+*
+* The display objects only keep the most recent data points in memory, so
+* the start of a long piece is no longer available to be saved when the piece
+* is finished. The journal holds every data point of the piece, so the segment
+* file built from it is complete regardless of the length of the piece. If the
+* program stops before the piece is finished, the journal is left behind and
+* the piece can be recovered from it the next time the program is started.
+*
+* Each transfer buffer which is to be recorded is given a Source by
+* addSource. Each run of data points handed to the display is passed to the
+* Source, which appends them to the journal. Snapshot and map buffers pass
+* the runs themselves; traces pass them after flagging threshold violations
+* so that the flags match those displayed. Erased data points are recorded as
+* a count so that they are removed when the journal is read back.
+*
+* Appending a record only copies it to a memory buffer, which is enlarged if
+* it fills. Only the background thread writes to the journal file: it
+* periodically, or sooner if the buffer is filling, swaps the buffer for a
+* spare one and writes and forces the records to the storage device without
+* holding the lock used when recording. Data points are recorded while the
+* lock of a transfer buffer is held, so the acquisition thread putting data
+* into that buffer is never held up waiting for the storage device. Each
+* force commits all records added since the previous one in a single
+* operation, which keeps the cost of recording low while limiting the data
+* which can be lost to the last commit interval.
+*
+* The memory buffer is not enlarged beyond MAX_BUFFER_SIZE. If the storage
+* device cannot keep up and the buffer reaches that size, recording of the
+* piece is stopped and the error is reported when the piece is ended; the
+* journal then holds the data points written before the error.
+*
+* The layout of the journal is:
+*
+*   magic number          int (MAGIC)
+*   format version        int
+*   number of sources     int
+*   sources               kind, chart group, chart, graph, trace -- 5 ints
+*   records               type int, followed by the record contents
+*
+* A data record contains the index of the source in the list above, the
+* number of data points n, and the contents of each data point. If n is
+* negative, -n data points were erased and no contents follow. The contents
+* of a data point depend on the kind of source:
+*
+*   TRACE                 value, flags
+*   SNAPSHOT              flags, row length, row
+*   MAP                   flags, row length, row, meta row length, meta row
+*
+* An end record marks the end of a finished piece. All values are
+* little-endian. A journal which ends partway through a record, as can happen
+* if the program stops while it is being written, is read up to the last
+* complete data point.
+*
+* When a piece is finished, replay reads the journal back into the Source of
+* each buffer, from which the display objects save the segment.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package model;
+
+//-----------------------------------------------------------------------------
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SegmentRecorder
+//
+
+public class SegmentRecorder
+{
+
+    private final long commitInterval;
+
+    private final ArrayList<Source> sources = new ArrayList<>();
+
+    private ByteBuffer buffer;
+    private ByteBuffer spare; //swapped with buffer when it is written
+    private FileChannel channel;
+    private Path journalPath;
+
+    //held while writing to the journal file so that only one thread writes
+    //at a time -- always taken before the lock of this object
+    private final Object writeLock = new Object();
+
+    //true if the commit thread has been asked to write the buffer early
+    private boolean commitRequested = false;
+
+    //the first error writing the current journal -- recording of the piece
+    //stops and the error is reported when the piece is ended
+    private IOException error;
+
+    private ScheduledExecutorService committer;
+
+    public static final String JOURNAL_EXTENSION = ".journal";
+
+    //kinds of sources
+    public static final int TRACE = 0;
+    public static final int SNAPSHOT = 1;
+    public static final int MAP = 2;
+
+    static final int MAGIC = 0x4A524E4C;
+    static final int FORMAT_VERSION = 1;
+
+    //types of records
+    private static final int DATA_RECORD = 1;
+    private static final int END_RECORD = 2;
+
+    private static final int BUFFER_SIZE = 262144;
+
+    //the memory buffer is not enlarged beyond this size -- if the journal
+    //cannot be written fast enough to keep the buffer smaller, recording of
+    //the piece is stopped rather than using ever more memory
+    static final int MAX_BUFFER_SIZE = 64 * 1048576;
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::SegmentRecorder (constructor)
+//
+// Parameter pCommitInterval is the time in milliseconds between commits of
+// the journal to the storage device.
+//
+
+public SegmentRecorder(long pCommitInterval)
+{
+
+    commitInterval = pCommitInterval;
+
+}//end of SegmentRecorder::SegmentRecorder (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::init
+//
+// Starts the commit thread. The thread is a daemon so that it does not keep
+// the program running.
+//
+
+public void init()
+{
+
+    buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    spare = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    committer = Executors.newSingleThreadScheduledExecutor((r) -> {
+        Thread t = new Thread(r, "Segment Journal");
+        t.setDaemon(true);
+        return(t);
+    });
+
+    committer.scheduleWithFixedDelay(this::commit, commitInterval,
+                                        commitInterval, TimeUnit.MILLISECONDS);
+
+}//end of SegmentRecorder::init
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::addSource
+//
+// Adds a source of kind pKind (TRACE, SNAPSHOT, or MAP) for the display
+// object identified by the chart group, chart, graph, and trace numbers and
+// returns it. The numbers identify the source when a journal is read back,
+// so a journal can be recovered even if the sources are added in a different
+// order.
+//
+// All sources must be added before the first piece is started.
+//
+
+public synchronized Source addSource(int pKind, int pChartGroupNum,
+                                int pChartNum, int pGraphNum, int pTraceNum)
+{
+
+    Source source = new Source(this, sources.size(), pKind, pChartGroupNum,
+                                            pChartNum, pGraphNum, pTraceNum);
+
+    sources.add(source);
+
+    return(source);
+
+}//end of SegmentRecorder::addSource
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::startPiece
+//
+// Starts recording a new piece to the journal file at pPath, replacing any
+// existing file. A piece still being recorded is abandoned and its journal
+// deleted.
+//
+// The last data point retrieved from each trace and snapshot before this call
+// is recorded as the first data point of the piece, as the display objects
+// mark that data point as the segment start.
+//
+
+public void startPiece(String pPath) throws IOException
+{
+
+    synchronized(writeLock){ synchronized(this){ startPieceLocked(pPath); } }
+
+}//end of SegmentRecorder::startPiece
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::startPieceLocked
+//
+// Does the work of startPiece while both locks are held.
+//
+
+private void startPieceLocked(String pPath) throws IOException
+{
+
+    abandonPiece();
+
+    Path path = Paths.get(pPath);
+
+    channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+    journalPath = path;
+    error = null;
+    buffer.clear();
+
+    int size = 12 + sources.size() * 20;
+    for (Source s : sources) { size += 12 + s.lastLength * 4; }
+    if (!ensureRoom(size)) { return; }
+
+    putInt(MAGIC); putInt(FORMAT_VERSION); putInt(sources.size());
+
+    for (Source s : sources){
+        putInt(s.kind); putInt(s.chartGroupNum); putInt(s.chartNum);
+        putInt(s.graphNum); putInt(s.traceNum);
+    }
+
+    for (Source s : sources){
+        if (s.kind == MAP || s.lastLength == 0) { continue; }
+        putInt(DATA_RECORD); putInt(s.id); putInt(1);
+        for (int i=0; i<s.lastLength; i++) { putInt(s.last[i]); }
+    }
+
+}//end of SegmentRecorder::startPieceLocked
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::endPiece
+//
+// Ends the piece being recorded, writes all remaining records, and forces
+// the journal to the storage device. Returns the path of the journal, or
+// null if no piece was being recorded.
+//
+// Throws the first error encountered while recording the piece, if any, in
+// which case the journal is incomplete.
+//
+
+public String endPiece() throws IOException
+{
+
+    synchronized(writeLock){
+
+        String path;
+
+        synchronized(this){
+            if (journalPath == null) { return(null); }
+            path = journalPath.toString();
+            if (error == null && ensureRoom(4)) { putInt(END_RECORD); }
+        }
+
+        try{
+            flush(true);
+            synchronized(this){ if (error != null) { throw error; } }
+        }
+        finally{
+            synchronized(this){ closeChannel(); journalPath = null; }
+        }
+
+        return(path);
+
+    }
+
+}//end of SegmentRecorder::endPiece
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::abandonPiece
+//
+// Stops recording the piece being recorded, if any, and deletes its journal.
+//
+
+public void abandonPiece()
+{
+
+    synchronized(writeLock){ synchronized(this){
+
+        if (journalPath == null) { return; }
+
+        closeChannel();
+
+        try { Files.deleteIfExists(journalPath); } catch(IOException e) { }
+
+        journalPath = null;
+
+    }}
+
+}//end of SegmentRecorder::abandonPiece
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::replay
+//
+// Reads the journal at pPath back into the sources. The data points recorded
+// for each source are available from the source afterwards until
+// clearRecordings is called. Sources in the journal which do not match any
+// added source are skipped.
+//
+// The first data point of each trace and snapshot is flagged as the segment
+// start and the last as the segment end.
+//
+// Returns true if the journal is complete, false if it ends before the end
+// record, as is the case for a piece which was being recorded when the
+// program stopped.
+//
+
+public synchronized boolean replay(String pPath) throws IOException
+{
+
+    clearRecordings();
+
+    ByteBuffer in = readFile(Paths.get(pPath));
+
+    if (in.remaining() < 12 || in.getInt() != MAGIC){
+        throw new IOException("Not a segment journal: " + pPath);
+    }
+
+    int version = in.getInt();
+
+    if (version != FORMAT_VERSION){
+        throw new IOException("Unsupported segment journal version "
+                                                + version + ": " + pPath);
+    }
+
+    boolean complete = false;
+
+    try{
+
+        int numSources = in.getInt();
+
+        int[] kinds = new int[numSources];
+        Source[] matches = new Source[numSources];
+
+        for (int i=0; i<numSources; i++){
+            kinds[i] = in.getInt();
+            matches[i] = findSource(kinds[i], in.getInt(), in.getInt(),
+                                                    in.getInt(), in.getInt());
+            if (matches[i] != null) { matches[i].recorded = true; }
+        }
+
+        boolean readable = true;
+
+        while (readable && in.hasRemaining()){
+
+            int type = in.getInt();
+
+            if (type == END_RECORD) { complete = true; break; }
+
+            if (type != DATA_RECORD) { break; } //remainder not readable
+
+            int index = in.getInt();
+            int n = in.getInt();
+
+            if (index < 0 || index >= numSources) { break; }
+
+            Source s = matches[index];
+
+            if (n < 0){
+                if (s != null) { s.removeRecorded(-n); }
+                continue;
+            }
+
+            for (int i=0; i<n && readable; i++){
+                readable = readDataPoint(in, kinds[index], s);
+            }
+
+        }
+
+    }
+    catch(BufferUnderflowException e){
+        //the journal ends partway through a record
+    }
+
+    for (Source s : sources) { s.flagEnds(); }
+
+    return(complete);
+
+}//end of SegmentRecorder::replay
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::isSegmentStarted
+//
+// Returns true if the data read back by replay holds a started segment, that
+// is if any source has more than a few data points, as required by the
+// isSegmentStarted methods of the display objects.
+//
+// A journal is started whenever inspection is started, so a journal left
+// when the program is stopped before a piece has started holds only the
+// first data point of each source.
+//
+
+public synchronized boolean isSegmentStarted()
+{
+
+    for (Source s : sources){ if (s.count > 10) { return(true); } }
+
+    return(false);
+
+}//end of SegmentRecorder::isSegmentStarted
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::clearRecordings
+//
+// Releases the data points read back by replay.
+//
+
+public synchronized void clearRecordings()
+{
+
+    for (Source s : sources) { s.clearRecorded(); }
+
+}//end of SegmentRecorder::clearRecordings
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::shutDown
+//
+// Stops the commit thread. If pKeepPiece is true, a piece still being
+// recorded is written and its journal left in place so that the piece can be
+// recovered. Otherwise, as when no segment has been started, the piece is
+// abandoned and its journal deleted.
+//
+// The commit thread is not interrupted as that would close the journal file
+// partway through a write -- a commit in progress is waited for instead.
+//
+
+public void shutDown(boolean pKeepPiece)
+{
+
+    committer.shutdown();
+
+    synchronized(writeLock){
+
+        if (!pKeepPiece) { abandonPiece(); return; }
+
+        synchronized(this){ if (journalPath == null) { return; } }
+
+        flush(false);
+
+        synchronized(this){ closeChannel(); journalPath = null; }
+
+    }
+
+}//end of SegmentRecorder::shutDown
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::recordValues
+//
+// Records the run of pCount trace data points in pValues and pFlags for
+// pSource. If pCount is negative, -pCount data points were erased.
+//
+
+synchronized void recordValues(Source pSource, int pCount, int[] pValues,
+                                                                int[] pFlags)
+{
+
+    if (pCount > 0){
+        pSource.setLast(2);
+        pSource.last[0] = pValues[pCount-1]; pSource.last[1] = pFlags[pCount-1];
+    }
+    else { pSource.lastLength = 0; }
+
+    if (channel == null) { return; }
+
+    if (!ensureRoom(12 + Math.max(pCount, 0) * 8)) { return; }
+
+    putInt(DATA_RECORD); putInt(pSource.id); putInt(pCount);
+
+    for (int i=0; i<pCount; i++){
+        buffer.putInt(pValues[i]); buffer.putInt(pFlags[i]);
+    }
+
+    requestCommit();
+
+}//end of SegmentRecorder::recordValues
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::recordRows
+//
+// Records the run of pCount snapshot or map data points in pRows, pMetaRows,
+// and pFlags for pSource. pMetaRows is ignored for snapshots. If pCount is
+// negative, -pCount data points were erased.
+//
+
+synchronized void recordRows(Source pSource, int pCount, int[][] pRows,
+                                            int[][] pMetaRows, int[] pFlags)
+{
+
+    if (pCount > 0){
+
+        //the last data point is stored in the same form as it is recorded
+
+        int[] row = pRows[pCount-1];
+        int length = 2 + row.length;
+        if (pSource.kind == MAP) { length += 1 + pMetaRows[pCount-1].length; }
+
+        pSource.setLast(length);
+
+        int p = 0;
+        pSource.last[p++] = pFlags[pCount-1];
+        pSource.last[p++] = row.length;
+        System.arraycopy(row, 0, pSource.last, p, row.length);
+        p += row.length;
+
+        if (pSource.kind == MAP){
+            int[] meta = pMetaRows[pCount-1];
+            pSource.last[p++] = meta.length;
+            System.arraycopy(meta, 0, pSource.last, p, meta.length);
+        }
+
+    }
+    else { pSource.lastLength = 0; }
+
+    if (channel == null) { return; }
+
+    int size = 12;
+
+    for (int i=0; i<pCount; i++){
+        size += 8 + pRows[i].length * 4;
+        if (pSource.kind == MAP) { size += 4 + pMetaRows[i].length * 4; }
+    }
+
+    if (!ensureRoom(size)) { return; }
+
+    putInt(DATA_RECORD); putInt(pSource.id); putInt(pCount);
+
+    for (int i=0; i<pCount; i++){
+        putInt(pFlags[i]);
+        putRow(pRows[i]);
+        if (pSource.kind == MAP) { putRow(pMetaRows[i]); }
+    }
+
+    requestCommit();
+
+}//end of SegmentRecorder::recordRows
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::clearLast
+//
+// Forgets the last data point retrieved for pSource so that it is not
+// carried into the next piece. Called when the transfer buffer is reset.
+//
+
+synchronized void clearLast(Source pSource)
+{
+
+    pSource.lastLength = 0;
+
+}//end of SegmentRecorder::clearLast
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::commit
+//
+// Writes the records added since the last commit to the journal and forces
+// the journal to the storage device. Called periodically by the commit
+// thread, and early by requestCommit if the buffer is filling.
+//
+
+private void commit()
+{
+
+    synchronized(writeLock){ flush(true); }
+
+}//end of SegmentRecorder::commit
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::requestCommit
+//
+// Asks the commit thread to write the memory buffer without waiting for the
+// next commit if the buffer is filling, so that it does not keep growing
+// while a long piece is recorded quickly.
+//
+// This method is not synchronized as it is expected to be called from a
+// synchronized method in this object.
+//
+
+private void requestCommit()
+{
+
+    if (commitRequested || buffer.position() < BUFFER_SIZE / 2) { return; }
+
+    commitRequested = true;
+
+    try{
+        committer.execute(this::commit);
+    }
+    catch(RejectedExecutionException e){
+        //shutting down -- the buffer is written by shutDown
+    }
+
+}//end of SegmentRecorder::requestCommit
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::flush
+//
+// Writes the records in the memory buffer to the journal file and, if
+// pForce is true, forces the file to the storage device.
+//
+// The buffer is swapped for the spare buffer while the lock of this object
+// is held and then written without holding it, so that data points can still
+// be recorded while waiting for the storage device.
+//
+// Must be called while holding writeLock and not the lock of this object.
+//
+
+private void flush(boolean pForce)
+{
+
+    ByteBuffer out;
+    FileChannel c;
+
+    synchronized(this){
+        commitRequested = false;
+        if (channel == null) { return; }
+        out = buffer; buffer = spare; buffer.clear();
+        spare = null;
+        c = channel;
+    }
+
+    IOException writeError = null;
+
+    try{
+        out.flip();
+        while (out.hasRemaining()) { c.write(out); }
+        if (pForce) { c.force(false); }
+    }
+    catch(IOException e){
+        writeError = e;
+    }
+
+    synchronized(this){
+        out.clear();
+        spare = out;
+        if (writeError != null && channel == c) { fail(writeError); }
+    }
+
+}//end of SegmentRecorder::flush
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::fail
+//
+// Stops recording the current piece after error pError. The journal is left
+// in place as it holds the data recorded so far.
+//
+
+private void fail(IOException pError)
+{
+
+    if (error == null) { error = pError; }
+
+    closeChannel();
+
+}//end of SegmentRecorder::fail
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::closeChannel
+//
+
+private void closeChannel()
+{
+
+    if (channel == null) { return; }
+
+    try { channel.close(); } catch(IOException e) { }
+
+    channel = null;
+
+}//end of SegmentRecorder::closeChannel
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::putInt
+//
+// Adds pValue to the memory buffer. The caller must have made room for it
+// with ensureRoom.
+//
+
+private void putInt(int pValue)
+{
+
+    buffer.putInt(pValue);
+
+}//end of SegmentRecorder::putInt
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::putRow
+//
+// Adds the length and contents of pRow to the memory buffer. The caller must
+// have made room for them with ensureRoom.
+//
+
+private void putRow(int[] pRow)
+{
+
+    buffer.putInt(pRow.length);
+
+    //values are put one at a time as a view buffer would be created for each
+    //row while the lock of the transfer buffer is held
+
+    for (int value : pRow) { buffer.putInt(value); }
+
+}//end of SegmentRecorder::putRow
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::ensureRoom
+//
+// Enlarges the memory buffer, keeping its contents, if there is not room for
+// pNumBytes more bytes. The buffer is never written here as the caller may
+// be holding the lock of a transfer buffer -- see requestCommit.
+//
+// Returns true if there is room. If the buffer would have to be enlarged
+// beyond MAX_BUFFER_SIZE because the journal is not being written fast
+// enough, recording of the piece is stopped with an error and false is
+// returned.
+//
+
+private boolean ensureRoom(int pNumBytes)
+{
+
+    if (buffer.remaining() >= pNumBytes) { return(true); }
+
+    long needed = (long)buffer.position() + pNumBytes;
+
+    if (needed > MAX_BUFFER_SIZE){
+        fail(new IOException("The segment journal could not be written fast"
+                    + " enough - recording of the piece was stopped."));
+        //the records not yet written are discarded with the enlarged buffer
+        buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        return(false);
+    }
+
+    int capacity = (int)Math.min(MAX_BUFFER_SIZE,
+                    Math.max(buffer.capacity() * 2L, needed * 2));
+
+    ByteBuffer larger = ByteBuffer.allocate(capacity)
+                                            .order(ByteOrder.LITTLE_ENDIAN);
+
+    buffer.flip();
+    larger.put(buffer);
+    buffer = larger;
+
+    return(true);
+
+}//end of SegmentRecorder::ensureRoom
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::findSource
+//
+// Returns the added source of kind pKind for the display object identified
+// by the chart group, chart, graph, and trace numbers, or null if none.
+//
+
+private Source findSource(int pKind, int pChartGroupNum, int pChartNum,
+                                                int pGraphNum, int pTraceNum)
+{
+
+    for (Source s : sources){
+        if (s.kind == pKind && s.chartGroupNum == pChartGroupNum
+                && s.chartNum == pChartNum && s.graphNum == pGraphNum
+                && s.traceNum == pTraceNum){
+            return(s);
+        }
+    }
+
+    return(null);
+
+}//end of SegmentRecorder::findSource
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::readDataPoint
+//
+// Reads one data point of a source of kind pKind from pIn and adds it to
+// pSource. If pSource is null, the data point is skipped.
+//
+// Returns false if the data point is not readable, in which case the rest of
+// the journal should be ignored.
+//
+
+private static boolean readDataPoint(ByteBuffer pIn, int pKind,
+                                                                Source pSource)
+{
+
+    if (pKind == TRACE){
+        int value = pIn.getInt(), flags = pIn.getInt();
+        if (pSource != null) { pSource.addRecorded(value, flags, null, null); }
+        return(true);
+    }
+
+    int flags = pIn.getInt();
+    int[] row = readRow(pIn);
+    int[] meta = pKind == MAP ? readRow(pIn) : null;
+
+    if (row == null || (pKind == MAP && meta == null)) { return(false); }
+
+    if (pSource != null) { pSource.addRecorded(0, flags, row, meta); }
+
+    return(true);
+
+}//end of SegmentRecorder::readDataPoint
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::readRow
+//
+// Reads the length and contents of a row from pIn. Returns null if the
+// length is not valid.
+//
+
+private static int[] readRow(ByteBuffer pIn)
+{
+
+    int length = pIn.getInt();
+
+    if (length < 0 || length > pIn.remaining() / 4) { return(null); }
+
+    int[] row = new int[length];
+
+    pIn.asIntBuffer().get(row);
+    pIn.position(pIn.position() + length * 4);
+
+    return(row);
+
+}//end of SegmentRecorder::readRow
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorder::readFile
+//
+// Returns the contents of the file at pPath. The file is read rather than
+// mapped so that it can be deleted as soon as it has been read.
+//
+
+private static ByteBuffer readFile(Path pPath) throws IOException
+{
+
+    try (FileChannel in = FileChannel.open(pPath, StandardOpenOption.READ)){
+
+        long size = in.size();
+
+        if (size > Integer.MAX_VALUE){
+            throw new IOException("The journal is too large to load: " + pPath);
+        }
+
+        ByteBuffer contents = ByteBuffer.allocate((int)size)
+                                            .order(ByteOrder.LITTLE_ENDIAN);
+
+        while (contents.hasRemaining()){
+            if (in.read(contents) < 0) { break; }
+        }
+
+        contents.flip();
+
+        return(contents);
+
+    }
+
+}//end of SegmentRecorder::readFile
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class Source
+//
+// Records the data points of one transfer buffer and holds the data points
+// read back from the journal by replay.
+//
+
+public static class Source
+{
+
+    private final SegmentRecorder recorder;
+
+    final int id, kind;
+    final int chartGroupNum, chartNum, graphNum, traceNum;
+
+    //the last data point retrieved, in the form it is recorded
+    int[] last = new int[0];
+    int lastLength = 0;
+
+    //the data points read back from the journal
+    boolean recorded = false;
+    private int count = 0;
+    private int[] values = new int[0], flags = new int[0];
+    private final ArrayList<int[]> rows = new ArrayList<>();
+    private final ArrayList<int[]> metaRows = new ArrayList<>();
+
+Source(SegmentRecorder pRecorder, int pId, int pKind, int pChartGroupNum,
+                                int pChartNum, int pGraphNum, int pTraceNum)
+{
+
+    recorder = pRecorder; id = pId; kind = pKind;
+    chartGroupNum = pChartGroupNum; chartNum = pChartNum;
+    graphNum = pGraphNum; traceNum = pTraceNum;
+
+}//end of Source::Source (constructor)
+
+//-----------------------------------------------------------------------------
+// Source::recordValues
+//
+// Records pCount trace data points -- see SegmentRecorder::recordValues.
+//
+
+public void recordValues(int pCount, int[] pValues, int[] pFlags)
+{
+
+    recorder.recordValues(this, pCount, pValues, pFlags);
+
+}//end of Source::recordValues
+
+//-----------------------------------------------------------------------------
+// Source::recordRows
+//
+// Records pCount snapshot or map data points -- see
+// SegmentRecorder::recordRows.
+//
+
+public void recordRows(int pCount, int[][] pRows, int[][] pMetaRows,
+                                                                int[] pFlags)
+{
+
+    recorder.recordRows(this, pCount, pRows, pMetaRows, pFlags);
+
+}//end of Source::recordRows
+
+//-----------------------------------------------------------------------------
+// Source::clearLast
+//
+
+public void clearLast()
+{
+
+    recorder.clearLast(this);
+
+}//end of Source::clearLast
+
+//-----------------------------------------------------------------------------
+// Source::hasRecording
+//
+// Returns true if the source has been read back from a journal, even if no
+// data points were recorded for it. The display objects save the data points
+// read back instead of the data points they hold.
+//
+
+public boolean hasRecording() { return(recorded); }
+
+//-----------------------------------------------------------------------------
+// Source::getCount
+//
+// Returns the number of data points read back from the journal.
+//
+
+public int getCount() { return(count); }
+
+//-----------------------------------------------------------------------------
+// Source::getValues
+//
+// Returns the trace values read back from the journal. Only the first
+// getCount values are valid.
+//
+
+public int[] getValues() { return(values); }
+
+//-----------------------------------------------------------------------------
+// Source::getFlags
+//
+// Returns the flags read back from the journal. Only the first getCount
+// flags are valid.
+//
+
+public int[] getFlags() { return(flags); }
+
+//-----------------------------------------------------------------------------
+// Source::getRows
+//
+// Returns the snapshot or map rows read back from the journal.
+//
+
+public ArrayList<int[]> getRows() { return(rows); }
+
+//-----------------------------------------------------------------------------
+// Source::getMetaRows
+//
+// Returns the map meta data rows read back from the journal.
+//
+
+public ArrayList<int[]> getMetaRows() { return(metaRows); }
+
+//-----------------------------------------------------------------------------
+// Source::setLast
+//
+// Makes room for a last data point of pLength ints.
+//
+
+void setLast(int pLength)
+{
+
+    if (last.length < pLength) { last = new int[pLength]; }
+
+    lastLength = pLength;
+
+}//end of Source::setLast
+
+//-----------------------------------------------------------------------------
+// Source::addRecorded
+//
+// Adds a data point read back from the journal.
+//
+
+void addRecorded(int pValue, int pFlags, int[] pRow, int[] pMetaRow)
+{
+
+    if (count == flags.length){
+        int capacity = Math.max(1024, count * 2);
+        values = Arrays.copyOf(values, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+    }
+
+    values[count] = pValue; flags[count] = pFlags;
+    count++;
+
+    if (pRow != null) { rows.add(pRow); }
+    if (pMetaRow != null) { metaRows.add(pMetaRow); }
+
+}//end of Source::addRecorded
+
+//-----------------------------------------------------------------------------
+// Source::removeRecorded
+//
+// Removes the last pCount data points read back from the journal, as they
+// were erased after being recorded.
+//
+
+void removeRecorded(int pCount)
+{
+
+    pCount = Math.min(pCount, count);
+
+    count -= pCount;
+
+    for (int i=0; i<pCount && !rows.isEmpty(); i++){
+        rows.remove(rows.size()-1);
+    }
+
+    for (int i=0; i<pCount && !metaRows.isEmpty(); i++){
+        metaRows.remove(metaRows.size()-1);
+    }
+
+}//end of Source::removeRecorded
+
+//-----------------------------------------------------------------------------
+// Source::flagEnds
+//
+// Flags the first data point as the segment start and the last as the
+// segment end, as the display objects do when marking the segment. The map
+// does not save flags.
+//
+
+void flagEnds()
+{
+
+    if (count == 0 || kind == MAP) { return; }
+
+    flags[0] |= DataFlags.SEGMENT_START_SEPARATOR;
+    flags[count-1] |= DataFlags.SEGMENT_END_SEPARATOR;
+
+}//end of Source::flagEnds
+
+//-----------------------------------------------------------------------------
+// Source::clearRecorded
+//
+
+void clearRecorded()
+{
+
+    recorded = false; count = 0;
+    values = new int[0]; flags = new int[0];
+    rows.clear(); metaRows.clear();
+
+}//end of Source::clearRecorded
+
+}//end of class Source
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+}//end of class SegmentRecorder
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
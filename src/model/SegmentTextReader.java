@@ -0,0 +1,391 @@
+/******************************************************************************
+* Title: SegmentTextReader.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class reads segment data files saved in the legacy text format from
+* the bytes of the entire file.
+*
+* Most of a text segment file is data: one number per line for trace data
+* and flags, or comma separated numbers for snapshot and map rows. Reading
+* these with BufferedReader.readLine creates a String for each line, which is
+* then trimmed, upper cased, split, and parsed, so loading a long piece
+* creates several objects per data point.
+*
+* The readIntColumn and readIntRows methods instead parse the numbers of a
+* data section directly from the bytes of the file into int arrays without
+* creating any Strings. They stop at the next [tag] line, which is then
+* returned by the next call to readLine as usual.
+*
+* The class extends BufferedReader so that it can be passed through the
+* existing loadSegment methods, which read the headers and entries of each
+* section with readLine. The data loaders check for this class and use the
+* fast methods when they are given one.
+*
+* The numbers are parsed as ASCII, so this class may only be used for files
+* in a character set in which ASCII characters are single bytes with their
+* ASCII values, such as UTF-8. The open method returns a standard
+* BufferedReader for other character sets.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package model;
+
+//-----------------------------------------------------------------------------
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SegmentTextReader
+//
+
+public class SegmentTextReader extends BufferedReader
+{
+
+    private final byte[] bytes;
+    private final int end;
+    private final Charset charset;
+
+    private int pos;
+
+    //the values read by readIntColumn -- reused for each column
+    private int[] values = new int[8192];
+    private int count = 0;
+
+//-----------------------------------------------------------------------------
+// SegmentTextReader::SegmentTextReader (constructor)
+//
+// Reads the pLength bytes of pBytes starting at pOffset, which hold an entire
+// file in character set pCharset. pBytes is not copied or modified.
+//
+
+public SegmentTextReader(byte[] pBytes, int pOffset, int pLength,
+                                                            Charset pCharset)
+{
+
+    //the BufferedReader is not used -- all reading is done from pBytes
+    super(new StringReader(""), 1);
+
+    bytes = pBytes; pos = pOffset; end = pOffset + pLength;
+    charset = pCharset;
+
+    //skip the UTF-8 byte order mark if present
+    if (end - pos >= 3 && bytes[pos] == (byte)0xEF
+                && bytes[pos+1] == (byte)0xBB && bytes[pos+2] == (byte)0xBF){
+        pos += 3;
+    }
+
+}//end of SegmentTextReader::SegmentTextReader (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentTextReader::open
+//
+// Returns a reader for the pLength bytes of pBytes starting at pOffset, which
+// hold an entire file in character set pCharsetName. This is a
+// SegmentTextReader if the character set is one which it can read, otherwise
+// a standard BufferedReader.
+//
+
+public static BufferedReader open(byte[] pBytes, int pOffset, int pLength,
+                                        String pCharsetName) throws IOException
+{
+
+    Charset charset = Charset.forName(pCharsetName);
+
+    if (charset.equals(StandardCharsets.UTF_8)
+            || charset.equals(StandardCharsets.US_ASCII)
+            || charset.equals(StandardCharsets.ISO_8859_1)
+            || charset.name().equalsIgnoreCase("windows-1252")){
+        return(new SegmentTextReader(pBytes, pOffset, pLength, charset));
+    }
+
+    return(new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(pBytes, pOffset, pLength), charset)));
+
+}//end of SegmentTextReader::open
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentTextReader::readLine
+//
+// Returns the next line without the line terminator or null at the end of
+// the file.
+//
+
+@Override
+public String readLine()
+{
+
+    if (pos >= end) { return(null); }
+
+    int start = pos;
+
+    while (pos < end && bytes[pos] != '\n') { pos++; }
+
+    int lineEnd = pos;
+
+    if (pos < end) { pos++; } //skip the '\n'
+
+    if (lineEnd > start && bytes[lineEnd-1] == '\r') { lineEnd--; }
+
+    return(new String(bytes, start, lineEnd - start, charset));
+
+}//end of SegmentTextReader::readLine
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentTextReader::read
+//
+// Reads characters one at a time. Only used if the reader is read as a
+// stream of characters rather than by lines -- returns -1 at the end of the
+// file.
+//
+
+@Override
+public int read()
+{
+
+    if (pos >= end) { return(-1); }
+
+    return(bytes[pos++] & 0xff);
+
+}//end of SegmentTextReader::read
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentTextReader::read
+//
+
+@Override
+public int read(char[] pBuf, int pOffset, int pLength)
+{
+
+    if (pos >= end) { return(-1); }
+
+    int n = Math.min(pLength, end - pos);
+
+    for (int i=0; i<n; i++) { pBuf[pOffset + i] = (char)(bytes[pos++] & 0xff); }
+
+    return(n);
+
+}//end of SegmentTextReader::read
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentTextReader::ready
+//
+
+@Override
+public boolean ready() { return(pos < end); }
+
+//-----------------------------------------------------------------------------
+// SegmentTextReader::close
+//
+
+@Override
+public void close() { }
+
+//-----------------------------------------------------------------------------
+// SegmentTextReader::readIntColumn
+//
+// Reads one number from each line up to the next line starting with '[',
+// which may be preceded by spaces or tabs. Each number must start at the
+// beginning of its line and be followed directly by the line terminator, as
+// with Integer.parseInt. The numbers are available from getValues and
+// getCount afterwards. The '[' line is returned by the next call to readLine.
+//
+// Returns true if the '[' line was reached, false if the end of the file was
+// reached first.
+//
+// Throws NumberFormatException if a line is not a valid number, in which
+// case getCount returns the index of the line in the column.
+//
+
+public boolean readIntColumn()
+{
+
+    count = 0;
+
+    while (pos < end){
+
+        if (isTagLine()) { return(true); }
+
+        if (count == values.length){
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+
+        values[count] = parseInt();
+
+        if (pos < end && bytes[pos] == '\r') { pos++; }
+
+        if (pos < end){
+            if (bytes[pos] != '\n') { throw new NumberFormatException(); }
+            pos++;
+        }
+
+        count++;
+
+    }
+
+    return(false);
+
+}//end of SegmentTextReader::readIntColumn
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentTextReader::getValues
+//
+// Returns the values read by the last call to readIntColumn. Only the first
+// getCount values are valid. The array is reused by the next call.
+//
+
+public int[] getValues() { return(values); }
+
+//-----------------------------------------------------------------------------
+// SegmentTextReader::getCount
+//
+
+public int getCount() { return(count); }
+
+//-----------------------------------------------------------------------------
+// SegmentTextReader::readIntRows
+//
+// Reads a row of comma separated numbers from each line up to the next line
+// starting with '[' and adds each row to pRows, each number ORed with
+// pDataModifier. A comma at the end of a line is ignored. The '[' line is
+// returned by the next call to readLine.
+//
+// Returns true if the '[' line was reached, false if the end of the file was
+// reached first.
+//
+// Throws NumberFormatException if a line is not valid, in which case
+// getCount returns the index of the line in the rows.
+//
+
+public boolean readIntRows(List<int[]> pRows, int pDataModifier)
+{
+
+    count = 0;
+
+    while (pos < end){
+
+        if (isTagLine()) { return(true); }
+
+        //count the values so the row can be allocated at its final size
+
+        int lineEnd = pos;
+        while (lineEnd < end && bytes[lineEnd] != '\n') { lineEnd++; }
+
+        int numValues = 1;
+        for (int i=pos; i<lineEnd; i++){ if (bytes[i] == ',') { numValues++; } }
+
+        int stop = lineEnd;
+        if (stop > pos && bytes[stop-1] == '\r') { stop--; }
+        if (stop > pos && bytes[stop-1] == ',') { numValues--; }
+
+        int[] row = new int[numValues];
+
+        for (int i=0; i<numValues; i++){
+            row[i] = parseInt() | pDataModifier;
+            if (pos < stop && bytes[pos] == ',') { pos++; }
+            else if (i < numValues-1) { throw new NumberFormatException(); }
+        }
+
+        if (pos != stop) { throw new NumberFormatException(); }
+
+        pos = lineEnd < end ? lineEnd + 1 : end;
+
+        pRows.add(row);
+
+        count++;
+
+    }
+
+    return(false);
+
+}//end of SegmentTextReader::readIntRows
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentTextReader::isTagLine
+//
+// Returns true if the line at the current position starts with '[' after any
+// spaces or tabs. The position is not changed.
+//
+
+private boolean isTagLine()
+{
+
+    int p = pos;
+
+    while (p < end && (bytes[p] == ' ' || bytes[p] == '\t')) { p++; }
+
+    return(p < end && bytes[p] == '[');
+
+}//end of SegmentTextReader::isTagLine
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentTextReader::parseInt
+//
+// Parses the number at the current position, accepting the same text as
+// Integer.parseInt, and moves the position past it.
+//
+// Throws NumberFormatException if there is no number at the position or it
+// is out of range.
+//
+
+private int parseInt()
+{
+
+    boolean negative = false;
+
+    if (pos < end && (bytes[pos] == '-' || bytes[pos] == '+')){
+        negative = bytes[pos] == '-';
+        pos++;
+    }
+
+    int start = pos;
+    long value = 0;
+
+    while (pos < end){
+        int digit = bytes[pos] - '0';
+        if (digit < 0 || digit > 9) { break; }
+        value = value * 10 + digit;
+        if (value > 2147483648L) { throw new NumberFormatException(); }
+        pos++;
+    }
+
+    if (pos == start) { throw new NumberFormatException(); }
+
+    if (negative) { value = -value; }
+
+    if (value > Integer.MAX_VALUE) { throw new NumberFormatException(); }
+
+    return((int)value);
+
+}//end of SegmentTextReader::parseInt
+//-----------------------------------------------------------------------------
+
+}//end of class SegmentTextReader
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
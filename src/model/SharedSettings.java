@@ -128,6 +128,19 @@ public class SharedSettings{
     //version 1.0 saved with the "Threshold" tag misspelled as "Theshold"
     public static String SEGMENT_DATA_VERSION = "1.1";
 
+    //format used to save segment data files -- the Viewer loads any format
+    //the setting in the main config file is the default for all jobs and may
+    //be overridden by the job's config file
+    public static final String TEXT_SEGMENT_FORMAT = "text";
+    public static final String BINARY_SEGMENT_FORMAT = "binary";
+    public static final String COMPRESSED_SEGMENT_FORMAT = "compressed";
+    public String segmentFileFormat = TEXT_SEGMENT_FORMAT;
+
+    //memory budget for segment files held by the Viewer, 0 disables the cache
+    public int viewerSegmentCacheSizeMB = 256;
+    //number of segments before and after the one viewed to read in advance
+    public int viewerPrefetchCount = 2;
+
     private static final int ERROR_LOG_MAX_SIZE = 10000;
 
 //-----------------------------------------------------------------------------
@@ -218,6 +231,15 @@ private void loadMainConfigSettings()
 
     dataPathSecondary = trimAndAppendFileSeparatorIfMissing(dataPathSecondary);
 
+    segmentFileFormat = configFile.readString(
+            "Main Settings", "segment file format", TEXT_SEGMENT_FORMAT).trim();
+
+    viewerSegmentCacheSizeMB = configFile.readInt(
+                "Main Settings", "viewer segment cache size in MB", 256);
+
+    viewerPrefetchCount = configFile.readInt(
+                "Main Settings", "number of segments viewer reads ahead", 2);
+
 }// end of SharedSettings::loadMainConfigSettings
 //-----------------------------------------------------------------------------
 
@@ -0,0 +1,406 @@
+/******************************************************************************
+* Title: IntRingBuffer.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class stores a history of primitive integers in a circular array. It
+* is used in place of ArrayList<Integer> for data lists which are capped to a
+* maximum size and trimmed by removing the oldest value each time a new value
+* is added.
+*
+* With an ArrayList, removing the oldest value requires shifting every other
+* value down and each value added must be boxed into an Integer object. Here,
+* adding a value and discarding the oldest are both simple index updates and
+* no objects are created.
+*
+* Values are accessed by logical index: index 0 is always the oldest value
+* still held and size()-1 is the newest, exactly as with an ArrayList from
+* which the oldest values have been removed.
+*
+* If enableRangeMax is called, the buffer also maintains a segment tree over
+* its values so that indexOfMax can find the largest value in any range of
+* logical indexes in O(log n) time without creating any objects. Each add or
+* set then updates the tree in O(log n) time.
+*
+* This class is not thread safe.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package toolkit;
+
+//-----------------------------------------------------------------------------
+
+import java.nio.IntBuffer;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class IntRingBuffer
+//
+
+public class IntRingBuffer
+{
+
+    private int[] buf;
+    private int head = 0; //physical position of logical index 0
+    private int size = 0;
+
+    //segment tree for indexOfMax -- null unless enabled by enableRangeMax
+    //node k holds the physical index of the largest value of its children,
+    //the leaves for the physical positions start at node buf.length
+    private int[] maxTree;
+
+    public int size() { return(size); }
+    public int capacity() { return(buf.length); }
+
+//-----------------------------------------------------------------------------
+// IntRingBuffer::IntRingBuffer (constructor)
+//
+// Parameter pCapacity specifies the maximum number of values held before the
+// oldest values are discarded by add.
+//
+
+public IntRingBuffer(int pCapacity)
+{
+
+    buf = new int[Math.max(pCapacity, 1)];
+
+}//end of IntRingBuffer::IntRingBuffer (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IntRingBuffer::clear
+//
+// Removes all values. The capacity is not changed.
+//
+
+public void clear()
+{
+
+    head = 0; size = 0;
+
+}//end of IntRingBuffer::clear
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IntRingBuffer::add
+//
+// Adds pValue as the newest value. If the buffer is full, the oldest value is
+// discarded and the logical index of every remaining value drops by one.
+//
+// Returns true if a value was discarded.
+//
+
+public boolean add(int pValue)
+{
+
+    if (size < buf.length){
+        int p = physicalIndex(size);
+        buf[p] = pValue;
+        updateRangeMax(p);
+        size++;
+        return(false);
+    }
+
+    //full -- overwrite the oldest value and move the head past it
+    buf[head] = pValue;
+    updateRangeMax(head);
+    head++; if (head >= buf.length) { head = 0; }
+
+    return(true);
+
+}//end of IntRingBuffer::add
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IntRingBuffer::addExpanding
+//
+// Adds pValue as the newest value. If the buffer is full, the capacity is
+// doubled rather than discarding the oldest value.
+//
+// This is used when loading data which must be kept in its entirety.
+//
+
+public void addExpanding(int pValue)
+{
+
+    if (size == buf.length) { setCapacity(buf.length * 2); }
+
+    add(pValue);
+
+}//end of IntRingBuffer::addExpanding
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IntRingBuffer::loadFrom
+//
+// Replaces all values with the values remaining in pSource, each ORed with
+// pDataModifier. The capacity is increased if necessary to hold them all.
+//
+// The values are transferred with a single bulk copy, which is much faster
+// than adding them one at a time when loading large data sets.
+//
+
+public void loadFrom(IntBuffer pSource, int pDataModifier)
+{
+
+    int count = pSource.remaining();
+
+    if (count > buf.length) { buf = new int[count]; }
+
+    pSource.get(buf, 0, count);
+
+    if (pDataModifier != 0){
+        for (int i=0; i<count; i++) { buf[i] |= pDataModifier; }
+    }
+
+    head = 0; size = count;
+
+    rebuildRangeMax();
+
+}//end of IntRingBuffer::loadFrom
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IntRingBuffer::get
+//
+// Returns the value at logical index pIndex.
+//
+
+public int get(int pIndex)
+{
+
+    if (pIndex < 0 || pIndex >= size){
+        throw new IndexOutOfBoundsException(
+                                "Index: " + pIndex + ", Size: " + size);
+    }
+
+    return(buf[physicalIndex(pIndex)]);
+
+}//end of IntRingBuffer::get
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IntRingBuffer::set
+//
+// Replaces the value at logical index pIndex with pValue.
+//
+
+public void set(int pIndex, int pValue)
+{
+
+    if (pIndex < 0 || pIndex >= size){
+        throw new IndexOutOfBoundsException(
+                                "Index: " + pIndex + ", Size: " + size);
+    }
+
+    int p = physicalIndex(pIndex);
+
+    buf[p] = pValue;
+
+    updateRangeMax(p);
+
+}//end of IntRingBuffer::set
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IntRingBuffer::setCapacity
+//
+// Changes the capacity to pCapacity, preserving the newest values which fit.
+//
+
+public void setCapacity(int pCapacity)
+{
+
+    pCapacity = Math.max(pCapacity, 1);
+
+    if (pCapacity == buf.length) { return; }
+
+    int keep = Math.min(size, pCapacity);
+
+    int[] newBuf = new int[pCapacity];
+
+    for (int i=0; i<keep; i++){
+        newBuf[i] = buf[physicalIndex(size - keep + i)];
+    }
+
+    buf = newBuf; head = 0; size = keep;
+
+    rebuildRangeMax();
+
+}//end of IntRingBuffer::setCapacity
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IntRingBuffer::enableRangeMax
+//
+// Enables indexOfMax by creating the segment tree which it uses. The tree is
+// kept up to date as values are added or changed from then on.
+//
+
+public void enableRangeMax()
+{
+
+    if (maxTree != null) { return; }
+
+    maxTree = new int[buf.length * 2];
+
+    rebuildRangeMax();
+
+}//end of IntRingBuffer::enableRangeMax
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IntRingBuffer::indexOfMax
+//
+// Returns the logical index of the largest value between logical indexes
+// pStart and pEnd inclusive. If several values are equal to the largest, the
+// lowest index is returned.
+//
+// enableRangeMax must have been called first. pStart and pEnd must be valid
+// indexes with pStart <= pEnd.
+//
+
+public int indexOfMax(int pStart, int pEnd)
+{
+
+    if (pStart < 0 || pEnd >= size || pStart > pEnd){
+        throw new IndexOutOfBoundsException(
+            "Range: " + pStart + " to " + pEnd + ", Size: " + size);
+    }
+
+    int start = physicalIndex(pStart), end = physicalIndex(pEnd);
+
+    int best;
+
+    if (start <= end){
+        best = maxInPhysicalRange(start, end);
+    }
+    else{
+        //the range wraps past the end of the array -- the part at the end of
+        //the array comes first logically, so it wins any tie
+        best = maxInPhysicalRange(start, buf.length - 1);
+        int second = maxInPhysicalRange(0, end);
+        if (buf[second] > buf[best]) { best = second; }
+    }
+
+    int i = best - head;
+
+    return(i < 0 ? i + buf.length : i);
+
+}//end of IntRingBuffer::indexOfMax
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IntRingBuffer::maxInPhysicalRange
+//
+// Returns the physical index of the largest value between physical indexes
+// pStart and pEnd inclusive, the lowest index if several are equal.
+//
+
+private int maxInPhysicalRange(int pStart, int pEnd)
+{
+
+    int n = buf.length;
+    int best = pStart;
+
+    for (int lo = pStart + n, hi = pEnd + n + 1; lo < hi; lo >>= 1, hi >>= 1){
+        if ((lo & 1) != 0) { best = better(best, maxTree[lo++]); }
+        if ((hi & 1) != 0) { best = better(best, maxTree[--hi]); }
+    }
+
+    return(best);
+
+}//end of IntRingBuffer::maxInPhysicalRange
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IntRingBuffer::updateRangeMax
+//
+// Updates the segment tree, if enabled, after the value at physical index
+// pPhysical has changed.
+//
+
+private void updateRangeMax(int pPhysical)
+{
+
+    if (maxTree == null) { return; }
+
+    for (int k = (pPhysical + buf.length) >> 1; k > 0; k >>= 1){
+        maxTree[k] = better(maxTree[2*k], maxTree[2*k+1]);
+    }
+
+}//end of IntRingBuffer::updateRangeMax
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IntRingBuffer::rebuildRangeMax
+//
+// Rebuilds the entire segment tree, if enabled, after the array has been
+// replaced or bulk loaded.
+//
+
+private void rebuildRangeMax()
+{
+
+    if (maxTree == null) { return; }
+
+    int n = buf.length;
+
+    if (maxTree.length != n * 2) { maxTree = new int[n * 2]; }
+
+    for (int i=0; i<n; i++) { maxTree[n + i] = i; }
+
+    for (int k = n - 1; k > 0; k--){
+        maxTree[k] = better(maxTree[2*k], maxTree[2*k+1]);
+    }
+
+}//end of IntRingBuffer::rebuildRangeMax
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IntRingBuffer::better
+//
+// Returns whichever of physical indexes pA and pB holds the larger value, or
+// the lower index if the values are equal.
+//
+
+private int better(int pA, int pB)
+{
+
+    int a = buf[pA], b = buf[pB];
+
+    if (a != b) { return(a > b ? pA : pB); }
+
+    return(pA < pB ? pA : pB);
+
+}//end of IntRingBuffer::better
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IntRingBuffer::physicalIndex
+//
+// Converts logical index pIndex to its position in the underlying array.
+//
+
+private int physicalIndex(int pIndex)
+{
+
+    int p = head + pIndex;
+
+    return(p >= buf.length ? p - buf.length : p);
+
+}//end of IntRingBuffer::physicalIndex
+//-----------------------------------------------------------------------------
+
+}//end of class IntRingBuffer
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
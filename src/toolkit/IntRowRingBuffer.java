@@ -0,0 +1,299 @@
+/******************************************************************************
+* Title: IntRowRingBuffer.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class stores a history of int[] rows in a circular array. It is used in
+* place of ArrayList<int[]> for row lists which are capped to a maximum size
+* and trimmed by removing the oldest row each time a new row is added.
+*
+* With an ArrayList, removing the oldest row requires shifting every other
+* reference down and each row added is usually a new clone of the source.
+* Here, addCopy copies the source into the array already held by the slot
+* being reused, so once the buffer is full no arrays are created and
+* discarding the oldest row is a simple index update.
+*
+* The class is a java.util.List so that it can be passed to the methods which
+* load and save rows. Rows are accessed by logical index: index 0 is always
+* the oldest row still held and size()-1 is the newest, exactly as with an
+* ArrayList from which the oldest rows have been removed.
+*
+* The standard add method stores the reference it is passed and expands the
+* buffer rather than discarding the oldest row -- it is used when loading
+* data which must be kept in its entirety. Only the newest row may be
+* removed.
+*
+* This class is not thread safe.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package toolkit;
+
+//-----------------------------------------------------------------------------
+
+import java.util.AbstractList;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class IntRowRingBuffer
+//
+
+public class IntRowRingBuffer extends AbstractList<int[]>
+{
+
+    private int[][] rows;
+    private int head = 0; //physical position of logical index 0
+    private int size = 0;
+
+    private final int capacity;
+
+    @Override
+    public int size() { return(size); }
+    public int capacity() { return(capacity); }
+
+//-----------------------------------------------------------------------------
+// IntRowRingBuffer::IntRowRingBuffer (constructor)
+//
+// Parameter pCapacity specifies the maximum number of rows held before the
+// oldest rows are discarded by addCopy. The array of rows is expanded as
+// needed up to that size.
+//
+
+public IntRowRingBuffer(int pCapacity)
+{
+
+    capacity = Math.max(pCapacity, 1);
+
+    rows = new int[Math.min(capacity, 16)][];
+
+}//end of IntRowRingBuffer::IntRowRingBuffer (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IntRowRingBuffer::clear
+//
+// Removes all rows. The arrays held by the slots are kept to be reused by
+// addCopy.
+//
+
+@Override
+public void clear()
+{
+
+    head = 0; size = 0;
+
+}//end of IntRowRingBuffer::clear
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IntRowRingBuffer::addCopy
+//
+// Adds a copy of pSource as the newest row. If the buffer is full, the oldest
+// row is discarded and the logical index of every remaining row drops by one.
+//
+// The copy is stored in the array previously held by the slot if that array
+// is the same length as pSource, otherwise a new array is created.
+//
+// Returns true if a row was discarded.
+//
+
+public boolean addCopy(int[] pSource)
+{
+
+    boolean discard = size >= capacity;
+
+    if (!discard && size == rows.length) { expand(); }
+
+    int p = physicalIndex(size);
+
+    int[] row = rows[p];
+
+    if (row == null || row.length != pSource.length){
+        row = new int[pSource.length];
+        rows[p] = row;
+    }
+
+    System.arraycopy(pSource, 0, row, 0, pSource.length);
+
+    if (!discard) { size++; return(false); }
+
+    //full -- move the head past the oldest row, the slot of which was just
+    //reused if the array is not larger than the capacity
+
+    head++; if (head >= rows.length) { head = 0; }
+
+    return(true);
+
+}//end of IntRowRingBuffer::addCopy
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IntRowRingBuffer::add
+//
+// Adds pRow itself as the newest row. If the buffer is full, it is expanded
+// rather than discarding the oldest row.
+//
+// The buffer takes ownership of pRow -- it may be reused by a later call to
+// addCopy after the buffer has been cleared.
+//
+
+@Override
+public boolean add(int[] pRow)
+{
+
+    if (size == rows.length) { expand(); }
+
+    rows[physicalIndex(size)] = pRow;
+
+    size++;
+
+    return(true);
+
+}//end of IntRowRingBuffer::add
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IntRowRingBuffer::get
+//
+// Returns the row at logical index pIndex. The row is not copied.
+//
+
+@Override
+public int[] get(int pIndex)
+{
+
+    checkIndex(pIndex);
+
+    return(rows[physicalIndex(pIndex)]);
+
+}//end of IntRowRingBuffer::get
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IntRowRingBuffer::set
+//
+// Replaces the row at logical index pIndex with pRow, returning the row
+// replaced.
+//
+
+@Override
+public int[] set(int pIndex, int[] pRow)
+{
+
+    checkIndex(pIndex);
+
+    int p = physicalIndex(pIndex);
+
+    int[] old = rows[p];
+
+    rows[p] = pRow;
+
+    return(old);
+
+}//end of IntRowRingBuffer::set
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IntRowRingBuffer::remove
+//
+// Removes the row at logical index pIndex, which must be the newest row.
+//
+// The slot is emptied rather than keeping the array for reuse as the row may
+// be an array which was added by the caller and is still in use elsewhere.
+//
+
+@Override
+public int[] remove(int pIndex)
+{
+
+    checkIndex(pIndex);
+
+    if (pIndex != size - 1){
+        throw new UnsupportedOperationException(
+                                        "Only the newest row may be removed.");
+    }
+
+    int p = physicalIndex(pIndex);
+
+    int[] old = rows[p];
+
+    rows[p] = null;
+
+    size--;
+
+    return(old);
+
+}//end of IntRowRingBuffer::remove
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IntRowRingBuffer::expand
+//
+// Doubles the length of the array of rows, moving the rows so that logical
+// index 0 is at the start. The slots past the rows are empty.
+//
+// The length is limited to the capacity until the buffer has reached it so
+// that addCopy then reuses every slot in turn.
+//
+
+private void expand()
+{
+
+    int length = rows.length * 2;
+
+    if (rows.length < capacity) { length = Math.min(length, capacity); }
+
+    int[][] newRows = new int[length][];
+
+    for (int i=0; i<size; i++) { newRows[i] = rows[physicalIndex(i)]; }
+
+    rows = newRows; head = 0;
+
+}//end of IntRowRingBuffer::expand
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IntRowRingBuffer::checkIndex
+//
+// Throws IndexOutOfBoundsException if pIndex is not the index of a row.
+//
+
+private void checkIndex(int pIndex)
+{
+
+    if (pIndex < 0 || pIndex >= size){
+        throw new IndexOutOfBoundsException(
+                                "Index: " + pIndex + ", Size: " + size);
+    }
+
+}//end of IntRowRingBuffer::checkIndex
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IntRowRingBuffer::physicalIndex
+//
+// Converts logical index pIndex to its position in the underlying array.
+//
+
+private int physicalIndex(int pIndex)
+{
+
+    int p = head + pIndex;
+
+    return(p >= rows.length ? p - rows.length : p);
+
+}//end of IntRowRingBuffer::physicalIndex
+//-----------------------------------------------------------------------------
+
+}//end of class IntRowRingBuffer
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -30,6 +30,8 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import javax.swing.*;
 import model.IniFile;
+import model.SegmentFileReader;
+import model.SegmentFileWriter;
 import model.SharedSettings;
 import toolkit.Tools;
 
@@ -1141,7 +1143,95 @@ public String loadSegment(BufferedReader pIn, String pLastLine)
 
     // tell each graph to load data
     for (Graph g : graphs) { line = g.loadSegment(pIn, line); }
-    
+
+    addLoadedZoomBoxes();
+
+    return line;
+
+}//end of Chart::loadSegment
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Chart::saveSegment
+//
+// Saves segment data to a binary segment file via pOut.
+//
+
+public void saveSegment(SegmentFileWriter pOut)
+{
+
+    pOut.startSection("Chart");
+    pOut.writeInt("Chart Index", chartNum);
+    pOut.writeString("Chart Title", title);
+    pOut.writeString("Chart Short Title", shortTitle);
+    pOut.writeBoolean("Chart is Visible", isVisible());
+
+    // tell each graph to save its data
+    for (Graph g : graphs) { g.saveSegment(pOut); }
+
+}//end of Chart::saveSegment
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Chart::getSegmentPeaks
+//
+// Adds the peak of the current segment of each trace to pPeaks in the order
+// the traces are saved.
+//
+
+public void getSegmentPeaks(ArrayList<Integer> pPeaks)
+{
+
+    for (Graph g : graphs) { g.getSegmentPeaks(pPeaks); }
+
+}//end of Chart::getSegmentPeaks
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Chart::loadSegment
+//
+// Loads segment data from a binary segment file via pIn.
+//
+
+public void loadSegment(SegmentFileReader pIn) throws IOException
+{
+
+    String errorSection = "Chart Group " + chartGroupNum + " Chart " + chartNum;
+
+    SegmentFileReader.Section entries = pIn.nextSection("Chart", errorSection);
+
+    //apply settings
+    title = entries.readString("Chart Title", "");
+    shortTitle = entries.readString("Chart Short Title", "");
+    setVisible(entries.readBoolean("Chart is Visible", true));
+
+    //if the index number in the file does not match the index number for this
+    //strip chart, abort the file read
+
+    if (entries.readInt("Chart Index", -1) != chartNum) {
+        throw new IOException(
+            "The file could not be read - section not found or out of order "
+                + "for Chart Group " + chartGroupNum + " Chart " + chartNum);
+    }
+
+    // tell each graph to load data
+    for (Graph g : graphs) { g.loadSegment(pIn); }
+
+    addLoadedZoomBoxes();
+
+}//end of Chart::loadSegment
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Chart::addLoadedZoomBoxes
+//
+// Sizes the graphs to match the data loaded from a segment file and draws all
+// necessary zoom boxes if there is a zoom graph.
+//
+
+private void addLoadedZoomBoxes()
+{
+
     //DEBUG HSS//  test code to set width to first graph
     graphWidth = graphs[0].getGraphWidth();
     for (Graph g : graphs) { g.updateDimensions(graphWidth, g.getGraphHeight()); }
@@ -1151,7 +1241,7 @@ public String loadSegment(BufferedReader pIn, String pLastLine)
     //DEBUG HSS// end
 
     // draw all necessary zoomboxes if a zoomgraph is there
-    if (zoomGraph==null) { return line; }
+    if (zoomGraph==null) { return; }
     int xStop = zoomGraph.getDataSize();
     for (int i=0; i<=xStop; i++) {
 
@@ -1164,9 +1254,7 @@ public String loadSegment(BufferedReader pIn, String pLastLine)
 
     }
 
-    return line;
-
-}//end of Chart::loadSegment
+}//end of Chart::addLoadedZoomBoxes
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
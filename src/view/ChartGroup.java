@@ -52,6 +52,8 @@ import java.util.LinkedHashSet;
 import java.util.ListIterator;
 import javax.swing.*;
 import model.IniFile;
+import model.SegmentFileReader;
+import model.SegmentFileWriter;
 import model.SharedSettings;
 import toolkit.Tools;
 
@@ -889,6 +891,75 @@ public String loadSegment(BufferedReader pIn, String pLastLine)
 }//end of ChartGroup::loadSegment
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// ChartGroup::saveSegment
+//
+// Saves segment data to a binary segment file via pOut.
+//
+
+public void saveSegment(SegmentFileWriter pOut)
+{
+
+    pOut.startSection("Chart Group");
+    pOut.writeInt("Chart Group Index", chartGroupNum);
+
+    // call each chart to save its data
+    for (Chart c : charts) { c.saveSegment(pOut); }
+
+}//end of ChartGroup::saveSegment
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ChartGroup::getSegmentPeaks
+//
+// Adds the peak of the current segment of each trace to pPeaks in the order
+// the traces are saved.
+//
+
+public void getSegmentPeaks(ArrayList<Integer> pPeaks)
+{
+
+    for (Chart c : charts) { c.getSegmentPeaks(pPeaks); }
+
+}//end of ChartGroup::getSegmentPeaks
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ChartGroup::loadSegment
+//
+// Loads segment data from a binary segment file via pIn.
+//
+
+public void loadSegment(SegmentFileReader pIn) throws IOException
+{
+
+    SegmentFileReader.Section entries =
+                pIn.nextSection("Chart Group", "Chart Group " + chartGroupNum);
+
+    //if the index number in the file does not match the index number for this
+    //chart group, abort the file read
+
+    if (entries.readInt("Chart Group Index", -1) != chartGroupNum) {
+        throw new IOException(
+            "The file could not be read - section not found for Chart Group "
+                                                             + chartGroupNum);
+    }
+
+    // call each chart to load its data
+    for (Chart c : charts) { c.loadSegment(pIn); }
+
+    //DEBUG HSS//  test code to use width to first graph of first chart
+    graphWidth = charts[0].getGraphWidth();
+    for (Chart c : charts) { 
+        c.updateGraphDimensions(graphWidth, c.getGraphHeight());
+    }
+    //DEBUG HSS// end
+
+    repaint();
+
+}//end of ChartGroup::loadSegment
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // ChartGroup::open3DMapManipulatorControlPanel
 //
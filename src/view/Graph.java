@@ -26,6 +26,8 @@ import javax.swing.*;
 import model.DataTransferIntMultiDimBuffer;
 import model.DataTransferSnapshotBuffer;
 import model.IniFile;
+import model.SegmentFileReader;
+import model.SegmentFileWriter;
 import model.SharedSettings;
 import toolkit.Tools;
 
@@ -785,6 +787,54 @@ public String loadSegment(BufferedReader pIn, String pLastLine)
 }//end of Graph::loadSegment
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Graph::saveSegment
+//
+// Saves segment data to a binary segment file via pOut.
+//
+// Generally overridden by subclasses to provide appropriate processing.
+//
+
+public void saveSegment(SegmentFileWriter pOut)
+{
+
+    saveMetaData(pOut);
+
+}//end of Graph::saveSegment
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Graph::getSegmentPeaks
+//
+// Adds the peak of the current segment of each trace to pPeaks.
+//
+// Generally overridden by subclasses to provide appropriate processing.
+//
+
+public void getSegmentPeaks(ArrayList<Integer> pPeaks)
+{
+
+}//end of Graph::getSegmentPeaks
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Graph::loadSegment
+//
+// Loads segment data from a binary segment file via pIn.
+//
+// Returns the section read for the graph so that subclasses can load their
+// data columns from it.
+//
+
+public SegmentFileReader.Section loadSegment(SegmentFileReader pIn)
+        throws IOException
+{
+
+    return(processMetaData(pIn, true));
+
+}//end of Graph::loadSegment
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Graph::saveMetaData
 //
@@ -898,6 +948,57 @@ protected String processMetaData(BufferedReader pIn, String pLastLine,
 }//end of Graph::processMetaData
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Graph::saveMetaData
+//
+// Starts the section for this graph in a binary segment file and saves
+// entries such as the title via pOut.
+//
+
+protected void saveMetaData(SegmentFileWriter pOut)
+{
+
+    pOut.startSection(metaDataSectionName);
+
+    pOut.writeInt("Index", graphNum);
+    pOut.writeString("Title", title);
+    pOut.writeString("Short Title", shortTitle);
+
+}//end of Graph::saveMetaData
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Graph::processMetaData
+//
+// Processes binary segment file entries for this graph such as the title via
+// pIn.
+//
+// Returns the section read for the graph.
+//
+
+protected SegmentFileReader.Section processMetaData(SegmentFileReader pIn,
+                    boolean pThrowErrorGraphNumNoMatch) throws IOException
+{
+
+    SegmentFileReader.Section entries =
+                            pIn.nextSection(metaDataSectionName, fileSection);
+
+    //apply settings
+    title = entries.readString("Title", "");
+    shortTitle = entries.readString("Short Title", "");
+
+    //if graph num and index read don't match, throw error if supposed to
+    if (pThrowErrorGraphNumNoMatch
+                            && entries.readInt("Index", -1) != graphNum) {
+        throw new IOException(
+            "The file could not be read - section not found for " + fileSection);
+    }
+
+    return(entries);
+
+}//end of Graph::processMetaData
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Graph::setSizes
 //
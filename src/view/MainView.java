@@ -53,6 +53,7 @@ import javax.swing.event.ChangeListener;
 import mksystems.mswing.MFloatSpinner;
 import model.MainDataClass;
 import model.IniFile;
+import model.SegmentFileWriter;
 import model.SharedSettings;
 import toolkit.Tools;
 
@@ -1570,6 +1571,49 @@ public void saveSegment(BufferedWriter pOut) throws IOException {
 }//end of MainView::saveSegment
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// MainView::saveSegment
+//
+// Saves the segment to a binary segment file via pOut.
+//
+
+public void saveSegment(SegmentFileWriter pOut)
+{
+
+    pOut.startSection("Header");
+    pOut.writeString("Segment Data Version", SharedSettings.SEGMENT_DATA_VERSION);
+    pOut.writeString("Measured Length", "" + sharedSettings.getMeasuredLength());
+    pOut.writeString("Inspection Direction",
+                                sharedSettings.inspectionDirectionDescription);
+
+    for (ChartGroup c : chartGroups) { c.saveSegment(pOut); }
+
+}//end of MainView::saveSegment
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MainView::getSegmentPeaks
+//
+// Returns the peak of the current segment of each trace of all chart groups
+// in the order the traces are saved.
+//
+
+public int[] getSegmentPeaks()
+{
+
+    ArrayList<Integer> peaks = new ArrayList<>();
+
+    for (ChartGroup c : chartGroups) { c.getSegmentPeaks(peaks); }
+
+    int[] values = new int[peaks.size()];
+
+    for (int i=0; i<values.length; i++) { values[i] = peaks.get(i); }
+
+    return(values);
+
+}//end of MainView::getSegmentPeaks
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // MainView::saveSegmentInfo
 //
@@ -16,6 +16,16 @@
 * point in buffer array, such as the system which generated the point, the
 * point's color, or any other information.
 *
+* The rows of the arrays are accessed through the row method rather than
+* directly. All but the last row form a ring so that shifting the data down
+* one row as new rows are added at the end only moves the start of the ring
+* rather than copying every row.
+*
+* The screen position of each point is kept from one drawing to the next.
+* Each row is projected again only if its data or position in the grid has
+* changed, or if the view has changed, so adding and drawing a new row only
+* requires that row and its neighbor to be projected.
+*
 *
 * Notes Regarding 3D to 2D Image Transformation
 *
@@ -153,13 +163,20 @@ import java.awt.*;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import model.DataFlags;
 import model.DataSetIntMultiDim;
 import model.DataTransferIntMultiDimBuffer;
 import model.IniFile;
+import model.SegmentFileReader;
+import model.SegmentFileWriter;
+import model.SegmentRecorder;
+import model.SegmentTextReader;
 import model.SharedSettings;
+import toolkit.IntRowRingBuffer;
 import toolkit.Tools;
 
 //-----------------------------------------------------------------------------
@@ -275,15 +292,27 @@ public class Map3D{
     String fileName;        // input file name
     String inputFileName;   // input file name
 
-    //map arrays
+    //map arrays -- rows are accessed through row(i), see row method
     int[][] dataBuf;         // input data array
     int[][] metaBuf;
-    private ArrayList<int []> drawnData;    //used to store all drawn data
-    private ArrayList<int []> drawnMetaData;
+    private IntRowRingBuffer drawnData;    //used to store all drawn data
+    private IntRowRingBuffer drawnMetaData;
     ScreenPlane[][] s;       // screen points array, corresponding to points[][]
     ScreenPlane[][] orthoS;  // screen points array,
                              // the points value equals to zero ??? meaning?
 
+    int ringStart = 0;       // array row holding grid row 0
+
+    //the grid row for which each array row of s and orthoS was last
+    //projected, -1 if the row must be projected again
+    int[] projectedRow;
+
+    //the view for which the projected rows are valid, null if none yet
+    Map3DViewParameters projectedView = null;
+    int projectedStretchX, projectedStretchY;
+
+    static final int MAX_DRAWN_ROWS = 10000;
+
     int baselineThreshold;
     Color baselineColor;
 
@@ -351,8 +380,8 @@ public Map3D(int pChartGroupNum, int pChartNum, int pGraphNum,
     dataBuf = new int[xMax][yMax];
     metaBuf = new int[xMax][yMax];
 
-    drawnData = new ArrayList<>(xMax);
-    drawnMetaData = new ArrayList<>(xMax);
+    drawnData = new IntRowRingBuffer(MAX_DRAWN_ROWS);
+    drawnMetaData = new IntRowRingBuffer(MAX_DRAWN_ROWS);
 
     s = new ScreenPlane[xMax][yMax];
     orthoS = new ScreenPlane[xMax][yMax];
@@ -364,6 +393,9 @@ public Map3D(int pChartGroupNum, int pChartNum, int pGraphNum,
         }
     }
 
+    projectedRow = new int[xMax];
+    Arrays.fill(projectedRow, -1);
+
     viewAngle = 0;              // amount of target viewed
     rotation = 0;               // rotation of target in world space
     xPos = 0; yPos = 0;         // position of 2D image on screen
@@ -428,6 +460,9 @@ final void setCanvasSize(int pWidth, int pHeight)
         yCenter = pHeight / 2; yMaxPix = pHeight - 1;
     }
 
+    //the screen positions depend on the center
+    if (projectedRow != null) { invalidateProjection(); }
+
 }// end of Map3D::setCanvasSize
 //-----------------------------------------------------------------------------
 
@@ -509,6 +544,11 @@ public void createArrays()
         }
     }
 
+    ringStart = 0;
+
+    projectedRow = new int[xMax];
+    Arrays.fill(projectedRow, -1);
+
 }// end of Map3D::createArrays
 //---------------------------------------------------------------------------
 
@@ -525,6 +565,8 @@ public void fillDataBuf(int pValue)
         for ( int j = 0; j < yMax; j++){ dataBuf[i][j] = pValue; }
     }
 
+    invalidateProjection();
+
 }//end of Map3D::fillDataBuf
 //---------------------------------------------------------------------------
 
@@ -590,9 +632,13 @@ private boolean isReadyToDrawNextRow()
 public void setDataRow(int pLengthPos, int[] pDataRow, int[] pMetaRow)
 {
 
-    System.arraycopy(pDataRow, 0, dataBuf[pLengthPos + 1], 1, pDataRow.length);
+    int r = row(pLengthPos + 1);
+
+    System.arraycopy(pDataRow, 0, dataBuf[r], 1, pDataRow.length);
 
-    System.arraycopy(pMetaRow, 0, metaBuf[pLengthPos + 1], 1, pMetaRow.length);
+    System.arraycopy(pMetaRow, 0, metaBuf[r], 1, pMetaRow.length);
+
+    projectedRow[r] = -1;
 
 }// end of Map3D::setDataRow
 //---------------------------------------------------------------------------
@@ -709,16 +755,17 @@ private void handleDataFlags(int pFlags)
 public void setAndDrawDataRow(Graphics2D pG2, int[] pDataRow, int[] pMetaRow)
 {
 
-    System.arraycopy(
-             pDataRow, 0, dataBuf[currentInsertionRow + 1], 1, pDataRow.length);
+    int r = row(currentInsertionRow + 1);
 
-    System.arraycopy(
-            pMetaRow, 0, metaBuf[currentInsertionRow + 1], 1, pMetaRow.length);
+    System.arraycopy(pDataRow, 0, dataBuf[r], 1, pDataRow.length);
 
-    drawnData.add(pDataRow.clone()); drawnMetaData.add(pMetaRow.clone());
-    
-    //limit size of lists to control memory
-    if (drawnData.size()>10000) { drawnData.remove(0); drawnMetaData.remove(0); }
+    System.arraycopy(pMetaRow, 0, metaBuf[r], 1, pMetaRow.length);
+
+    projectedRow[r] = -1;
+
+    //the lists are limited in size to control memory -- the oldest row is
+    //discarded and its array reused once they are full
+    drawnData.addCopy(pDataRow); drawnMetaData.addCopy(pMetaRow);
 
     quickDrawLastRow(pG2);
 
@@ -726,7 +773,7 @@ public void setAndDrawDataRow(Graphics2D pG2, int[] pDataRow, int[] pMetaRow)
     if (currentInsertionRow >= dataXMax){
         currentInsertionRow = dataXMax-1;
         shiftDataDownOneRow();
-        Arrays.fill(dataBuf[currentInsertionRow+1], 0); // reset final row
+        Arrays.fill(dataBuf[row(currentInsertionRow+1)], 0); // reset final row
         drawingAtFarRightRow = true;
     }
 
@@ -736,23 +783,55 @@ public void setAndDrawDataRow(Graphics2D pG2, int[] pDataRow, int[] pMetaRow)
 //---------------------------------------------------------------------------
 // TopographicalMapper::shiftDataDownOneRow
 //
-// This method shifts all data in the input array down one row.
+// This method shifts all data in the input array down one row. The last row
+// is not changed and the row before it keeps its data, as before the shift.
+//
+// The rows are not copied -- the start of the ring of rows is moved up one so
+// that each row is then accessed as the row below. The old first row becomes
+// the row before the last and the data of the row above it is copied to it.
 //
 
 public void shiftDataDownOneRow()
 {
 
-    for(int i=0; i<dataBuf.length-2; i++){
-        System.arraycopy(dataBuf[i + 1], 0, dataBuf[i] , 0, yMax);
-    }
-    
-    for(int i=0; i<metaBuf.length-2; i++){
-        System.arraycopy(metaBuf[i + 1], 0, metaBuf[i] , 0, yMax);
-    }
+    int ringLength = xMax - 1;
+
+    if (ringLength < 2) { return; }
+
+    ringStart++; if (ringStart >= ringLength) { ringStart = 0; }
+
+    int r = row(ringLength - 1);
+
+    System.arraycopy(dataBuf[row(ringLength - 2)], 0, dataBuf[r], 0, yMax);
+    System.arraycopy(metaBuf[row(ringLength - 2)], 0, metaBuf[r], 0, yMax);
+
+    projectedRow[r] = -1;
 
 }// end of Map3D::shiftDataDownOneRow
 //---------------------------------------------------------------------------
 
+//---------------------------------------------------------------------------
+// Map3D::row
+//
+// Returns the row of the arrays which holds row pI of the grid. All but the
+// last row of the arrays form a ring which starts at ringStart -- see
+// shiftDataDownOneRow.
+//
+
+int row(int pI)
+{
+
+    int ringLength = xMax - 1;
+
+    if (pI >= ringLength) { return(pI); }
+
+    int r = ringStart + pI;
+
+    return(r >= ringLength ? r - ringLength : r);
+
+}// end of Map3D::row
+//---------------------------------------------------------------------------
+
 //---------------------------------------------------------------------------
 // Map3D::setDataPoint
 //
@@ -769,63 +848,110 @@ public void setDataPoint(int _XPos, int _YPos, int _Value)
 
     assert(_XPos < dataXMax && _YPos < dataYMax);
 
-    dataBuf[_XPos + 1][_YPos + 1] = _Value;
+    int r = row(_XPos + 1);
+
+    dataBuf[r][_YPos + 1] = _Value;
+
+    projectedRow[r] = -1;
 
 }//end of Map3D::setDataPoint
 //---------------------------------------------------------------------------
 
+//---------------------------------------------------------------------------
+// Map3D::invalidateProjection
+//
+// Marks every row to be projected again the next time it is drawn. Must be
+// called whenever the view or the data of all rows has changed.
+//
+
+private void invalidateProjection()
+{
+
+    Arrays.fill(projectedRow, -1);
+
+}// end of Map3D::invalidateProjection
+//---------------------------------------------------------------------------
+
 //---------------------------------------------------------------------------
 // Map3D::worldToScreen
 //
 // This function is used to set the value of world coordinate for the map,
-// and transform the world coordinate to the screen coordinate.
+// and transform the world coordinate to the screen coordinate for grid rows
+// pFirstRow through pLastRow.
+//
+// Rows which have already been projected at their current position in the
+// grid since their data or the view last changed are skipped.
 //
 
-//debug mks -- function uses class Degree rather than _Degree -- should use _Degree
-
-private void worldToScreen(int _Degree, int _StretchX, int _StretchY)
+private void worldToScreen(int pFirstRow, int pLastRow)
 {
 
-    double co, si, tmp1, tmp2;
+    double co, si;
 
     // int maxZ; //Z-axis length
 
     co = Math.cos(Math.toRadians(rotation));
     si = Math.sin(Math.toRadians(rotation));
 
-    for ( int i = 0; i < xMax; i++){
+    for ( int i = pFirstRow; i <= pLastRow; i++){
 
-        for ( int j = 0; j < yMax; j++){
+        int r = row(i);
 
-            // set value (x,y,z) of every point in the world coordinate
-            p.x = (i - xMax / 2.0) * _StretchX;
-            p.y = (j - yMax / 2.0) * _StretchY;
-            p.z = dataBuf[i][j];
-
-            // set value of orthograghic point of p
-            orthoP.x = (i - xMax / 2.0) * _StretchX;
-            orthoP.y = (j - yMax / 2.0) * _StretchY;
-            orthoP.z = 0;
-
-            // Rotation Z-axis
-            tmp1 = p.x * co - p.y * si;
-            tmp2 = p.x * si + p.y * co;
-            p.x=tmp1;
-            p.y=tmp2;
-
-            // Rotation Z-axis
-            tmp1 = orthoP.x * co - orthoP.y * si;
-            tmp2 = orthoP.x * si + orthoP.y * co;
-            orthoP.x=tmp1;
-            orthoP.y=tmp2;
-
-            // get value of screen plane points
-            vTrans3Dto2D(s[i][j], p);
-            vTrans3Dto2D(orthoS[i][j], orthoP);
-            }
-        }
+        if (projectedRow[r] == i) { continue; }
+
+        projectRow(i, dataBuf[r], s[r], orthoS[r], co, si);
+
+        projectedRow[r] = i;
 
-}// end of TopographicalMapper::WorldToScreen
+    }
+
+}// end of Map3D::worldToScreen
+//---------------------------------------------------------------------------
+
+//---------------------------------------------------------------------------
+// Map3D::projectRow
+//
+// Transforms the world coordinate of each point of grid row pI to the screen
+// coordinate. The heights are taken from pData and the results are placed in
+// pS and pOrthoS. pCos and pSin are the cosine and sine of the rotation.
+//
+
+private void projectRow(int pI, int[] pData, ScreenPlane[] pS,
+                                ScreenPlane[] pOrthoS, double pCos, double pSin)
+{
+
+    double tmp1, tmp2;
+
+    for ( int j = 0; j < yMax; j++){
+
+        // set value (x,y,z) of every point in the world coordinate
+        p.x = (pI - xMax / 2.0) * stretchX;
+        p.y = (j - yMax / 2.0) * stretchY;
+        p.z = pData[j];
+
+        // set value of orthograghic point of p
+        orthoP.x = (pI - xMax / 2.0) * stretchX;
+        orthoP.y = (j - yMax / 2.0) * stretchY;
+        orthoP.z = 0;
+
+        // Rotation Z-axis
+        tmp1 = p.x * pCos - p.y * pSin;
+        tmp2 = p.x * pSin + p.y * pCos;
+        p.x=tmp1;
+        p.y=tmp2;
+
+        // Rotation Z-axis
+        tmp1 = orthoP.x * pCos - orthoP.y * pSin;
+        tmp2 = orthoP.x * pSin + orthoP.y * pCos;
+        orthoP.x=tmp1;
+        orthoP.y=tmp2;
+
+        // get value of screen plane points
+        vTrans3Dto2D(pS[j], p);
+        vTrans3Dto2D(pOrthoS[j], orthoP);
+    }
+
+}// end of Map3D::projectRow
 //---------------------------------------------------------------------------
 
 //---------------------------------------------------------------------------
@@ -1017,8 +1143,17 @@ birdsEyeViewMode = pBirdsEyeViewMode; //show bird's eye view if true
 // calculate the mapping parameters and the magic matrix
 calculate();
 
+// all rows must be projected again if the view has changed
+if (projectedView == null || !projectedView.matches(pViewParams)
+        || projectedStretchX != stretchX || projectedStretchY != stretchY){
+    if (projectedView == null) { projectedView = new Map3DViewParameters(); }
+    projectedView.setValues(pViewParams);
+    projectedStretchX = stretchX; projectedStretchY = stretchY;
+    invalidateProjection();
+}
+
 // 3D-2D coordinate transformation
-worldToScreen(rotation, stretchX, stretchY);
+worldToScreen(0, xMax - 1);
 
 pG2.setColor(Color.BLACK);
 
@@ -1046,9 +1181,11 @@ private void birdsEyeView(Graphics2D pG2)
 
         pG2.drawLine(xMaxPix-i*10, 0, xMaxPix-i*10, 0);
 
+        int[] data = dataBuf[row(i)];
+
         for ( int j = 0; j < yMax; j++){
 
-            if (dataBuf[i][j] > THRESHOLD){
+            if (data[j] > THRESHOLD){
                 pG2.setColor(Color.RED);
                 pG2.drawLine(xMaxPix-i*10, j*10,xMaxPix-i*10, j*10);
             }
@@ -1070,19 +1207,23 @@ private void drawWireFrame(Graphics2D pG2)
     //draw data points which are connected with lines
 
     for ( int i = 0; i < xMax - 1 ; i++){
+
+        ScreenPlane[] s0 = s[row(i)], s1 = s[row(i+1)];
+
         for ( int j = 0; j < yMax - 1 ; j++){
 
-            pG2.drawLine(s[i][j].x, s[i][j].y, s[i+1][j].x, s[i+1][j].y);
+            pG2.drawLine(s0[j].x, s0[j].y, s1[j].x, s1[j].y);
 
-            pG2.drawLine(s[i][j].x, s[i][j].y, s[i][j+1].x, s[i][j+1].y);
+            pG2.drawLine(s0[j].x, s0[j].y, s0[j+1].x, s0[j+1].y);
         }
     }
 
     // draw the left border
 
     for ( int i = 0; i < xMax - 1 ; i++) {
-        pG2.drawLine(s[i][yMax -1].x, s[i][yMax -1].y,
-                                    s[i+1][yMax -1].x, s[i+1][yMax -1].y);
+        ScreenPlane[] s0 = s[row(i)], s1 = s[row(i+1)];
+        pG2.drawLine(s0[yMax -1].x, s0[yMax -1].y,
+                                    s1[yMax -1].x, s1[yMax -1].y);
     }
 
 }//end of map3D::drawWireFrame
@@ -1123,26 +1264,27 @@ private void hiddenSurfaceDraw(Graphics2D pG2)
 
     // draw the grid without peaks - flat plane
 
-    for ( int i = 0; i < xMax - 1; i++)
+    for ( int i = 0; i < xMax - 1; i++){
+        ScreenPlane[] o0 = orthoS[row(i)], o1 = orthoS[row(i+1)];
         for ( int j = 0; j < yMax - 1; j++){
-            pG2.drawLine(orthoS[i][j].x, orthoS[i][j].y,
-                                orthoS[i+1][j].x, orthoS[i+1][j].y); //plot row
-            pG2.drawLine(orthoS[i][j].x, orthoS[i][j].y,
-                             orthoS[i][j+1].x, orthoS[i][j+1].y); //plot column
+            pG2.drawLine(o0[j].x, o0[j].y, o1[j].x, o1[j].y); //plot row
+            pG2.drawLine(o0[j].x, o0[j].y, o0[j+1].x, o0[j+1].y); //plot column
             }
+        }
 
     // draw the closing edges of the grid
 
     //along the Y axis
     for (int i = 0; i < xMax - 1; i++){
-        pG2.drawLine(s[i][yMax - 1].x, s[i][yMax - 1].y,
-                                    s[i + 1][yMax - 1].x, s[i + 1][yMax - 1].y);
+        ScreenPlane[] s0 = s[row(i)], s1 = s[row(i + 1)];
+        pG2.drawLine(s0[yMax - 1].x, s0[yMax - 1].y,
+                                    s1[yMax - 1].x, s1[yMax - 1].y);
         }
 
     //along the X axis
+    ScreenPlane[] sLast = s[row(xMax - 1)];
     for (int i = 0; i < yMax - 1; i++){
-        pG2.drawLine(s[xMax - 1][i].x, s[xMax - 1][i].y,
-                                    s[xMax - 1][i + 1].x, s[xMax - 1][i + 1].y);
+        pG2.drawLine(sLast[i].x, sLast[i].y, sLast[i + 1].x, sLast[i + 1].y);
         }
 
     // Uncomment the next two lines to display a vertical line at the 0,0 point
@@ -1251,6 +1393,12 @@ private void drawPolygons(
 
     for(int i = _XStart; i != _XStop; i += _XDirection){
 
+        //the rows of the current point and of the points toward the far side
+        int r0 = row(i), r1 = row(i + _XPolyDirection);
+        ScreenPlane[] s0 = s[r0], s1 = s[r1];
+        int[] data0 = dataBuf[r0], data1 = dataBuf[r1];
+        int[] meta0 = metaBuf[r0], meta1 = metaBuf[r1];
+
         //clear area above the grid plane from the edge to the top of the canvas
         //this erases the "sky" - see function header for more info
         //this is done by redrawing the polygons with background and foreground
@@ -1260,16 +1408,16 @@ private void drawPolygons(
 
             j = _YStart;
 
-            quadPoly.xpoints[0] = s[i][j + _YPolyDirection].x;
-            quadPoly.ypoints[0] = s[i][j + _YPolyDirection].y;
+            quadPoly.xpoints[0] = s0[j + _YPolyDirection].x;
+            quadPoly.ypoints[0] = s0[j + _YPolyDirection].y;
 
-            quadPoly.xpoints[1] = s[i + _XPolyDirection][j + _YPolyDirection].x;
-            quadPoly.ypoints[1] = s[i + _XPolyDirection][j + _YPolyDirection].y;
+            quadPoly.xpoints[1] = s1[j + _YPolyDirection].x;
+            quadPoly.ypoints[1] = s1[j + _YPolyDirection].y;
 
-            quadPoly.xpoints[2] = s[i + _XPolyDirection][j + _YPolyDirection].x;
+            quadPoly.xpoints[2] = s1[j + _YPolyDirection].x;
             quadPoly.ypoints[2] = 0;
 
-            quadPoly.xpoints[3] = s[i][j + _YPolyDirection].x;
+            quadPoly.xpoints[3] = s0[j + _YPolyDirection].x;
             //snag this point as the last drawn x
             lastDrawnX = quadPoly.xpoints[3];
             quadPoly.ypoints[3] = 0;
@@ -1294,17 +1442,17 @@ private void drawPolygons(
             //(the other three points are toward the far sides of the grid
             // from the viewer)
 
-            quadPoly.xpoints[0] = s[i][j].x;
-            quadPoly.ypoints[0] = s[i][j].y;
+            quadPoly.xpoints[0] = s0[j].x;
+            quadPoly.ypoints[0] = s0[j].y;
 
-            quadPoly.xpoints[1] = s[i + _XPolyDirection][j].x;
-            quadPoly.ypoints[1] = s[i + _XPolyDirection][j].y;
+            quadPoly.xpoints[1] = s1[j].x;
+            quadPoly.ypoints[1] = s1[j].y;
 
-            quadPoly.xpoints[2] = s[i + _XPolyDirection][j + _YPolyDirection].x;
-            quadPoly.ypoints[2] = s[i + _XPolyDirection][j + _YPolyDirection].y;
+            quadPoly.xpoints[2] = s1[j + _YPolyDirection].x;
+            quadPoly.ypoints[2] = s1[j + _YPolyDirection].y;
 
-            quadPoly.xpoints[3] = s[i][j + _YPolyDirection].x;
-            quadPoly.ypoints[3] = s[i][j + _YPolyDirection].y;
+            quadPoly.xpoints[3] = s0[j + _YPolyDirection].x;
+            quadPoly.ypoints[3] = s0[j + _YPolyDirection].y;
 
             quadPoly.invalidate(); //force use of new data
 
@@ -1317,14 +1465,14 @@ private void drawPolygons(
             //store the system associated with each point in the corresponding
             //polyMeta array
 
-            polyHeight[0] = dataBuf[i][j];
-            polyMeta[0] = metaBuf[i][j];
-            polyHeight[1] = dataBuf[i + _XPolyDirection][j];
-            polyMeta[1] = metaBuf[i + _XPolyDirection][j];
-            polyHeight[2] = dataBuf[i + _XPolyDirection][j + _YPolyDirection];
-            polyMeta[2] = metaBuf[i + _XPolyDirection][j + _YPolyDirection];
-            polyHeight[3] = dataBuf[i][j + _YPolyDirection];
-            polyMeta[3] = metaBuf[i][j + _YPolyDirection];
+            polyHeight[0] = data0[j];
+            polyMeta[0] = meta0[j];
+            polyHeight[1] = data1[j];
+            polyMeta[1] = meta1[j];
+            polyHeight[2] = data1[j + _YPolyDirection];
+            polyMeta[2] = meta1[j + _YPolyDirection];
+            polyHeight[3] = data0[j + _YPolyDirection];
+            polyMeta[3] = meta0[j + _YPolyDirection];
 
             //assign a color to the quadrilateral based on the height of its
             //highest corner point
@@ -1478,12 +1626,13 @@ private Color assignColorBySystem(
 void quickDrawRow(Graphics2D pG2, int pDrawRow)
 {
 
-    //perform 3D-2D coordinate transformation so any new data points are
-    //processed using the previously set viewing parameters
+    if (pDrawRow < 0){ return; }
 
-    worldToScreen(rotation, stretchX, stretchY);
+    //perform 3D-2D coordinate transformation so any new data points are
+    //processed using the previously set viewing parameters -- only the row
+    //and the row behind it are used
 
-    if (pDrawRow < 0){ return; }
+    worldToScreen(pDrawRow, pDrawRow+1);
 
     //draw the polygons for the specified row
     drawPolygons(pG2,
@@ -1531,9 +1680,14 @@ void quickDrawSingleRow(Graphics2D pG2,
 {
 
     //perform 3D-2D coordinate transformation so any new data points are
-    //processed using the previously set viewing parameters
+    //processed using the previously set viewing parameters -- only the rows
+    //drawn and the rows toward the far side from them are used
+
+    int first = Math.min(_XStart, _XStop - _XDirection);
+    int last = Math.max(_XStart, _XStop - _XDirection);
 
-    worldToScreen(rotation, stretchX, stretchY);
+    worldToScreen(Math.max(first + Math.min(_XPolyDirection, 0), 0),
+                    Math.min(last + Math.max(_XPolyDirection, 0), xMax - 1));
 
     //draw the polygons for the specified rows
 
@@ -1600,12 +1754,13 @@ void quickDrawSingleRow(Graphics2D pG2,
 void quickDrawLastRow(Graphics2D pG2)
 {
 
-    //perform 3D-2D coordinate transformation so any new data points are
-    //processed using the previously set viewing parameters
+    if (currentInsertionRow < 0){ return; }
 
-    worldToScreen(rotation, stretchX, stretchY);
+    //perform 3D-2D coordinate transformation so any new data points are
+    //processed using the previously set viewing parameters -- only the row
+    //and the row behind it are used
 
-    if (currentInsertionRow < 0){ return; }
+    worldToScreen(currentInsertionRow, currentInsertionRow+1);
 
     //draw the polygons for the specified row
     drawPolygons(pG2,
@@ -1694,11 +1849,22 @@ public boolean isSegmentStarted()
 //
 // Saves all of the zoom data.
 //
+// For a piece recovered from the piece journal, the map rows recorded are
+// saved as there is no drawn data.
+//
 
 public void saveSegment(BufferedWriter pOut)
     throws IOException
 {
 
+    SegmentRecorder.Source recovered = getRecoveredRecording();
+
+    if (recovered != null){
+        saveRows(pOut, "[Drawn Data Set 1]", recovered.getRows());
+        saveRows(pOut, "[Drawn Meta Data Set 1]", recovered.getMetaRows());
+        return;
+    }
+
     //catch unexpected case where start/stop are invalid and bail
     if (lastSegmentStartIndex < 0 || lastSegmentEndIndex < 0
             || lastSegmentDrawnDataStartIndex < 0
@@ -1709,12 +1875,12 @@ public void saveSegment(BufferedWriter pOut)
         return;
     }
 
-    //get peak data that hasn't been drawn yet and put it in drawnData. Will
-    //need to be removed after this function is done outputting the data
-    boolean extraPeakData = mapDataBuffer.getPeakData(mapDataSet);
-    if (extraPeakData) {
-        drawnData.add(mapDataSet.d);
-        drawnMetaData.add(mapDataSet.m);
+    //get peak data that hasn't been drawn yet and save it after the drawn
+    //data -- it is not added to drawnData as that would expand the buffer
+    List<int[]> rows = drawnData, metaRows = drawnMetaData;
+    if (mapDataBuffer.getPeakData(mapDataSet)) {
+        rows = withExtraRow(drawnData, mapDataSet.d);
+        metaRows = withExtraRow(drawnMetaData, mapDataSet.m);
     }
 
     //save data points
@@ -1723,7 +1889,7 @@ public void saveSegment(BufferedWriter pOut)
             i<=lastSegmentDrawnDataEndIndex;
             i++)
     {
-        for (int d : drawnData.get(i)) { pOut.write(Integer.toString(d)+","); }
+        for (int d : rows.get(i)) { pOut.write(Integer.toString(d)+","); }
         pOut.newLine();
     }
     pOut.write("[End of Set]"); pOut.newLine();
@@ -1734,18 +1900,67 @@ public void saveSegment(BufferedWriter pOut)
             i<=lastSegmentDrawnDataEndIndex;
             i++)
     {
-        for (int d : drawnMetaData.get(i)) { pOut.write(Integer.toString(d)+","); }
+        for (int d : metaRows.get(i)) { pOut.write(Integer.toString(d)+","); }
         pOut.newLine();
     }
     pOut.write("[End of Set]"); pOut.newLine();
 
-    //remove extra peak data
-    if (extraPeakData) {
-        drawnData.remove(drawnData.size()-1);
-        drawnMetaData.remove(drawnMetaData.size()-1);
+}//end of Map3D::saveSegment
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Map3D::saveRows
+//
+// Saves each row of pRows to file as a series with the heading pTag.
+//
+
+private void saveRows(BufferedWriter pOut, String pTag, ArrayList<int[]> pRows)
+    throws IOException
+{
+
+    pOut.write(pTag); pOut.newLine();
+    for (int[] row : pRows){
+        for (int d : row) { pOut.write(Integer.toString(d)+","); }
+        pOut.newLine();
     }
+    pOut.write("[End of Set]"); pOut.newLine();
 
-}//end of Map3D::saveSegment
+}//end of Map3D::saveRows
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Map3D::getRecoveredRecording
+//
+// Returns the recorder of the map buffer if the segment has been read back
+// from the piece journal and the segment has not been marked on the drawn
+// data, as is the case for a piece recovered when the program starts.
+// Returns null otherwise.
+//
+// The drawn data is saved whenever the segment has been marked as it holds
+// the rows as displayed rather than every row retrieved.
+//
+
+private SegmentRecorder.Source getRecoveredRecording()
+{
+
+    if (lastSegmentStartIndex >= 0 && lastSegmentEndIndex >= 0
+            && lastSegmentDrawnDataStartIndex >= 0
+            && lastSegmentDrawnDataEndIndex >= 0)
+    {
+        return(null);
+    }
+
+    DataTransferIntMultiDimBuffer buffer = mapDataBuffer.getTransferBuffer();
+
+    if (buffer == null) { return(null); }
+
+    SegmentRecorder.Source recorder = buffer.getRecorder();
+
+    if (recorder == null || !recorder.hasRecording()) { return(null); }
+
+    return(recorder);
+
+}//end of Map3D::getRecoveredRecording
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
@@ -1784,6 +1999,107 @@ public String loadSegment(BufferedReader pIn, String pLastLine,
 }//end of Map3D::loadSegment
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Map3D::saveSegment
+//
+// Saves all of the map data as columns of the current section of a binary
+// segment file.
+//
+// For a piece recovered from the piece journal, the map rows recorded are
+// saved as there is no drawn data. Otherwise, if the segment start/stop are
+// invalid, empty data columns are saved.
+//
+
+public void saveSegment(SegmentFileWriter pOut)
+{
+
+    SegmentRecorder.Source recovered = getRecoveredRecording();
+
+    if (recovered != null){
+        pOut.writeRows("Drawn Data Set 1", recovered.getRows(), 0,
+                                                    recovered.getRows().size());
+        pOut.writeRows("Drawn Meta Data Set 1", recovered.getMetaRows(), 0,
+                                                recovered.getMetaRows().size());
+        return;
+    }
+
+    int start = lastSegmentDrawnDataStartIndex, count = 0;
+
+    //get peak data that hasn't been drawn yet and save it after the drawn
+    //data -- it is not added to drawnData as that would expand the buffer
+    List<int[]> rows = drawnData, metaRows = drawnMetaData;
+
+    if (lastSegmentStartIndex >= 0 && lastSegmentEndIndex >= 0
+            && lastSegmentDrawnDataStartIndex >= 0
+            && lastSegmentDrawnDataEndIndex >= 0)
+    {
+        if (mapDataBuffer.getPeakData(mapDataSet)) {
+            rows = withExtraRow(drawnData, mapDataSet.d);
+            metaRows = withExtraRow(drawnMetaData, mapDataSet.m);
+        }
+        count = lastSegmentDrawnDataEndIndex - lastSegmentDrawnDataStartIndex + 1;
+    }
+
+    pOut.writeRows("Drawn Data Set 1", rows, start, count);
+    pOut.writeRows("Drawn Meta Data Set 1", metaRows, start, count);
+
+}//end of Map3D::saveSegment
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Map3D::withExtraRow
+//
+// Returns a read only view of pRows with pRow appended as the newest row.
+//
+// Used to save the peak data which has not yet been drawn along with the
+// drawn rows. Adding the row to a full IntRowRingBuffer would expand it and
+// removing it afterwards would empty its slot, so the arrays held by the
+// buffer would no longer be reused.
+//
+
+private static List<int[]> withExtraRow(List<int[]> pRows, int[] pRow)
+{
+
+    return(new AbstractList<int[]>() {
+
+        @Override
+        public int size() { return(pRows.size() + 1); }
+
+        @Override
+        public int[] get(int pIndex) {
+            return(pIndex == pRows.size() ? pRow : pRows.get(pIndex));
+        }
+
+    });
+
+}//end of Map3D::withExtraRow
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Map3D::loadSegment
+//
+// Loads all of the map data from the columns of pEntries, the graph's section
+// of a binary segment file.
+//
+
+public void loadSegment(SegmentFileReader.Section pEntries,
+                                    String pErrorSection) throws IOException
+{
+
+    resetAll(); //reset old data
+
+    //read in data points
+    pEntries.getRows("Drawn Data Set 1", drawnData, pErrorSection);
+
+    //read in meta data
+    pEntries.getRows("Drawn Meta Data Set 1", drawnMetaData, pErrorSection);
+
+    //make sure data is in active drawing buffers
+    loadDrawnDataListsIntoActiveArrays();
+
+}//end of Map3D::loadSegment
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Map3D::loadDataSeries
 //
@@ -1808,7 +2124,7 @@ public String loadSegment(BufferedReader pIn, String pLastLine,
 //
 
 public String loadDataSeries(BufferedReader pIn, String pLastLine,
-                            String pStartTag, ArrayList<int[]> pBuffer,
+                            String pStartTag, List<int[]> pBuffer,
                             int pDataModifier1) throws IOException
 {
 
@@ -1835,6 +2151,13 @@ public String loadDataSeries(BufferedReader pIn, String pLastLine,
            "The file could not be read - section not found for " + pStartTag);
     }
 
+    //parse the data directly from the file bytes if possible
+
+    if (pIn instanceof SegmentTextReader){
+        return(loadDataSeries((SegmentTextReader)pIn, pStartTag, pBuffer,
+                                                            pDataModifier1));
+    }
+
     //scan the first part of the section and parse its entries
 
     int i = 0;
@@ -1885,6 +2208,43 @@ public String loadDataSeries(BufferedReader pIn, String pLastLine,
 }//end of Map3D::loadDataSeries
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Map3D::loadDataSeries
+//
+// Loads the rows of a section for which the start tag has already been read
+// from pIn, parsing the numbers directly from the file bytes without creating
+// Strings for each line.
+//
+// See the other loadDataSeries for details.
+//
+
+private String loadDataSeries(SegmentTextReader pIn, String pStartTag,
+               List<int[]> pBuffer, int pDataModifier1) throws IOException
+{
+
+    boolean success;
+
+    try{
+        success = pIn.readIntRows(pBuffer, pDataModifier1);
+    }
+    catch(NumberFormatException e){
+        //catch error translating the text to an integer
+        throw new IOException(
+         "The file could not be read - corrupt data for " + pStartTag
+                                          + " at data point " + pIn.getCount());
+    }
+
+    if (!success) {
+        throw new IOException(
+         "The file could not be read - missing end of section for "
+                                                                + pStartTag);
+    }
+
+    return(pIn.readLine()); //the "[xxxx]" tag
+
+}//end of Map3D::loadDataSeries
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Map3D::loadDrawnDataListsIntoActiveArrays
 //
@@ -1905,14 +2265,16 @@ private void loadDrawnDataListsIntoActiveArrays()
             i++, drawnIndex++)
     {
 
-        System.arraycopy(drawnData.get(drawnIndex), 0, dataBuf[i],
+        System.arraycopy(drawnData.get(drawnIndex), 0, dataBuf[row(i)],
                             1, drawnData.get(drawnIndex).length);
 
-        System.arraycopy(drawnMetaData.get(drawnIndex), 0, metaBuf[i],
+        System.arraycopy(drawnMetaData.get(drawnIndex), 0, metaBuf[row(i)],
                             1, drawnMetaData.get(drawnIndex).length);
 
     }
 
+    invalidateProjection();
+
 }//end of Map3D::loadDrawnDataListsIntoActiveArrays
 //-----------------------------------------------------------------------------
 
@@ -1930,10 +2292,17 @@ class MapDataBuffer{
     private DataTransferIntMultiDimBuffer transferBuffer;
     public void setTransferBuffer(DataTransferIntMultiDimBuffer pBuf)
         { transferBuffer = pBuf; }
+    public DataTransferIntMultiDimBuffer getTransferBuffer()
+        { return(transferBuffer); }
 
-    private final DataSetIntMultiDim dataSet;
     private final DataSetIntMultiDim peakDataSet;
 
+    //reused for retrieving data from transferBuffer in bulk
+    private final int[][] drainData;
+    private final int[][] drainMeta;
+    private final int[] drainFlags;
+    private static final int DRAIN_BATCH_SIZE = 64;
+
     private final ArrayList<int[]> data;
     private final ArrayList<int[]> metaData;
     private final ArrayList<Integer> flags;
@@ -1955,9 +2324,12 @@ public MapDataBuffer(int pMapWidth)
     metaData = new ArrayList<>(10000);
     flags = new ArrayList<>(10000);
 
-    dataSet = new DataSetIntMultiDim(pMapWidth);
     peakDataSet = new DataSetIntMultiDim(pMapWidth);
 
+    drainData = new int[DRAIN_BATCH_SIZE][pMapWidth];
+    drainMeta = new int[DRAIN_BATCH_SIZE][pMapWidth];
+    drainFlags = new int[DRAIN_BATCH_SIZE];
+
     updated = false;
 
 }//end of MapDataBuffer::MapDataBuffer (constructor)
@@ -2046,39 +2418,50 @@ public void retrieveDataChanges()
     //quit if transfer buffer not set yet
     if (transferBuffer==null) { return; }
 
-    int r;
-    while((r = transferBuffer.getDataChange(dataSet)) != 0){
+    //retrieve runs of changed rows with one buffer lock per run
+
+    int n;
+    while((n = transferBuffer.drainReady(drainData, drainMeta, drainFlags,
+                                                    DRAIN_BATCH_SIZE)) != 0){
 
         updated = true;
 
-        //store data in local buffers
-        data.add(dataSet.d.clone());
-        metaData.add(dataSet.m.clone());
-        flags.add(dataSet.flags);
-        
-        //limit size of lists to control memory
-        if (data.size()>10000) { data.remove(0); metaData.remove(0); flags.remove(0); }
-
-        //store peak data if any new peaks found
-        if (transferBuffer.getPeakType()==DataFlags.CATCH_HIGHEST) {
-            //replace values in peak data set if greater than
-            for(int i=0; i<peakDataSet.d.length; i++){
-                if (dataSet.d[i] > peakDataSet.d[i]) {
-                    peakDataSet.d[i] = dataSet.d[i];
-                    peakDataSet.m[i] = dataSet.m[i];
-                    peakDataSet.flags = dataSet.flags;
+        int count = Math.abs(n);
+
+        for (int j=0; j<count; j++){
+
+            int[] d = drainData[j], m = drainMeta[j];
+
+            //store data in local buffers
+            data.add(d.clone());
+            metaData.add(m.clone());
+            flags.add(drainFlags[j]);
+
+            //limit size of lists to control memory
+            if (data.size()>10000) { data.remove(0); metaData.remove(0); flags.remove(0); }
+
+            //store peak data if any new peaks found
+            if (transferBuffer.getPeakType()==DataFlags.CATCH_HIGHEST) {
+                //replace values in peak data set if greater than
+                for(int i=0; i<peakDataSet.d.length; i++){
+                    if (d[i] > peakDataSet.d[i]) {
+                        peakDataSet.d[i] = d[i];
+                        peakDataSet.m[i] = m[i];
+                        peakDataSet.flags = drainFlags[j];
+                    }
                 }
             }
-        }
-        else {
-            //replace values in peak data set if less than
-            for(int i=0; i<peakDataSet.d.length; i++){
-                if (dataSet.d[i] < peakDataSet.d[i]) {
-                    peakDataSet.d[i] = dataSet.d[i];
-                    peakDataSet.m[i] = dataSet.m[i];
-                    peakDataSet.flags = dataSet.flags;
+            else {
+                //replace values in peak data set if less than
+                for(int i=0; i<peakDataSet.d.length; i++){
+                    if (d[i] < peakDataSet.d[i]) {
+                        peakDataSet.d[i] = d[i];
+                        peakDataSet.m[i] = m[i];
+                        peakDataSet.flags = drainFlags[j];
+                    }
                 }
             }
+
         }
 
     }
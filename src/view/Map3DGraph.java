@@ -32,6 +32,8 @@ import model.DataFlags;
 import model.DataSetIntMultiDim;
 import model.DataTransferIntMultiDimBuffer;
 import model.IniFile;
+import model.SegmentFileReader;
+import model.SegmentFileWriter;
 import model.SharedSettings;
 import toolkit.Tools;
 
@@ -584,6 +586,45 @@ public String loadSegment(BufferedReader pIn, String pLastLine)
 }//end of Map3DGraph::loadSegment
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Map3DGraph::saveSegment
+//
+// Saves all of the map data to a binary segment file.
+//
+
+@Override
+public void saveSegment(SegmentFileWriter pOut)
+{
+
+    super.saveSegment(pOut);
+
+    map3D.saveSegment(pOut);
+
+}//end of Map3DGraph::saveSegment
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Map3DGraph::loadSegment
+//
+// Loads all of the map data from a binary segment file.
+//
+
+@Override
+public SegmentFileReader.Section loadSegment(SegmentFileReader pIn)
+        throws IOException
+{
+
+    SegmentFileReader.Section entries = super.loadSegment(pIn);
+
+    map3D.loadSegment(entries, fileSection);
+
+    repaint();
+
+    return(entries);
+
+}//end of Map3DGraph::loadSegment
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Map3DGraph::loadConfigSettings
 //
@@ -48,6 +48,26 @@ public void setValues(Map3DViewParameters pValues)
     
 }// end of Map3DViewParameters::setValues
 //-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Map3DViewParameters::matches
+//
+// Returns true if all values are equal to those in pValues.
+//
+
+public boolean matches(Map3DViewParameters pValues)
+{
+
+    return(xPos == pValues.xPos && yPos == pValues.yPos
+        && xFrom == pValues.xFrom && yFrom == pValues.yFrom
+        && zFrom == pValues.zFrom
+        && xAt == pValues.xAt && yAt == pValues.yAt && zAt == pValues.zAt
+        && xUp == pValues.xUp && yUp == pValues.yUp && zUp == pValues.zUp
+        && rotation == pValues.rotation
+        && viewAngle == pValues.viewAngle);
+
+}// end of Map3DViewParameters::matches
+//-----------------------------------------------------------------------------
     
 //-----------------------------------------------------------------------------
 // Map3DViewParameters::loadConfigSettings
@@ -260,6 +260,40 @@ public void drawFlag(Graphics2D pPG2, int pX, int pY)
 }//end of Threshold::drawFlag
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Threshold::drawFlags
+//
+// Draws the flags for this threshold from the first pCount flags in pXs, pYs,
+// and pThresholdNums. Flags with a different threshold number in
+// pThresholdNums are skipped. The color is only set once for all flags.
+//
+// See drawFlag for details.
+//
+
+public void drawFlags(Graphics2D pG2, int[] pXs, int[] pYs,
+                                            int[] pThresholdNums, int pCount)
+{
+
+    int thresholdNum = thresholdInfo.getThresholdNum();
+    boolean colorSet = false;
+
+    for (int i=0; i<pCount; i++){
+
+        if (pThresholdNums[i] != thresholdNum) { continue; }
+
+        if (!colorSet){
+            pG2.setColor(thresholdInfo.getThresholdColor()); colorSet = true;
+        }
+
+        //add 1 to xPos so flag is drawn to the right of the peak
+        pG2.fillRect(pXs[i]-1-flagWidth, calculateFlagY(pYs[i]),
+                                                        flagWidth, flagHeight);
+
+    }
+
+}//end of Threshold::drawFlags
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Threshold::drawNextSlice
 //
@@ -17,7 +17,7 @@
 package view;
 
 import java.awt.*;
-import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
@@ -26,8 +26,13 @@ import model.DataFlags;
 import model.DataSetInt;
 import model.DataTransferIntBuffer;
 import model.IniFile;
+import model.SegmentFileReader;
+import model.SegmentFileWriter;
+import model.SegmentRecorder;
+import model.SegmentTextReader;
 import model.SharedSettings;
 import model.ThresholdInfo;
+import toolkit.IntRingBuffer;
 import toolkit.Tools;
 
 //-----------------------------------------------------------------------------
@@ -48,16 +53,54 @@ public class Trace{
 
     DataSetInt dataSet = new DataSetInt();
 
+    //reused for retrieving data from dataBuffer in bulk
+    private final int[] drainData = new int[DRAIN_BATCH_SIZE];
+    private final int[] drainFlags = new int[DRAIN_BATCH_SIZE];
+
+    //points, flags, and decorations waiting to be drawn -- these are
+    //collected as data points are processed and drawn together by flushBatch
+    //so that each frame only takes a few calls to the graphics object
+
+    private final int[] lineXs = new int[DRAW_BATCH_SIZE+1];
+    private final int[] lineYs = new int[DRAW_BATCH_SIZE+1];
+    private int numLinePoints = 0;
+
+    private final int[] flagXs = new int[DRAW_BATCH_SIZE];
+    private final int[] flagYs = new int[DRAW_BATCH_SIZE];
+    private final int[] flagThresholdNums = new int[DRAW_BATCH_SIZE];
+    private int numFlags = 0;
+
+    private final int[] markXs = new int[DRAW_BATCH_SIZE];
+    private final int[] markYs = new int[DRAW_BATCH_SIZE];
+    private final int[] markFlags = new int[DRAW_BATCH_SIZE];
+    private int numMarks = 0;
+
+    private final int[] gridColumnXs = new int[DRAW_BATCH_SIZE];
+    private int numGridColumns = 0;
+    private int gridBaselineStart = 0, gridBaselineEnd = -1;
+    private int thresholdSliceX = -1;
+    private boolean thresholdSlicePending = false;
+
+    //one column of grid dots, drawn as an image for each grid column
+    private BufferedImage gridDotColumn;
+
     DataTransferIntBuffer dataBuffer;
     public void setDataBuffer(DataTransferIntBuffer pV) { dataBuffer = pV; }
     public DataTransferIntBuffer getDataBuffer() { return(dataBuffer); }
 
-    ArrayList<Integer> data = new ArrayList<>(10000);
-    ArrayList<Integer> dataFlags = new ArrayList<>(10000);
+    //history of retrieved data -- oldest values are discarded when full
+    IntRingBuffer data = new IntRingBuffer(DEFAULT_MAX_STORED_DATA_POINTS);
+    IntRingBuffer dataFlags = new IntRingBuffer(DEFAULT_MAX_STORED_DATA_POINTS);
 
     private int lastSegmentStartIndex = -1;
     private int lastSegmentEndIndex = -1;
 
+    //envelope of the data points added so far to the pixel column being
+    //decimated -- see addToDecimatedColumn
+    private boolean columnPending = false;
+    private int columnX, columnFirstY, columnMinY, columnMaxY, columnLastY;
+    private int columnFlagNum, columnFlagY, columnMarks, columnMarkY;
+
     private String title, shortTitle, objectType;
     public Color traceColor;
     public String colorKeyText;
@@ -114,9 +157,20 @@ public class Trace{
     private static final Color VERTICAL_BAR_COLOR = Color.DARK_GRAY;
     private static final Color DEFAULT_CIRCLE_COLOR = Color.BLACK;
 
+    //flags which cause a mark to be drawn at a data point
+    private static final int MARK_FLAGS = DataFlags.VERTICAL_BAR
+            | DataFlags.CIRCLE | DataFlags.SEGMENT_START_SEPARATOR
+            | DataFlags.SEGMENT_END_SEPARATOR;
+
     public static final boolean CONNECT_POINTS = true;
     public static final boolean DO_NOT_CONNECT_POINTS = false;
 
+    private static final int DRAIN_BATCH_SIZE = 1024;
+
+    private static final int DRAW_BATCH_SIZE = 1024;
+
+    private static final int DEFAULT_MAX_STORED_DATA_POINTS = 10000;
+
 //-----------------------------------------------------------------------------
 // Trace::Trace (constructor)
 //
@@ -125,6 +179,9 @@ public class Trace{
 public Trace()
 {
 
+    //peak searches use the range max index of the data
+    data.enableRangeMax();
+
 }//end of Trace::Trace (constructor)
 //-----------------------------------------------------------------------------
 
@@ -186,6 +243,8 @@ public void updateDimensions(int pNewWidth, int pNewHeight)
 
     xMax = width - 1; yMax = height - 1;
 
+    gridDotColumn = null; //rebuilt for the new height when next used
+
 }// end of Trace::updateDimensions
 //-----------------------------------------------------------------------------
 
@@ -230,6 +289,11 @@ private void loadConfigSettings()
 
     numDataPoints = configFile.readInt(section, "number of data points", width);
 
+    int maxStoredDataPoints = configFile.readInt(section,
+      "maximum number of stored data points", DEFAULT_MAX_STORED_DATA_POINTS);
+    data.setCapacity(maxStoredDataPoints);
+    dataFlags.setCapacity(maxStoredDataPoints);
+
     offset = configFile.readInt(section, "offset", 0);
     xScale = configFile.readDouble(section, "x scale", 1.0);
     yScale = configFile.readDouble(section, "y scale", 1.0);
@@ -349,6 +413,7 @@ public void resetData()
 
     dataIndex = 0; gridTrack = 0;
     prevX = -1; prevY = Integer.MAX_VALUE;
+    discardBatch();
     graphInfo.lastDrawnX = 0;
 
     //reset local data buffers
@@ -407,10 +472,23 @@ public void paintTrace(Graphics2D pG2)
 
     if(!visible) { return; }
 
+    //anything not yet drawn is drawn at its proper position before prevX and
+    //prevY are altered
+    flushBatch(pG2);
+
     int realX = prevX; prevX=-1; //store prev x for use after repaint
     int realY = prevY; prevY=0; //store prev y for use after repaint
     int realGridTrack = gridTrack; gridTrack=0; //store for use after repaint
 
+    //when more than one data point falls on each pixel column, each column is
+    //reduced to a single envelope
+    if (xScale < 1.0){
+        paintTraceDecimated(pG2);
+        flushBatch(pG2);
+        prevX = realX; prevY = realY; gridTrack = realGridTrack;
+        return;
+    }
+
     //start index at offset point
     int index = graphInfo.scrollOffset;
 
@@ -430,16 +508,177 @@ public void paintTrace(Graphics2D pG2)
 
     }
 
+    flushBatch(pG2);
+
     //restore so next data drawn in proper pos
     prevX = realX; prevY = realY; gridTrack = realGridTrack;
 
 }// end of Trace::paintTrace
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Trace::paintTraceDecimated
+//
+// Draws the entire trace when the x scale is less than one so that several
+// data points fall on each pixel column. The data points for each column are
+// reduced to the first, lowest, highest, and last values, which are drawn as
+// a vertical line joined to the neighboring columns, so the number of lines
+// drawn depends on the width of the graph rather than the amount of data.
+//
+// For each column, the most severe threshold flag and any vertical bar,
+// circle, or segment separator of its data points are drawn so that no
+// violation is hidden by the reduction.
+//
+
+private void paintTraceDecimated(Graphics2D pG2)
+{
+
+    int size = data.size();
+
+    //first data point which falls on or to the right of the left edge
+    int index = (int)Math.ceil((graphInfo.scrollOffset - 0.5) / xScale);
+    if (index < 0) { index = 0; }
+
+    //stop short of the end of the screen to avoid triggering chart scroll
+    int xEnd = graphInfo.scrollOffset + xMax;
+
+    while (index < size){
+
+        int x = (int)Math.round(index * xScale);
+
+        if (x >= xEnd) { break; }
+
+        //add the data points which fall on this column
+
+        do{
+            addToDecimatedColumn(x, index, data.get(index),
+                                                        dataFlags.get(index));
+            index++;
+        }while (index < size && (int)Math.round(index * xScale) == x);
+
+        paintDecimatedColumn(pG2);
+
+    }
+
+}// end of Trace::paintTraceDecimated
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Trace::addToDecimatedColumn
+//
+// Adds data point pDataIndex with value pValue and flags pFlags, which falls
+// on pixel column pX, to the envelope of the column being decimated. Value pX
+// has not been adjusted for the scroll offset.
+//
+// The envelope is drawn by paintDecimatedColumn, which must be called before
+// a data point for a different column is added.
+//
+
+private void addToDecimatedColumn(int pX, int pDataIndex, int pValue,
+                                                                    int pFlags)
+{
+
+    int y = calculateY(pValue);
+
+    if (!columnPending){
+        columnPending = true; columnX = pX;
+        columnFirstY = columnMinY = columnMaxY = columnMarkY = y;
+        columnFlagNum = Integer.MAX_VALUE; columnMarks = 0;
+    }
+
+    if (y < columnMinY) { columnMinY = y; }
+    if (y > columnMaxY) { columnMaxY = y; }
+    columnLastY = y;
+
+    //lower threshold numbers are more severe
+    int t = ((pFlags & DataFlags.THRESHOLD_MASK) >> 9)-2;
+    if (t >= 0 && t < columnFlagNum) { columnFlagNum = t; columnFlagY = y; }
+
+    if ((pFlags & DataFlags.CIRCLE) != 0) { columnMarkY = y; }
+    columnMarks |= pFlags & MARK_FLAGS;
+
+    if ((pFlags & DataFlags.SEGMENT_START_SEPARATOR) != 0) {
+        lastSegmentStartIndex = pDataIndex;
+    }
+    if ((pFlags & DataFlags.SEGMENT_END_SEPARATOR) != 0) {
+        lastSegmentEndIndex = pDataIndex;
+    }
+
+}// end of Trace::addToDecimatedColumn
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Trace::paintDecimatedColumn
+//
+// Adds the envelope of the data points added by addToDecimatedColumn to the
+// batch to be drawn by flushBatch. Does nothing if no points have been added.
+//
+
+private void paintDecimatedColumn(Graphics2D pG2)
+{
+
+    if (!columnPending) { return; }
+
+    columnPending = false;
+
+    if (numLinePoints + 5 > DRAW_BATCH_SIZE || numFlags == DRAW_BATCH_SIZE
+                                        || numMarks == DRAW_BATCH_SIZE){
+        flushBatch(pG2);
+    }
+
+    //lead buffer invokes scrolling and decorating
+    if (isLeadPlotter()){ handleLeadPlotterActions(pG2, columnX); }
+
+    //adjust for any scrolling that has occurred before plotting
+    int xAdj = columnX - graphInfo.scrollOffset;
+
+    if(connectPoints) {
+        if (numLinePoints == 0) {
+            lineXs[0] = prevX - graphInfo.scrollOffset; lineYs[0] = prevY;
+            numLinePoints = 1;
+        }
+        addLinePoint(xAdj, columnFirstY); addLinePoint(xAdj, columnMinY);
+        addLinePoint(xAdj, columnMaxY); addLinePoint(xAdj, columnLastY);
+    }
+    else{
+        addLinePoint(xAdj, columnMinY);
+        if (columnMaxY != columnMinY) { addLinePoint(xAdj, columnMaxY); }
+    }
+
+    prevX = columnX; prevY = columnLastY;
+
+    if (columnFlagNum != Integer.MAX_VALUE) {
+        flagXs[numFlags] = xAdj; flagYs[numFlags] = columnFlagY;
+        flagThresholdNums[numFlags] = columnFlagNum; numFlags++;
+    }
+
+    if (columnMarks != 0){
+        markXs[numMarks] = xAdj; markYs[numMarks] = columnMarkY;
+        markFlags[numMarks] = columnMarks; numMarks++;
+    }
+
+}// end of Trace::paintDecimatedColumn
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Trace::addLinePoint
+//
+// Adds pX, pY to the points of the trace line to be drawn by flushBatch.
+//
+
+private void addLinePoint(int pX, int pY)
+{
+
+    lineXs[numLinePoints] = pX; lineYs[numLinePoints] = pY; numLinePoints++;
+
+}// end of Trace::addLinePoint
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Trace::drawGrid
 //
-// Draw grid lines and dots and other related objects.
+// Adds grid lines and dots and other related objects to the batch to be drawn
+// by flushBatch.
 //
 // Value pX is the x location before taking into account the scroll offset. It
 // is used to calculate whether a grid line should be drawn, then offset is
@@ -449,24 +688,30 @@ public void paintTrace(Graphics2D pG2)
 public void drawGrid (Graphics2D pG2, int pX)
 {
 
-    pG2.setColor(gridColor);
-
     //adjust for any scrolling that has occurred
     int xAdj = pX - graphInfo.scrollOffset;
     int prevXAdj = prevX - graphInfo.scrollOffset;
 
-    for(int i=prevXAdj+1; i<=xAdj; i++){
-        if (drawGridBaseline) {
-            int y;
-            if(invertTrace) { y=yMax; } else { y=0; }
-            pG2.drawLine(i, y, i, y);
+    if (xAdj <= prevXAdj) { return; }
+
+    //the baseline is drawn as one line per batch, so a gap requires the
+    //line collected so far to be drawn first
+    if (drawGridBaseline){
+        if (gridBaselineEnd >= gridBaselineStart
+                                            && prevXAdj != gridBaselineEnd){
+            flushBatch(pG2);
+        }
+        if (gridBaselineEnd < gridBaselineStart){
+            gridBaselineStart = prevXAdj+1;
         }
+        gridBaselineEnd = xAdj;
+    }
 
+    for(int i=prevXAdj+1; i<=xAdj; i++){
         if((++gridTrack) == 10){
             gridTrack = 0;
-            for(int j=gridY1; j<yMax; j+=gridYSpacing){
-                pG2.drawLine(xAdj, j, xAdj, j);
-            }
+            if (numGridColumns == DRAW_BATCH_SIZE) { flushBatch(pG2); }
+            gridColumnXs[numGridColumns++] = xAdj;
         }
     }
 
@@ -479,13 +724,22 @@ public void drawGrid (Graphics2D pG2, int pX)
 // Scrolls the graph area to the left and erases the right most slice.
 // The graph will be scrolled until location pX would be located on the graph.
 //
+// pG2 draws into the back buffer of the graph, so the scroll is a copy within
+// the buffer rather than on the screen.
+//
 // Note that pX may have skipped several values since the last pX if the x scale
 // is larger than 1, so the graph may be shifted more than one pixel to bring
 // the new pX value onto the graph range.
 //
+// Anything waiting to be drawn is drawn first as its positions are relative to
+// the scroll offset before the scroll.
+//
 
 public void scrollGraph (Graphics2D pG2, int pX)
 {
+
+    flushBatch(pG2);
+
     //number of pixels to shift to bring pX back on the graph
     int shiftAmt = pX - graphInfo.scrollOffset - xMax;
 
@@ -517,8 +771,8 @@ public void handleLeadPlotterActions (Graphics2D pG2, int pX)
 
     drawGrid(pG2, pX);
 
-    //tell thresholds to draw their lines to the x
-    for (Threshold t : thresholds) { t.drawNextSlice(pG2, pX); }
+    //the thresholds draw their lines to the last x of the batch
+    thresholdSliceX = pX; thresholdSlicePending = true;
 
     graphInfo.lastDrawnX = pX - graphInfo.scrollOffset;
 
@@ -528,9 +782,10 @@ public void handleLeadPlotterActions (Graphics2D pG2, int pX)
 //-----------------------------------------------------------------------------
 // Trace::paintSingleTraceDataPoint
 //
-// Draws line from the last point drawn to data point pDataIndex, pY and
-// processes pFlags as appropriate where pDataIndex is used to calculate the
-// x position of the data point by applying scaling and scroll offset.
+// Adds the line from the last point drawn to data point pDataIndex, pY to the
+// batch to be drawn by flushBatch and processes pFlags as appropriate where
+// pDataIndex is used to calculate the x position of the data point by
+// applying scaling and scroll offset.
 //
 
 public void paintSingleTraceDataPoint(
@@ -539,96 +794,311 @@ public void paintSingleTraceDataPoint(
 
     if(!visible) { return; }
 
+    if (numLinePoints >= DRAW_BATCH_SIZE || numFlags == DRAW_BATCH_SIZE
+                                        || numMarks == DRAW_BATCH_SIZE){
+        flushBatch(pG2);
+    }
+
     //calculate the x position in pixels
     int x = (int)Math.round(pDataIndex * xScale);
 
     //lead buffer invokes scrolling and decorating
-    if (leadDataPlotter || (dataBuffer!=null && dataBuffer.isLeadBuffer())){ 
-        handleLeadPlotterActions(pG2, x); 
-    }
+    if (isLeadPlotter()){ handleLeadPlotterActions(pG2, x); }
 
     //adjust for any scrolling that has occurred before plotting
     int xAdj = x - graphInfo.scrollOffset;
     int prevXAdj = prevX - graphInfo.scrollOffset;
 
-    //draw a vertical line if the flag is set
-    if ((pFlags & DataFlags.VERTICAL_BAR) != 0){
-        pG2.setColor(VERTICAL_BAR_COLOR);
-        pG2.drawLine(xAdj, 0, xAdj, yMax);
-    }
-
-    pG2.setColor(traceColor);
-
     int y = calculateY(pY);
 
-    //draw between each two points
-    if(connectPoints) {
-        pG2.drawLine(prevXAdj, prevY, xAdj, y);
-    }
-    else{
-        pG2.drawLine(xAdj, y, xAdj, y);
+    //a connected line starts at the last point drawn
+    if(connectPoints && numLinePoints == 0) {
+        lineXs[0] = prevXAdj; lineYs[0] = prevY; numLinePoints = 1;
     }
 
+    addLinePoint(xAdj, y);
+
     prevX = x; prevY = y;
 
     //if there is a flag set for this data point then draw it - threshold
 
     //indices are shifted by two as 0 = no flag and 1 = user flag
     flagThreshold = ((pFlags & DataFlags.THRESHOLD_MASK) >> 9)-2;
-    if (flagThreshold>=0) { thresholds[flagThreshold].drawFlag(pG2, xAdj, y); }
+    if (flagThreshold>=0) {
+        flagXs[numFlags] = xAdj; flagYs[numFlags] = y;
+        flagThresholdNums[numFlags] = flagThreshold; numFlags++;
+    }
 
-    //draw a circle on the datapoint if the CIRCLE flag is set
-    if ((pFlags & DataFlags.CIRCLE) != 0){
-        pG2.setColor(circleColor);
-        pG2.draw(new Ellipse2D.Double(xAdj-3, y-3, 6, 6));
+    //store the position of vertical bars, circles, and segment separators
+
+    if ((pFlags & MARK_FLAGS) != 0){
+        markXs[numMarks] = xAdj; markYs[numMarks] = y;
+        markFlags[numMarks] = pFlags; numMarks++;
     }
 
-    //if segment start/end flag set, draw a vertical separator bar, store index
+    //if segment start/end flag set, store index
     if ((pFlags & DataFlags.SEGMENT_START_SEPARATOR) != 0) {
         lastSegmentStartIndex = pDataIndex;
-        pG2.setColor(gridColor);
-        pG2.drawLine(xAdj, yMax, xAdj, 0);
     }
     if ((pFlags & DataFlags.SEGMENT_END_SEPARATOR) != 0) {
         lastSegmentEndIndex = pDataIndex;
-        pG2.setColor(gridColor);
-        pG2.drawLine(xAdj, yMax, xAdj, 0);
     }
 
 }// end of Trace::paintSingleTraceDataPoint
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Trace::flushBatch
+//
+// Draws everything collected by paintSingleTraceDataPoint since the last call.
+// Each type of object is drawn with a single color change and the trace is
+// drawn with a single polyline.
+//
+// The objects are drawn in the same layers as when each point was drawn
+// individually: grid and thresholds, vertical bars, the trace, threshold
+// flags, circles, and segment separators.
+//
+
+public void flushBatch(Graphics2D pG2)
+{
+
+    //grid baseline and dots
+
+    if (gridBaselineEnd >= gridBaselineStart || numGridColumns > 0){
+
+        pG2.setColor(gridColor);
+
+        if (gridBaselineEnd >= gridBaselineStart){
+            int y = invertTrace ? yMax : 0;
+            pG2.drawLine(gridBaselineStart, y, gridBaselineEnd, y);
+            gridBaselineStart = 0; gridBaselineEnd = -1;
+        }
+
+        if (numGridColumns > 0){
+            BufferedImage column = getGridDotColumn();
+            for (int i=0; i<numGridColumns; i++){
+                pG2.drawImage(column, gridColumnXs[i], 0, null);
+            }
+            numGridColumns = 0;
+        }
+
+    }
+
+    //tell thresholds to draw their lines to the x
+    if (thresholdSlicePending){
+        for (Threshold t : thresholds) { t.drawNextSlice(pG2, thresholdSliceX); }
+        thresholdSlicePending = false;
+    }
+
+    drawMarks(pG2, DataFlags.VERTICAL_BAR);
+
+    //the trace
+
+    if (numLinePoints > 0){
+
+        pG2.setColor(traceColor);
+
+        if(connectPoints) {
+            pG2.drawPolyline(lineXs, lineYs, numLinePoints);
+        }
+        else{
+            for (int i=0; i<numLinePoints; i++){
+                pG2.drawLine(lineXs[i], lineYs[i], lineXs[i], lineYs[i]);
+            }
+        }
+
+        numLinePoints = 0;
+
+    }
+
+    //threshold flags, each threshold draws all of its own flags
+
+    if (numFlags > 0){
+        for (Threshold t : thresholds) {
+            t.drawFlags(pG2, flagXs, flagYs, flagThresholdNums, numFlags);
+        }
+        numFlags = 0;
+    }
+
+    drawMarks(pG2, DataFlags.CIRCLE);
+
+    drawMarks(pG2, DataFlags.SEGMENT_START_SEPARATOR
+                                        | DataFlags.SEGMENT_END_SEPARATOR);
+
+    numMarks = 0;
+
+}// end of Trace::flushBatch
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Trace::drawMarks
+//
+// Draws the vertical bars, circles, or segment separators in the batch which
+// have any of the flags in pType set.
+//
+
+private void drawMarks(Graphics2D pG2, int pType)
+{
+
+    boolean colorSet = false;
+
+    for (int i=0; i<numMarks; i++){
+
+        if ((markFlags[i] & pType) == 0) { continue; }
+
+        int x = markXs[i];
+
+        if (pType == DataFlags.VERTICAL_BAR){
+            if (!colorSet) { pG2.setColor(VERTICAL_BAR_COLOR); }
+            pG2.drawLine(x, 0, x, yMax);
+        }
+        else if (pType == DataFlags.CIRCLE){
+            if (!colorSet) { pG2.setColor(circleColor); }
+            pG2.drawOval(x-3, markYs[i]-3, 6, 6);
+        }
+        else{
+            if (!colorSet) { pG2.setColor(gridColor); }
+            pG2.drawLine(x, yMax, x, 0);
+        }
+
+        colorSet = true;
+
+    }
+
+}// end of Trace::drawMarks
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Trace::discardBatch
+//
+// Discards everything collected by paintSingleTraceDataPoint which has not
+// yet been drawn.
+//
+
+private void discardBatch()
+{
+
+    numLinePoints = 0; numFlags = 0; numMarks = 0; numGridColumns = 0;
+    gridBaselineStart = 0; gridBaselineEnd = -1;
+    thresholdSlicePending = false;
+
+}// end of Trace::discardBatch
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Trace::getGridDotColumn
+//
+// Returns an image of one column of grid dots, creating it if necessary. The
+// image is transparent except for the dots so it can be drawn over the graph.
+//
+
+private BufferedImage getGridDotColumn()
+{
+
+    if (gridDotColumn != null) { return(gridDotColumn); }
+
+    gridDotColumn = new BufferedImage(1, Math.max(height, 1),
+                                                BufferedImage.TYPE_INT_ARGB);
+
+    int rgb = gridColor.getRGB();
+
+    for(int j=gridY1; j<yMax; j+=gridYSpacing){
+        if (j >= 0) { gridDotColumn.setRGB(0, j, rgb); }
+    }
+
+    return(gridDotColumn);
+
+}// end of Trace::getGridDotColumn
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Trace::isLeadPlotter
+//
+// Returns true if this trace handles the scrolling and decorating for all
+// traces on the graph.
+//
+
+private boolean isLeadPlotter()
+{
+
+    return(leadDataPlotter || (dataBuffer!=null && dataBuffer.isLeadBuffer()));
+
+}// end of Trace::isLeadPlotter
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Trace::updateTrace
 //
 // Plots all data added to dataBuffer and erases any data which has been
 // marked as erased.
 //
+// The data is retrieved in runs via drainReady so the buffer is only locked
+// once per run instead of once per data point.
+//
+// The new points are drawn together by flushBatch when all have been
+// retrieved. As in paintTrace, when the x scale is less than one the added
+// points falling on each pixel column are reduced to a single envelope. A
+// column whose points arrive over more than one call is drawn in parts, each
+// joined to the one before.
+//
+// If the buffer is recorded to the piece journal, each run is recorded after
+// the threshold violations have been flagged so that the journal holds the
+// same flags as the trace.
+//
 
 public void updateTrace(Graphics2D pG2)
 {
 
-    int r;
-    
-    while((r = dataBuffer.getDataChange(dataSet)) != 0){
-        
-        //check and flag any threshold violations
-        checkThresholdViolations(dataSet);
-        
-        //store for future use
-        data.add(dataSet.d);
-        dataFlags.add(dataSet.flags);
-        
-        //limit size of lists to control memory
-        if (data.size()>10000) { data.remove(0); dataFlags.remove(0); }
+    int n;
+
+    SegmentRecorder.Source recorder = dataBuffer.getRecorder();
 
-        paintSingleTraceDataPoint(pG2, dataIndex, dataSet.d, dataSet.flags);
+    //erased points are drawn one at a time as before
+    boolean decimate = visible && xScale < 1.0;
 
-        if(r == 1){ dataIndex++; }
-        else if(r == -1){ dataIndex--; }
+    //retrieve runs of added or erased points with one buffer lock per run
+
+    while((n = dataBuffer.drainReady(drainData, drainFlags, DRAIN_BATCH_SIZE))
+                                                                        != 0){
+
+        int count = Math.abs(n);
+
+        for (int i=0; i<count; i++){
+
+            dataSet.d = drainData[i]; dataSet.flags = drainFlags[i];
+
+            //check and flag any threshold violations
+            checkThresholdViolations(dataSet);
+            drainFlags[i] = dataSet.flags;
+
+            //store for future use -- oldest discarded if lists are full
+            data.add(dataSet.d);
+            dataFlags.add(dataSet.flags);
+
+            if (n > 0 && decimate){
+                int x = (int)Math.round(dataIndex * xScale);
+                if (x != columnX) { paintDecimatedColumn(pG2); }
+                addToDecimatedColumn(x, dataIndex, dataSet.d, dataSet.flags);
+            }
+            else{
+                paintDecimatedColumn(pG2);
+                paintSingleTraceDataPoint(
+                                    pG2, dataIndex, dataSet.d, dataSet.flags);
+            }
+
+            if(n > 0){ dataIndex++; }
+            else { dataIndex--; }
+
+        }
+
+        if (recorder != null) { recorder.recordValues(n, drainData, drainFlags); }
 
     }
 
+    paintDecimatedColumn(pG2);
+
+    flushBatch(pG2);
+
 }// end of Trace::updateTrace
 //-----------------------------------------------------------------------------
 
@@ -748,6 +1218,9 @@ private int calculateY(int pY)
 //
 // Searches for and returns the highest peak within the indexes specified.
 //
+// The range max index maintained by the data buffer is used so the search
+// takes O(log n) time regardless of the width of the range.
+//
 
 public int getPeak (int pXStart, int pXEnd)
 {
@@ -756,13 +1229,17 @@ public int getPeak (int pXStart, int pXEnd)
     if (pXStart<0) { lastRequestedPeakX = -1; return -1; }
 
     lastRequestedPeak=-1;
-    for (int i=pXStart; i<=pXEnd&&i<data.size(); i++){
+
+    int end = Math.min(pXEnd, data.size()-1);
+
+    if (pXStart <= end){
+        int i = data.indexOfMax(pXStart, end);
         if(data.get(i)>lastRequestedPeak) {
             lastRequestedPeak = data.get(i);
             lastRequestedPeakX = i;
         }
     }
-    
+
     return lastRequestedPeak;
 
 }// end of Trace::getPeak
@@ -790,6 +1267,60 @@ public int getPeak (int pXStart, int pXEnd, int pYStart, int pYEnd)
 }// end of Trace::getPeak
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Trace::getSegmentPeak
+//
+// Returns the highest value of the current segment if the trace catches the
+// highest peaks or the lowest value if it catches the lowest.
+//
+// Returns -1 if the segment start/stop are invalid.
+//
+// If the segment has been read back from the piece journal, the peak of the
+// recorded segment is returned.
+//
+
+public int getSegmentPeak()
+{
+
+    SegmentRecorder.Source recording = getRecording();
+
+    if (recording != null){
+
+        if (recording.getCount() == 0) { return(-1); }
+
+        int[] values = recording.getValues();
+        int peak = values[0];
+
+        for (int i=1; i<recording.getCount(); i++){
+            if (peakType == CATCH_HIGHEST ? values[i] > peak : values[i] < peak){
+                peak = values[i];
+            }
+        }
+
+        return(peak);
+
+    }
+
+    if (lastSegmentStartIndex < 0 || lastSegmentEndIndex < 0) { return(-1); }
+
+    int end = Math.min(lastSegmentEndIndex, data.size() - 1);
+
+    if (lastSegmentStartIndex > end) { return(-1); }
+
+    int peak = data.get(lastSegmentStartIndex);
+
+    for (int i=lastSegmentStartIndex+1; i<=end; i++){
+        int value = data.get(i);
+        if (peakType == CATCH_HIGHEST ? value > peak : value < peak){
+            peak = value;
+        }
+    }
+
+    return(peak);
+
+}// end of Trace::getSegmentPeak
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Trace::markSegmentStart
 //
@@ -856,6 +1387,9 @@ public boolean isSegmentStarted()
 //
 // Saves data for the current segment to file.
 //
+// If the segment has been read back from the piece journal, the recorded
+// segment is saved instead of the data held in memory.
+//
 
 public void saveSegment(BufferedWriter pOut) throws IOException
 {
@@ -867,6 +1401,19 @@ public void saveSegment(BufferedWriter pOut) throws IOException
     pOut.write("Trace Short Title=" + shortTitle); pOut.newLine();
     pOut.newLine();
 
+    //save the complete segment if it has been read back from the journal
+
+    SegmentRecorder.Source recording = getRecording();
+
+    if (recording != null){
+        saveDataSeries(pOut, "[Data Set 1]",
+                                recording.getValues(), recording.getCount());
+        saveDataSeries(pOut, "[Flags]",
+                                recording.getFlags(), recording.getCount());
+        pOut.newLine(); //blank line
+        return;
+    }
+
     //catch unexpected case where start/stop are invalid and bail
     if (lastSegmentStartIndex < 0 || lastSegmentEndIndex < 0) {
         pOut.write("Segment start and/or start invalid - no data saved.");
@@ -895,6 +1442,52 @@ public void saveSegment(BufferedWriter pOut) throws IOException
 }//end of Trace::saveSegment
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Trace::saveDataSeries
+//
+// Saves the first pCount values of pValues to file as a series with the
+// heading pTag.
+//
+
+private void saveDataSeries(BufferedWriter pOut, String pTag, int[] pValues,
+                                                int pCount) throws IOException
+{
+
+    pOut.write(pTag); pOut.newLine();
+
+    for (int i=0; i<pCount; i++) {
+        pOut.write(Integer.toString(pValues[i])); //write to file
+        pOut.newLine();
+    }
+
+    pOut.write("[End of Set]"); pOut.newLine();
+
+}//end of Trace::saveDataSeries
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Trace::getRecording
+//
+// Returns the recorder of the data buffer if the current segment has been
+// read back from the piece journal, or null if not. The recorded segment is
+// complete while the data held in memory may be missing the start of a long
+// piece.
+//
+
+private SegmentRecorder.Source getRecording()
+{
+
+    if (dataBuffer == null) { return(null); }
+
+    SegmentRecorder.Source recorder = dataBuffer.getRecorder();
+
+    if (recorder == null || !recorder.hasRecording()) { return(null); }
+
+    return(recorder);
+
+}//end of Trace::getRecording
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Trace::loadSegment
 //
@@ -930,6 +1523,80 @@ public String loadSegment(BufferedReader pIn, String pLastLine)
 }//end of Trace::loadSegment
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Trace::saveSegment
+//
+// Saves data for the current segment to a binary segment file via pOut.
+//
+// If the segment has been read back from the piece journal, the recorded
+// segment is saved instead of the data held in memory. Otherwise, if the
+// segment start/stop are invalid, empty data columns are saved.
+//
+
+public void saveSegment(SegmentFileWriter pOut)
+{
+
+    pOut.startSection("Trace");
+    pOut.writeInt("Trace Index", traceNum);
+    pOut.writeString("Trace Title", title);
+    pOut.writeString("Trace Short Title", shortTitle);
+
+    SegmentRecorder.Source recording = getRecording();
+
+    if (recording != null){
+        pOut.writeColumn("Data Set 1", recording.getValues(), 0,
+                                                        recording.getCount());
+        pOut.writeColumn("Flags", recording.getFlags(), 0,
+                                                        recording.getCount());
+        return;
+    }
+
+    int start = lastSegmentStartIndex, count = 0;
+
+    if (lastSegmentStartIndex >= 0 && lastSegmentEndIndex >= 0) {
+        count = lastSegmentEndIndex - lastSegmentStartIndex + 1;
+    }
+
+    pOut.writeColumn("Data Set 1", data, start, count);
+    pOut.writeColumn("Flags", dataFlags, start, count);
+
+}//end of Trace::saveSegment
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Trace::loadSegment
+//
+// Loads the segment from a binary segment file via pIn. The data and flags
+// are copied directly from the file's memory map.
+//
+
+public void loadSegment(SegmentFileReader pIn) throws IOException
+{
+
+    data.clear(); dataFlags.clear(); //make sure clear
+
+    SegmentFileReader.Section entries = pIn.nextSection("Trace", section);
+
+    //if the index number in the file does not match the index number for this
+    //trace, abort the file read
+
+    if (entries.readInt("Trace Index", -1) != traceNum) {
+        throw new IOException(
+            "The file could not be read - section not found for " + section);
+    }
+
+    title = entries.readString("Trace Title", "");
+    shortTitle = entries.readString("Trace Short Title", "");
+
+    data.loadFrom(entries.getColumn("Data Set 1", section), 0);
+    dataFlags.loadFrom(entries.getColumn("Flags", section),
+                                                        DataFlags.DATA_VALID);
+
+    updateDimensions(data.size(), height);//DEBUG HSS//
+
+}//end of Trace::loadSegment
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Trace::processTraceMetaData
 //
@@ -1049,7 +1716,7 @@ private String processTraceMetaData(BufferedReader pIn, String pLastLine)
 //
 
 public String loadDataSeries(BufferedReader pIn, String pLastLine,
-                            String pStartTag, ArrayList<Integer> pBuffer,
+                            String pStartTag, IntRingBuffer pBuffer,
                             int pDataModifier1) throws IOException
 {
 
@@ -1076,6 +1743,13 @@ public String loadDataSeries(BufferedReader pIn, String pLastLine,
            "The file could not be read - section not found for " + pStartTag);
     }
 
+    //parse the data directly from the file bytes if possible
+
+    if (pIn instanceof SegmentTextReader){
+        return(loadDataSeries((SegmentTextReader)pIn, pStartTag, pBuffer,
+                                                            pDataModifier1));
+    }
+
     //scan the first part of the section and parse its entries
 
     int i = 0;
@@ -1091,7 +1765,7 @@ public String loadDataSeries(BufferedReader pIn, String pLastLine,
 
             //convert the text to an integer and save in the buffer
             int dataInt = Integer.parseInt(line);
-            pBuffer.add(dataInt | pDataModifier1);
+            pBuffer.addExpanding(dataInt | pDataModifier1);
 
             //catch buffer overflow
             if (i == pBuffer.size()) {
@@ -1121,6 +1795,48 @@ public String loadDataSeries(BufferedReader pIn, String pLastLine,
 }//end of Trace::loadDataSeries
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Trace::loadDataSeries
+//
+// Loads the data of a section for which the start tag has already been read
+// from pIn, parsing the numbers directly from the file bytes without creating
+// a String for each line.
+//
+// See the other loadDataSeries for details.
+//
+
+private String loadDataSeries(SegmentTextReader pIn, String pStartTag,
+                    IntRingBuffer pBuffer, int pDataModifier1) throws IOException
+{
+
+    boolean success;
+
+    try{
+        success = pIn.readIntColumn();
+    }
+    catch(NumberFormatException e){
+        //catch error translating the text to an integer
+        throw new IOException(
+         "The file could not be read - corrupt data for " + pStartTag
+                                          + " at data point " + pIn.getCount());
+    }
+
+    if (!success) {
+        throw new IOException(
+         "The file could not be read - missing end of section for "
+                                                                + pStartTag);
+    }
+
+    int[] values = pIn.getValues();
+    int count = pIn.getCount();
+
+    for (int i=0; i<count; i++){ pBuffer.addExpanding(values[i] | pDataModifier1); }
+
+    return(pIn.readLine()); //the "[xxxx]" tag
+
+}//end of Trace::loadDataSeries
+//-----------------------------------------------------------------------------
+
 }//end of class Trace
 //-----------------------------------------------------------------------------
 //-----------------------------------------------------------------------------
@@ -7,6 +7,17 @@
 *
 * This class subclasses Graph to represent a graph with traces.
 *
+* The traces are drawn into a back buffer owned by the graph rather than
+* directly onto the screen. New data points are drawn incrementally into the
+* buffer and scrolling is done by copying the buffer contents, so a repaint
+* after the graph is uncovered or resized only requires the buffer to be
+* copied to the screen. The entire trace history is only redrawn into the
+* buffer when something changes the way it is displayed, such as a change in
+* scale or the loading of a segment.
+*
+* The buffer is a VolatileImage so it can be accelerated by the video
+* hardware, or a BufferedImage if one cannot be created.
+*
 * Open Source Policy:
 *
 * This source code is Public Domain and free to any interested party.  Any
@@ -19,12 +30,16 @@ package view;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import model.DataFlags;
 import model.IniFile;
+import model.SegmentFileReader;
+import model.SegmentFileWriter;
 import model.SharedSettings;
 
 //-----------------------------------------------------------------------------
@@ -44,6 +59,16 @@ public class TraceGraph extends Graph{
 
     private boolean invertGraph;
 
+    //back buffer into which the traces are drawn -- only one is in use
+    private VolatileImage volatileBuffer;
+    private BufferedImage imageBuffer;
+
+    //false if the back buffer must be redrawn from the stored data
+    private boolean backBufferValid = false;
+
+    //scroll offset of the graph when the back buffer was last drawn
+    private int backBufferScrollOffset;
+
 //-----------------------------------------------------------------------------
 // TraceGraph::TraceGraph (constructor)
 //
@@ -175,6 +200,8 @@ public String loadSegment(BufferedReader pIn, String pLastLine)
     String line = processMetaData(pIn, pLastLine, false);
 
     for (Trace t : traces) { line = t.loadSegment(pIn, line); }
+
+    invalidateBackBuffer();
     
     //DEBUG HSS//  test code to set width to first trace
     width = traces[0].getWidth();
@@ -203,6 +230,66 @@ public void saveSegment(BufferedWriter pOut) throws IOException
 }//end of TraceGraph::saveSegment
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// TraceGraph::loadSegment
+//
+// Tells each trace to load the segment from a binary segment file via pIn.
+//
+
+@Override
+public SegmentFileReader.Section loadSegment(SegmentFileReader pIn)
+        throws IOException
+{
+
+    //index is not checked, same as for legacy text files
+    SegmentFileReader.Section entries = processMetaData(pIn, false);
+
+    for (Trace t : traces) { t.loadSegment(pIn); }
+
+    invalidateBackBuffer();
+
+    //DEBUG HSS//  test code to set width to first trace
+    width = traces[0].getWidth();
+    setSizes(this, width, height);
+    //DEBUG HSS// end
+
+    return(entries);
+
+}//end of TraceGraph::loadSegment
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// TraceGraph::saveSegment
+//
+// Tells each trace to save the current segment to a binary segment file.
+//
+
+@Override
+public void saveSegment(SegmentFileWriter pOut)
+{
+
+    super.saveSegment(pOut);
+
+    for (Trace t : traces) { t.saveSegment(pOut); }
+
+}//end of TraceGraph::saveSegment
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// TraceGraph::getSegmentPeaks
+//
+// Adds the peak of the current segment of each trace to pPeaks.
+//
+
+@Override
+public void getSegmentPeaks(ArrayList<Integer> pPeaks)
+{
+
+    for (Trace t : traces) { pPeaks.add(t.getSegmentPeak()); }
+
+}//end of TraceGraph::getSegmentPeaks
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // TraceGraph::addTraces
 //
@@ -251,25 +338,154 @@ private void addThresholds()
 //-----------------------------------------------------------------------------
 // TraceGraph::paintComponent
 //
+// Copies the back buffer to the screen, first redrawing it from the stored
+// data if it is invalid. When printing, everything is drawn directly to the
+// printer instead.
+//
 
 @Override
 public void paintComponent (Graphics g)
 {
 
-    super.paintComponent(g);
+    if (isPaintingForPrint()){
+        super.paintComponent(g);
+        paintGraph((Graphics2D) g);
+        return;
+    }
+
+    Graphics2D g2 = getBackBufferGraphics();
+    g2.dispose();
+
+    if (volatileBuffer != null){
+        g.drawImage(volatileBuffer, 0, 0, null);
+        //if the contents were lost during the copy, redraw and try again
+        if (volatileBuffer.contentsLost()) { invalidateBackBuffer(); }
+    }
+    else { g.drawImage(imageBuffer, 0, 0, null); }
+
+}// end of TraceGraph::paintComponent
+//-----------------------------------------------------------------------------
 
-    Graphics2D g2 = (Graphics2D) g;
+//-----------------------------------------------------------------------------
+// TraceGraph::paintGraph
+//
+// Draws the background, the grid baseline, and all the traces and thresholds
+// from the stored data onto pG2.
+//
+
+private void paintGraph(Graphics2D pG2)
+{
 
     if (drawGridBaseline){
         int y;
         if(invertGraph) { y=getHeight()-1; } else { y=0; }
-        g2.setColor(gridColor);
-        g2.drawLine(0, y, width-1, y);
+        pG2.setColor(gridColor);
+        pG2.drawLine(0, y, width-1, y);
     }
 
-    paintChildren(g2);
+    paintChildren(pG2);
 
-}// end of TraceGraph::paintComponent
+}// end of TraceGraph::paintGraph
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// TraceGraph::getBackBufferGraphics
+//
+// Returns a graphics object for drawing into the back buffer. The buffer is
+// created if it does not exist or is the wrong size and is redrawn from the
+// stored data if it is invalid or its contents have been lost.
+//
+// The caller should dispose of the returned object when done.
+//
+
+private Graphics2D getBackBufferGraphics()
+{
+
+    int w = Math.max(getWidth(), 1), h = Math.max(getHeight(), 1);
+
+    if (volatileBuffer != null){
+        if (volatileBuffer.getWidth() != w || volatileBuffer.getHeight() != h
+            || volatileBuffer.validate(getGraphicsConfiguration())
+                                        == VolatileImage.IMAGE_INCOMPATIBLE){
+            volatileBuffer.flush(); volatileBuffer = null;
+        }
+        else if (volatileBuffer.contentsLost()) { backBufferValid = false; }
+    }
+
+    if (imageBuffer != null
+            && (imageBuffer.getWidth() != w || imageBuffer.getHeight() != h)){
+        imageBuffer = null;
+    }
+
+    if (volatileBuffer == null && imageBuffer == null){
+
+        //createVolatileImage returns null if the graph is not displayable
+        volatileBuffer = createVolatileImage(w, h);
+
+        if (volatileBuffer == null){
+            imageBuffer = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        }
+
+        backBufferValid = false;
+
+    }
+
+    Graphics2D g2 = volatileBuffer != null ?
+                volatileBuffer.createGraphics() : imageBuffer.createGraphics();
+
+    //the buffer must be redrawn if the graph was scrolled by other means
+    if (backBufferScrollOffset != graphInfo.scrollOffset){
+        backBufferValid = false;
+    }
+
+    if (!backBufferValid){
+        g2.setColor(backgroundColor);
+        g2.fillRect(0, 0, w, h);
+        paintGraph(g2);
+        backBufferValid = true;
+        backBufferScrollOffset = graphInfo.scrollOffset;
+    }
+
+    return(g2);
+
+}// end of TraceGraph::getBackBufferGraphics
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// TraceGraph::invalidateBackBuffer
+//
+// Causes the back buffer to be redrawn from the stored data the next time the
+// graph is painted. Should be called when anything changes the way the
+// stored data is displayed.
+//
+
+public void invalidateBackBuffer()
+{
+
+    backBufferValid = false;
+
+    repaint();
+
+}// end of TraceGraph::invalidateBackBuffer
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// TraceGraph::finishBackBufferUpdate
+//
+// Disposes of pG2, which was used to draw new data into the back buffer, and
+// schedules the buffer to be copied to the screen.
+//
+
+private void finishBackBufferUpdate(Graphics2D pG2)
+{
+
+    pG2.dispose();
+
+    backBufferScrollOffset = graphInfo.scrollOffset;
+
+    repaint();
+
+}// end of TraceGraph::finishBackBufferUpdate
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
@@ -300,7 +516,11 @@ public void paintChildren(Graphics2D pG2)
 public void paintSingleTraceDataPoint(int pTrace, int pIndex)
 {
 
-    traces[pTrace].paintTrace((Graphics2D) getGraphics());
+    Graphics2D g2 = getBackBufferGraphics();
+
+    traces[pTrace].paintTrace(g2);
+
+    finishBackBufferUpdate(g2);
 
 }// end of TraceGraph::paintSingleTraceDataPoint
 //-----------------------------------------------------------------------------
@@ -364,7 +584,11 @@ public boolean isSegmentStarted()
 public void updateChild(int pChildNum)
 {
 
-    traces[pChildNum].updateTrace((Graphics2D) getGraphics());
+    Graphics2D g2 = getBackBufferGraphics();
+
+    traces[pChildNum].updateTrace(g2);
+
+    finishBackBufferUpdate(g2);
 
 }// end of TraceGraph::updateChild
 //-----------------------------------------------------------------------------
@@ -380,7 +604,11 @@ public void updateChild(int pChildNum)
 public void updateChildren()
 {
 
-    for (Trace t : traces) { t.updateTrace((Graphics2D) getGraphics()); }
+    Graphics2D g2 = getBackBufferGraphics();
+
+    for (Trace t : traces) { t.updateTrace(g2); }
+
+    finishBackBufferUpdate(g2);
 
 }// end of TraceGraph::updateChildren
 //-----------------------------------------------------------------------------
@@ -511,7 +739,7 @@ public void resetAll()
 
     for (Trace trace : traces) { trace.resetData(); }
 
-    repaint();
+    invalidateBackBuffer();
 
 }// end of TraceGraph::resetAll
 //-----------------------------------------------------------------------------
@@ -528,6 +756,8 @@ public void resetAllChildrenData()
 
     for (Trace trace : traces) { trace.resetData(); }
 
+    invalidateBackBuffer();
+
 }// end of TraceGraph::resetAllChildrenData
 //-----------------------------------------------------------------------------
 
@@ -565,6 +795,8 @@ public void setChildConnectPoints(int pChildNum, boolean pValue)
 
     traces[pChildNum].setConnectPoints(pValue);
 
+    invalidateBackBuffer();
+
 }// end of TraceGraph::setChildConnectPoints
 //-----------------------------------------------------------------------------
 
@@ -582,6 +814,8 @@ public void setChildYScale(int pChildNum, double pScale)
 
     traces[pChildNum].setYScale(pScale);
 
+    invalidateBackBuffer();
+
 }// end of TraceGraph::setChildYScale
 //-----------------------------------------------------------------------------
 
@@ -599,6 +833,8 @@ public void setChildOffset(int pChildNum, int pOffset)
 
     traces[pChildNum].setOffset(pOffset);
 
+    invalidateBackBuffer();
+
 }// end of TraceGraph::setChildOffset
 //-----------------------------------------------------------------------------
 
@@ -617,6 +853,8 @@ public void setChildBaseLine(int pChildNum, int pBaseLine)
 
     traces[pChildNum].setBaseLine(pBaseLine);
 
+    invalidateBackBuffer();
+
 }// end of TraceGraph::setChildBaseLine
 //-----------------------------------------------------------------------------
 
@@ -632,9 +870,72 @@ public void setAllChildrenXScale(double pScale)
 
     for (Trace trace : traces) { trace.setXScale(pScale); }
 
+    invalidateBackBuffer();
+
 }// end of TraceGraph::setAllChildrenXScale
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// TraceGraph::scrollGraph
+//
+// Scrolls the back buffer to the left by pShiftAmount and erases the right
+// most slice.
+//
+
+@Override
+public void scrollGraph (int pShiftAmount)
+{
+
+    Graphics2D g2 = getBackBufferGraphics();
+
+    //scroll the buffer to the left
+    g2.copyArea(0, 0, width, height, -1 * pShiftAmount, 0);
+    //erase the line at the far right
+    g2.setColor(backgroundColor);
+    g2.fillRect(width-pShiftAmount, 0, pShiftAmount, height);
+
+    graphInfo.scrollOffset += pShiftAmount;
+    graphInfo.lastScrollAmount = pShiftAmount;
+
+    finishBackBufferUpdate(g2);
+
+}// end of TraceGraph::scrollGraph
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// TraceGraph::updateGraphYOffset
+//
+// Sets the y offset of the graph to pOffset and redraws the traces.
+//
+
+@Override
+public void updateGraphYOffset(int pOffset)
+{
+
+    super.updateGraphYOffset(pOffset);
+
+    invalidateBackBuffer();
+
+}// end of TraceGraph::updateGraphYOffset
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// TraceGraph::updateThreshold
+//
+// Updates the specified threshold and redraws the traces.
+//
+
+@Override
+public void updateThreshold(int pThres, int pLvl)
+{
+
+    backBufferValid = false;
+
+    super.updateThreshold(pThres, pLvl);
+
+}// end of TraceGraph::updateThreshold
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // TraceGraph::getTrace
 //
@@ -47,6 +47,7 @@ import javax.print.attribute.standard.PageRanges;
 import javax.print.attribute.standard.PrintQuality;
 import javax.print.attribute.standard.PrinterResolution;
 import javax.swing.*;
+import model.SegmentIndex;
 import model.SharedSettings;
 import toolkit.Tools;
 
@@ -64,6 +65,9 @@ public class Viewer extends ViewerReporter implements WindowListener,
 
     ArrayList<String> segmentList;
 
+    //indexes of the inspection and calibration segment files in the job folder
+    SegmentIndex segmentIndex, calSegmentIndex;
+
     static int FIRST = 0;
     static int LAST = 1;
 
@@ -290,14 +294,87 @@ public void configure()
 //-----------------------------------------------------------------------------
 // Viewer::loadSegmentList
 //
+// Loads a list of the available segment numbers from the segment index of the
+// job folder.
+//
+// Either ".dat" or ".cal" files are listed depending on the checkbox setting.
+//
+// If the index cannot be read or built, the folder is scanned instead.
+//
+
+public void loadSegmentList()
+{
+
+    segmentList.clear();
+
+    SegmentIndex index = getSegmentIndex();
+
+    if (index == null) { scanSegmentList(); return; }
+
+    index.getSegmentNumbers(segmentList);
+
+}//end of Viewer::loadSegmentList
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Viewer::getSegmentIndex
+//
+// Returns the segment index for ".dat" or ".cal" files depending on the
+// checkbox setting after loading any entries added since it was last used.
+//
+// The index is created the first time it is used.
+//
+// Synchronized as this is also called from the print thread when prefetching
+// segments -- see prefetchNearbySegments.
+//
+// Returns null if the index cannot be read or built.
+//
+
+synchronized SegmentIndex getSegmentIndex()
+{
+
+    SegmentIndex index;
+
+    if (isCalSelected()){
+        if (calSegmentIndex == null){
+            calSegmentIndex = new SegmentIndex(jobPrimaryPath, "30 - ", ".cal");
+        }
+        index = calSegmentIndex;
+    }
+    else{
+        if (segmentIndex == null){
+            segmentIndex = new SegmentIndex(jobPrimaryPath, "20 - ", ".dat");
+        }
+        index = segmentIndex;
+    }
+
+    try{
+        index.refresh();
+    }
+    catch(IOException e){
+        logSevere(e.getMessage() + " - Error: 367");
+        return(null);
+    }
+
+    return(index);
+
+}//end of Viewer::getSegmentIndex
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Viewer::scanSegmentList
+//
 // Loads a list of the available segment files from the folder.  The filenames
 // are reduced to the number without preceding zeroes or other non-numeric
 // characters.
 //
 // Either ".dat" or ".cal" files are loaded depending on the checkbox setting.
 //
+// This lists every file in the folder, which is slow for large jobs, so it is
+// only used if the segment index cannot be used.
+//
 
-public void loadSegmentList()
+void scanSegmentList()
 {
 
     //specify the type of files to load
@@ -333,7 +410,7 @@ public void loadSegmentList()
         if (segNum != Integer.MIN_VALUE) {segmentList.set(i, "" + segNum);}
     }
 
-}//end of Viewer::loadSegmentList
+}//end of Viewer::scanSegmentList
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
@@ -367,12 +444,12 @@ void loadFirstOrLastAvailableSegment(int pWhich)
 
     int segNumber = getFirstOrLastAvailableSegmentNumber(pWhich);
 
-    if (currentSegmentNumber == -1){
+    if (segNumber == -1){
         displayErrorMessage("Error with name in file list.", false);
         return;
     }
 
-    if (currentSegmentNumber == -2){
+    if (segNumber == -2){
         displayErrorMessage("No valid files in folder.", false);
         return;
     }
@@ -397,10 +474,31 @@ void loadFirstOrLastAvailableSegment(int pWhich)
 // Returns -1 if there is an error parsing the number.
 // Returns -2 if there are no files.
 //
+// The number is looked up in the segment index. Any entries for files which
+// have since been deleted are skipped.
+//
 
 int getFirstOrLastAvailableSegmentNumber(int pWhich)
 {
 
+    SegmentIndex index = getSegmentIndex();
+
+    if (index != null){
+
+        while (!index.isEmpty()){
+
+            int number = pWhich == FIRST ? index.getFirst() : index.getLast();
+
+            if (segmentFileExists(number)) { return(number); }
+
+            index.remove(number);
+
+        }
+
+        return(-2); //no files found
+
+    }
+
     //load the list of available segment numbers / files
     loadSegmentList();
 
@@ -425,6 +523,57 @@ int getFirstOrLastAvailableSegmentNumber(int pWhich)
 }//end of Viewer::getFirstOrLastAvailableSegmentNumber
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Viewer::getNextOrPreviousSegmentNumber
+//
+// Returns the number of the segment after pNumber if pNext is true or before
+// pNumber if pNext is false, skipping any missing segments.
+//
+// If the segment index cannot be used, the number one higher or lower is
+// returned whether or not that segment exists. If there is no segment in that
+// direction, the number one higher or lower is returned so that the missing
+// file is reported as before.
+//
+
+int getNextOrPreviousSegmentNumber(int pNumber, boolean pNext)
+{
+
+    SegmentIndex index = getSegmentIndex();
+
+    int number = Integer.MIN_VALUE;
+
+    while (index != null){
+
+        number = pNext ? index.getNext(pNumber) : index.getPrevious(pNumber);
+
+        if (number == Integer.MIN_VALUE || segmentFileExists(number)) { break; }
+
+        index.remove(number);
+
+    }
+
+    if (number == Integer.MIN_VALUE) { number = pNext ? pNumber+1 : pNumber-1; }
+
+    return(number);
+
+}//end of Viewer::getNextOrPreviousSegmentNumber
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Viewer::segmentFileExists
+//
+// Returns true if the ".dat" or ".cal" file for segment pNumber exists,
+// depending on the checkbox setting.
+//
+
+boolean segmentFileExists(int pNumber)
+{
+
+    return(new File(getSegmentPath(pNumber)).exists());
+
+}//end of Viewer::segmentFileExists
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Viewer::trimNonNumeric
 //
@@ -801,6 +950,9 @@ public int print(Graphics g, PageFormat pPF, int pPage) throws
         //to print the currently displayed piece
 
         if (startPiece != -1) {
+
+            //skip to the next segment listed in the index
+            pieceTrack = getPrintableSegmentNumber(pieceTrack);
             currentSegmentNumber = pieceTrack;
 
             //try loading segments until an existing one is found
@@ -851,6 +1003,34 @@ public int print(Graphics g, PageFormat pPF, int pPage) throws
 }//end of Viewer::print
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Viewer::getPrintableSegmentNumber
+//
+// Returns the lowest segment number at or after pNumber which is listed in the
+// segment index, or endPiece + 1 if there are none in the print range.
+//
+// If the index cannot be used, pNumber is returned and the missing segments
+// are skipped as they are found missing while loading.
+//
+
+int getPrintableSegmentNumber(int pNumber)
+{
+
+    SegmentIndex index = getSegmentIndex();
+
+    if (index == null) { return(pNumber); }
+
+    int number = index.getAtOrAfter(pNumber);
+
+    if (number == Integer.MIN_VALUE || number > endPiece) {
+        return(endPiece + 1);
+    }
+
+    return(number);
+
+}//end of Viewer::getPrintableSegmentNumber
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Viewer::loadSegmentThreadSafe
 //
@@ -1389,14 +1569,16 @@ public void actionPerformed(ActionEvent e)
 
     if ("Load Previous".equals(e.getActionCommand())) {
         //load the segment previous to the current one (numerically)
-        currentSegmentNumber--;
+        currentSegmentNumber =
+                getNextOrPreviousSegmentNumber(currentSegmentNumber, false);
         if (currentSegmentNumber < 1) {currentSegmentNumber = 1;}
         loadSegment(false);
     }
 
     if ("Load Next".equals(e.getActionCommand())) {
         //load the segment after the current one (numerically)
-        currentSegmentNumber++;
+        currentSegmentNumber =
+                getNextOrPreviousSegmentNumber(currentSegmentNumber, true);
         if (currentSegmentNumber > 1000000) {currentSegmentNumber = 1000000;}
         loadSegment(false);
     }
@@ -1651,6 +1833,10 @@ String loadSegment(boolean pQuietMode)
 
     controlPanel.segmentEntry.setText(currentSegmentNumber + result);
 
+    //read the segments most likely to be loaded next while this one is viewed
+    //or printed
+    prefetchNearbySegments(pQuietMode);
+
     //set up the main JFrame with its children components
     resetMainFrameAndSetUp();
 
@@ -1661,6 +1847,61 @@ String loadSegment(boolean pQuietMode)
 }//end of Viewer::loadSegment
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Viewer::prefetchNearbySegments
+//
+// Has segmentCache read the segments following and preceding the current one
+// in the background so that they are in memory if the operator steps to them.
+//
+// If pPrinting is true, only the following segments in the print range are
+// read so that the cache stays ahead of the print thread.
+//
+// The segments are found in the segment index so that missing segments are
+// skipped. Nothing is done if the cache is disabled or the index cannot be
+// used.
+//
+
+void prefetchNearbySegments(boolean pPrinting)
+{
+
+    if (segmentCache == null) { return; }
+
+    SegmentIndex index = getSegmentIndex();
+
+    if (index == null) { return; }
+
+    ArrayList<String> paths = new ArrayList<>();
+
+    int next = currentSegmentNumber, previous = currentSegmentNumber;
+
+    //alternate between following and preceding segments so the nearest in
+    //each direction are read first
+
+    for (int i=0; i<settings.viewerPrefetchCount; i++){
+
+        if (next != Integer.MIN_VALUE) { next = index.getNext(next); }
+
+        if (pPrinting && next > endPiece) { next = Integer.MIN_VALUE; }
+
+        if (next != Integer.MIN_VALUE) { paths.add(getSegmentPath(next)); }
+
+        if (pPrinting) { continue; }
+
+        if (previous != Integer.MIN_VALUE) {
+            previous = index.getPrevious(previous);
+        }
+
+        if (previous != Integer.MIN_VALUE) {
+            paths.add(getSegmentPath(previous));
+        }
+
+    }
+
+    segmentCache.prefetch(paths);
+
+}//end of Viewer::prefetchNearbySegments
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Viewer::windowClosing
 //
@@ -1683,6 +1924,9 @@ public void windowClosing(WindowEvent e)
     //kill the thread
     printThread.interrupt();
 
+    //stop reading ahead and release the cached segments
+    if (segmentCache != null) { segmentCache.shutDown(); }
+
 }//end of Viewer::windowClosing
 //-----------------------------------------------------------------------------
 
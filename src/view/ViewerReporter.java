@@ -24,7 +24,9 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.print.*;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
@@ -36,6 +38,9 @@ import java.util.logging.Logger;
 import javax.print.attribute.PrintRequestAttributeSet;
 import javax.swing.*;
 import model.IniFile;
+import model.SegmentCache;
+import model.SegmentFileReader;
+import model.SegmentTextReader;
 import model.SharedSettings;
 import toolkit.Tools;
 
@@ -88,6 +93,14 @@ public class ViewerReporter implements ActionListener {
 
     String fileCreationTimeStamp = "";
 
+    //holds recently viewed and prefetched segment files -- null if disabled
+    SegmentCache segmentCache;
+
+    //the cal file is only loaded again if it has changed
+    private IniFile calFile;
+    private String calFilePath;
+    private long calFileSize, calFileModified;
+
     PrintRunnable printRunnable;
 
     int startPiece = 0, endPiece = 0, pieceTrack = 0;
@@ -315,6 +328,12 @@ public void init()
                                 this, true, settings.mainFileFormat);
     pieceIDInfo.init();
 
+    if (settings.viewerSegmentCacheSizeMB > 0){
+        segmentCache = new SegmentCache(
+                            settings.viewerSegmentCacheSizeMB * 1024L * 1024L);
+        segmentCache.init();
+    }
+
 }//end of ViewerReporter::init
 //-----------------------------------------------------------------------------
 
@@ -362,19 +381,12 @@ String loadSegment(boolean pQuietMode)
     //reset the charts
     resetChartGroups();
 
-    //inspected pieces are saved with the prefix 20 while calibration pieces are
-    //saved with the prefix 30 - this forces them to be grouped together and
-    //controls the order in which the types are listed when the folder is viewed
-    //in alphabetical order in an explorer window
-
-    String prefix, ext, infoExt;
+    String ext, infoExt;
 
-    prefix = isCalSelected() ? "30 - " : "20 - ";
     ext = isCalSelected() ? ".cal" : ".dat";
     infoExt = isCalSelected() ? ".cal info" : ".info";
 
-    segmentFilename = prefix +
-                            decimalFormats[0].format(currentSegmentNumber);
+    segmentFilename = getSegmentFilename(currentSegmentNumber);
 
     //load the cal file first so its settings can be overridden by any
     //settings in the data file which might have been different at the time
@@ -401,6 +413,44 @@ String loadSegment(boolean pQuietMode)
 }//end of ViewerReporter::loadSegment
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// ViewerReporter::getSegmentFilename
+//
+// Returns the filename, without the extension, of segment pNumber of the type
+// selected by the cal checkbox.
+//
+// Inspected pieces are saved with the prefix 20 while calibration pieces are
+// saved with the prefix 30 - this forces them to be grouped together and
+// controls the order in which the types are listed when the folder is viewed
+// in alphabetical order in an explorer window.
+//
+
+String getSegmentFilename(int pNumber)
+{
+
+    String prefix = isCalSelected() ? "30 - " : "20 - ";
+
+    return(prefix + decimalFormats[0].format(pNumber));
+
+}//end of ViewerReporter::getSegmentFilename
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ViewerReporter::getSegmentPath
+//
+// Returns the full path of the data file of segment pNumber of the type
+// selected by the cal checkbox.
+//
+
+String getSegmentPath(int pNumber)
+{
+
+    return(jobPrimaryPath + getSegmentFilename(pNumber)
+                                        + (isCalSelected() ? ".cal" : ".dat"));
+
+}//end of ViewerReporter::getSegmentPath
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // ViewerReporter::loadSegmentHelper
 //
@@ -414,19 +464,34 @@ String loadSegment(boolean pQuietMode)
 private String loadSegmentHelper(String pFilename)
 {
 
-    //create a buffered writer stream
+    if (segmentCache != null) { return(loadCachedSegmentHelper(pFilename)); }
+
+    //binary files are detected by their magic number -- anything else is
+    //loaded as a legacy text file
+
+    try{
+        if (SegmentFileReader.isBinarySegmentFile(pFilename)){
+            return(loadBinarySegmentHelper(pFilename));
+        }
+    }
+    catch (FileNotFoundException e){
+        return("Could not find the requested file.");
+    }
+    catch(IOException e){
+        return(e.getMessage());
+    }
+
+    //the entire file is read so its data can be parsed directly from the
+    //bytes without creating a String for each line
 
-    FileInputStream fileInputStream = null;
-    InputStreamReader inputStreamReader = null;
     BufferedReader in = null;
 
     try{
 
-        fileInputStream = new FileInputStream(pFilename);
-        inputStreamReader = new InputStreamReader(fileInputStream,
-                                                       settings.mainFileFormat);
+        byte[] contents = Files.readAllBytes(Paths.get(pFilename));
 
-        in = new BufferedReader(inputStreamReader);
+        in = SegmentTextReader.open(contents, 0, contents.length,
+                                                       settings.mainFileFormat);
 
         processHeader(in); //handle the header section
 
@@ -441,7 +506,7 @@ private String loadSegmentHelper(String pFilename)
         }
 
         }// try
-    catch (FileNotFoundException e){
+    catch (NoSuchFileException e){
         return("Could not find the requested file.");
         }
     catch(IOException e){
@@ -450,10 +515,6 @@ private String loadSegmentHelper(String pFilename)
     finally{
         try{if (in != null) {in.close();}}
         catch(IOException e){}
-        try{if (inputStreamReader != null) {inputStreamReader.close();}}
-        catch(IOException e){}
-        try{if (fileInputStream != null) {fileInputStream.close();}}
-        catch(IOException e){}
         }
 
     return("");
@@ -461,6 +522,109 @@ private String loadSegmentHelper(String pFilename)
 }//end of ViewerReporter::loadSegmentHelper
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// ViewerReporter::loadCachedSegmentHelper
+//
+// Loads the data for a segment from the specified file via segmentCache. The
+// file is only read from the folder if it is not in the cache or has changed.
+//
+// If there is no error, returns empty String ""
+// ON error, returns the appropriate error message
+//
+
+private String loadCachedSegmentHelper(String pFilename)
+{
+
+    try{
+
+        ByteBuffer contents = segmentCache.get(pFilename);
+
+        //binary files are detected by their magic number -- anything else is
+        //loaded as a legacy text file
+
+        if (SegmentFileReader.isBinarySegmentFile(contents)){
+
+            SegmentFileReader in = new SegmentFileReader(pFilename, contents);
+            in.init();
+
+            processHeader(in); //handle the header section
+
+            for (int i = 0; i < numberOfChartGroups; i++) {
+                chartGroups[i].loadSegment(in);
+            }
+
+            return("");
+
+        }
+
+        try (BufferedReader in = SegmentTextReader.open(contents.array(),
+                contents.arrayOffset(), contents.limit(),
+                                                settings.mainFileFormat)){
+
+            processHeader(in); //handle the header section
+
+            String line = "";
+
+            //allow each chart group to load data, pass blank line in first
+            //time, thereafter it will contain the last line read from the call
+            //to loadSegment and will be passed on to the following call
+
+            for (int i = 0; i < numberOfChartGroups; i++) {
+                line = chartGroups[i].loadSegment(in, line);
+            }
+
+        }
+
+    }
+    catch (NoSuchFileException e){
+        return("Could not find the requested file.");
+    }
+    catch(IOException e){
+        return(e.getMessage());
+    }
+
+    return("");
+
+}//end of ViewerReporter::loadCachedSegmentHelper
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ViewerReporter::loadBinarySegmentHelper
+//
+// Loads the data for a segment from the specified binary segment file. The
+// file is memory mapped and the data copied directly into the charts.
+//
+// If there is no error, returns empty String ""
+// ON error, returns the appropriate error message
+//
+
+private String loadBinarySegmentHelper(String pFilename)
+{
+
+    try{
+
+        SegmentFileReader in = new SegmentFileReader(pFilename);
+        in.init();
+
+        processHeader(in); //handle the header section
+
+        for (int i = 0; i < numberOfChartGroups; i++) {
+            chartGroups[i].loadSegment(in);
+        }
+
+    }
+    catch (FileNotFoundException e){
+        return("Could not find the requested file.");
+    }
+    catch(IOException e){
+        return(e.getMessage());
+    }
+
+    return("");
+
+}//end of ViewerReporter::loadBinarySegmentHelper
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // ViewerReporter::getFileCreationDateTimeString
 //
@@ -590,6 +754,28 @@ private String processHeader(BufferedReader pIn) throws IOException
 }//end of ViewerReporter::processHeader
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// ViewerReporter::processHeader
+//
+// Processes the header section of a binary segment data file via pIn.
+//
+
+private void processHeader(SegmentFileReader pIn) throws IOException
+{
+
+    SegmentFileReader.Section header = pIn.nextSection("Header", "header");
+
+    segmentDataVersion = header.readString("Segment Data Version", "0.0");
+
+    measuredLengthText = header.readString("Measured Length", "0.0");
+    try{measuredLength = Double.valueOf(measuredLengthText);}
+    catch(NumberFormatException nfe){ measuredLength = 0;}
+
+    inspectionDirection = header.readString("Inspection Direction", "Unknown");
+
+}//end of ViewerReporter::processHeader
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // ViewerReporter::loadCalFile
 //
@@ -599,19 +785,44 @@ private String processHeader(BufferedReader pIn) throws IOException
 // Each object is passed a pointer to the file so that they may load their
 // own data.
 //
+// The file is parsed only the first time or if it has been changed since it
+// was last parsed. This is done each time a segment is loaded, so the parsed
+// file is kept rather than read again for every segment. The file is also
+// parsed if the job has changed and the path is no longer the same, even if
+// the new file has the same size and modification time.
+//
 
 public void loadCalFile()
 {
 
-    IniFile calFile;
+    String calFilename = jobPrimaryPath + "00 - "
+                + currentJobNamePathFriendly + " Calibration File.ini";
 
     //if the ini file cannot be opened and loaded, exit without action
     try {
 
-        calFile = new IniFile(jobPrimaryPath + "00 - "
-                            + currentJobNamePathFriendly
-                            + " Calibration File.ini", settings.mainFileFormat);
-        calFile.init();
+        //a missing file is loaded as an empty file, so it is cached as well
+        long size = -1, modified = -1;
+
+        Path path = Paths.get(calFilename).toAbsolutePath().normalize();
+
+        try{
+            BasicFileAttributes attr = Files.readAttributes(
+                                            path, BasicFileAttributes.class);
+            size = attr.size(); modified = attr.lastModifiedTime().toMillis();
+        }
+        catch(NoSuchFileException e){ }
+
+        if (calFile == null || !path.toString().equals(calFilePath)
+                || size != calFileSize || modified != calFileModified){
+
+            IniFile file = new IniFile(calFilename, settings.mainFileFormat);
+            file.init();
+
+            calFile = file; calFilePath = path.toString();
+            calFileSize = size; calFileModified = modified;
+        }
+
     }
     catch(IOException e){
         logSevere(e.getMessage() + " - Error: 712");
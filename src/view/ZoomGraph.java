@@ -20,12 +20,17 @@ import java.awt.*;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.ListIterator;
 import model.DataFlags;
 import model.DataSetSnapshot;
 import model.IniFile;
+import model.SegmentFileReader;
+import model.SegmentFileWriter;
+import model.SegmentRecorder;
+import model.SegmentTextReader;
 import model.SharedSettings;
 import toolkit.Tools;
 
@@ -54,6 +59,12 @@ public class ZoomGraph extends Graph{
     ArrayList<Integer> dataFlags = new ArrayList<>(10000);
     DataSetSnapshot dataSet;
 
+    //reused for retrieving data from snapshotBuffer in bulk
+    private int[] drainPeaks;
+    private int[][] drainRows;
+    private int[] drainFlags;
+    private static final int DRAIN_BATCH_SIZE = 64;
+
     //length is the x axis, width is the y axis (o'clock position)
     private int lengthInDataPoints;
     public int getLengthInDataPoints(){return(lengthInDataPoints);}
@@ -104,6 +115,10 @@ public void init()
 
     dataSet = new DataSetSnapshot(128); //WIP HSS// determine another way
 
+    drainPeaks = new int[DRAIN_BATCH_SIZE];
+    drainRows = new int[DRAIN_BATCH_SIZE][dataSet.length];
+    drainFlags = new int[DRAIN_BATCH_SIZE];
+
 }// end of ZoomGraph::init
 //-----------------------------------------------------------------------------
 
@@ -134,28 +149,41 @@ public void paintComponent (Graphics g)
 
 public void retrieveDataChanges()
 {
-    
-    while(snapshotBuffer.getDataChange(dataSet) != 0){
-        
-        //check to see if this data point should be segment start
-        checkSegmentStart(dataSet);
-
-        //store for future use
-        data.add(dataSet.d.clone());
-        dataFlags.add(dataSet.flags);
-        
-        //limit size of lists to control memory
-        if (data.size()>10000) { data.remove(0); dataFlags.remove(0); }
-
-        //if segment start/end flag set, draw a vertical separator bar, store index
-        int index = data.size()-1;
-        if ((dataSet.flags & DataFlags.SEGMENT_START_SEPARATOR) != 0) {
-            lastSegmentStartIndex = index;
-        }
-        if ((dataSet.flags & DataFlags.SEGMENT_END_SEPARATOR) != 0) {
-            lastSegmentEndIndex = index;
+
+    int n;
+
+    //retrieve runs of changed rows with one buffer lock per run
+
+    while((n = snapshotBuffer.drainReady(drainPeaks, drainRows, drainFlags,
+                                                    DRAIN_BATCH_SIZE)) != 0){
+
+        int count = Math.abs(n);
+
+        for (int i=0; i<count; i++){
+
+            dataSet.p = drainPeaks[i]; dataSet.flags = drainFlags[i];
+
+            //check to see if this data point should be segment start
+            checkSegmentStart(dataSet);
+
+            //store for future use
+            data.add(drainRows[i].clone());
+            dataFlags.add(dataSet.flags);
+
+            //limit size of lists to control memory
+            if (data.size()>10000) { data.remove(0); dataFlags.remove(0); }
+
+            //if segment start/end flag set, store index
+            int index = data.size()-1;
+            if ((dataSet.flags & DataFlags.SEGMENT_START_SEPARATOR) != 0) {
+                lastSegmentStartIndex = index;
+            }
+            if ((dataSet.flags & DataFlags.SEGMENT_END_SEPARATOR) != 0) {
+                lastSegmentEndIndex = index;
+            }
+
         }
-        
+
     }
 
 }// end of ZoomGraph::retrieveDataChanges
@@ -465,6 +493,9 @@ private void checkSegmentStart(DataSetSnapshot pDataSet)
 //
 // Saves all of the zoom data.
 //
+// If the segment has been read back from the piece journal, the recorded
+// segment is saved instead of the data held in memory.
+//
 
 @Override
 public void saveSegment(BufferedWriter pOut) throws IOException
@@ -472,25 +503,36 @@ public void saveSegment(BufferedWriter pOut) throws IOException
 
     super.saveSegment(pOut);
 
+    SegmentRecorder.Source recording = getRecording();
+
     //catch unexpected case where start/stop are invalid and bail
-    if (lastSegmentStartIndex < 0 || lastSegmentEndIndex < 0){
+    if (recording == null
+                    && (lastSegmentStartIndex < 0 || lastSegmentEndIndex < 0)){
         pOut.write("Segment start and/or start invalid - no data saved.");
         pOut.newLine(); pOut.newLine();
         return;
     }
 
+    int start = lastSegmentStartIndex, end = lastSegmentEndIndex;
+
+    if (recording != null) { start = 0; end = recording.getCount() - 1; }
+
     //save data points
     pOut.write("[Data Set 1]"); pOut.newLine();
-    for (int i=lastSegmentStartIndex; i<=lastSegmentEndIndex; i++) {
-        for (int d : data.get(i)) { pOut.write(Integer.toString(d)+","); }
+    for (int i=start; i<=end; i++) {
+        int[] row = recording != null ?
+                                    recording.getRows().get(i) : data.get(i);
+        for (int d : row) { pOut.write(Integer.toString(d)+","); }
         pOut.newLine();
     }
     pOut.write("[End of Set]"); pOut.newLine();
 
     //save data flags
     pOut.write("[Flags]"); pOut.newLine();
-    for (int i=lastSegmentStartIndex; i<=lastSegmentEndIndex; i++) {
-        pOut.write(Integer.toString(dataFlags.get(i))); //write to file
+    for (int i=start; i<=end; i++) {
+        int flags = recording != null ?
+                                    recording.getFlags()[i] : dataFlags.get(i);
+        pOut.write(Integer.toString(flags)); //write to file
         pOut.newLine();
     }
     pOut.write("[End of Set]"); pOut.newLine();
@@ -498,6 +540,27 @@ public void saveSegment(BufferedWriter pOut) throws IOException
 }//end of ZoomGraph::saveSegment
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// ZoomGraph::getRecording
+//
+// Returns the recorder of the snapshot buffer if the current segment has been
+// read back from the piece journal, or null if not.
+//
+
+private SegmentRecorder.Source getRecording()
+{
+
+    if (snapshotBuffer == null) { return(null); }
+
+    SegmentRecorder.Source recorder = snapshotBuffer.getRecorder();
+
+    if (recorder == null || !recorder.hasRecording()) { return(null); }
+
+    return(recorder);
+
+}//end of ZoomGraph::getRecording
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // ZoomGraph::loadSegment
 //
@@ -529,6 +592,73 @@ public String loadSegment(BufferedReader pIn, String pLastLine)
 }//end of ZoomGraph::loadSegment
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// ZoomGraph::saveSegment
+//
+// Saves all of the zoom data to a binary segment file.
+//
+// If the segment has been read back from the piece journal, the recorded
+// segment is saved instead of the data held in memory. Otherwise, if the
+// segment start/stop are invalid, empty data columns are saved.
+//
+
+@Override
+public void saveSegment(SegmentFileWriter pOut)
+{
+
+    super.saveSegment(pOut);
+
+    SegmentRecorder.Source recording = getRecording();
+
+    if (recording != null){
+        pOut.writeRows("Data Set 1", recording.getRows(), 0,
+                                                        recording.getCount());
+        pOut.writeColumn("Flags", recording.getFlags(), 0,
+                                                        recording.getCount());
+        return;
+    }
+
+    int start = lastSegmentStartIndex, count = 0;
+
+    if (lastSegmentStartIndex >= 0 && lastSegmentEndIndex >= 0){
+        count = lastSegmentEndIndex - lastSegmentStartIndex + 1;
+    }
+
+    pOut.writeRows("Data Set 1", data, start, count);
+    pOut.writeColumn("Flags", dataFlags, start, count);
+
+}//end of ZoomGraph::saveSegment
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ZoomGraph::loadSegment
+//
+// Loads all of the zoom data from a binary segment file.
+//
+
+@Override
+public SegmentFileReader.Section loadSegment(SegmentFileReader pIn)
+        throws IOException
+{
+
+    SegmentFileReader.Section entries = super.loadSegment(pIn);
+
+    //clear previous data & flags
+    zoomBoxes.clear(); data.clear(); dataFlags.clear();
+
+    //load data points
+    entries.getRows("Data Set 1", data, fileSection);
+
+    //load flags
+    IntBuffer flags = entries.getColumn("Flags", fileSection);
+    dataFlags.ensureCapacity(flags.remaining());
+    while (flags.hasRemaining()) { dataFlags.add(flags.get()); }
+
+    return(entries);
+
+}//end of ZoomGraph::loadSegment
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // ZoomGraph::loadDataSeries
 //
@@ -565,6 +695,13 @@ public String loadDataSeries(BufferedReader pIn, String pLastLine,
     //attempt to find section start, will throw exception on failure
     line = findSectionStart(pIn, pLastLine, pStartTag, matchSet);
 
+    //parse the data directly from the file bytes if possible
+
+    if (pIn instanceof SegmentTextReader){
+        return(loadDataSeries((SegmentTextReader)pIn, pStartTag, pBufferInt,
+                pBufferIntArray, pMultiDataPointsPerFileLine, pDataModifier1));
+    }
+
     //read in the section and store the data
     int i = 0; boolean success = false;
     while ((line = pIn.readLine()) != null){
@@ -621,6 +758,61 @@ public String loadDataSeries(BufferedReader pIn, String pLastLine,
 }//end of ZoomGraph::loadDataSeries
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// ZoomGraph::loadDataSeries
+//
+// Loads the data of a section for which the start tag has already been read
+// from pIn, parsing the numbers directly from the file bytes without creating
+// Strings for each line.
+//
+// See the other loadDataSeries for details.
+//
+
+private String loadDataSeries(SegmentTextReader pIn, String pStartTag,
+                            ArrayList<Integer> pBufferInt,
+                            ArrayList<int[]> pBufferIntArray,
+                            boolean pMultiDataPointsPerFileLine,
+                            int pDataModifier1) throws IOException
+{
+
+    boolean success;
+
+    try{
+        if (pMultiDataPointsPerFileLine) {
+            ArrayList<int[]> rows =
+                pBufferIntArray != null ? pBufferIntArray : new ArrayList<>();
+            success = pIn.readIntRows(rows, pDataModifier1);
+        }
+        else {
+            success = pIn.readIntColumn();
+            if (pBufferInt != null) {
+                int[] values = pIn.getValues();
+                int count = pIn.getCount();
+                pBufferInt.ensureCapacity(pBufferInt.size() + count);
+                for (int i=0; i<count; i++){
+                    pBufferInt.add(values[i] | pDataModifier1);
+                }
+            }
+        }
+    }
+    catch(NumberFormatException e){
+        //catch error translating the text to an integer
+        throw new IOException(
+                        "The file could not be read - corrupt data for "
+                                + pStartTag + " at data point " + pIn.getCount());
+    }
+
+    if (!success) {
+        throw new IOException(
+         "The file could not be read - missing end of section for "
+                                                                + pStartTag);
+    }
+
+    return(pIn.readLine()); //the "[xxxx]" tag
+
+}//end of ZoomGraph::loadDataSeries
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // ZoomGraph::loadDataSeries
 //
@@ -0,0 +1,655 @@
+/******************************************************************************
+* Title: SegmentFileTests.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class holds the tests of the binary segment file format: files built
+* by SegmentFileWriter, with and without compression, are read back by
+* SegmentFileReader and compared with the data written, each encoding of
+* SegmentColumnCodec is checked on its own, and damaged or unsupported files
+* are checked to be rejected.
+*
+* The class is in the model package so that the tests can check the column
+* descriptors held by SegmentFileReader.Section.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package model;
+
+//-----------------------------------------------------------------------------
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import test.Check;
+import test.TestCase;
+import toolkit.IntRingBuffer;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SegmentFileTests
+//
+
+public class SegmentFileTests
+{
+
+    private static final int NUM_POINTS = 5000;
+    private static final int ROW_WIDTH = 48;
+    private static final int NUM_ROWS = 300;
+    private static final int RING_VALUES = 1500;
+
+//-----------------------------------------------------------------------------
+// SegmentFileTests::create
+//
+// Returns all tests of this class.
+//
+
+public static ArrayList<TestCase> create()
+{
+
+    ArrayList<TestCase> list = new ArrayList<>();
+
+    list.add(new TestCase("SegmentFile round trip (uncompressed, mapped file)",
+                                    SegmentFileTests::roundTripUncompressed));
+    list.add(new TestCase("SegmentFile round trip (compressed, in memory)",
+                                    SegmentFileTests::roundTripCompressed));
+    list.add(new TestCase("SegmentFile empty columns",
+                                    SegmentFileTests::emptyColumns));
+    list.add(new TestCase("SegmentFile rejects unsupported versions",
+                                    SegmentFileTests::rejectsBadVersions));
+    list.add(new TestCase("SegmentFile rejects damaged files",
+                                    SegmentFileTests::rejectsDamagedFiles));
+    list.add(new TestCase("SegmentFile writeRows rejects ragged rows",
+                                    SegmentFileTests::rejectsRaggedRows));
+    list.add(new TestCase("SegmentColumnCodec round trip (each encoding)",
+                                    SegmentFileTests::codecRoundTrip));
+    list.add(new TestCase("SegmentColumnCodec rejects corrupt columns",
+                                    SegmentFileTests::codecRejectsCorrupt));
+
+    return(list);
+
+}//end of SegmentFileTests::create
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileTests::roundTripUncompressed
+//
+// Writes an uncompressed file to disk and checks that the mapped file reads
+// back the same sections, entries, and columns.
+//
+
+static void roundTripUncompressed() throws Exception
+{
+
+    Data d = new Data();
+
+    Path dir = Files.createTempDirectory("segtest");
+    String path = dir.resolve("20 - 1.dat").toString();
+
+    try{
+
+        d.write(new SegmentFileWriter(false)).writeToFile(path);
+
+        Check.isTrue(SegmentFileReader.isBinarySegmentFile(path),
+                                                "file has the magic number");
+        Check.equal(SegmentFileReader.UNCOMPRESSED_FORMAT_VERSION,
+                        SegmentFileReader.readFormatVersion(path),
+                        "version read from start of file");
+
+        SegmentFileReader in = new SegmentFileReader(path);
+        in.init();
+
+        Check.equal(SegmentFileReader.UNCOMPRESSED_FORMAT_VERSION,
+                                    in.getVersion(), "version after init");
+
+        d.verify(in, false);
+
+    }
+    finally{
+        deleteAll(dir);
+    }
+
+}//end of SegmentFileTests::roundTripUncompressed
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileTests::roundTripCompressed
+//
+// Builds a compressed file in memory and checks that it reads back the same
+// data as was written, and that each kind of column was given the encoding
+// expected for it.
+//
+
+static void roundTripCompressed() throws Exception
+{
+
+    Data d = new Data();
+
+    byte[] bytes = toBytes(d.write(new SegmentFileWriter(true)));
+
+    Check.isTrue(SegmentFileReader.isBinarySegmentFile(ByteBuffer.wrap(bytes)),
+                                                "file has the magic number");
+
+    SegmentFileReader in =
+                    new SegmentFileReader("memory", ByteBuffer.wrap(bytes));
+    in.init();
+
+    Check.equal(SegmentFileReader.FORMAT_VERSION, in.getVersion(),
+                                                        "version after init");
+
+    d.verify(in, true);
+
+    //the compressed file should be much smaller than the uncompressed one
+
+    int rawLength = toBytes(d.write(new SegmentFileWriter(false))).length;
+
+    Check.isTrue(bytes.length < rawLength / 2, "compressed size "
+                + bytes.length + " not less than half of " + rawLength);
+
+}//end of SegmentFileTests::roundTripCompressed
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileTests::emptyColumns
+//
+// Checks that columns and sections with no data read back as empty, as is
+// the case for a segment whose start and stop are not valid.
+//
+
+static void emptyColumns() throws Exception
+{
+
+    for (boolean compressed : new boolean[] {false, true}){
+
+        SegmentFileWriter out = new SegmentFileWriter(compressed);
+
+        out.startSection("Empty Section");
+        out.startSection("Trace");
+        out.writeColumn("Data", new int[0], 0, 0);
+        out.writeRows("Data Set 1", new ArrayList<>(), 0, 0);
+
+        SegmentFileReader in = new SegmentFileReader("memory",
+                                            ByteBuffer.wrap(toBytes(out)));
+        in.init();
+
+        SegmentFileReader.Section s = in.nextSection("Empty Section", "test");
+        Check.equal(0, s.columns.size(), "columns in empty section");
+
+        s = in.nextSection("Trace", "test");
+        Check.equal(0, s.getColumn("Data", "test").remaining(),
+                                                    "values in empty column");
+
+        ArrayList<int[]> rows = new ArrayList<>();
+        s.getRows("Data Set 1", rows, "test");
+        Check.equal(0, rows.size(), "rows in empty column");
+
+        Check.isTrue(in.nextSection() == null, "no more sections");
+
+    }
+
+}//end of SegmentFileTests::emptyColumns
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileTests::rejectsBadVersions
+//
+// Checks that files with format versions below 1 or above the newest
+// version are rejected.
+//
+
+static void rejectsBadVersions() throws Exception
+{
+
+    byte[] bytes = toBytes(new Data().write(new SegmentFileWriter(true)));
+
+    for (int version : new int[] {0, -1, Integer.MIN_VALUE,
+                        SegmentFileReader.FORMAT_VERSION + 1, Integer.MAX_VALUE}){
+
+        byte[] copy = bytes.clone();
+
+        ByteBuffer.wrap(copy).order(ByteOrder.LITTLE_ENDIAN)
+                        .putInt(SegmentFileReader.MAGIC.length, version);
+
+        SegmentFileReader in =
+                        new SegmentFileReader("memory", ByteBuffer.wrap(copy));
+
+        Check.fails(IOException.class, in::init, "version " + version);
+
+    }
+
+}//end of SegmentFileTests::rejectsBadVersions
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileTests::rejectsDamagedFiles
+//
+// Checks that text files, files cut short, and files with a damaged header
+// are rejected with an IOException rather than any other exception.
+//
+
+static void rejectsDamagedFiles() throws Exception
+{
+
+    byte[] text = "[Header Start]\nSegment Data Version=1.0\n"
+                                        .getBytes(StandardCharsets.UTF_8);
+
+    Check.isTrue(!SegmentFileReader.isBinarySegmentFile(ByteBuffer.wrap(text)),
+                                        "text file taken as binary");
+
+    Check.fails(IOException.class, () -> new SegmentFileReader("memory",
+                        ByteBuffer.wrap(text)).init(), "text file");
+
+    byte[] bytes = toBytes(new Data().write(new SegmentFileWriter(false)));
+
+    int headerLength = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN)
+                                .getInt(SegmentFileReader.MAGIC.length + 4);
+
+    //cut short within the prefix, within the header, and within the data
+
+    for (int length : new int[] {0, 7, 12, SegmentFileReader.PREFIX_SIZE
+                        + headerLength / 2, bytes.length - 1}){
+
+        ByteBuffer cut = ByteBuffer.wrap(Arrays.copyOf(bytes, length));
+
+        Check.fails(IOException.class,
+            () -> new SegmentFileReader("memory", cut).init(),
+            "file cut to " + length + " bytes");
+
+    }
+
+    //a header length beyond the end of the file
+
+    byte[] copy = bytes.clone();
+    ByteBuffer.wrap(copy).order(ByteOrder.LITTLE_ENDIAN)
+                        .putInt(SegmentFileReader.MAGIC.length + 4, copy.length);
+
+    Check.fails(IOException.class, () -> new SegmentFileReader("memory",
+                    ByteBuffer.wrap(copy)).init(), "header length too long");
+
+}//end of SegmentFileTests::rejectsDamagedFiles
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileTests::rejectsRaggedRows
+//
+// Checks that writeRows rejects rows of differing lengths, as only one row
+// width is stored for a column.
+//
+
+static void rejectsRaggedRows() throws Exception
+{
+
+    List<int[]> rows = Arrays.asList(new int[] {1, 2, 3}, new int[] {4, 5});
+
+    SegmentFileWriter out = new SegmentFileWriter();
+    out.startSection("Graph");
+
+    Check.fails(IllegalArgumentException.class,
+            () -> out.writeRows("Data Set 1", rows, 0, 2), "ragged rows");
+
+    //rows outside the range written are not checked
+
+    out.writeRows("Data Set 1", rows, 0, 1);
+
+}//end of SegmentFileTests::rejectsRaggedRows
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileTests::codecRoundTrip
+//
+// Encodes and decodes columns chosen to be stored with each encoding,
+// including extreme values, and checks the values are unchanged.
+//
+
+static void codecRoundTrip() throws Exception
+{
+
+    Random random = new Random(1);
+
+    SegmentColumnCodec codec = new SegmentColumnCodec();
+
+    int[] runs = new int[4096];
+    for (int i=0; i<runs.length; i++) { runs[i] = (i / 500) % 3 == 0 ? 0 : 1 << 9; }
+    checkCodec(codec, runs, runs.length, 1, SegmentColumnCodec.RUN_LENGTH);
+
+    int[] wander = new int[4096];
+    for (int i=1; i<wander.length; i++) {
+        wander[i] = wander[i-1] + random.nextInt(21) - 10;
+    }
+    checkCodec(codec, wander, wander.length, 1,
+                                        SegmentColumnCodec.DELTA_VARINT);
+
+    //runs of the extreme values, and a ramp which overflows from the
+    //largest value to the smallest
+
+    int[] extremes = new int[4096];
+    for (int i=0; i<extremes.length; i++){
+        extremes[i] = (i / 100) % 2 == 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+    }
+    checkCodec(codec, extremes, extremes.length, 1,
+                                            SegmentColumnCodec.RUN_LENGTH);
+
+    int[] overflow = new int[4096];
+    for (int i=0; i<overflow.length; i++){
+        overflow[i] = Integer.MAX_VALUE - 2000 + i;
+    }
+    checkCodec(codec, overflow, overflow.length, 1,
+                                            SegmentColumnCodec.DELTA_VARINT);
+
+    int[] rows = new int[NUM_ROWS * ROW_WIDTH];
+    for (int i=0; i<rows.length; i++) { rows[i] = 100 + (i % ROW_WIDTH) * 3; }
+    checkCodec(codec, rows, NUM_ROWS, ROW_WIDTH, SegmentColumnCodec.DEFLATE);
+
+    int[] noise = new int[4096];
+    for (int i=0; i<noise.length; i++) { noise[i] = random.nextInt(); }
+    checkCodec(codec, noise, noise.length, 1, SegmentColumnCodec.RAW);
+
+}//end of SegmentFileTests::codecRoundTrip
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileTests::codecRejectsCorrupt
+//
+// Checks that damaged encoded columns and unknown encodings are reported
+// with an IOException.
+//
+
+static void codecRejectsCorrupt() throws Exception
+{
+
+    SegmentColumnCodec codec = new SegmentColumnCodec();
+
+    int[] rows = new int[NUM_ROWS * ROW_WIDTH];
+    for (int i=0; i<rows.length; i++) { rows[i] = i % 7; }
+
+    int encoding = codec.encode(IntBuffer.wrap(rows), NUM_ROWS, ROW_WIDTH);
+    byte[] encoded = Arrays.copyOf(codec.getEncoded(),
+                                                codec.getEncodedLength());
+
+    Check.fails(IOException.class, () -> SegmentColumnCodec.decode(
+            ByteBuffer.wrap(encoded, 0, encoded.length / 2), encoding,
+            NUM_ROWS, ROW_WIDTH), "deflated column cut short");
+
+    Check.fails(IOException.class, () -> SegmentColumnCodec.decode(
+            ByteBuffer.wrap(new byte[] {(byte)0xff, (byte)0xff}),
+            SegmentColumnCodec.DELTA_VARINT, 10, 1), "varint cut short");
+
+    Check.fails(IOException.class, () -> SegmentColumnCodec.decode(
+            ByteBuffer.wrap(encoded), 99, NUM_ROWS, ROW_WIDTH),
+            "unknown encoding");
+
+}//end of SegmentFileTests::codecRejectsCorrupt
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileTests::checkCodec
+//
+// Encodes the pNumRows rows of pRowWidth values in pValues with pCodec and
+// checks they decode to the same values. If pExpected is not -1, the codec
+// must choose that encoding.
+//
+
+private static void checkCodec(SegmentColumnCodec pCodec, int[] pValues,
+            int pNumRows, int pRowWidth, int pExpected) throws IOException
+{
+
+    int encoding = pCodec.encode(IntBuffer.wrap(pValues), pNumRows, pRowWidth);
+
+    if (pExpected != -1){
+        Check.equal(pExpected, encoding, "encoding chosen");
+    }
+
+    if (encoding == SegmentColumnCodec.RAW) { return; }
+
+    Check.isTrue(pCodec.getEncodedLength() < pValues.length * 4,
+                                        "encoded column is not smaller");
+
+    int[] decoded = SegmentColumnCodec.decode(ByteBuffer.wrap(
+                pCodec.getEncoded(), 0, pCodec.getEncodedLength()).slice(),
+                encoding, pNumRows, pRowWidth);
+
+    Check.equal(pValues, decoded, "decoded values for encoding " + encoding);
+
+}//end of SegmentFileTests::checkCodec
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileTests::toBytes
+//
+// Returns the file built by pOut as a single array.
+//
+
+static byte[] toBytes(SegmentFileWriter pOut)
+{
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    for (ByteBuffer b : pOut.toBuffers()){
+        byte[] part = new byte[b.remaining()];
+        b.duplicate().get(part);
+        bytes.write(part, 0, part.length);
+    }
+
+    return(bytes.toByteArray());
+
+}//end of SegmentFileTests::toBytes
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileTests::deleteAll
+//
+// Deletes folder pDir and the files in it.
+//
+
+static void deleteAll(Path pDir) throws IOException
+{
+
+    File[] files = pDir.toFile().listFiles();
+
+    if (files != null) { for (File f : files) { Files.delete(f.toPath()); } }
+
+    Files.delete(pDir);
+
+}//end of SegmentFileTests::deleteAll
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class Data
+//
+// Holds the contents of a segment file laid out as saved by the display
+// objects: a header section with entries, a trace section with data and
+// flags columns from each kind of source, and a graph section with snapshot
+// rows.
+//
+
+static class Data
+{
+
+    final int[] values = new int[NUM_POINTS];
+    final int[] flags = new int[NUM_POINTS];
+    final IntRingBuffer ring = new IntRingBuffer(1024);
+    final ArrayList<Integer> list = new ArrayList<>();
+    final ArrayList<int[]> rows = new ArrayList<>();
+
+public Data()
+{
+
+    Random random = new Random(2);
+
+    int value = 50;
+
+    for (int i=0; i<NUM_POINTS; i++){
+        value = Math.max(0, Math.min(255, value + random.nextInt(9) - 4));
+        values[i] = value;
+        flags[i] = (i / 700) % 2 == 0 ? 0 : (3 << 9);
+    }
+
+    //more values than the ring holds so that the oldest are discarded
+    for (int i=0; i<RING_VALUES; i++) { ring.add(i * 3 - 2000); }
+
+    for (int i=0; i<200; i++) { list.add(-i); }
+
+    for (int i=0; i<NUM_ROWS; i++){
+        int[] row = new int[ROW_WIDTH];
+        for (int j=0; j<ROW_WIDTH; j++) { row[j] = 128 + ((i + j) % 20) - 10; }
+        rows.add(row);
+    }
+
+}//end of Data::Data (constructor)
+
+//-----------------------------------------------------------------------------
+// Data::write
+//
+// Writes the data to pOut and returns pOut.
+//
+
+SegmentFileWriter write(SegmentFileWriter pOut)
+{
+
+    pOut.startSection("Header Start");
+    pOut.writeString("Segment Data Version", "1.0");
+    pOut.writeString("Measured Length", "");
+    pOut.writeInt("Piece Number", 1234);
+    pOut.writeBoolean("Cal Mode", false);
+
+    pOut.startSection("Trace");
+    pOut.writeString("Title", "Wall \u00b5m");
+    pOut.writeColumn("Data", values, 100, NUM_POINTS - 100);
+    pOut.writeColumn("Flags", flags, 100, NUM_POINTS - 100);
+    pOut.writeColumn("Ring", ring, 10, ring.size() - 10);
+    pOut.writeColumn("List", list, 0, list.size());
+
+    pOut.startSection("Graph");
+    pOut.writeRows("Data Set 1", rows, 5, NUM_ROWS - 5);
+
+    return(pOut);
+
+}//end of Data::write
+
+//-----------------------------------------------------------------------------
+// Data::verify
+//
+// Checks that pIn holds the data as written by write. If pCompressed is
+// true, the columns must have been encoded rather than stored raw.
+//
+
+void verify(SegmentFileReader pIn, boolean pCompressed) throws IOException
+{
+
+    SegmentFileReader.Section s = pIn.nextSection("Header Start", "test");
+
+    Check.equal("1.0", s.readString("Segment Data Version", null),
+                                                            "string entry");
+    Check.equal("", s.readString("Measured Length", null), "empty entry");
+    Check.equal(1234, s.readInt("Piece Number", -1), "int entry");
+    Check.equal(false, s.readBoolean("Cal Mode", true), "boolean entry");
+    Check.equal("none", s.readString("Missing", "none"), "missing entry");
+    Check.equal(0, s.columns.size(), "columns in header");
+
+    s = pIn.nextSection("Trace", "test");
+
+    Check.equal("Wall \u00b5m", s.readString("Title", null), "UTF-8 entry");
+
+    int count = NUM_POINTS - 100;
+
+    checkColumn(s, "Data", Arrays.copyOfRange(values, 100, NUM_POINTS));
+    checkColumn(s, "Flags", Arrays.copyOfRange(flags, 100, NUM_POINTS));
+
+    //the oldest values added to the ring were discarded
+    int[] ringValues = new int[ring.capacity() - 10];
+    int firstInRing = RING_VALUES - ring.capacity() + 10;
+    for (int i=0; i<ringValues.length; i++){
+        ringValues[i] = (firstInRing + i) * 3 - 2000;
+    }
+    checkColumn(s, "Ring", ringValues);
+
+    int[] listValues = new int[list.size()];
+    for (int i=0; i<listValues.length; i++) { listValues[i] = list.get(i); }
+    checkColumn(s, "List", listValues);
+
+    Check.equal(count, s.columns.get("Data").numRows, "rows of Data");
+    Check.equal(1, s.columns.get("Data").rowWidth, "row width of Data");
+
+    if (pCompressed){
+        Check.equal(SegmentColumnCodec.DELTA_VARINT,
+                        s.columns.get("Data").encoding, "encoding of Data");
+        Check.equal(SegmentColumnCodec.RUN_LENGTH,
+                        s.columns.get("Flags").encoding, "encoding of Flags");
+    }
+    else{
+        for (SegmentFileReader.Column c : s.columns.values()){
+            Check.equal(SegmentColumnCodec.RAW, c.encoding, "raw encoding");
+        }
+    }
+
+    SegmentFileReader.Section graph = pIn.nextSection("Graph", "test");
+
+    ArrayList<int[]> read = new ArrayList<>();
+    graph.getRows("Data Set 1", read, "test");
+
+    Check.equal(NUM_ROWS - 5, read.size(), "number of rows");
+    for (int i=0; i<read.size(); i++){
+        Check.equal(rows.get(i+5), read.get(i), "row " + i);
+    }
+
+    Check.equal(ROW_WIDTH, graph.columns.get("Data Set 1").rowWidth,
+                                                    "row width of Data Set 1");
+
+    if (pCompressed){
+        Check.equal(SegmentColumnCodec.DEFLATE,
+            graph.columns.get("Data Set 1").encoding, "encoding of Data Set 1");
+    }
+
+    Check.fails(IOException.class, () -> graph.getColumn("Missing", "test"),
+                                                            "missing column");
+
+    Check.isTrue(pIn.nextSection() == null, "no more sections");
+
+}//end of Data::verify
+
+//-----------------------------------------------------------------------------
+// Data::checkColumn
+//
+// Checks that column pName of pSection holds pExpected.
+//
+
+private static void checkColumn(SegmentFileReader.Section pSection,
+                            String pName, int[] pExpected) throws IOException
+{
+
+    IntBuffer column = pSection.getColumn(pName, "test");
+
+    int[] actual = new int[column.remaining()];
+    column.get(actual);
+
+    Check.equal(pExpected, actual, "column " + pName);
+
+}//end of Data::checkColumn
+
+}//end of class Data
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+}//end of class SegmentFileTests
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
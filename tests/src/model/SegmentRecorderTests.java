@@ -0,0 +1,795 @@
+/******************************************************************************
+* Title: SegmentRecorderTests.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class holds the tests of the piece journal written by SegmentRecorder:
+* a piece recorded from a trace, a snapshot, and a map is read back by replay
+* and compared with the data points recorded, and journals left by a program
+* which stopped partway through a piece, or cut short at any point, are
+* checked to recover the data points they hold without errors.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package model;
+
+//-----------------------------------------------------------------------------
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import test.Check;
+import test.TestCase;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SegmentRecorderTests
+//
+
+public class SegmentRecorderTests
+{
+
+    //the flags added by replay to the first and last data points
+    private static final int END_FLAGS = DataFlags.SEGMENT_START_SEPARATOR
+                                        | DataFlags.SEGMENT_END_SEPARATOR;
+
+    //long enough that the commit thread does not run during a test -- the
+    //journal is written when the piece is ended or the recorder shut down
+    private static final long COMMIT_INTERVAL = 60000;
+
+//-----------------------------------------------------------------------------
+// SegmentRecorderTests::create
+//
+// Returns all tests of this class.
+//
+
+public static ArrayList<TestCase> create()
+{
+
+    ArrayList<TestCase> list = new ArrayList<>();
+
+    list.add(new TestCase("SegmentRecorder round trip with erased points",
+                                    SegmentRecorderTests::roundTrip));
+    list.add(new TestCase("SegmentRecorder recovers after shut down",
+                                    SegmentRecorderTests::recoverAfterShutDown));
+    list.add(new TestCase("SegmentRecorder recovers journal cut at any point",
+                                    SegmentRecorderTests::recoverTruncated));
+    list.add(new TestCase("SegmentRecorder skips unmatched sources",
+                                    SegmentRecorderTests::skipUnmatchedSources));
+    list.add(new TestCase("SegmentRecorder carries last point into piece",
+                                    SegmentRecorderTests::carryLastPoint));
+    list.add(new TestCase("SegmentRecorder rejects files which are not journals",
+                                    SegmentRecorderTests::rejectsNonJournal));
+    list.add(new TestCase("SegmentRecorder stops at the memory buffer limit",
+                                    SegmentRecorderTests::stopsAtBufferLimit));
+
+    return(list);
+
+}//end of SegmentRecorderTests::create
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorderTests::roundTrip
+//
+// Records a piece with runs of various lengths, some of them erased again,
+// ends it, and checks that replay reads back exactly the data points which
+// were not erased.
+//
+
+static void roundTrip() throws Exception
+{
+
+    Path dir = Files.createTempDirectory("rectest");
+
+    try{
+
+        Piece piece = new Piece(new SegmentRecorder(COMMIT_INTERVAL));
+        piece.recorder.init();
+
+        String path = dir.resolve("piece" + SegmentRecorder.JOURNAL_EXTENSION)
+                                                                .toString();
+
+        piece.recorder.startPiece(path);
+        piece.record(new Random(3), 40, true);
+
+        Check.equal(path, piece.recorder.endPiece(), "path of ended piece");
+        Check.isTrue(piece.recorder.endPiece() == null,
+                                                "second end of piece");
+
+        Check.isTrue(piece.recorder.replay(path), "journal is complete");
+
+        piece.verify(piece);
+
+        Check.isTrue(piece.recorder.isSegmentStarted(), "segment started");
+
+        piece.recorder.clearRecordings();
+
+        Check.equal(0, piece.trace.getCount(), "count after clear");
+        Check.isTrue(!piece.trace.hasRecording(), "recording after clear");
+
+        piece.recorder.shutDown(false);
+
+    }
+    finally{
+        SegmentFileTests.deleteAll(dir);
+    }
+
+}//end of SegmentRecorderTests::roundTrip
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorderTests::recoverAfterShutDown
+//
+// Shuts the recorder down partway through a piece, keeping the journal, and
+// checks that a new recorder, as created when the program is next started,
+// recovers the piece even though its sources were added in a different
+// order.
+//
+
+static void recoverAfterShutDown() throws Exception
+{
+
+    Path dir = Files.createTempDirectory("rectest");
+
+    try{
+
+        Piece piece = new Piece(new SegmentRecorder(COMMIT_INTERVAL));
+        piece.recorder.init();
+
+        String path = dir.resolve("piece" + SegmentRecorder.JOURNAL_EXTENSION)
+                                                                .toString();
+
+        piece.recorder.startPiece(path);
+        piece.record(new Random(4), 30, true);
+        piece.recorder.shutDown(true);
+
+        Check.isTrue(new File(path).exists(), "journal kept by shut down");
+
+        SegmentRecorder recorder = new SegmentRecorder(COMMIT_INTERVAL);
+        recorder.init();
+
+        SegmentRecorder.Source extra =
+                            recorder.addSource(SegmentRecorder.TRACE, 0, 0, 0, 5);
+
+        Piece recovered = new Piece(recorder, true);
+
+        Check.isTrue(!recorder.replay(path), "journal without end record");
+
+        recovered.verify(piece);
+
+        Check.isTrue(!extra.hasRecording(), "source not in journal");
+        Check.equal(0, extra.getCount(), "points of source not in journal");
+
+        recorder.shutDown(false);
+
+    }
+    finally{
+        SegmentFileTests.deleteAll(dir);
+    }
+
+}//end of SegmentRecorderTests::recoverAfterShutDown
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorderTests::recoverTruncated
+//
+// Cuts a complete journal short at every length and checks that each is
+// read back without errors, that each source recovers a leading part of the
+// data points recorded, and that more data points are recovered the longer
+// the journal.
+//
+// No points are erased in this test so that the data points recovered from
+// any part of the journal are a leading part of those recorded.
+//
+
+static void recoverTruncated() throws Exception
+{
+
+    Path dir = Files.createTempDirectory("rectest");
+
+    try{
+
+        Piece piece = new Piece(new SegmentRecorder(COMMIT_INTERVAL));
+        piece.recorder.init();
+
+        String path = dir.resolve("piece" + SegmentRecorder.JOURNAL_EXTENSION)
+                                                                .toString();
+
+        piece.recorder.startPiece(path);
+        piece.record(new Random(5), 12, false);
+        piece.recorder.endPiece();
+
+        byte[] journal = Files.readAllBytes(new File(path).toPath());
+
+        String cutPath = dir.resolve("cut" + SegmentRecorder.JOURNAL_EXTENSION)
+                                                                .toString();
+
+        int[] previous = new int[3];
+
+        for (int length=0; length<=journal.length; length++){
+
+            Files.write(new File(cutPath).toPath(),
+                                        Arrays.copyOf(journal, length));
+
+            if (length < 12){
+                Check.fails(IOException.class,
+                    () -> piece.recorder.replay(cutPath), "journal cut short");
+                continue;
+            }
+
+            boolean complete = piece.recorder.replay(cutPath);
+
+            Check.equal(length == journal.length, complete,
+                        "journal of " + length + " bytes complete");
+
+            int[] counts = piece.verifyLeading(length);
+
+            for (int i=0; i<counts.length; i++){
+                Check.isTrue(counts[i] >= previous[i], "fewer points of source "
+                                + i + " recovered from " + length + " bytes");
+            }
+
+            previous = counts;
+
+        }
+
+        piece.verify(piece);
+
+        piece.recorder.shutDown(false);
+
+    }
+    finally{
+        SegmentFileTests.deleteAll(dir);
+    }
+
+}//end of SegmentRecorderTests::recoverTruncated
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorderTests::skipUnmatchedSources
+//
+// Checks that a journal read back by a recorder which has only some of the
+// sources in the journal recovers those sources and skips the data points of
+// the others, as when the chart layout is changed between runs.
+//
+
+static void skipUnmatchedSources() throws Exception
+{
+
+    Path dir = Files.createTempDirectory("rectest");
+
+    try{
+
+        Piece piece = new Piece(new SegmentRecorder(COMMIT_INTERVAL));
+        piece.recorder.init();
+
+        String path = dir.resolve("piece" + SegmentRecorder.JOURNAL_EXTENSION)
+                                                                .toString();
+
+        piece.recorder.startPiece(path);
+        piece.record(new Random(6), 20, true);
+        piece.recorder.endPiece();
+        piece.recorder.shutDown(false);
+
+        SegmentRecorder recorder = new SegmentRecorder(COMMIT_INTERVAL);
+        recorder.init();
+
+        //same graph but a different kind, so not a match
+        SegmentRecorder.Source other =
+                        recorder.addSource(SegmentRecorder.TRACE, 0, 0, 1, 0);
+        SegmentRecorder.Source snapshot =
+                        recorder.addSource(SegmentRecorder.SNAPSHOT, 0, 0, 1, 0);
+
+        Check.isTrue(recorder.replay(path), "journal is complete");
+
+        Check.isTrue(!other.hasRecording(), "unmatched source recorded");
+        Check.isTrue(snapshot.hasRecording(), "matched source recorded");
+
+        checkRows(piece.snapshotRows, piece.snapshotFlags, null,
+                                    snapshot, piece.snapshotRows.size(), true);
+
+        recorder.shutDown(false);
+
+    }
+    finally{
+        SegmentFileTests.deleteAll(dir);
+    }
+
+}//end of SegmentRecorderTests::skipUnmatchedSources
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorderTests::carryLastPoint
+//
+// Checks that the last trace and snapshot data points retrieved before a
+// piece is started are recorded as the first data points of the piece, that
+// the last map data point is not, and that a cleared data point is not.
+//
+
+static void carryLastPoint() throws Exception
+{
+
+    Path dir = Files.createTempDirectory("rectest");
+
+    try{
+
+        Piece piece = new Piece(new SegmentRecorder(COMMIT_INTERVAL));
+        piece.recorder.init();
+
+        //retrieved before any piece is started, so not recorded other than
+        //the last of each
+
+        piece.trace.recordValues(3, new int[] {7, 8, 9}, new int[] {0, 0, 4});
+        piece.snapshot.recordRows(2, new int[][] {{1, 2}, {3, 4, 5}}, null,
+                                                        new int[] {0, 6});
+        piece.map.recordRows(1, new int[][] {{1}}, new int[][] {{2}},
+                                                            new int[] {0});
+
+        String path = dir.resolve("piece" + SegmentRecorder.JOURNAL_EXTENSION)
+                                                                .toString();
+
+        piece.recorder.startPiece(path);
+        piece.trace.recordValues(1, new int[] {10}, new int[] {0});
+        piece.recorder.endPiece();
+
+        piece.recorder.replay(path);
+
+        Check.equal(2, piece.trace.getCount(), "trace points");
+        Check.equal(9, piece.trace.getValues()[0], "carried trace value");
+        Check.equal(4, piece.trace.getFlags()[0] & ~END_FLAGS,
+                                                    "carried trace flags");
+        Check.equal(10, piece.trace.getValues()[1], "recorded trace value");
+
+        Check.equal(1, piece.snapshot.getCount(), "snapshot points");
+        Check.equal(new int[] {3, 4, 5}, piece.snapshot.getRows().get(0),
+                                                        "carried snapshot row");
+        Check.equal(6, piece.snapshot.getFlags()[0] & ~END_FLAGS,
+                                                    "carried snapshot flags");
+
+        Check.equal(0, piece.map.getCount(), "map points");
+
+        //the trace buffer is reset, so its last point is not carried
+
+        piece.trace.clearLast();
+
+        piece.recorder.startPiece(path);
+        piece.recorder.endPiece();
+
+        piece.recorder.replay(path);
+
+        Check.equal(0, piece.trace.getCount(), "trace points after clear");
+        Check.equal(1, piece.snapshot.getCount(), "snapshot points");
+
+        piece.recorder.shutDown(false);
+
+    }
+    finally{
+        SegmentFileTests.deleteAll(dir);
+    }
+
+}//end of SegmentRecorderTests::carryLastPoint
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorderTests::rejectsNonJournal
+//
+// Checks that replay rejects files which are not journals or are of an
+// unsupported version with an IOException.
+//
+
+static void rejectsNonJournal() throws Exception
+{
+
+    Path dir = Files.createTempDirectory("rectest");
+
+    try{
+
+        SegmentRecorder recorder = new SegmentRecorder(COMMIT_INTERVAL);
+        recorder.init();
+
+        Path path = dir.resolve("other" + SegmentRecorder.JOURNAL_EXTENSION);
+
+        Files.write(path, "[Header Start]\nSegment Data Version=1.0\n"
+                                                                .getBytes());
+
+        Check.fails(IOException.class, () -> recorder.replay(path.toString()),
+                                                                "text file");
+
+        ByteBuffer header = ByteBuffer.allocate(12)
+                                            .order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(SegmentRecorder.MAGIC);
+        header.putInt(SegmentRecorder.FORMAT_VERSION + 1);
+        header.putInt(0);
+
+        Files.write(path, header.array());
+
+        Check.fails(IOException.class, () -> recorder.replay(path.toString()),
+                                                        "unsupported version");
+
+        Check.fails(IOException.class, () -> recorder.replay(
+            dir.resolve("missing").toString()), "missing file");
+
+        recorder.shutDown(false);
+
+    }
+    finally{
+        SegmentFileTests.deleteAll(dir);
+    }
+
+}//end of SegmentRecorderTests::rejectsNonJournal
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorderTests::stopsAtBufferLimit
+//
+// Holds the lock used while writing the journal, as happens while the
+// storage device is not responding, and records more data points than the
+// memory buffer may hold. Checks that recording of the piece is stopped,
+// that the error is reported when the piece is ended, and that the next
+// piece is recorded normally.
+//
+
+static void stopsAtBufferLimit() throws Exception
+{
+
+    Path dir = Files.createTempDirectory("rectest");
+
+    try{
+
+        SegmentRecorder recorder = new SegmentRecorder(COMMIT_INTERVAL);
+        recorder.init();
+
+        SegmentRecorder.Source trace =
+                        recorder.addSource(SegmentRecorder.TRACE, 0, 0, 0, 0);
+
+        String path = dir.resolve("piece" + SegmentRecorder.JOURNAL_EXTENSION)
+                                                                .toString();
+
+        recorder.startPiece(path);
+        trace.recordValues(2, new int[] {1, 2}, new int[] {0, 0});
+
+        //write the start of the piece as the commit thread would
+
+        Method commit = SegmentRecorder.class.getDeclaredMethod("commit");
+        commit.setAccessible(true);
+        commit.invoke(recorder);
+
+        int[] values = new int[100000], flags = new int[values.length];
+
+        int numRuns = SegmentRecorder.MAX_BUFFER_SIZE / (values.length * 8) + 2;
+
+        Field writeLock = SegmentRecorder.class.getDeclaredField("writeLock");
+        writeLock.setAccessible(true);
+
+        synchronized(writeLock.get(recorder)){
+            for (int i=0; i<numRuns; i++){
+                trace.recordValues(values.length, values, flags);
+            }
+        }
+
+        Check.fails(IOException.class, recorder::endPiece, "ended piece");
+
+        //the records held in memory were discarded, so the journal holds only
+        //the points written before the lock was taken
+
+        Check.isTrue(!recorder.replay(path), "journal is complete");
+        Check.equal(2, trace.getCount(), "points recovered");
+
+        recorder.startPiece(path);
+        trace.recordValues(2, new int[] {1, 2}, new int[] {0, 0});
+        recorder.endPiece();
+
+        //the last point retrieved before the piece was started is carried
+
+        Check.isTrue(recorder.replay(path), "next journal is complete");
+        Check.equal(3, trace.getCount(), "points of next piece");
+
+        recorder.shutDown(false);
+
+    }
+    finally{
+        SegmentFileTests.deleteAll(dir);
+    }
+
+}//end of SegmentRecorderTests::stopsAtBufferLimit
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentRecorderTests::checkRows
+//
+// Checks that pSource read back the first pCount rows and flags in pRows and
+// pFlags and, unless pMetaRows is null, the meta rows in pMetaRows. If
+// pComplete is true, it must not have read back any more.
+//
+
+static void checkRows(ArrayList<int[]> pRows, ArrayList<Integer> pFlags,
+        ArrayList<int[]> pMetaRows, SegmentRecorder.Source pSource,
+        int pCount, boolean pComplete)
+{
+
+    if (pComplete){
+        Check.equal(pCount, pSource.getCount(), "points of row source");
+    }
+
+    int count = pSource.getCount();
+
+    Check.isTrue(count <= pCount, "more points than recorded");
+    Check.equal(count, pSource.getRows().size(), "rows read back");
+
+    for (int i=0; i<count; i++){
+
+        Check.equal(pRows.get(i), pSource.getRows().get(i), "row " + i);
+
+        //the map is the only source with meta rows and has no segment marks
+        int flags = pSource.getFlags()[i];
+        if (pMetaRows == null) { flags &= ~END_FLAGS; }
+
+        Check.equal((int)pFlags.get(i), flags, "flags of row " + i);
+
+        if (pMetaRows != null){
+            Check.equal(pMetaRows.get(i), pSource.getMetaRows().get(i),
+                                                            "meta row " + i);
+        }
+
+    }
+
+    if (pMetaRows != null){
+        Check.equal(count, pSource.getMetaRows().size(), "meta rows");
+    }
+
+}//end of SegmentRecorderTests::checkRows
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class Piece
+//
+// Holds a recorder with a trace, a snapshot, and a map source, and the data
+// points recorded for each so that they can be compared with those read back.
+//
+
+static class Piece
+{
+
+    final SegmentRecorder recorder;
+    final SegmentRecorder.Source trace, snapshot, map;
+
+    final ArrayList<Integer> traceValues = new ArrayList<>();
+    final ArrayList<Integer> traceFlags = new ArrayList<>();
+    final ArrayList<int[]> snapshotRows = new ArrayList<>();
+    final ArrayList<Integer> snapshotFlags = new ArrayList<>();
+    final ArrayList<int[]> mapRows = new ArrayList<>();
+    final ArrayList<int[]> mapMetaRows = new ArrayList<>();
+    final ArrayList<Integer> mapFlags = new ArrayList<>();
+
+public Piece(SegmentRecorder pRecorder)
+{
+
+    this(pRecorder, false);
+
+}//end of Piece::Piece (constructor)
+
+//-----------------------------------------------------------------------------
+// Piece::Piece (constructor)
+//
+// Adds the sources to pRecorder, in reverse order if pReversed is true.
+//
+
+public Piece(SegmentRecorder pRecorder, boolean pReversed)
+{
+
+    recorder = pRecorder;
+
+    if (pReversed){
+        map = recorder.addSource(SegmentRecorder.MAP, 1, 0, 0, 0);
+        snapshot = recorder.addSource(SegmentRecorder.SNAPSHOT, 0, 0, 1, 0);
+        trace = recorder.addSource(SegmentRecorder.TRACE, 0, 0, 0, 1);
+    }
+    else{
+        trace = recorder.addSource(SegmentRecorder.TRACE, 0, 0, 0, 1);
+        snapshot = recorder.addSource(SegmentRecorder.SNAPSHOT, 0, 0, 1, 0);
+        map = recorder.addSource(SegmentRecorder.MAP, 1, 0, 0, 0);
+    }
+
+}//end of Piece::Piece (constructor)
+
+//-----------------------------------------------------------------------------
+// Piece::record
+//
+// Records pNumRuns runs of random data points of random length to each
+// source. If pErase is true, some runs are followed by erasing some of the
+// points.
+//
+
+void record(Random pRandom, int pNumRuns, boolean pErase)
+{
+
+    for (int run=0; run<pNumRuns; run++){
+
+        int n = 1 + pRandom.nextInt(50);
+
+        int[] values = new int[n], flags = new int[n];
+
+        for (int i=0; i<n; i++){
+            values[i] = pRandom.nextInt(512) - 256;
+            flags[i] = pRandom.nextInt(4) == 0 ? pRandom.nextInt(0x10000) : 0;
+            traceValues.add(values[i]); traceFlags.add(flags[i]);
+        }
+
+        trace.recordValues(n, values, flags);
+
+        int numRows = 1 + pRandom.nextInt(4);
+
+        int[][] rows = new int[numRows][], metaRows = new int[numRows][];
+        int[] rowFlags = new int[numRows];
+
+        for (int i=0; i<numRows; i++){
+            rows[i] = randomRow(pRandom);
+            metaRows[i] = randomRow(pRandom);
+            rowFlags[i] = pRandom.nextInt(8);
+        }
+
+        snapshot.recordRows(numRows, rows, null, rowFlags);
+        map.recordRows(numRows, rows, metaRows, rowFlags);
+
+        for (int i=0; i<numRows; i++){
+            snapshotRows.add(rows[i]); snapshotFlags.add(rowFlags[i]);
+            mapRows.add(rows[i]); mapMetaRows.add(metaRows[i]);
+            mapFlags.add(rowFlags[i]);
+        }
+
+        if (pErase && pRandom.nextInt(3) == 0){
+
+            int erased = pRandom.nextInt(n + 1);
+            trace.recordValues(-erased, null, null);
+            removeLast(traceValues, erased); removeLast(traceFlags, erased);
+
+            erased = pRandom.nextInt(numRows + 1);
+            snapshot.recordRows(-erased, null, null, null);
+            removeLast(snapshotRows, erased); removeLast(snapshotFlags, erased);
+
+            map.recordRows(-erased, null, null, null);
+            removeLast(mapRows, erased); removeLast(mapMetaRows, erased);
+            removeLast(mapFlags, erased);
+
+        }
+
+    }
+
+}//end of Piece::record
+
+//-----------------------------------------------------------------------------
+// Piece::verify
+//
+// Checks that the sources of this object read back exactly the data points
+// recorded by pRecorded, which may be this object.
+//
+
+void verify(Piece pRecorded)
+{
+
+    Check.isTrue(trace.hasRecording(), "trace recorded");
+    Check.equal(pRecorded.traceValues.size(), trace.getCount(),
+                                                            "trace points");
+
+    checkTrace(pRecorded, trace.getCount());
+
+    checkRows(pRecorded.snapshotRows, pRecorded.snapshotFlags, null,
+                            snapshot, pRecorded.snapshotRows.size(), true);
+
+    checkRows(pRecorded.mapRows, pRecorded.mapFlags, pRecorded.mapMetaRows,
+                                    map, pRecorded.mapRows.size(), true);
+
+    //replay marks the ends of the segment -- the map has no segment marks
+
+    int last = trace.getCount() - 1;
+    Check.isTrue((trace.getFlags()[0]
+                & DataFlags.SEGMENT_START_SEPARATOR) != 0, "trace start flag");
+    Check.isTrue((trace.getFlags()[last]
+                & DataFlags.SEGMENT_END_SEPARATOR) != 0, "trace end flag");
+
+    last = snapshot.getCount() - 1;
+    Check.isTrue((snapshot.getFlags()[last]
+                & DataFlags.SEGMENT_END_SEPARATOR) != 0, "snapshot end flag");
+
+}//end of Piece::verify
+
+//-----------------------------------------------------------------------------
+// Piece::verifyLeading
+//
+// Checks that each source read back a leading part of the data points
+// recorded, as from a journal of pLength bytes which was cut short, and
+// returns the number of data points read back by each.
+//
+
+int[] verifyLeading(int pLength)
+{
+
+    Check.isTrue(trace.getCount() <= traceValues.size(),
+                        "more trace points than recorded from " + pLength);
+
+    checkTrace(this, trace.getCount());
+
+    checkRows(snapshotRows, snapshotFlags, null, snapshot,
+                                                snapshotRows.size(), false);
+    checkRows(mapRows, mapFlags, mapMetaRows, map, mapRows.size(), false);
+
+    return(new int[] {trace.getCount(), snapshot.getCount(), map.getCount()});
+
+}//end of Piece::verifyLeading
+
+//-----------------------------------------------------------------------------
+// Piece::checkTrace
+//
+// Checks that the trace read back the first pCount data points recorded by
+// pRecorded.
+//
+
+private void checkTrace(Piece pRecorded, int pCount)
+{
+
+    for (int i=0; i<pCount; i++){
+
+        Check.equal((int)pRecorded.traceValues.get(i), trace.getValues()[i],
+                                                        "trace value " + i);
+        Check.equal((int)pRecorded.traceFlags.get(i),
+                    trace.getFlags()[i] & ~END_FLAGS, "trace flags " + i);
+
+    }
+
+}//end of Piece::checkTrace
+
+//-----------------------------------------------------------------------------
+// Piece::randomRow
+//
+// Returns a row of random length and values.
+//
+
+private static int[] randomRow(Random pRandom)
+{
+
+    int[] row = new int[pRandom.nextInt(20)];
+
+    for (int i=0; i<row.length; i++) { row[i] = pRandom.nextInt(256); }
+
+    return(row);
+
+}//end of Piece::randomRow
+
+//-----------------------------------------------------------------------------
+// Piece::removeLast
+//
+// Removes the last pCount elements of pList.
+//
+
+private static void removeLast(ArrayList<?> pList, int pCount)
+{
+
+    for (int i=0; i<pCount; i++) { pList.remove(pList.size()-1); }
+
+}//end of Piece::removeLast
+
+}//end of class Piece
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+}//end of class SegmentRecorderTests
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,157 @@
+/******************************************************************************
+* Title: Check.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class provides the checks used by the tests run by TestRunner. Each
+* check throws an AssertionError describing the failure. The checks do not
+* use the assert statement so that they work whether or not assertions are
+* enabled.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package test;
+
+//-----------------------------------------------------------------------------
+
+import java.util.Arrays;
+import java.util.Objects;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class Check
+//
+
+public class Check
+{
+
+//-----------------------------------------------------------------------------
+// Check::isTrue
+//
+// Fails with message pWhat if pCondition is false.
+//
+
+public static void isTrue(boolean pCondition, String pWhat)
+{
+
+    if (!pCondition) { throw new AssertionError(pWhat); }
+
+}//end of Check::isTrue
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Check::equal
+//
+// Fails with message pWhat if pActual is not equal to pExpected.
+//
+
+public static void equal(long pExpected, long pActual, String pWhat)
+{
+
+    if (pActual != pExpected){
+        throw new AssertionError(
+                pWhat + " - expected " + pExpected + " but was " + pActual);
+    }
+
+}//end of Check::equal
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Check::equal
+//
+// Fails with message pWhat if pActual is not equal to pExpected.
+//
+
+public static void equal(Object pExpected, Object pActual, String pWhat)
+{
+
+    if (!Objects.equals(pExpected, pActual)){
+        throw new AssertionError(
+                pWhat + " - expected " + pExpected + " but was " + pActual);
+    }
+
+}//end of Check::equal
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Check::equal
+//
+// Fails with message pWhat if the first pCount values of pActual are not
+// equal to those of pExpected.
+//
+
+public static void equal(int[] pExpected, int[] pActual, int pCount,
+                                                                String pWhat)
+{
+
+    if (pActual.length < pCount){
+        throw new AssertionError(pWhat + " - expected at least " + pCount
+                                + " values but was " + pActual.length);
+    }
+
+    for (int i=0; i<pCount; i++){
+        if (pActual[i] != pExpected[i]){
+            throw new AssertionError(pWhat + " - value " + i + " expected "
+                                + pExpected[i] + " but was " + pActual[i]);
+        }
+    }
+
+}//end of Check::equal
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Check::equal
+//
+// Fails with message pWhat if pActual does not hold the same values as
+// pExpected.
+//
+
+public static void equal(int[] pExpected, int[] pActual, String pWhat)
+{
+
+    if (!Arrays.equals(pExpected, pActual)){
+        throw new AssertionError(pWhat + " - expected "
+            + Arrays.toString(pExpected) + " but was "
+            + Arrays.toString(pActual));
+    }
+
+}//end of Check::equal
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Check::fails
+//
+// Fails with message pWhat unless pBody throws an exception of class pType.
+//
+
+public static void fails(Class<? extends Throwable> pType,
+                                        TestCase.Body pBody, String pWhat)
+{
+
+    try{
+        pBody.run();
+    }
+    catch(Throwable e){
+        if (pType.isInstance(e)) { return; }
+        throw new AssertionError(pWhat + " - expected "
+                    + pType.getSimpleName() + " but was " + e, e);
+    }
+
+    throw new AssertionError(pWhat + " - expected "
+                                + pType.getSimpleName() + " but none thrown");
+
+}//end of Check::fails
+//-----------------------------------------------------------------------------
+
+}//end of class Check
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,86 @@
+/******************************************************************************
+* Title: TestCase.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class holds one test run by TestRunner: a name used in the report and
+* to select tests from the command line, and the body of the test.
+*
+* The body fails by throwing any exception, usually the AssertionError thrown
+* by the methods of Check. The tests do not depend on a test library so that
+* they can be run with only the JDK.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package test;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class TestCase
+//
+
+public class TestCase
+{
+
+    private final String name;
+    public String getName() { return(name); }
+
+    private final Body body;
+
+//-----------------------------------------------------------------------------
+// TestCase::TestCase (constructor)
+//
+// Parameter pName is displayed in the report and used to select tests from
+// the command line. Parameter pBody performs the test.
+//
+
+public TestCase(String pName, Body pBody)
+{
+
+    name = pName; body = pBody;
+
+}//end of TestCase::TestCase (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// TestCase::run
+//
+// Runs the body of the test. Throws whatever the body throws if it fails.
+//
+
+public void run() throws Exception
+{
+
+    body.run();
+
+}//end of TestCase::run
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// interface Body
+//
+// The code of a test, usually given as a method reference.
+//
+
+public interface Body
+{
+
+    void run() throws Exception;
+
+}//end of interface Body
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+}//end of class TestCase
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
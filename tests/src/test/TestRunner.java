@@ -0,0 +1,164 @@
+/******************************************************************************
+* Title: TestRunner.java
+* Author: agent
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class runs the tests of the segment file and piece journal code and
+* prints a report of the results. It is run headless from the build with:
+*
+*   ant check
+*
+* Arguments may be passed via the check.args property:
+*
+*   ant check -Dcheck.args="SegmentRecorder"
+*
+* Each argument is treated as a filter -- only tests with a name containing
+* one of the filters are run.
+*
+* Every selected test is run even if an earlier one fails. The program exits
+* with a non-zero status if any test fails so that the build fails.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package test;
+
+//-----------------------------------------------------------------------------
+
+import java.util.ArrayList;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class TestRunner
+//
+
+public class TestRunner
+{
+
+    private final ArrayList<String> filters = new ArrayList<>();
+
+//-----------------------------------------------------------------------------
+// TestRunner::main
+//
+
+public static void main(String[] pArgs)
+{
+
+    TestRunner runner = new TestRunner();
+
+    runner.init(pArgs);
+
+    int status = runner.runAll() > 0 ? 1 : 0;
+
+    System.exit(status);
+
+}//end of TestRunner::main
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// TestRunner::init
+//
+// Parses the command line arguments in pArgs and prepares for use.
+//
+
+public void init(String[] pArgs)
+{
+
+    for (String arg : pArgs){
+        if (!arg.isEmpty()) { filters.add(arg); }
+    }
+
+}//end of TestRunner::init
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// TestRunner::createTests
+//
+// Returns all tests.
+//
+
+private ArrayList<TestCase> createTests()
+{
+
+    ArrayList<TestCase> list = new ArrayList<>();
+
+    list.addAll(model.SegmentFileTests.create());
+    list.addAll(model.SegmentRecorderTests.create());
+
+    return(list);
+
+}//end of TestRunner::createTests
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// TestRunner::isSelected
+//
+// Returns true if the test named pName matches one of the filters or no
+// filters were specified.
+//
+
+private boolean isSelected(String pName)
+{
+
+    if (filters.isEmpty()) { return(true); }
+
+    for (String f : filters){ if (pName.contains(f)) { return(true); } }
+
+    return(false);
+
+}//end of TestRunner::isSelected
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// TestRunner::runAll
+//
+// Runs all selected tests and prints the result of each. A failed test is
+// reported on the error stream with its stack trace.
+//
+// Returns the number of tests which failed.
+//
+
+public int runAll()
+{
+
+    int numRun = 0, numFailed = 0;
+
+    for (TestCase t : createTests()){
+
+        if (!isSelected(t.getName())) { continue; }
+
+        numRun++;
+
+        try{
+            t.run();
+            System.out.println(String.format("%-64s passed", t.getName()));
+        }
+        catch(Throwable e){
+            numFailed++;
+            System.out.flush();
+            System.err.println(String.format("%-64s FAILED: %s",
+                                                    t.getName(), e));
+            e.printStackTrace();
+        }
+
+    }
+
+    System.out.println();
+    System.out.println(numRun + " test(s) run, " + numFailed + " failed.");
+
+    return(numFailed);
+
+}//end of TestRunner::runAll
+//-----------------------------------------------------------------------------
+
+}//end of class TestRunner
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------